@@ -315,21 +315,49 @@ public class DatasetLoading {
      * @throws java.io.IOException if cannot find the file, or file is malformed
      */
     public static Instances loadDataThrowable(String fullPath) throws IOException {
-        if (!fullPath.toLowerCase().endsWith(".arff"))
+        if (!fullPath.toLowerCase().endsWith(".arff") && !fullPath.toLowerCase().endsWith(".ts"))
             fullPath += ".arff";
 
         return loadDataThrowable(new File(fullPath));
     }
 
     /**
-     * Loads the arff file at the target location and sets the last attribute to be the class value,
-     * or throws IOException on any error.
+     * Loads the arff or .ts file at the target location and sets the last attribute to be the class value,
+     * or throws IOException on any error. Arff files are read by the weka loader, .ts files by SeriesFileReader.
+     * For large files see loadLargeDataThrowable.
      *
      * @param targetFile the file to try and load
      * @return Instances from file.
      * @throws java.io.IOException if cannot find the file, or file is malformed
      */
     public static Instances loadDataThrowable(File targetFile) throws IOException {
+        if (targetFile.getName().toLowerCase().endsWith(".ts"))
+            return loadLargeDataThrowable(targetFile);
+
+        FileReader reader = new FileReader(targetFile);
+        Instances inst = new Instances(reader);
+        inst.setClassIndex(inst.numAttributes() - 1);
+        reader.close();
+        return inst;
+    }
+
+    /**
+     * Loads the arff or .ts file at the target location with the streaming SeriesFileReader and sets the last
+     * attribute to be the class value, or throws IOException on any error. The file is memory mapped and each row
+     * parsed straight into the values of its instance, which is faster than the weka loader and needs no more memory
+     * than the Instances returned. Arff files the reader does not support, e.g. with string attributes or sparse
+     * rows, are read by the weka loader.
+     *
+     * @param targetFile the file to try and load
+     * @return Instances from file.
+     * @throws java.io.IOException if cannot find the file, or file is malformed
+     */
+    public static Instances loadLargeDataThrowable(File targetFile) throws IOException {
+        try (SeriesFileReader reader = new SeriesFileReader(targetFile)) {
+            if (reader.isSupported())
+                return reader.readInstances();
+        }
+
         FileReader reader = new FileReader(targetFile);
         Instances inst = new Instances(reader);
         inst.setClassIndex(inst.numAttributes() - 1);
@@ -346,7 +374,7 @@ public class DatasetLoading {
      * @return Instances from file.
      */
     public static Instances loadData(String fullPath) {
-        if (!fullPath.toLowerCase().endsWith(".arff"))
+        if (!fullPath.toLowerCase().endsWith(".arff") && !fullPath.toLowerCase().endsWith(".ts"))
             fullPath += ".arff";
 
         return loadDataNullable(new File(fullPath));
@@ -362,7 +390,7 @@ public class DatasetLoading {
      * @return Instances from file.
      */
     public static Instances loadDataNullable(String fullPath) {
-        if (!fullPath.toLowerCase().endsWith(".arff"))
+        if (!fullPath.toLowerCase().endsWith(".arff") && !fullPath.toLowerCase().endsWith(".ts"))
             fullPath += ".arff";
 
         return loadDataNullable(new File(fullPath));
@@ -0,0 +1,102 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package experiments.data;
+
+import java.util.Arrays;
+
+/**
+ * The series of a dataset held in one contiguous array, as read by SeriesFileReader. Each row has one or more
+ * dimensions, possibly of different lengths, stored one after the other; rowOffsets give the first dimension of each
+ * row and seriesOffsets the start of each dimension, so that dimension d of row r is from seriesOffsets[rowOffsets[r]+d]
+ * to seriesOffsets[rowOffsets[r]+d+1].
+ *
+ * For a weka view of a file read it with SeriesFileReader.readInstances instead, which does not hold the values twice.
+ */
+public class SeriesData {
+
+    private double[] values = new double[1024];
+    private int[] seriesOffsets = new int[64];
+    private int[] rowOffsets = new int[64];
+    private double[] classValues = new double[64];
+    private int numRows = 0;
+    private int numSeries = 0;
+
+    SeriesData() {
+    }
+
+    void add(SeriesFileReader.Row row) {
+        int size = seriesOffsets[numSeries];
+        int rowSize = row.offset(row.numDimensions());
+        if (size + rowSize > values.length)
+            values = Arrays.copyOf(values, Math.max(values.length * 2, size + rowSize));
+        System.arraycopy(row.values(), 0, values, size, rowSize);
+
+        if (numSeries + row.numDimensions() + 1 > seriesOffsets.length)
+            seriesOffsets = Arrays.copyOf(seriesOffsets, Math.max(seriesOffsets.length * 2, numSeries + row.numDimensions() + 1));
+        for (int d = 0; d < row.numDimensions(); d++)
+            seriesOffsets[numSeries + d + 1] = size + row.offset(d + 1);
+
+        if (numRows + 1 >= rowOffsets.length) {
+            rowOffsets = Arrays.copyOf(rowOffsets, rowOffsets.length * 2);
+            classValues = Arrays.copyOf(classValues, classValues.length * 2);
+        }
+        classValues[numRows] = row.classValue();
+        numSeries += row.numDimensions();
+        rowOffsets[++numRows] = numSeries;
+    }
+
+    void trim() {
+        values = Arrays.copyOf(values, seriesOffsets[numSeries]);
+        seriesOffsets = Arrays.copyOf(seriesOffsets, numSeries + 1);
+        rowOffsets = Arrays.copyOf(rowOffsets, numRows + 1);
+        classValues = Arrays.copyOf(classValues, numRows);
+    }
+
+    public int numRows() { return numRows; }
+    public int numDimensions(int row) { return rowOffsets[row + 1] - rowOffsets[row]; }
+    public double classValue(int row) { return classValues[row]; }
+
+    public int length(int row, int dimension) {
+        int series = rowOffsets[row] + dimension;
+        return seriesOffsets[series + 1] - seriesOffsets[series];
+    }
+
+    public double value(int row, int dimension, int index) {
+        return values[seriesOffsets[rowOffsets[row] + dimension] + index];
+    }
+
+    public double[] getSeries(int row, int dimension) {
+        int series = rowOffsets[row] + dimension;
+        return Arrays.copyOfRange(values, seriesOffsets[series], seriesOffsets[series + 1]);
+    }
+
+    /**
+     * @return the length of the longest series of any row or dimension
+     */
+    public int maxLength() {
+        int max = 0;
+        for (int s = 0; s < numSeries; s++)
+            max = Math.max(max, seriesOffsets[s + 1] - seriesOffsets[s]);
+        return max;
+    }
+
+    public int maxDimensions() {
+        int max = 0;
+        for (int r = 0; r < numRows; r++)
+            max = Math.max(max, numDimensions(r));
+        return max;
+    }
+}
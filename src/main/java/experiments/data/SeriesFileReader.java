@@ -0,0 +1,775 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package experiments.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Streaming reader for time series in ARFF or the sktime .ts format. The file is memory mapped a region at a time and
+ * each row is parsed straight from the mapped bytes into primitive buffers, without the weka tokenizer or any
+ * intermediate strings. Rows are read one at a time by iterating the reader, each row being overwritten by the next,
+ * or all at once into a contiguous SeriesData.
+ *
+ * Supported ARFF files are those with numeric or nominal attributes, the class being last, and multivariate files of
+ * a single relational attribute of numeric series plus the class. Other ARFF files (string or date attributes, sparse
+ * rows, instance weights) are left to the weka loader, see isSupported. The .ts format supports univariate and
+ * multivariate series of equal or unequal length, with class labels or a numeric target, but not time stamps.
+ */
+public class SeriesFileReader implements Iterator<SeriesFileReader.Row>, Closeable {
+
+    //the most mapped at once, larger files are mapped a region at a time
+    private static final long REGION_SIZE = 1L << 30;
+
+    //powers of ten which are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer region;
+    private long regionEnd;
+    private long lineNumber = 1;
+
+    private final boolean ts;
+    //ARFF header as parsed by weka, null for .ts files
+    private Instances header;
+    private boolean supported = true;
+    private boolean relational;
+    private int numInnerAttributes;
+    private int numSeriesAttributes;
+    private Attribute classAttribute;
+
+    //.ts header
+    private String relationName;
+    private List<String> classLabels;
+    private boolean hasClass = true;
+
+    private final Row row = new Row();
+    private boolean rowReady = false;
+    private boolean finished = false;
+
+    private char[] token = new char[64];
+    private int tokenLength;
+
+    /**
+     * Opens the file and reads its header, leaving the reader at the first row. Files ending in .ts are read in the
+     * sktime format, anything else as ARFF.
+     */
+    public SeriesFileReader(File file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        fileSize = channel.size();
+        ts = file.getName().toLowerCase().endsWith(".ts");
+        try {
+            if (ts)
+                readTsHeader();
+            else
+                readArffHeader();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads every row of a file.
+     */
+    public static SeriesData read(File file) throws IOException {
+        try (SeriesFileReader reader = new SeriesFileReader(file)) {
+            if (!reader.isSupported())
+                throw new IOException("unsupported ARFF header in " + file);
+            return reader.readAll();
+        }
+    }
+
+    /**
+     * @return false if this is an ARFF file with attributes this reader does not handle, in which case no rows can
+     * be read
+     */
+    public boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * @return the weka header of the file, or null for .ts files as their header depends on the longest series
+     */
+    public Instances getHeader() {
+        return header;
+    }
+
+    public boolean isTs() {
+        return ts;
+    }
+
+    public String getRelationName() {
+        return relationName;
+    }
+
+    /**
+     * @return the class labels of a .ts file, or null if it has a numeric target
+     */
+    public List<String> getClassLabels() {
+        return classLabels;
+    }
+
+    /**
+     * Reads every remaining row into a contiguous store.
+     */
+    public SeriesData readAll() throws IOException {
+        SeriesData data = new SeriesData();
+        while (nextRow())
+            data.add(row);
+        data.trim();
+        return data;
+    }
+
+    /**
+     * Reads every remaining row straight into weka Instances, with the class index set to the last attribute. Each row
+     * is copied once from the reader into the array its instance wraps, so the values are never held twice. For .ts
+     * files the header is the layout of the archive ARFF files, att0..attN and the class, in a relational attribute if
+     * multivariate, series shorter than the longest being padded with missing values.
+     */
+    public Instances readInstances() throws IOException {
+        if (!supported)
+            throw new IOException("unsupported ARFF header in " + file);
+        if (!ts) {
+            Instances data = new Instances(header, 0);
+            data.setClassIndex(data.numAttributes() - 1);
+            while (nextRow())
+                data.add(relational ? relationalInstance(data, row.numDimensions(), numInnerAttributes)
+                        : new DenseInstance(1.0, seriesValues(row.length(0), data.numAttributes())));
+            return data;
+        }
+
+        //the header depends on the longest series, so rows are held until the end. A univariate row is held in the
+        //array its instance will wrap, which only needs copying again if it is padded
+        List<double[]> univariate = new ArrayList<>();
+        List<double[][]> multivariate = new ArrayList<>();
+        List<Double> classValues = new ArrayList<>();
+        int maxLength = 0;
+        int maxDimensions = 0;
+        while (nextRow()) {
+            for (int d = 0; d < row.numDimensions(); d++)
+                maxLength = Math.max(maxLength, row.length(d));
+            maxDimensions = Math.max(maxDimensions, row.numDimensions());
+            if (row.numDimensions() == 1) {
+                univariate.add(seriesValues(row.length(0), row.length(0) + 1));
+            } else {
+                double[][] dimensions = new double[row.numDimensions()][];
+                for (int d = 0; d < dimensions.length; d++)
+                    dimensions[d] = row.getSeries(d);
+                multivariate.add(dimensions);
+                univariate.add(null);
+            }
+            classValues.add(row.classValue());
+        }
+
+        Instances data = tsHeader(maxLength, maxDimensions, univariate.size());
+        int next = 0;
+        for (int r = 0; r < univariate.size(); r++) {
+            double[] values = univariate.get(r);
+            double[][] dimensions = values == null ? multivariate.get(next++) : new double[][]{values};
+            if (maxDimensions > 1) {
+                Attribute attribute = data.attribute(0);
+                Instances relation = new Instances(attribute.relation(), dimensions.length);
+                for (double[] dimension : dimensions)
+                    relation.add(new DenseInstance(1.0, padded(dimension, dimension.length - (values == null ? 0 : 1),
+                            maxLength, maxLength)));
+                values = new double[]{attribute.addRelation(relation), classValues.get(r)};
+            } else {
+                values = padded(values, values.length - 1, maxLength, maxLength + 1);
+                values[maxLength] = classValues.get(r);
+            }
+            univariate.set(r, null);
+            data.add(new DenseInstance(1.0, values));
+        }
+        return data;
+    }
+
+    private boolean nextRow() throws IOException {
+        if (rowReady) {
+            rowReady = false;
+            return true;
+        }
+        if (finished || !readRow()) {
+            finished = true;
+            return false;
+        }
+        return true;
+    }
+
+    //the first length values of the row in an array of the given size, with the class value last
+    private double[] seriesValues(int length, int size) {
+        double[] values = new double[size];
+        System.arraycopy(row.values(), 0, values, 0, length);
+        values[size - 1] = row.classValue();
+        return values;
+    }
+
+    private Instance relationalInstance(Instances data, int numDimensions, int length) {
+        Attribute attribute = data.attribute(0);
+        Instances relation = new Instances(attribute.relation(), numDimensions);
+        for (int d = 0; d < numDimensions; d++) {
+            double[] values = new double[length];
+            System.arraycopy(row.values(), row.offset(d), values, 0, row.length(d));
+            Arrays.fill(values, row.length(d), length, Double.NaN);
+            relation.add(new DenseInstance(1.0, values));
+        }
+        return new DenseInstance(1.0, new double[]{attribute.addRelation(relation), row.classValue()});
+    }
+
+    //the first length values of the series padded with missing values up to maxLength, in an array of the given size.
+    //The series itself is returned if it is already that size
+    private static double[] padded(double[] series, int length, int maxLength, int size) {
+        if (series.length == size && length == maxLength)
+            return series;
+        double[] padded = new double[size];
+        System.arraycopy(series, 0, padded, 0, length);
+        Arrays.fill(padded, length, maxLength, Double.NaN);
+        return padded;
+    }
+
+    private Instances tsHeader(int length, int numDimensions, int numRows) {
+        ArrayList<Attribute> seriesAtts = new ArrayList<>(length);
+        for (int i = 0; i < length; i++)
+            seriesAtts.add(new Attribute("att" + i));
+
+        Attribute target = classLabels == null ? new Attribute("target")
+                : new Attribute("target", new ArrayList<>(classLabels));
+
+        ArrayList<Attribute> atts = new ArrayList<>();
+        if (numDimensions > 1) {
+            Instances relationHeader = new Instances("relationalAtt", seriesAtts, 0);
+            atts.add(new Attribute("relationalAtt", relationHeader));
+        } else {
+            atts.addAll(seriesAtts);
+        }
+        atts.add(target);
+        Instances data = new Instances(relationName, atts, numRows);
+        data.setClassIndex(data.numAttributes() - 1);
+        return data;
+    }
+
+    /**
+     * @throws UncheckedIOException if the next row is malformed, as iterators cannot throw IOException. Use readAll
+     * to have the IOException itself
+     */
+    @Override
+    public boolean hasNext() {
+        if (!rowReady && !finished) {
+            try {
+                rowReady = readRow();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finished = !rowReady;
+        }
+        return rowReady;
+    }
+
+    private boolean readRow() throws IOException {
+        return ts ? readTsRow() : readArffRow();
+    }
+
+    /**
+     * @return the next row. The same row object is reused, so it is only valid until the following call
+     */
+    @Override
+    public Row next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        rowReady = false;
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        region = null;
+        channel.close();
+    }
+
+    /**
+     * A row of one or more series and a class value. The values of all dimensions are held one after the other.
+     */
+    public static class Row {
+        private double[] values = new double[64];
+        private int[] offsets = new int[2];
+        private int numDimensions;
+        private double classValue;
+
+        public int numDimensions() { return numDimensions; }
+        public int length(int dimension) { return offsets[dimension + 1] - offsets[dimension]; }
+        public double value(int dimension, int index) { return values[offsets[dimension] + index]; }
+        public double classValue() { return classValue; }
+
+        /**
+         * @return the values of every dimension, dimension d being from offset(d) to offset(d+1)
+         */
+        public double[] values() { return values; }
+        public int offset(int dimension) { return offsets[dimension]; }
+
+        public double[] getSeries(int dimension) {
+            double[] series = new double[length(dimension)];
+            System.arraycopy(values, offsets[dimension], series, 0, series.length);
+            return series;
+        }
+
+        private void clear() {
+            numDimensions = 0;
+            offsets[0] = 0;
+            offsets[1] = 0;
+        }
+
+        //appends to the dimension being read, which ends at offsets[numDimensions + 1]
+        private void add(double value) {
+            int size = offsets[numDimensions + 1];
+            if (size == values.length) {
+                double[] grown = new double[values.length * 2];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+            values[size] = value;
+            offsets[numDimensions + 1]++;
+        }
+
+        private void nextDimension() {
+            numDimensions++;
+            if (numDimensions + 2 > offsets.length) {
+                int[] grown = new int[offsets.length * 2];
+                System.arraycopy(offsets, 0, grown, 0, numDimensions + 1);
+                offsets = grown;
+            }
+            offsets[numDimensions + 1] = offsets[numDimensions];
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------------
+    // bytes
+
+    private int read() throws IOException {
+        if (region == null || !region.hasRemaining()) {
+            if (regionEnd >= fileSize)
+                return -1;
+            long size = Math.min(REGION_SIZE, fileSize - regionEnd);
+            region = channel.map(FileChannel.MapMode.READ_ONLY, regionEnd, size);
+            regionEnd += size;
+        }
+        int c = region.get() & 0xFF;
+        if (c == '\n')
+            lineNumber++;
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (region == null || !region.hasRemaining()) {
+            if (regionEnd >= fileSize)
+                return -1;
+            long size = Math.min(REGION_SIZE, fileSize - regionEnd);
+            region = channel.map(FileChannel.MapMode.READ_ONLY, regionEnd, size);
+            regionEnd += size;
+        }
+        return region.get(region.position()) & 0xFF;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + ", line " + lineNumber + " of " + file);
+    }
+
+    private String readLine(ByteArrayOutputStream bytes) throws IOException {
+        bytes.reset();
+        int c;
+        while ((c = read()) != -1 && c != '\n')
+            if (c != '\r')
+                bytes.write(c);
+        if (c == -1 && bytes.size() == 0)
+            return null;
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void skipSpaces() throws IOException {
+        int c;
+        while ((c = peek()) == ' ' || c == '\t')
+            read();
+    }
+
+    //skips blank and comment lines, returning false at the end of the file
+    private boolean skipToRow(char comment) throws IOException {
+        while (true) {
+            int c = peek();
+            if (c == -1)
+                return false;
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                read();
+            } else if (c == comment) {
+                while ((c = read()) != -1 && c != '\n');
+            } else {
+                return true;
+            }
+        }
+    }
+
+    private void endRow() throws IOException {
+        skipSpaces();
+        int c = read();
+        if (c == '\r')
+            c = read();
+        if (c != '\n' && c != -1)
+            throw error("unexpected '" + (char) c + "' at end of row");
+    }
+
+    /**
+     * Reads a token into the token buffer, trimmed of spaces and quotes, stopping before the next delimiter.
+     * @param inner whether reading inside a quoted relational value, where quotes and backslashes end a token
+     * @return the delimiter, which is not consumed
+     */
+    private int readToken(boolean inner) throws IOException {
+        tokenLength = 0;
+        skipSpaces();
+        int c = peek();
+        if (!inner && (c == '\'' || c == '"')) {
+            int quote = read();
+            while ((c = read()) != quote) {
+                if (c == -1 || c == '\n')
+                    throw error("unterminated quote");
+                if (c == '\\')
+                    c = unescape(read());
+                append(c);
+            }
+            skipSpaces();
+            return peek();
+        }
+        while (true) {
+            c = peek();
+            if (c == -1 || c == ',' || c == '\n' || c == '\r' || (ts && c == ':')
+                    || (inner && (c == '\\' || c == '\'' || c == '"')))
+                break;
+            append(read());
+        }
+        while (tokenLength > 0 && (token[tokenLength - 1] == ' ' || token[tokenLength - 1] == '\t'))
+            tokenLength--;
+        return c;
+    }
+
+    private static int unescape(int c) {
+        switch (c) {
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            default: return c;
+        }
+    }
+
+    private void append(int c) {
+        if (tokenLength == token.length) {
+            char[] grown = new char[token.length * 2];
+            System.arraycopy(token, 0, grown, 0, tokenLength);
+            token = grown;
+        }
+        token[tokenLength++] = (char) c;
+    }
+
+    private String tokenString() {
+        return new String(token, 0, tokenLength);
+    }
+
+    //----------------------------------------------------------------------------------------------------------------
+    // numbers
+
+    private double parseToken() throws IOException {
+        if (tokenLength == 1 && token[0] == '?')
+            return Double.NaN;
+        double value = parseNumber(token, tokenLength);
+        if (Double.isNaN(value) && !(tokenLength == 3 && tokenString().equals("NaN")))
+            throw error("number expected, found '" + tokenString() + "'");
+        return value;
+    }
+
+    /**
+     * Parses a decimal number. Numbers with up to 15 or so significant digits and a small exponent are found by
+     * exactly one rounding of an exact mantissa and power of ten, which is the correctly rounded value given by
+     * Double.parseDouble. Anything else goes through Double.parseDouble.
+     * @return the number, or NaN if it is not a number
+     */
+    static double parseNumber(char[] chars, int length) {
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean point = false;
+        boolean fast = true;
+        for (; i < length && fast; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && c == '0') {
+                    if (point)
+                        scale++;
+                } else if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                    if (point)
+                        scale++;
+                } else {
+                    fast = false;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else if ((c == 'e' || c == 'E') && seenDigit && i + 1 < length) {
+                int j = i + 1;
+                boolean negativeExponent = false;
+                if (chars[j] == '-' || chars[j] == '+') {
+                    negativeExponent = chars[j] == '-';
+                    j++;
+                }
+                if (j == length || length - j > 4)
+                    fast = false;
+                for (; j < length && fast; j++) {
+                    if (chars[j] < '0' || chars[j] > '9')
+                        fast = false;
+                    else
+                        exponent = exponent * 10 + (chars[j] - '0');
+                }
+                if (negativeExponent)
+                    exponent = -exponent;
+                i = length;
+                break;
+            } else {
+                fast = false;
+            }
+        }
+        if (fast && seenDigit) {
+            if (mantissa == 0)
+                return negative ? -0.0 : 0.0;
+            int power = exponent - scale;
+            if (mantissa < (1L << 53) && power >= -22 && power <= 22) {
+                double value = power < 0 ? mantissa / POWERS_OF_TEN[-power] : mantissa * POWERS_OF_TEN[power];
+                return negative ? -value : value;
+            }
+        }
+        try {
+            return Double.parseDouble(new String(chars, 0, length));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------------
+    // ARFF
+
+    private void readArffHeader() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StringBuilder text = new StringBuilder();
+        String line;
+        while ((line = readLine(bytes)) != null) {
+            text.append(line).append('\n');
+            if (line.trim().toLowerCase().startsWith("@data"))
+                break;
+        }
+        if (line == null)
+            throw error("no @data section");
+
+        header = new Instances(new StringReader(text.toString()));
+        header.setClassIndex(header.numAttributes() - 1);
+        relationName = header.relationName();
+        classAttribute = header.classAttribute();
+        if (!classAttribute.isNominal() && !classAttribute.isNumeric()) {
+            supported = false;
+        } else if (header.numAttributes() == 2 && header.attribute(0).isRelationValued()) {
+            relational = true;
+            Instances inner = header.attribute(0).relation();
+            numInnerAttributes = inner.numAttributes();
+            for (int i = 0; i < inner.numAttributes(); i++)
+                if (!inner.attribute(i).isNumeric())
+                    supported = false;
+        } else {
+            numSeriesAttributes = header.numAttributes() - 1;
+            for (int i = 0; i < numSeriesAttributes; i++)
+                if (!header.attribute(i).isNumeric() && !header.attribute(i).isNominal())
+                    supported = false;
+        }
+    }
+
+    private boolean readArffRow() throws IOException {
+        if (!supported)
+            throw new IOException("unsupported ARFF header in " + file);
+        if (!skipToRow('%'))
+            return false;
+        row.clear();
+        if (peek() == '{')
+            throw error("sparse rows are not supported");
+
+        if (relational) {
+            int quote = read();
+            if (quote != '\'' && quote != '"')
+                throw error("relational value expected");
+            while (true) {
+                int delimiter = readToken(true);
+                row.add(parseToken());
+                read();
+                if (row.length(row.numDimensions) > numInnerAttributes)
+                    throw error("more values than the " + numInnerAttributes + " attributes of the relation");
+                if (delimiter == '\\') {
+                    if (read() != 'n')
+                        throw error("'\\n' expected between dimensions");
+                    row.nextDimension();
+                } else if (delimiter == quote) {
+                    row.nextDimension();
+                    break;
+                } else if (delimiter != ',') {
+                    throw error("unterminated relational value");
+                }
+            }
+            skipSpaces();
+            if (read() != ',')
+                throw error("class value expected");
+        } else {
+            for (int i = 0; i < numSeriesAttributes; i++) {
+                int delimiter = readToken(false);
+                Attribute attribute = header.attribute(i);
+                if (attribute.isNominal())
+                    row.add(nominalValue(attribute));
+                else
+                    row.add(parseToken());
+                if (delimiter != ',')
+                    throw error("expected " + header.numAttributes() + " values");
+                read();
+            }
+            row.nextDimension();
+        }
+
+        int delimiter = readToken(false);
+        if (delimiter == ',')
+            throw error("too many values");
+        row.classValue = classAttribute.isNominal() ? nominalValue(classAttribute) : parseToken();
+        endRow();
+        return true;
+    }
+
+    private double nominalValue(Attribute attribute) throws IOException {
+        if (tokenLength == 1 && token[0] == '?')
+            return Double.NaN;
+        int index = attribute.indexOfValue(tokenString());
+        if (index < 0)
+            throw error("nominal value '" + tokenString() + "' not declared in header");
+        return index;
+    }
+
+    //----------------------------------------------------------------------------------------------------------------
+    // .ts
+
+    private void readTsHeader() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        String line;
+        relationName = file.getName().substring(0, file.getName().length() - 3);
+        while ((line = readLine(bytes)) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] parts = line.split("\\s+");
+            String tag = parts[0].toLowerCase();
+            if (tag.equals("@data")) {
+                if (classLabels == null && hasClass)
+                    throw error("no @classLabel or @targetLabel in header");
+                return;
+            } else if (tag.equals("@problemname") && parts.length > 1) {
+                relationName = parts[1];
+            } else if (tag.equals("@timestamps") && parts.length > 1 && parts[1].equalsIgnoreCase("true")) {
+                throw error("time stamps are not supported");
+            } else if (tag.equals("@classlabel")) {
+                if (parts.length > 1 && parts[1].equalsIgnoreCase("true")) {
+                    classLabels = new ArrayList<>();
+                    for (int i = 2; i < parts.length; i++)
+                        classLabels.add(parts[i]);
+                } else {
+                    hasClass = false;
+                }
+            } else if (tag.equals("@targetlabel")) {
+                hasClass = parts.length > 1 && parts[1].equalsIgnoreCase("true");
+            } else if (!tag.startsWith("@")) {
+                throw error("unexpected '" + line + "' in header");
+            }
+        }
+        throw error("no @data section");
+    }
+
+    private boolean readTsRow() throws IOException {
+        if (!skipToRow('#'))
+            return false;
+        row.clear();
+        while (true) {
+            int delimiter = readToken(false);
+            if (delimiter == ',') {
+                row.add(parseToken());
+                read();
+                continue;
+            }
+            if (delimiter == ':' || !hasClass) {
+                if (tokenLength > 0)
+                    row.add(parseToken());
+                row.nextDimension();
+                if (delimiter != ':')
+                    break;
+                read();
+                continue;
+            }
+            if (row.numDimensions == 0)
+                throw error("no series before the class value");
+            if (classLabels != null) {
+                int index = classLabels.indexOf(tokenString());
+                if (index < 0)
+                    throw error("class label '" + tokenString() + "' not declared in header");
+                row.classValue = index;
+            } else {
+                row.classValue = parseToken();
+            }
+            break;
+        }
+        if (!hasClass)
+            row.classValue = Double.NaN;
+        endRow();
+        return true;
+    }
+}
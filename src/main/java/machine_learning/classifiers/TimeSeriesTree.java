@@ -25,11 +25,15 @@ import java.util.ArrayList;
 import java.util.Random;
 
 import static utilities.ArrayUtilities.normalise;
-import static utilities.ArrayUtilities.sum;
 
 /**
  * Time series tree implementation from the time series forest (TSF) paper.
  *
+ * The train data is held as primitive columns, each with the instance indices presorted by its values. A node is a
+ * range of every presorted index array, and splitting a node stably partitions that range so both children stay
+ * sorted without copying or resorting any data. The gains of all the thresholds for an attribute are then found in a
+ * single sweep of the node's sorted range, accumulating the class counts left of each threshold in turn.
+ *
  * Author: Matthew Middlehurst
  **/
 public class TimeSeriesTree extends AbstractClassifier implements Randomizable, Serializable {
@@ -47,6 +51,14 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
     private double[] mean;
     private double[] stdev;
 
+    //train data used while building, attribute values by column and the instance indices sorted by each column
+    private transient double[][] columns;
+    private transient int[][] sorted;
+    private transient int[] classes;
+    private transient int numClasses;
+    private transient boolean[] goesLeft;
+    private transient int[] buffer;
+
     protected static final long serialVersionUID = 1L;
 
     public TimeSeriesTree(){}
@@ -67,50 +79,72 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
 
         rand = new Random(seed);
 
-        Instances newData;
+        int numAtts = data.numAttributes()-1;
+        int numInstances = data.numInstances();
+        numClasses = data.numClasses();
+        columns = new double[numAtts][numInstances];
+        classes = new int[numInstances];
+        for (int n = 0; n < numInstances; n++){
+            Instance inst = data.get(n);
+            for (int i = 0; i < numAtts; i++){
+                columns[i][n] = inst.value(i);
+            }
+            classes[n] = (int)inst.classValue();
+        }
+
         if (norm){
-            newData = new Instances(data);
-            mean = new double[newData.numAttributes()-1];
-            stdev = new double[newData.numAttributes()-1];
+            mean = new double[numAtts];
+            stdev = new double[numAtts];
 
-            for (int i = 0; i < newData.numAttributes()-1; i++){
-                for (Instance inst: newData){
-                    mean[i] += inst.value(i);
+            for (int i = 0; i < numAtts; i++){
+                double[] column = columns[i];
+                for (int n = 0; n < numInstances; n++){
+                    mean[i] += column[n];
                 }
-                mean[i] /= newData.numInstances();
+                mean[i] /= numInstances;
 
                 double squareSum = 0;
-                for (Instance inst: newData){
-                    double temp = inst.value(i) - mean[i];
+                for (int n = 0; n < numInstances; n++){
+                    double temp = column[n] - mean[i];
                     squareSum += temp * temp;
                 }
-                stdev[i] = Math.sqrt(squareSum/(newData.numInstances()-1));
+                stdev[i] = Math.sqrt(squareSum/(numInstances-1));
 
                 if (stdev[i] == 0) stdev[i] = 1;
 
-                for (Instance inst: newData){
-                    inst.setValue(i, (inst.value(i) - mean[i]) / stdev[i]);
+                for (int n = 0; n < numInstances; n++){
+                    column[n] = (column[n] - mean[i]) / stdev[i];
                 }
             }
         }
-        else{
-            newData = data;
-        }
 
-        double[][] thresholds = findThresholds(newData);
+        double[][] thresholds = findThresholds();
+
+        buffer = new int[numInstances];
+        sorted = new int[numAtts][];
+        for (int i = 0; i < numAtts; i++){
+            sorted[i] = sortIndices(columns[i]);
+        }
+        goesLeft = new boolean[numInstances];
 
-        double[] dist = new double[data.numClasses()];
-        for (Instance inst: data){
-            dist[(int)inst.classValue()]++;
+        double[] dist = new double[numClasses];
+        for (int n = 0; n < numInstances; n++){
+            dist[classes[n]]++;
         }
         double rootEntropy = 0;
-        for (int i = 0; i < data.numClasses(); i++) {
-            double p1 = dist[i]/data.numInstances();
+        for (int i = 0; i < numClasses; i++) {
+            double p1 = dist[i]/numInstances;
             rootEntropy += p1 > 0 ? -(p1*Math.log(p1)/log2) : 0;
         }
 
         root = new TreeNode();
-        root.buildTree(newData, thresholds, rootEntropy, dist);
+        root.buildTree(0, numInstances, thresholds, rootEntropy, dist);
+
+        columns = null;
+        sorted = null;
+        classes = null;
+        goesLeft = null;
+        buffer = null;
     }
 
     @Override
@@ -149,13 +183,12 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
         return root.distributionForInstance(newInst);
     }
 
-    private double[][] findThresholds(Instances data){
-        double[][] thresholds = new double[data.numAttributes()-1][k];
-        for (int i = 0; i < data.numAttributes()-1; i++){
+    private double[][] findThresholds(){
+        double[][] thresholds = new double[columns.length][k];
+        for (int i = 0; i < columns.length; i++){
             double min = Double.MAX_VALUE;
             double max = Double.MIN_VALUE;
-            for (Instance inst: data){
-                double v = inst.value(i);
+            for (double v: columns[i]){
                 if (v < min){
                     min = v;
                 }
@@ -172,6 +205,37 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
         return thresholds;
     }
 
+    //instance indices in ascending order of value, NaN last
+    private int[] sortIndices(double[] column){
+        int[] indices = new int[column.length];
+        for (int n = 0; n < indices.length; n++){
+            indices[n] = n;
+        }
+        mergeSort(indices, 0, indices.length, column);
+        return indices;
+    }
+
+    private void mergeSort(int[] indices, int from, int to, double[] column){
+        if (to - from < 2) return;
+
+        int mid = (from + to) >>> 1;
+        mergeSort(indices, from, mid, column);
+        mergeSort(indices, mid, to, column);
+
+        if (Double.compare(column[indices[mid-1]], column[indices[mid]]) <= 0) return;
+
+        System.arraycopy(indices, from, buffer, from, to - from);
+        int l = from, r = mid;
+        for (int n = from; n < to; n++){
+            if (r >= to || (l < mid && Double.compare(column[buffer[l]], column[buffer[r]]) <= 0)){
+                indices[n] = buffer[l++];
+            }
+            else{
+                indices[n] = buffer[r++];
+            }
+        }
+    }
+
     public ArrayList<Double>[] getTreeSplitsGain(){
         ArrayList<Double> splits = new ArrayList<>();
         ArrayList<Double> gain = new ArrayList<>();
@@ -207,52 +271,83 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
 
         TreeNode(){}
 
-        void buildTree(Instances data, double[][] thresholds, double entropy, double[] distribution){
+        void buildTree(int from, int to, double[][] thresholds, double entropy, double[] distribution){
             double[][] bestEntropies = new double[0][0];
+            int numInstances = to - from;
+            double[] leftCounts = new double[numClasses];
+            double[] rightCounts = new double[numClasses];
+            double[] entropies = new double[3];
+
+            for (int i = 0; i < columns.length; i++){
+                double[] column = columns[i];
+                int[] order = sorted[i];
+
+                //instances left of the threshold are order[from..p)
+                int p = from;
+                for (int c = 0; c < numClasses; c++) leftCounts[c] = 0;
+                double prevThreshold = Double.NEGATIVE_INFINITY;
 
-            for (int i = 0; i < data.numAttributes()-1; i++){
                 for (int n = 0; n < k; n++){
-                    //gain stored in [0][0]
-                    double[][] entropies = entropyGain(data, i, thresholds[i][n], entropy);
+                    double threshold = thresholds[i][n];
+                    if (threshold < prevThreshold){
+                        p = from;
+                        for (int c = 0; c < numClasses; c++) leftCounts[c] = 0;
+                    }
+                    prevThreshold = threshold;
+                    while (p < to && column[order[p]] <= threshold){
+                        leftCounts[classes[order[p]]]++;
+                        p++;
+                    }
+                    double sumLeft = p - from;
+                    double sumRight = to - p;
+                    for (int c = 0; c < numClasses; c++){
+                        rightCounts[c] = distribution[c] - leftCounts[c];
+                    }
+
+                    //gain stored in [0]
+                    entropyGain(leftCounts, rightCounts, sumLeft, sumRight, numInstances, entropy, entropies);
 
                     if (useEntrance){
-                        if (entropies[0][0] > bestGain){
+                        if (entropies[0] > bestGain){
                             bestSplit = i;
-                            bestThreshold = thresholds[i][n];
-                            bestGain = entropies[0][0];
-                            bestMargin = findMargin(data, i, thresholds[i][n]);
-                            bestEntropies = entropies;
+                            bestThreshold = threshold;
+                            bestGain = entropies[0];
+                            bestMargin = findMargin(column, order, from, to, p, threshold);
+                            bestEntropies = new double[][]{ entropies.clone(), leftCounts.clone(),
+                                    rightCounts.clone() };
                         }
-                        else if (entropies[0][0] == bestGain && entropies[0][0] > 0){
-                            double margin = findMargin(data, i, thresholds[i][n]);
+                        else if (entropies[0] == bestGain && entropies[0] > 0){
+                            double margin = findMargin(column, order, from, to, p, threshold);
 
                             if (margin > bestMargin || (margin == bestMargin && rand.nextBoolean())){
                                 bestSplit = i;
-                                bestThreshold = thresholds[i][n];
+                                bestThreshold = threshold;
                                 bestMargin = margin;
-                                bestEntropies = entropies;
+                                bestEntropies = new double[][]{ entropies.clone(), leftCounts.clone(),
+                                        rightCounts.clone() };
                             }
                         }
                     }
                     else{
-                        if (entropies[0][0] > bestGain ||
-                                (entropies[0][0] == bestGain && entropies[0][0] > 0 && rand.nextBoolean())){
+                        if (entropies[0] > bestGain ||
+                                (entropies[0] == bestGain && entropies[0] > 0 && rand.nextBoolean())){
                             bestSplit = i;
-                            bestThreshold = thresholds[i][n];
-                            bestGain = entropies[0][0];
-                            bestEntropies = entropies;
+                            bestThreshold = threshold;
+                            bestGain = entropies[0];
+                            bestEntropies = new double[][]{ entropies.clone(), leftCounts.clone(),
+                                    rightCounts.clone() };
                         }
                     }
                 }
             }
 
             if (bestSplit > -1){
-                Instances[] dataSplit = splitData(data);
+                int mid = splitData(from, to);
                 children = new TreeNode[2];
                 children[0] = new TreeNode();
-                children[0].buildTree(dataSplit[0], thresholds, bestEntropies[0][1], bestEntropies[1]);
+                children[0].buildTree(from, mid, thresholds, bestEntropies[0][1], bestEntropies[1]);
                 children[1] = new TreeNode();
-                children[1].buildTree(dataSplit[1], thresholds, bestEntropies[0][2], bestEntropies[2]);
+                children[1].buildTree(mid, to, thresholds, bestEntropies[0][2], bestEntropies[2]);
             }
             else{
                 leafDistribution = distribution;
@@ -260,41 +355,33 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
             }
         }
 
-        double[][] entropyGain(Instances data, int att, double threshold, double parentEntropy){
-            double[][] dists = new double[3][data.numClasses()];
-            for (Instance inst: data){
-                if (inst.value(att) <= threshold){
-                    dists[1][(int)inst.classValue()]++;
-                }
-                else{
-                    dists[2][(int)inst.classValue()]++;
-                }
-            }
-
-            double sumLeft = sum(dists[1]);
-            double sumRight = sum(dists[2]);
-
-            double[] entropies = new double[3];
-            for (int i = 0; i < data.numClasses(); i++) {
-                double p1 = dists[1][i]/sumLeft;
+        void entropyGain(double[] leftCounts, double[] rightCounts, double sumLeft, double sumRight,
+                         int numInstances, double parentEntropy, double[] entropies){
+            entropies[1] = 0;
+            entropies[2] = 0;
+            for (int i = 0; i < numClasses; i++) {
+                double p1 = leftCounts[i]/sumLeft;
                 entropies[1] += p1 > 0 ? -(p1*Math.log(p1)/log2) : 0;
-                double p2 = dists[2][i]/sumRight;
+                double p2 = rightCounts[i]/sumRight;
                 entropies[2] += p2 > 0 ? -(p2*Math.log(p2)/log2) : 0;
             }
 
-            entropies[0] = parentEntropy - sumLeft/data.numInstances() * entropies[1]
-                    - sumRight/data.numInstances() * entropies[2];
-
-            dists[0] = entropies;
-
-            return dists;
+            entropies[0] = parentEntropy - sumLeft/numInstances * entropies[1]
+                    - sumRight/numInstances * entropies[2];
         }
 
-        double findMargin(Instances data, int att, double threshold){
+        //the closest values to the threshold are either side of the split point p in the sorted order
+        double findMargin(double[] column, int[] order, int from, int to, int p, double threshold){
             double min = Double.MAX_VALUE;
 
-            for (Instance inst: data){
-                double n = Math.abs(inst.value(att)-threshold);
+            if (p > from){
+                double n = Math.abs(column[order[p-1]]-threshold);
+                if (n < min){
+                    min = n;
+                }
+            }
+            if (p < to){
+                double n = Math.abs(column[order[p]]-threshold);
                 if (n < min){
                     min = n;
                 }
@@ -303,21 +390,32 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
             return min;
         }
 
-        Instances[] splitData(Instances data){
-            Instances[] split = new Instances[2];
-            split[0] = new Instances(data, data.numInstances());
-            split[1] = new Instances(data, data.numInstances());
+        //stably partitions the node's range of every sorted index array into left then right, returning the start
+        //of the right
+        int splitData(int from, int to){
+            double[] column = columns[bestSplit];
+            int numLeft = 0;
+            for (int n = from; n < to; n++){
+                int index = sorted[bestSplit][n];
+                goesLeft[index] = column[index] <= bestThreshold;
+                if (goesLeft[index]) numLeft++;
+            }
 
-            for (Instance inst: data){
-                if (inst.value(bestSplit) <= bestThreshold){
-                    split[0].add(inst);
-                }
-                else{
-                    split[1].add(inst);
+            for (int[] order : sorted){
+                int l = from, r = from;
+                for (int n = from; n < to; n++){
+                    int index = order[n];
+                    if (goesLeft[index]){
+                        order[l++] = index;
+                    }
+                    else{
+                        buffer[r++] = index;
+                    }
                 }
+                System.arraycopy(buffer, from, order, l, r - from);
             }
 
-            return split;
+            return from + numLeft;
         }
 
         double[] distributionForInstance(Instance inst){
@@ -369,24 +369,12 @@ public abstract class AbstractEnsemble extends EnhancedAbstractClassifier implem
         //that will build the classifier and return train results for it, either 
         //generated by the classifier itself or the trainEstimator
         List<Callable<ClassifierResults>> moduleBuilds = new ArrayList<>();
-        for (EnsembleModule module : modules) {
-            final Classifier classifier = module.getClassifier();
+        int[] order = moduleTrainOrder();
+        for (int m : order) {
+            final EnsembleModule module = modules[m];
             final Evaluator eval = trainEstimator.cloneEvaluator();
             
-            Callable<ClassifierResults> moduleBuild = () -> {
-                ClassifierResults trainResults = null;
-                
-                if (EnhancedAbstractClassifier.classifierIsEstimatingOwnPerformance(classifier)) { 
-                    classifier.buildClassifier(trainInsts);
-                    trainResults = ((EnhancedAbstractClassifier)classifier).getTrainResults();
-                }
-                else { 
-                    trainResults = eval.evaluate(classifier, trainInsts);
-                    classifier.buildClassifier(trainInsts);
-                }
-                
-                return trainResults;
-            };
+            Callable<ClassifierResults> moduleBuild = () -> trainModule(module, eval);
             
             moduleBuilds.add(moduleBuild);
         }
@@ -408,9 +396,9 @@ public abstract class AbstractEnsemble extends EnhancedAbstractClassifier implem
         
         
         //gather back the train results, write them if needed 
+        for (int i = 0; i < order.length; i++)
+            modules[order[i]].trainResults = results.get(i);
         for (int i = 0; i < modules.length; i++) {
-            modules[i].trainResults = results.get(i);
-            
             if (writeIndividualsResults) { //if we're doing trainFold# file writing
                 String params = modules[i].getParameters();
                 if (modules[i].getClassifier() instanceof EnhancedAbstractClassifier)
@@ -420,6 +408,37 @@ public abstract class AbstractEnsemble extends EnhancedAbstractClassifier implem
         }
     }
     
+    /**
+     * Builds the module's classifier and returns train results for it, either 
+     * generated by the classifier itself or the given evaluator
+     */
+    protected ClassifierResults trainModule(EnsembleModule module, Evaluator eval) throws Exception {
+        final Classifier classifier = module.getClassifier();
+        ClassifierResults trainResults = null;
+        
+        if (EnhancedAbstractClassifier.classifierIsEstimatingOwnPerformance(classifier)) { 
+            classifier.buildClassifier(trainInsts);
+            trainResults = ((EnhancedAbstractClassifier)classifier).getTrainResults();
+        }
+        else { 
+            trainResults = eval.evaluate(classifier, trainInsts);
+            classifier.buildClassifier(trainInsts);
+        }
+        
+        return trainResults;
+    }
+    
+    /**
+     * The order the modules are started in by trainModules, by default the order they were given in. 
+     * When threaded, modules are started in this order as threads become free
+     */
+    protected int[] moduleTrainOrder() {
+        int[] order = new int[modules.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        return order;
+    }
+    
 //    protected void trainModules_unThreaded() throws Exception {
 //        for (EnsembleModule module : modules) {
 //            Classifier clf = module.getClassifier();
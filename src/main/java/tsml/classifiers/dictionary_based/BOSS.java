@@ -18,10 +18,9 @@ import java.util.*;
 
 import tsml.classifiers.*;
 
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import utilities.*;
 import weka.core.*;
@@ -63,9 +62,12 @@ public class BOSS extends EnhancedAbstractClassifier implements
     private double ensembleCvAcc = -1;
     private double[] ensembleCvPreds = null;
 
+    private boolean useInvertedIndex = false;
+
     private int numThreads = 1;
     private boolean multiThread = false;
-    private ExecutorService ex;
+    //pool members are built and evaluated on when multithreading, created on demand
+    private transient ExecutorService ex;
 
     protected static final long serialVersionUID = 22554L;
     
@@ -124,8 +126,15 @@ public class BOSS extends EnhancedAbstractClassifier implements
         return sb.toString();
     }
     
+    private ExecutorService getExecutor() {
+        //the pool's worker threads are daemons and time out when idle so the pool does not need shutting down
+        if (ex == null) ex = new ForkJoinPool(numThreads);
+        return ex;
+    }
+
     @Override
     public void enableMultiThreading(int numThreads) {
+        int previousNumThreads = this.numThreads;
         if (numThreads > 1) {
             this.numThreads = numThreads;
             multiThread = true;
@@ -134,6 +143,11 @@ public class BOSS extends EnhancedAbstractClassifier implements
             this.numThreads = 1;
             multiThread = false;
         }
+        //the pool is kept unless its size changes
+        if (ex != null && this.numThreads != previousNumThreads) {
+            ex.shutdown();
+            ex = null;
+        }
     }
 
     @Override
@@ -145,6 +159,14 @@ public class BOSS extends EnhancedAbstractClassifier implements
         maxEnsembleSize = size;
     }
 
+    /**
+     * Whether members find nearest neighbours via an inverted index of their train bags, see
+     * IndividualBOSS.setUseInvertedIndex. Predictions are unchanged.
+     */
+    public void setUseInvertedIndex(boolean b) {
+        useInvertedIndex = b;
+    }
+
     @Override
     public void buildClassifier(final Instances data) throws Exception {
         printDebug("Building BOSS");
@@ -199,7 +221,7 @@ public class BOSS extends EnhancedAbstractClassifier implements
 
         if (multiThread){
             if (numThreads == 1) numThreads = Runtime.getRuntime().availableProcessors();
-            if (ex == null) ex = Executors.newFixedThreadPool(numThreads);
+            getExecutor();
         }
 
         //required to deal with multivariate datasets, each channel is split into its own instances
@@ -226,6 +248,7 @@ public class BOSS extends EnhancedAbstractClassifier implements
                 for (int winSize = minWindow; winSize <= maxWindow; winSize += winInc) {
                     IndividualBOSS boss = new IndividualBOSS(wordLengths[0], alphabetSize[0], winSize, normalise, multiThread, numThreads, ex);
                     boss.seed = seed;
+                    boss.setUseInvertedIndex(useInvertedIndex);
                     boss.buildClassifier(series[n]); //initial setup for this windowsize, with max word length
 
                     IndividualBOSS bestClassifierForWinSize = null;
@@ -310,17 +333,26 @@ public class BOSS extends EnhancedAbstractClassifier implements
         int requiredCorrect = (int)(lowestAcc*numInst);
 
         if (multiThread){
-            ArrayList<Future<Double>> futures = new ArrayList<>(numInst);
-
-            for (int i = 0; i < numInst; ++i)
-                futures.add(ex.submit(boss.new TrainNearestNeighbourThread(i)));
+            //classify blocks over the pool, then go through each block in order so the estimate can stop early
+            //as below
+            double[] predictions = new double[numInst];
+            int blockSize = numThreads * 16;
+
+            for (int start = 0; start < numInst; start += blockSize) {
+                final int from = start;
+                int end = Math.min(numInst, start + blockSize);
+                ThreadingUtilities.parallelFor(getExecutor(), numThreads * 4, end - start,
+                        i -> predictions[from + i] = boss.classifyInstance(from + i));
+
+                for (int i = start; i < end; ++i) {
+                    if (correct + numInst - i < requiredCorrect) {
+                        return -1;
+                    }
 
-            int idx = 0;
-            for (Future<Double> f: futures){
-                if (f.get() == series.get(idx).classValue()) {
-                    ++correct;
+                    if (predictions[i] == series.get(i).classValue()) {
+                        ++correct;
+                    }
                 }
-                idx++;
             }
         }
         else {
@@ -469,10 +501,6 @@ public class BOSS extends EnhancedAbstractClassifier implements
     @Override
     public double[] distributionForInstance(Instance instance) throws Exception {
         int numClasses = train.numClasses();
-        double[] classHist = new double[numClasses];
-
-        //get sum of all channels, votes from each are weighted the same.
-        double sum = 0;
 
         Instance[] series;
 
@@ -486,37 +514,92 @@ public class BOSS extends EnhancedAbstractClassifier implements
             series[0] = instance;
         }
 
-        if (multiThread){
-            ArrayList<Future<Double>>[] futures = new ArrayList[numDimensions];
+        double[][] predictions = new double[numDimensions][];
+        for (int n = 0; n < numDimensions; n++) {
+            final int dim = n;
+            IndividualBOSS[] members = classifiers[n].toArray(new IndividualBOSS[0]);
+            predictions[n] = new double[members.length];
 
-            for (int n = 0; n < numDimensions; n++) {
-                futures[n] = new ArrayList<>(numClassifiers[n]);
-                for (IndividualBOSS classifier : classifiers[n]) {
-                    futures[n].add(ex.submit(classifier.new TestNearestNeighbourThread(series[n])));
-                }
+            if (multiThread) {
+                ThreadingUtilities.parallelFor(getExecutor(), numThreads * 4, members.length,
+                        i -> predictions[dim][i] = members[i].classifyInstance(series[dim]));
+            }
+            else {
+                for (int i = 0; i < members.length; i++)
+                    predictions[n][i] = members[i].classifyInstance(series[n]);
             }
+        }
 
-            for (int n = 0; n < numDimensions; n++) {
-                int idx = 0;
-                for (Future<Double> f : futures[n]) {
-                    double weight = classifiers[n].get(idx).weight;
-                    classHist[f.get().intValue()] += weight;
-                    sum += weight;
-                    idx++;
-                }
+        return vote(predictions, numClasses);
+    }
+
+    /**
+     * Finds the distribution for each of a batch of instances. When multithreading, every member classifies every
+     * instance with the work split into chunks over the pool, rather than a task per member per instance.
+     *
+     * @return the distribution for each instance, the same as distributionForInstance would give
+     */
+    public double[][] distributionForInstances(Instances data) throws Exception {
+        int numClasses = train.numClasses();
+        int numInsts = data.numInstances();
+
+        Instance[][] series = new Instance[numInsts][];
+        for (int j = 0; j < numInsts; j++) {
+            //Multivariate
+            if (isMultivariate) {
+                series[j] = splitMultivariateInstanceWithClassVal(data.get(j));
+            }
+            //Univariate
+            else {
+                series[j] = new Instance[]{ data.get(j) };
             }
         }
-        else {
-            for (int n = 0; n < numDimensions; n++) {
-                for (IndividualBOSS classifier : classifiers[n]) {
-                    double classification = classifier.classifyInstance(series[n]);
-                    classHist[(int) classification] += classifier.weight;
-                    sum += classifier.weight;
-                }
+
+        double[][][] predictions = new double[numInsts][numDimensions][];
+        for (int n = 0; n < numDimensions; n++) {
+            final int dim = n;
+            IndividualBOSS[] members = classifiers[n].toArray(new IndividualBOSS[0]);
+            for (int j = 0; j < numInsts; j++)
+                predictions[j][n] = new double[members.length];
+
+            //one index per member per instance, so each chunk covers few members
+            if (multiThread) {
+                ThreadingUtilities.parallelFor(getExecutor(), numThreads * 4, members.length * numInsts, k -> {
+                    int i = k / numInsts;
+                    int j = k % numInsts;
+                    predictions[j][dim][i] = members[i].classifyInstance(series[j][dim]);
+                });
+            }
+            else {
+                for (int i = 0; i < members.length; i++)
+                    for (int j = 0; j < numInsts; j++)
+                        predictions[j][n][i] = members[i].classifyInstance(series[j][n]);
             }
         }
 
-        double[] distributions = new double[instance.numClasses()];
+        double[][] distributions = new double[numInsts][];
+        for (int j = 0; j < numInsts; j++)
+            distributions[j] = vote(predictions[j], numClasses);
+
+        return distributions;
+    }
+
+    //weighted vote of the members' predictions for each dimension
+    private double[] vote(double[][] predictions, int numClasses) {
+        double[] classHist = new double[numClasses];
+
+        //get sum of all channels, votes from each are weighted the same.
+        double sum = 0;
+
+        for (int n = 0; n < numDimensions; n++) {
+            int i = 0;
+            for (IndividualBOSS classifier : classifiers[n]) {
+                classHist[(int) predictions[n][i++]] += classifier.weight;
+                sum += classifier.weight;
+            }
+        }
+
+        double[] distributions = new double[numClasses];
 
         if (sum != 0) {
             for (int i = 0; i < classHist.length; ++i)
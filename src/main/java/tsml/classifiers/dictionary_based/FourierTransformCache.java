@@ -0,0 +1,141 @@
+package tsml.classifiers.dictionary_based;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the Fourier coefficients found when building BOSS members, to be shared by all the members of an ensemble
+ * built on the same data, i.e. cBOSS.
+ *
+ * Both the MFT of the sliding windows (used to make SFA words) and the DFT of the disjoint windows (used to find the
+ * MCB breakpoints) depend only on the series, window size and normalisation, besides the number of coefficients.
+ * Each coefficient is found independently, so the coefficients for a shorter word are a prefix of those for a longer
+ * word. Transforms are therefore cached with the coefficients for the longest word, MAX_WORD_LENGTH, and members of any
+ * word length use them as is, only reading as many as they need.
+ *
+ * Series are keyed by their index in the full train data (before any subsampling) and the dimension. The cache holds
+ * at most the given number of bytes, evicting the least recently used transforms once full. Thread safe.
+ */
+public class FourierTransformCache {
+
+    public static final int MAX_WORD_LENGTH = 16;
+
+    private final long maxBytes;
+    private long bytesUsed = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    private final LinkedHashMap<Key, double[][]> transforms = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param maxBytes the most memory the cached transforms may take up
+     */
+    public FourierTransformCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the MFT of the sliding windows of the series, with MAX_WORD_LENGTH coefficients per window
+     */
+    public double[][] getMFT(int dimension, int series, int windowSize, boolean norm, Supplier<double[][]> mft) {
+        return get(new Key(false, dimension, series, windowSize, norm), mft);
+    }
+
+    /**
+     * @return the DFT of the disjoint windows of the series, with MAX_WORD_LENGTH coefficients per window
+     */
+    public double[][] getDFT(int dimension, int series, int windowSize, boolean norm, Supplier<double[][]> dft) {
+        return get(new Key(true, dimension, series, windowSize, norm), dft);
+    }
+
+    private double[][] get(Key key, Supplier<double[][]> transform) {
+        synchronized (this) {
+            double[][] cached = transforms.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        //computed outside the lock, another thread may also compute it in the meantime which is harmless
+        double[][] computed = transform.get();
+        long size = sizeOf(computed);
+        if (size > maxBytes)
+            return computed;
+
+        synchronized (this) {
+            double[][] previous = transforms.put(key, computed);
+            if (previous != null)
+                bytesUsed -= sizeOf(previous);
+            bytesUsed += size;
+
+            Iterator<Map.Entry<Key, double[][]>> it = transforms.entrySet().iterator();
+            while (bytesUsed > maxBytes && it.hasNext()) {
+                Map.Entry<Key, double[][]> eldest = it.next();
+                if (eldest.getKey().equals(key))
+                    continue;
+
+                bytesUsed -= sizeOf(eldest.getValue());
+                it.remove();
+            }
+        }
+
+        return computed;
+    }
+
+    //approximate, array headers plus contents
+    private static long sizeOf(double[][] transform) {
+        long size = 16 + 8L * transform.length;
+        for (double[] window : transform)
+            size += 16 + 8L * window.length;
+        return size;
+    }
+
+    public synchronized long getBytesUsed() { return bytesUsed; }
+    public long getMaxBytes() { return maxBytes; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+
+    public synchronized void clear() {
+        transforms.clear();
+        bytesUsed = 0;
+    }
+
+    private static class Key {
+        final boolean disjoint;
+        final int dimension;
+        final int series;
+        final int windowSize;
+        final boolean norm;
+
+        Key(boolean disjoint, int dimension, int series, int windowSize, boolean norm) {
+            this.disjoint = disjoint;
+            this.dimension = dimension;
+            this.series = series;
+            this.windowSize = windowSize;
+            this.norm = norm;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key)o;
+            return disjoint == k.disjoint && dimension == k.dimension && series == k.series
+                    && windowSize == k.windowSize && norm == k.norm;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = series;
+            hash = 31 * hash + windowSize;
+            hash = 31 * hash + dimension;
+            hash = 31 * hash + (norm ? 1 : 0);
+            hash = 31 * hash + (disjoint ? 1 : 0);
+            return hash;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package tsml.classifiers.dictionary_based;
 
 import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.dictionary_based.bitword.BitWordInt;
+import utilities.ThreadingUtilities;
 import weka.classifiers.AbstractClassifier;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -9,10 +10,8 @@ import weka.core.UnassignedClassException;
 
 import java.io.Serializable;
 import java.util.*;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * BOSS classifier to be used with known parameters, for boss with parameter search, use BOSSEnsemble.
@@ -45,13 +44,21 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
     protected boolean numerosityReduction = true;
     protected boolean cleanAfterBuild = false;
 
+    //optional index of the train bags, for finding nearest neighbours without scanning every bag
+    protected boolean useInvertedIndex = false;
+    protected InvertedIndex invertedIndex;
+
+    //optional cache of train transforms shared with other members, and the dimension of the data this is built on
+    protected transient FourierTransformCache transformCache;
+    protected int cacheDimension = 0;
+
     protected double accuracy = -1;
     protected double weight = 1;
     protected ArrayList<Integer> subsampleIndices;
 
     protected boolean multiThread = false;
     protected int numThreads = 1;
-    protected ExecutorService ex;
+    protected transient ExecutorService ex;
 
     protected int seed = 0;
     protected Random rand;
@@ -89,6 +96,7 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         this.alphabetSize = boss.alphabetSize;
         this.norm = boss.norm;
         this.numerosityReduction = boss.numerosityReduction;
+        this.useInvertedIndex = boss.useInvertedIndex;
 
         this.SFAwords = boss.SFAwords;
         this.breakpoints = boss.breakpoints;
@@ -113,21 +121,265 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         this.numThreads = numThreads;
     }
 
-    public static class Bag extends HashMap<BitWordInt, Integer> {
+    /**
+     * Histogram of words, held as word values sorted ascending with their counts in parallel primitive arrays. This
+     * is far smaller than a map of boxed words and counts, and lets the BOSS distance be found by merging two sorted
+     * arrays rather than by hash lookups.
+     *
+     * Can still be used as a Map of BitWordInt to count, though entries are created on the fly and put shifts the
+     * arrays, so the Map methods are for convenience rather than speed. All words in a bag are of the same length.
+     */
+    public static class Bag extends AbstractMap<BitWordInt, Integer> implements Serializable {
         double classVal;
-        protected static final long serialVersionUID = 22552L;
+        protected static final long serialVersionUID = 22553L;
+
+        private int[] words;
+        private int[] counts;
+        private int numWords;
+        private byte wordLength;
 
         public Bag() {
-            super();
+            this(0, new int[0], 0);
         }
 
         public Bag(int classValue) {
-            super();
+            this();
             classVal = classValue;
         }
 
+        /**
+         * Builds a bag from a sequence of words, counting repeats
+         *
+         * @param wordLength the length of all the words
+         * @param sequence the word values, this array is sorted in place
+         * @param length the number of words in sequence to use
+         */
+        public Bag(int wordLength, int[] sequence, int length) {
+            this.wordLength = (byte)wordLength;
+            Arrays.sort(sequence, 0, length);
+            int distinct = 0;
+            for (int i = 0; i < length; ++i)
+                if (i == 0 || sequence[i] != sequence[i-1])
+                    ++distinct;
+
+            words = new int[distinct];
+            counts = new int[distinct];
+            for (int i = 0; i < length; ++i) {
+                if (i == 0 || sequence[i] != sequence[i-1])
+                    words[numWords++] = sequence[i];
+                ++counts[numWords-1];
+            }
+        }
+
         public double getClassVal() { return classVal; }
         public void setClassVal(double classVal) { this.classVal = classVal; }
+
+        public int getWordLength() { return wordLength; }
+
+        /**
+         * @return the count of the word with the given value, 0 if not present
+         */
+        public int getCount(int word) {
+            int i = Arrays.binarySearch(words, 0, numWords, word);
+            return i < 0 ? 0 : counts[i];
+        }
+
+        @Override
+        public int size() { return numWords; }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof BitWordInt && getCount(((BitWordInt)key).getWord()) > 0;
+        }
+
+        @Override
+        public Integer get(Object key) {
+            if (!(key instanceof BitWordInt))
+                return null;
+            int count = getCount(((BitWordInt)key).getWord());
+            return count == 0 ? null : count;
+        }
+
+        @Override
+        public Integer put(BitWordInt key, Integer value) {
+            wordLength = (byte)key.getLength();
+            int i = Arrays.binarySearch(words, 0, numWords, key.getWord());
+            if (i >= 0) {
+                int old = counts[i];
+                counts[i] = value;
+                return old;
+            }
+
+            i = -(i + 1);
+            if (numWords == words.length) {
+                words = Arrays.copyOf(words, Math.max(4, numWords * 2));
+                counts = Arrays.copyOf(counts, words.length);
+            }
+            System.arraycopy(words, i, words, i + 1, numWords - i);
+            System.arraycopy(counts, i, counts, i + 1, numWords - i);
+            words[i] = key.getWord();
+            counts[i] = value;
+            ++numWords;
+            return null;
+        }
+
+        @Override
+        public Set<Entry<BitWordInt, Integer>> entrySet() {
+            return new AbstractSet<Entry<BitWordInt, Integer>>() {
+                @Override
+                public Iterator<Entry<BitWordInt, Integer>> iterator() {
+                    return new Iterator<Entry<BitWordInt, Integer>>() {
+                        int i = 0;
+
+                        @Override
+                        public boolean hasNext() { return i < numWords; }
+
+                        @Override
+                        public Entry<BitWordInt, Integer> next() {
+                            if (i >= numWords)
+                                throw new NoSuchElementException();
+                            Entry<BitWordInt, Integer> entry = new SimpleImmutableEntry<>(
+                                    new BitWordInt(words[i], wordLength), counts[i]);
+                            ++i;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() { return numWords; }
+            };
+        }
+    }
+
+    /**
+     * Inverted index of a set of bags, mapping each word to the bags containing it (postings, in bag order) and its
+     * count in each. As the BOSS distance only sums over the words of the test bag, the distance to every bag can be
+     * found from the postings of the test words alone:
+     *
+     * d(test, train) = sum_w a_w^2 + sum_{w in both} ((a_w - b_w)^2 - a_w^2)
+     *
+     * where a and b are the test and train counts. Bags sharing no words with the test bag are all at the same
+     * distance, sum_w a_w^2, so only the bags sharing a word are visited, and the cost depends on how many bags share
+     * the test words rather than on the number of bags. Distances are exact, so the nearest neighbour (and ties,
+     * which go to the lowest index) are the same as scanning with BOSSdistance.
+     */
+    public static class InvertedIndex implements Serializable {
+        protected static final long serialVersionUID = 22554L;
+
+        private final int numBags;
+        //distinct words, sorted, and the start of each word's postings
+        private final int[] words;
+        private final int[] offsets;
+        //bag indices and the word count in each bag
+        private final int[] postingBags;
+        private final int[] postingCounts;
+
+        public InvertedIndex(List<Bag> bags) {
+            numBags = bags.size();
+            int numPostings = 0;
+            for (Bag bag : bags)
+                numPostings += bag.numWords;
+
+            int[] allWords = new int[numPostings];
+            int pos = 0;
+            for (Bag bag : bags) {
+                System.arraycopy(bag.words, 0, allWords, pos, bag.numWords);
+                pos += bag.numWords;
+            }
+            Arrays.sort(allWords);
+            int distinct = 0;
+            for (int i = 0; i < numPostings; ++i)
+                if (i == 0 || allWords[i] != allWords[i-1])
+                    allWords[distinct++] = allWords[i];
+            words = Arrays.copyOf(allWords, distinct);
+
+            //count the postings of each word, then fill in bag order so each word's postings are in bag order
+            offsets = new int[distinct+1];
+            for (Bag bag : bags)
+                for (int i = 0; i < bag.numWords; ++i)
+                    ++offsets[Arrays.binarySearch(words, bag.words[i]) + 1];
+            for (int i = 0; i < distinct; ++i)
+                offsets[i+1] += offsets[i];
+
+            postingBags = new int[numPostings];
+            postingCounts = new int[numPostings];
+            int[] next = Arrays.copyOf(offsets, distinct);
+            for (int b = 0; b < numBags; ++b) {
+                Bag bag = bags.get(b);
+                for (int i = 0; i < bag.numWords; ++i) {
+                    int p = next[Arrays.binarySearch(words, bag.words[i])]++;
+                    postingBags[p] = b;
+                    postingCounts[p] = bag.counts[i];
+                }
+            }
+        }
+
+        public int size() { return numBags; }
+
+        /**
+         * Finds the nearest bag by BOSS distance FROM the test bag. Thread safe.
+         *
+         * @param excludeIndex index of a bag to ignore, e.g. for leave-one-out, or -1 for none
+         * @return index of the nearest bag, the lowest index on ties, or -1 if there are none
+         */
+        public int nearestNeighbour(Bag testBag, int excludeIndex) {
+            //distance to bags sharing no words
+            long baseDist = 0;
+            for (int i = 0; i < testBag.numWords; ++i)
+                baseDist += (long)testBag.counts[i]*testBag.counts[i];
+
+            long[] corrections = new long[numBags];
+            boolean[] visited = new boolean[numBags];
+            int[] visitedBags = new int[numBags];
+            int numVisited = 0;
+
+            //merge the test words with the index words
+            int j = 0;
+            for (int i = 0; i < testBag.numWords && j < words.length; ++i) {
+                int word = testBag.words[i];
+                while (j < words.length && words[j] < word)
+                    ++j;
+                if (j == words.length || words[j] != word)
+                    continue;
+
+                long valA = testBag.counts[i];
+                for (int p = offsets[j]; p < offsets[j+1]; ++p) {
+                    int bag = postingBags[p];
+                    long diff = valA - postingCounts[p];
+                    corrections[bag] += diff*diff - valA*valA;
+                    if (!visited[bag]) {
+                        visited[bag] = true;
+                        visitedBags[numVisited++] = bag;
+                    }
+                }
+            }
+
+            //the first bag sharing no words stands for all of them
+            int nn = -1;
+            long bestDist = Long.MAX_VALUE;
+            for (int b = 0; b < numBags; ++b) {
+                if (!visited[b] && b != excludeIndex) {
+                    nn = b;
+                    bestDist = baseDist;
+                    break;
+                }
+            }
+
+            for (int v = 0; v < numVisited; ++v) {
+                int bag = visitedBags[v];
+                if (bag == excludeIndex)
+                    continue;
+
+                long dist = baseDist + corrections[bag];
+                if (dist < bestDist || (dist == bestDist && bag < nn)) {
+                    bestDist = dist;
+                    nn = bag;
+                }
+            }
+
+            return nn;
+        }
     }
 
     public int getWindowSize() { return windowSize; }
@@ -146,6 +398,26 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
 
     public void setSeed(int i){ seed = i; }
 
+    /**
+     * Whether to find nearest neighbours via an inverted index of the train bags rather than by scanning every bag.
+     * Predictions are the same either way, the index is faster where train sets are large and words are sparse, at
+     * the cost of holding a second copy of the bags.
+     */
+    public void setUseInvertedIndex(boolean b) { useInvertedIndex = b; }
+
+    public InvertedIndex getInvertedIndex() { return invertedIndex; }
+
+    /**
+     * Shares the Fourier transforms of the train data with other members built on the same data. The train data
+     * passed to buildClassifier must be the data the cache is for, or the subsample of it given by subsampleIndices.
+     *
+     * @param dimension the dimension of the data this is built on, for multivariate data
+     */
+    public void setTransformCache(FourierTransformCache cache, int dimension) {
+        transformCache = cache;
+        cacheDimension = dimension;
+    }
+
     public void clean() {
         SFAwords = null;
     }
@@ -237,6 +509,20 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         return dft;
     }
 
+    //transforms are cached with the coefficients of the longest word, shorter words only use a prefix of them
+    private boolean useTransformCache() {
+        return transformCache != null && wordLength <= FourierTransformCache.MAX_WORD_LENGTH;
+    }
+
+    //index of a train instance in the data the cache is for
+    private int cacheIndex(int index) {
+        return subsampleIndices == null ? index : subsampleIndices.get(index);
+    }
+
+    private IndividualBOSS maxLengthTransformer() {
+        return new IndividualBOSS(FourierTransformCache.MAX_WORD_LENGTH, alphabetSize, windowSize, norm);
+    }
+
     private double[][] performMFT(double[] series) {
         // ignore DC value?
         int startOffset = norm ? 2 : 0;
@@ -333,12 +619,23 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         return subSequences;
     }
 
+    /**
+     * DFT of the disjoint windows of the train instance at the given index, sharing it through the cache if set
+     */
+    protected double[][] disjointDFT(Instances data, int index) {
+        Instance inst = data.get(index);
+        if (!useTransformCache())
+            return performDFT(disjointWindows(toArrayNoClass(inst)));
+
+        return transformCache.getDFT(cacheDimension, cacheIndex(index), windowSize, norm,
+                () -> maxLengthTransformer().performDFT(disjointWindows(toArrayNoClass(inst))));
+    }
+
     protected double[][] MCB(Instances data) {
         double[][][] dfts = new double[data.numInstances()][][];
 
-        int sample = 0;
-        for (Instance inst : data)
-            dfts[sample++] = performDFT(disjointWindows(toArrayNoClass(inst))); //approximation
+        for (int sample = 0; sample < data.numInstances(); ++sample)
+            dfts[sample] = disjointDFT(data, sample); //approximation
 
         int numInsts = dfts.length;
         int numWindowsPerInst = dfts[0].length;
@@ -380,24 +677,21 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
      * to be used e.g to transform new test instances
      */
     protected Bag createBagSingle(double[][] dfts) {
-        Bag bag = new Bag();
-        BitWordInt lastWord = new BitWordInt();
+        int[] sequence = new int[dfts.length];
+        int length = 0;
+        int lastWord = 0;
 
-        for (double[] d : dfts) {
-            BitWordInt word = createWord(d);
+        for (int i = 0; i < dfts.length; ++i) {
+            int word = createWord(dfts[i]).getWord();
             //add to bag, unless num reduction applies
-            if (numerosityReduction && word.equals(lastWord))
+            if (numerosityReduction && word == lastWord)
                 continue;
 
-            Integer val = bag.get(word);
-            if (val == null)
-                val = 0;
-            bag.put(word, ++val);
-
+            sequence[length++] = word;
             lastWord = word;
         }
 
-        return bag;
+        return new Bag(wordLength, sequence, length);
     }
 
     protected BitWordInt createWord(double[] dft) {
@@ -464,6 +758,9 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
             newBoss.bags.add(newBag);
         }
 
+        if (useInvertedIndex)
+            newBoss.invertedIndex = new InvertedIndex(newBoss.bags);
+
         return newBoss;
     }
 
@@ -471,31 +768,42 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
      * Builds a bag from the set of words for a pre-transformed series of a given wordlength.
      */
     protected Bag createBagFromWords(int thisWordLength, BitWordInt[] words) {
-        Bag bag = new Bag();
-        BitWordInt lastWord = new BitWordInt();
+        int shift = wordLength != thisWordLength ? (BitWordInt.MAX_LENGTH-thisWordLength)*BitWordInt.BITS_PER_LETTER : 0;
+        int[] sequence = new int[words.length];
+        int length = 0;
+        int lastWord = 0;
 
-        for (BitWordInt w : words) {
-            BitWordInt word = new BitWordInt(w);
-            if (wordLength != thisWordLength)
-                word.shorten(BitWordInt.MAX_LENGTH-thisWordLength);
+        for (int i = 0; i < words.length; ++i) {
+            int word = words[i].getWord() >>> shift;
 
             //add to bag, unless num reduction applies
-            if (numerosityReduction && word.equals(lastWord))
+            if (numerosityReduction && word == lastWord)
                 continue;
 
-            Integer val = bag.get(word);
-            if (val == null)
-                val = 0;
-            bag.put(word, ++val);
-
+            sequence[length++] = word;
             lastWord = word;
         }
 
-        return bag;
+        return new Bag(thisWordLength, sequence, length);
     }
 
     protected BitWordInt[] createSFAwords(Instance inst) {
-        double[][] dfts = performMFT(toArrayNoClass(inst)); //approximation
+        return createSFAwords(performMFT(toArrayNoClass(inst))); //approximation
+    }
+
+    /**
+     * createSFAwords for the train instance at the given index, sharing the transform through the cache if set
+     */
+    protected BitWordInt[] createSFAwords(Instances data, int index) {
+        if (!useTransformCache())
+            return createSFAwords(data.get(index));
+
+        Instance inst = data.get(index);
+        return createSFAwords(transformCache.getMFT(cacheDimension, cacheIndex(index), windowSize, norm,
+                () -> maxLengthTransformer().performMFT(toArrayNoClass(inst))));
+    }
+
+    private BitWordInt[] createSFAwords(double[][] dfts) {
         BitWordInt[] words = new BitWordInt[dfts.length];
         for (int window = 0; window < dfts.length; ++window)
             words[window] = createWord(dfts[window]);//discretisation
@@ -503,6 +811,20 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         return words;
     }
 
+    private Bag createTrainBag(Instances data, int inst) {
+        SFAwords[inst] = createSFAwords(data, inst);
+
+        Bag bag = createBagFromWords(wordLength, SFAwords[inst]);
+        try {
+            bag.setClassVal(data.get(inst).classValue());
+        }
+        catch(UnassignedClassException e){
+            bag.setClassVal(-1);
+        }
+
+        return bag;
+    }
+
     @Override
     public void buildClassifier(Instances data) throws Exception {
         if (data.classIndex() != -1 && data.classIndex() != data.numAttributes()-1)
@@ -515,31 +837,22 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
 
         if (multiThread){
             if (numThreads == 1) numThreads = Runtime.getRuntime().availableProcessors();
-            if (ex == null) ex = Executors.newFixedThreadPool(numThreads);
-
-            ArrayList<Future<Bag>> futures = new ArrayList<>(data.numInstances());
+            if (ex == null) ex = new ForkJoinPool(numThreads);
 
-            for (int inst = 0; inst < data.numInstances(); ++inst)
-                futures.add(ex.submit(new TransformThread(inst, data.get(inst))));
-
-            for (Future<Bag> f: futures)
-                bags.add(f.get());
+            //several chunks per thread so threads finishing early can take on more
+            Bag[] trainBags = new Bag[data.numInstances()];
+            ThreadingUtilities.parallelFor(ex, numThreads * 4, trainBags.length,
+                    inst -> trainBags[inst] = createTrainBag(data, inst));
+            bags.addAll(Arrays.asList(trainBags));
         }
         else {
-            for (int inst = 0; inst < data.numInstances(); ++inst) {
-                SFAwords[inst] = createSFAwords(data.get(inst));
-
-                Bag bag = createBagFromWords(wordLength, SFAwords[inst]);
-                try {
-                    bag.setClassVal(data.get(inst).classValue());
-                }
-                catch(UnassignedClassException e){
-                    bag.setClassVal(-1);
-                }
-                bags.add(bag);
-            }
+            for (int inst = 0; inst < data.numInstances(); ++inst)
+                bags.add(createTrainBag(data, inst));
         }
 
+        if (useInvertedIndex)
+            invertedIndex = new InvertedIndex(bags);
+
         if (cleanAfterBuild) {
             clean();
         }
@@ -555,12 +868,17 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
     public double BOSSdistance(Bag instA, Bag instB, double bestDist) {
         double dist = 0.0;
 
-        //find dist only from values in instA
-        for (Map.Entry<BitWordInt, Integer> entry : instA.entrySet()) {
-            Integer valA = entry.getValue();
-            Integer valB = instB.get(entry.getKey());
-            if (valB == null)
-                valB = 0;
+        //find dist only from values in instA, merging the sorted words of both bags
+        int[] wordsB = instB.words;
+        int sizeB = instB.numWords;
+        int j = 0;
+        for (int i = 0; i < instA.numWords; ++i) {
+            int word = instA.words[i];
+            while (j < sizeB && wordsB[j] < word)
+                ++j;
+
+            int valA = instA.counts[i];
+            int valB = j < sizeB && wordsB[j] == word ? instB.counts[j] : 0;
             dist += (valA-valB)*(valA-valB);
 
             if (dist > bestDist)
@@ -570,15 +888,25 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         return dist;
     }
 
-    @Override
-    public double classifyInstance(Instance instance) throws Exception{
-        IndividualBOSS.Bag testBag = BOSSTransform(instance);
+    /**
+     * 1NN BOSS distance, via the inverted index if there is one
+     *
+     * @param excludeIndex index of a train bag to ignore, or -1 for none
+     * @return class value of the nearest train bag, or -1 if there are none
+     */
+    protected double nearestNeighbourClass(Bag testBag, int excludeIndex) {
+        if (invertedIndex != null && invertedIndex.size() == bags.size()) {
+            int nn = invertedIndex.nearestNeighbour(testBag, excludeIndex);
+            return nn == -1 ? -1 : bags.get(nn).getClassVal();
+        }
 
-        //1NN BOSS distance
         double bestDist = Double.MAX_VALUE;
         double nn = -1;
 
         for (int i = 0; i < bags.size(); ++i) {
+            if (i == excludeIndex)
+                continue;
+
             double dist = BOSSdistance(testBag, bags.get(i), bestDist);
 
             if (dist < bestDist) {
@@ -590,6 +918,13 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         return nn;
     }
 
+    @Override
+    public double classifyInstance(Instance instance) throws Exception{
+        IndividualBOSS.Bag testBag = BOSSTransform(instance);
+
+        return nearestNeighbourClass(testBag, -1);
+    }
+
     /**
      * Used within BOSSEnsemble as part of a leave-one-out crossvalidation, to skip having to rebuild
      * the classifier every time (since the n histograms would be identical each time anyway), therefore this classifies
@@ -601,106 +936,6 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
     public double classifyInstance(int testIndex) throws Exception{
         IndividualBOSS.Bag testBag = bags.get(testIndex);
 
-        //1NN BOSS distance
-        double bestDist = Double.MAX_VALUE;
-        double nn = -1;
-
-        for (int i = 0; i < bags.size(); ++i) {
-            if (i == testIndex) //skip 'this' one, leave-one-out
-                continue;
-
-            double dist = BOSSdistance(testBag, bags.get(i), bestDist);
-
-            if (dist < bestDist) {
-                bestDist = dist;
-                nn = bags.get(i).getClassVal();
-            }
-        }
-
-        return nn;
-    }
-
-    public class TestNearestNeighbourThread implements Callable<Double>{
-        Instance inst;
-
-        public TestNearestNeighbourThread(Instance inst){
-            this.inst = inst;
-        }
-
-        @Override
-        public Double call() {
-            IndividualBOSS.Bag testBag = BOSSTransform(inst);
-
-            //1NN BOSS distance
-            double bestDist = Double.MAX_VALUE;
-            double nn = -1;
-
-            for (int i = 0; i < bags.size(); ++i) {
-                double dist = BOSSdistance(testBag, bags.get(i), bestDist);
-
-                if (dist < bestDist) {
-                    bestDist = dist;
-                    nn = bags.get(i).getClassVal();
-                }
-            }
-
-            return nn;
-        }
-    }
-
-    public class TrainNearestNeighbourThread implements Callable<Double>{
-        int testIndex;
-
-        public TrainNearestNeighbourThread(int testIndex){
-            this.testIndex = testIndex;
-        }
-
-        @Override
-        public Double call() {
-            IndividualBOSS.Bag testBag = bags.get(testIndex);
-
-            //1NN BOSS distance
-            double bestDist = Double.MAX_VALUE;
-            double nn = -1;
-
-            for (int i = 0; i < bags.size(); ++i) {
-                if (i == testIndex) //skip 'this' one, leave-one-out
-                    continue;
-
-                double dist = BOSSdistance(testBag, bags.get(i), bestDist);
-
-                if (dist < bestDist) {
-                    bestDist = dist;
-                    nn = bags.get(i).getClassVal();
-                }
-            }
-
-            return nn;
-        }
-    }
-
-    private class TransformThread implements Callable<Bag>{
-        int i;
-        Instance inst;
-
-        public TransformThread(int i, Instance inst){
-            this.i = i;
-            this.inst = inst;
-        }
-
-        @Override
-        public Bag call() {
-            SFAwords[i] = createSFAwords(inst);
-
-            Bag bag = createBagFromWords(wordLength, SFAwords[i]);
-            try {
-                bag.setClassVal(inst.classValue());
-            }
-            catch(UnassignedClassException e){
-                bag.setClassVal(-1);
-            }
-
-            return bag;
-        }
+        return nearestNeighbourClass(testBag, testIndex); //skip 'this' one, leave-one-out
     }
 }
@@ -25,12 +25,17 @@ import evaluation.evaluators.CrossValidationEvaluator;
 import evaluation.storage.ClassifierResults;
 import experiments.data.DatasetLoading;
 import tsml.classifiers.EnhancedAbstractClassifier;
+import tsml.classifiers.MultiThreadable;
 import utilities.ClassifierTools;
+import utilities.ThreadingUtilities;
+import utilities.ThreadingUtilities.IndexedJob;
 import weka.classifiers.Classifier;
 import weka.core.*;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -39,7 +44,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @author Patrick Schaefer
  *
  */
-public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInformationHandler {
+public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInformationHandler, MultiThreadable {
 
   @Override
   public TechnicalInformation getTechnicalInformation() {
@@ -80,6 +85,11 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
 
   // ten-fold cross validation
   private int folds = 10;
+
+  // window lengths are fit in parallel when multithreading
+  private boolean multiThread = false;
+  private int numThreads = 1;
+  private transient ExecutorService ex;
   
   @Override
   public ClassifierResults getTrainResults() {
@@ -125,6 +135,29 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
     setSeed(seed);
   }
 
+  private ExecutorService getExecutor() {
+    // the pool's worker threads are daemons and time out when idle so the pool does not need shutting down
+    if (ex == null) ex = new ForkJoinPool(numThreads);
+    return ex;
+  }
+
+  @Override
+  public void enableMultiThreading(int numThreads) {
+    int previousNumThreads = this.numThreads;
+    if (numThreads > 1) {
+      this.numThreads = numThreads;
+      multiThread = true;
+    } else {
+      this.numThreads = 1;
+      multiThread = false;
+    }
+    //the pool is kept unless its size changes
+    if (ex != null && this.numThreads != previousNumThreads) {
+      ex.shutdown();
+      ex = null;
+    }
+  }
+
   @Override
   public String getParameters() {
     StringBuilder sb = new StringBuilder();
@@ -154,54 +187,133 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
     return Arrays.copyOfRange(wLengths, 0, a);
   }
 
-  protected static double[] getLabels(final WEASELTransform.BagOfBigrams[] bagOfPatternsTestSamples) {
-    double[] labels = new double[bagOfPatternsTestSamples.length];
-    for (int i = 0; i < bagOfPatternsTestSamples.length; i++) {
-      labels[i] = bagOfPatternsTestSamples[i].label;
+  /**
+   * The chi-squared filtered features of all samples for one window length and word length. Holds the kept words in
+   * ascending order and, for each sample, the positions in words of the words it contains with their counts, in
+   * ascending order of position.
+   */
+  protected static class WindowFeatures {
+    public final long[] words;
+    public final int[][] indices;
+    public final int[][] counts;
+
+    public WindowFeatures(final WEASELTransform.BagOfBigrams[] bob) {
+      LongHashSet kept = new LongHashSet();
+      for (WEASELTransform.BagOfBigrams bop : bob) {
+        for (LongIntCursor word : bop.bob) {
+          if (word.value > 0) {
+            kept.add(word.key);
+          }
+        }
+      }
+      words = kept.toArray();
+      Arrays.sort(words);
+
+      indices = new int[bob.length][];
+      counts = new int[bob.length][];
+      for (int j = 0; j < bob.length; j++) {
+        // position and count packed into one long so that sorting orders by position
+        long[] entries = new long[bob[j].bob.size()];
+        int size = 0;
+        for (LongIntCursor word : bob[j].bob) {
+          if (word.value > 0) {
+            entries[size++] = (long) Arrays.binarySearch(words, word.key) << 32 | word.value;
+          }
+        }
+        Arrays.sort(entries, 0, size);
+
+        indices[j] = new int[size];
+        counts[j] = new int[size];
+        for (int i = 0; i < size; i++) {
+          indices[j][i] = (int) (entries[i] >>> 32);
+          counts[j][i] = (int) entries[i];
+        }
+      }
     }
-    return labels;
   }
 
+  /**
+   * Builds the liblinear problem for the features of all window lengths. Feature indices are assigned by window length,
+   * then by word, so each sample's features are already in ascending order of index.
+   *
+   * @param features the features for each window length
+   * @param dict if not null, filled with the feature index of each word
+   */
   protected static Problem initLibLinearProblem(
-          final WEASELTransform.BagOfBigrams[] bob,
+          final WindowFeatures[] features,
+          final Instances samples,
           final WEASELTransform.Dictionary dict,
           final double bias) {
     Linear.resetRandom();
     Linear.disableDebugOutput();
 
+    int[] offsets = new int[features.length];
+    int numFeatures = 0;
+    for (int w = 0; w < features.length; w++) {
+      offsets[w] = numFeatures;
+      numFeatures += features[w].words.length;
+
+      if (dict != null) {
+        for (int i = 0; i < features[w].words.length; i++) {
+          dict.dictChi.put(features[w].words[i], offsets[w] + i + 1);
+        }
+      }
+    }
+
     Problem problem = new Problem();
     problem.bias = bias;
-    problem.y = getLabels(bob);
+    problem.y = new double[samples.numInstances()];
+    problem.x = new FeatureNode[samples.numInstances()][];
+
+    for (int j = 0; j < samples.numInstances(); j++) {
+      problem.y[j] = samples.get(j).classValue();
 
-    final FeatureNode[][] features = initLibLinear(bob, dict);
+      int size = 0;
+      for (WindowFeatures window : features) {
+        size += window.indices[j].length;
+      }
 
-    problem.n = dict.size() + 1;
-    problem.l = features.length;
-    problem.x = features;
+      FeatureNode[] x = new FeatureNode[size];
+      int n = 0;
+      for (int w = 0; w < features.length; w++) {
+        int[] indices = features[w].indices[j];
+        int[] counts = features[w].counts[j];
+        for (int i = 0; i < indices.length; i++) {
+          x[n++] = new FeatureNode(offsets[w] + indices[i] + 1, counts[i]);
+        }
+      }
+      problem.x[j] = x;
+    }
+
+    problem.n = numFeatures + 1;
+    problem.l = samples.numInstances();
     return problem;
   }
 
-  protected static FeatureNode[][] initLibLinear(
-          final WEASELTransform.BagOfBigrams[] bob,
-          final WEASELTransform.Dictionary dict) {
-    FeatureNode[][] featuresTrain = new FeatureNode[bob.length][];
-    for (int j = 0; j < bob.length; j++) {
-      WEASELTransform.BagOfBigrams bop = bob[j];
-      ArrayList<FeatureNode> features = new ArrayList<>(bop.bob.size());
+  /**
+   * Finds the features of a single sample, keeping the words in the dictionary of the final model
+   */
+  protected FeatureNode[] initLibLinear(final Instance instance) {
+    WEASELTransform model = classifier.weasel;
+    ArrayList<FeatureNode> features = new ArrayList<>();
+    for (int w = 0; w < model.windowLengths.length; w++) {
+      int[] words = model.createWords(instance, w);
+      WEASELTransform.BagOfBigrams bop = model.createBagOfPatterns(words, instance, w, classifier.features);
       for (LongIntCursor word : bop.bob) {
-        if (word.value > 0) {
-          features.add(new FeatureNode(dict.getWordChi(word.key), (word.value)));
+        int index = model.dict.dictChi.indexOf(word.key);
+        if (index > -1 && word.value > 0) {
+          features.add(new FeatureNode(model.dict.dictChi.indexGet(index), word.value));
         }
       }
-      FeatureNode[] featuresArray = features.toArray(new FeatureNode[]{});
-      Arrays.parallelSort(featuresArray, new Comparator<FeatureNode>() {
-        public int compare(FeatureNode o1, FeatureNode o2) {
-          return Integer.compare(o1.index, o2.index);
-        }
-      });
-      featuresTrain[j] = featuresArray;
     }
-    return featuresTrain;
+
+    FeatureNode[] featuresArray = features.toArray(new FeatureNode[]{});
+    Arrays.sort(featuresArray, new Comparator<FeatureNode>() {
+      public int compare(FeatureNode o1, FeatureNode o2) {
+        return Integer.compare(o1.index, o2.index);
+      }
+    });
+    return featuresArray;
   }
 
   private static void swap(int[] array, int idxA, int idxB) {
@@ -290,35 +402,30 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
       int maxCorrect = -1;
       int bestF = -1;
       boolean bestNorm = false;
+      WEASELTransform bestModel = null;
+      WindowFeatures[] bestFeatures = null;
+
+      int numF = (maxF - minF) / 2 + 1;
 
       optimize:
       for (final boolean mean : NORMALIZATION) {
         int[] windowLengths = getWindowLengths(samples, mean);
         WEASELTransform model = new WEASELTransform(maxF, maxS, windowLengths, mean);
-        int[][][] words = model.createWords(samples);
+        WindowFeatures[][] features = fitWindows(samples, model);
 
-        for (int f = minF; f <= maxF; f += 2) {
-          model.dict.reset();
-
-          final WEASELTransform.BagOfBigrams[] bop = new WEASELTransform.BagOfBigrams[samples.size()];
-          final int ff = f;
-
-          for (int w = 0; w < model.windowLengths.length; w++) {
-            WEASELTransform.BagOfBigrams[] bobForOneWindow = fitOneWindow(
-                    samples,
-                    model.windowLengths, mean,
-                    words[w], ff, w);
-            mergeBobs(bop, bobForOneWindow);
-          }
+        for (int i = 0; i < numF; i++) {
+          int f = minF + i * 2;
 
           // train liblinear
-          final Problem problem = initLibLinearProblem(bop, model.dict, bias);
+          final Problem problem = initLibLinearProblem(features[i], samples, null, bias);
           int correct = trainLibLinear(problem, solverType, c, iterations, p, folds);
 
           if (correct > maxCorrect) {
             maxCorrect = correct;
             bestF = f;
             bestNorm = mean;
+            bestModel = model;
+            bestFeatures = features[i];
           }
           if (correct == samples.numInstances()) {
             break optimize;
@@ -326,28 +433,14 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
         }
       }
 
-      // obtain the final matrix
-      int[] windowLengths = getWindowLengths(samples, bestNorm);
-      WEASELTransform model = new WEASELTransform(maxF, maxS, windowLengths, bestNorm);
-
-      final WEASELTransform.BagOfBigrams[] bop = new WEASELTransform.BagOfBigrams[samples.size()];
-      for (int w = 0; w < model.windowLengths.length; w++) {
-        int[][] words = model.createWords(samples, w);
-        WEASELTransform.BagOfBigrams[] bobForOneWindow = fitOneWindow(
-                samples,
-                model.windowLengths, bestNorm,
-                words, bestF, w);
-        mergeBobs(bop, bobForOneWindow);
-      }
-
-      // train liblinear
-      Problem problem = initLibLinearProblem(bop, model.dict, bias);
+      // obtain the final matrix, the words of the best model are kept rather than found again
+      Problem problem = initLibLinearProblem(bestFeatures, samples, bestModel.dict, bias);
       de.bwaldvogel.liblinear.Model linearModel = Linear.train(problem, new Parameter(solverType, c, iterations, p));
 
       this.classifier = new WEASELModel(
               bestNorm,
               bestF,
-              model,
+              bestModel,
               linearModel
       );
 
@@ -379,6 +472,38 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
 
   }
 
+  /**
+   * Finds the chi-squared filtered features of every window length for each word length from minF to maxF. Window
+   * lengths are processed in parallel when multithreading, and the words of each are discarded once its features are
+   * found, so only the filtered features of all window lengths are held at once.
+   *
+   * @return the features, indexed by word length then window length
+   */
+  private WindowFeatures[][] fitWindows(final Instances samples, final WEASELTransform model) throws Exception {
+    final int numF = (maxF - minF) / 2 + 1;
+    final WindowFeatures[][] features = new WindowFeatures[numF][model.windowLengths.length];
+
+    IndexedJob job = w -> {
+      int[][] words = model.createWords(samples, w);
+      for (int i = 0; i < numF; i++) {
+        WEASELTransform.BagOfBigrams[] bop = fitOneWindow(
+                samples,
+                model.windowLengths, model.normMean,
+                words, minF + i * 2, w);
+        features[i][w] = new WindowFeatures(bop);
+      }
+    };
+
+    if (multiThread) {
+      ThreadingUtilities.parallelFor(getExecutor(), model.windowLengths.length, model.windowLengths.length, job);
+    } else {
+      for (int w = 0; w < model.windowLengths.length; w++) {
+        job.run(w);
+      }
+    }
+    return features;
+  }
+
   private WEASELTransform.BagOfBigrams[] fitOneWindow(
           Instances samples,
           int[] windowLengths, boolean mean,
@@ -389,53 +514,20 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
     return bopForWindow;
   }
 
-  private synchronized void mergeBobs(
-          WEASELTransform.BagOfBigrams[] bop,
-          WEASELTransform.BagOfBigrams[] bopForWindow) {
-    for (int i = 0; i < bop.length; i++) {
-      if (bop[i]==null) {
-        bop[i] = bopForWindow[i];
-      }
-      else {
-        bop[i].bob.putAll(bopForWindow[i].bob);
-      }
-    }
-  }
-
 
   @Override
   public double classifyInstance(Instance instance) throws Exception {
-    // iterate each sample to classify
-    final WEASELTransform.BagOfBigrams[] bagTest = new WEASELTransform.BagOfBigrams[1];
-    for (int w = 0; w < classifier.weasel.windowLengths.length; w++) {
-      int[] wordsTest = classifier.weasel.createWords(instance, w);
-      WEASELTransform.BagOfBigrams[] bopForWindow =
-              new WEASELTransform.BagOfBigrams[]{classifier.weasel.createBagOfPatterns(wordsTest, instance, w, classifier.features)};
-      classifier.weasel.dict.filterChiSquared(bopForWindow);
-      mergeBobs(bagTest, bopForWindow);
-    }
-
-    FeatureNode[][] features = initLibLinear(bagTest, classifier.weasel.dict);
-    return Linear.predict(classifier.linearModel, features[0]);
+    FeatureNode[] features = initLibLinear(instance);
+    return Linear.predict(classifier.linearModel, features);
   }
 
   @Override
   public double[] distributionForInstance(Instance instance) throws Exception {
     double[] classHist = new double[instance.numClasses()];
 
-    // iterate each sample to classify
-    final WEASELTransform.BagOfBigrams[] bagTest = new WEASELTransform.BagOfBigrams[1];
-    for (int w = 0; w < classifier.weasel.windowLengths.length; w++) {
-      int[] wordsTest = classifier.weasel.createWords(instance, w);
-      WEASELTransform.BagOfBigrams[] bopForWindow =
-              new WEASELTransform.BagOfBigrams[]{classifier.weasel.createBagOfPatterns(wordsTest, instance, w, classifier.features)};
-      classifier.weasel.dict.filterChiSquared(bopForWindow);
-      mergeBobs(bagTest, bopForWindow);
-    }
-
-    FeatureNode[][] features = initLibLinear(bagTest, classifier.weasel.dict);
+    FeatureNode[] features = initLibLinear(instance);
     double[] probabilities = new double[classifier.linearModel.getNrClass()];
-    Linear.predictProbability(classifier.linearModel, features[0], probabilities);
+    Linear.predictProbability(classifier.linearModel, features, probabilities);
 
     // TODO do we have to remap classes to indices???
     for (int i = 0; i < classifier.linearModel.getLabels().length; i++) {
@@ -90,6 +90,15 @@ public class BitWordInt implements Comparable<BitWordInt>, Serializable{
     }
 
 
+    /**
+     * @param word an already packed word, e.g. as from getWord()
+     * @param length number of letters in the word
+     */
+    public BitWordInt(int word, int length) {
+        this.word = word;
+        this.length = (byte)length;
+    }
+
     public BitWordInt(int [] letters) throws Exception {
         setWord(letters);
     }
@@ -25,10 +25,9 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import tsml.classifiers.MemoryContractable;
 import utilities.*;
@@ -136,9 +135,16 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
     private double ensembleCvAcc = -1;
     private double[] ensembleCvPreds = null;
 
+    private boolean useInvertedIndex = false;
+
+    //bytes of train transforms members may share, -1 to size automatically, 0 for no sharing
+    private long transformCacheSize = -1;
+    private transient FourierTransformCache transformCache;
+
     private int numThreads = 1;
     private boolean multiThread = false;
-    private ExecutorService ex;
+    //pool members are built and evaluated on when multithreading, created on demand
+    private transient ExecutorService ex;
 
     protected static final long serialVersionUID = 22554L;
 
@@ -244,8 +250,15 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
         memoryContract = true;
     }
 
+    private ExecutorService getExecutor() {
+        //the pool's worker threads are daemons and time out when idle so the pool does not need shutting down
+        if (ex == null) ex = new ForkJoinPool(numThreads);
+        return ex;
+    }
+
     @Override
     public void enableMultiThreading(int numThreads) {
+        int previousNumThreads = this.numThreads;
         if (numThreads > 1) {
             this.numThreads = numThreads;
             multiThread = true;
@@ -254,6 +267,11 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
             this.numThreads = 1;
             multiThread = false;
         }
+        //the pool is kept unless its size changes
+        if (ex != null && this.numThreads != previousNumThreads) {
+            ex.shutdown();
+            ex = null;
+        }
     }
 
     //Set the path where checkpointed versions will be stored
@@ -338,6 +356,8 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
         ensembleCvPreds = saved.ensembleCvPreds;
         numThreads = saved.numThreads;
         multiThread = saved.multiThread;
+        useInvertedIndex = saved.useInvertedIndex;
+        transformCacheSize = saved.transformCacheSize;
 
         //load in each serisalised classifier
         classifiers = new LinkedList[numSeries];
@@ -439,6 +459,23 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
         bayesianParameterSelection = b;
     }
 
+    /**
+     * Whether members find nearest neighbours via an inverted index of their train bags, see
+     * IndividualBOSS.setUseInvertedIndex. Predictions are unchanged.
+     */
+    public void setUseInvertedIndex(boolean b) {
+        useInvertedIndex = b;
+    }
+
+    /**
+     * Members built on the same window size and normalisation share the Fourier transforms of the train data through
+     * a cache of at most this many bytes. By default (-1) this is half the memory limit if contracting memory, else a
+     * quarter of the max heap. 0 turns off sharing. Predictions are unchanged.
+     */
+    public void setTransformCacheSize(long bytes) {
+        transformCacheSize = bytes;
+    }
+
     @Override
     public void buildClassifier(final Instances data) throws Exception {
         // can classifier handle the data?
@@ -543,7 +580,7 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
 
         if (multiThread){
             if (numThreads == 1) numThreads = Runtime.getRuntime().availableProcessors();
-            if (ex == null) ex = Executors.newFixedThreadPool(numThreads);
+            getExecutor();
         }
 
         //required to deal with multivariate datasets, each channel is split into its own instances
@@ -566,6 +603,13 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
             underContractTime = true;
         }
 
+        if (transformCacheSize != 0) {
+            long cacheSize = transformCacheSize;
+            if (cacheSize < 0)
+                cacheSize = memoryContract ? (memoryLimit - bytesUsed) / 2 : Runtime.getRuntime().maxMemory() / 4;
+            transformCache = new FourierTransformCache(cacheSize);
+        }
+
         //If checkpointing and flag is set stop building.
         if (!(checkpoint && loadAndFinish)){
             //Randomly selected ensemble with accuracy filter
@@ -577,6 +621,7 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
                 buildRandomBOSS(series);
             }
         }
+        transformCache = null;
 
         //end train time in nanoseconds
         trainResults.setBuildTime(System.nanoTime() - trainResults.getBuildTime() - checkpointTimeDiff);
@@ -611,6 +656,8 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
             IndividualBOSS boss = new IndividualBOSS((int)parameters[0], (int)parameters[1], (int)parameters[2], parameters[3] == 1, multiThread, numThreads, ex);
             Instances data = resampleData(series[currentSeries], boss);
             boss.cleanAfterBuild = true;
+            boss.setUseInvertedIndex(useInvertedIndex);
+            if (transformCache != null) boss.setTransformCache(transformCache, currentSeries);
             boss.seed = seed;
             boss.buildClassifier(data);
             boss.accuracy = individualTrainAcc(boss, data, numClassifiers[currentSeries] < maxEnsembleSize ? Double.MIN_VALUE : lowestAcc[currentSeries]);
@@ -740,6 +787,8 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
             IndividualBOSS boss = new IndividualBOSS((int)parameters[0], (int)parameters[1], (int)parameters[2], parameters[3] == 1, multiThread, numThreads, ex);
             Instances data = resampleData(series[currentSeries], boss);
             boss.cleanAfterBuild = true;
+            boss.setUseInvertedIndex(useInvertedIndex);
+            if (transformCache != null) boss.setTransformCache(transformCache, currentSeries);
             boss.seed = seed;
             boss.buildClassifier(data);
             classifiers[currentSeries].add(boss);
@@ -880,7 +929,8 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
 
     public void checkContracts(){
         underContractTime = System.nanoTime() - trainResults.getBuildTime() - checkpointTimeDiff < trainContractTimeNanos;
-        underMemoryLimit = !memoryContract || bytesUsed < memoryLimit;
+        long cacheBytes = transformCache == null ? 0 : transformCache.getBytesUsed();
+        underMemoryLimit = !memoryContract || bytesUsed + cacheBytes < memoryLimit;
     }
 
     //[0] = index, [1] = acc
@@ -1107,17 +1157,37 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
         int requiredCorrect = (int)(lowestAcc*numInst);
 
         if (multiThread){
-            ArrayList<Future<Double>> futures = new ArrayList<>(numInst);
+            //classify blocks over the pool, then go through each block in order so the estimate can stop early
+            //as below
+            double[] predictions = new double[numInst];
+            int blockSize = numThreads * 16;
+
+            for (int start = 0; start < numInst; start += blockSize) {
+                final int from = start;
+                int end = Math.min(numInst, start + blockSize);
+                ThreadingUtilities.parallelFor(getExecutor(), numThreads * 4, end - start,
+                        i -> predictions[from + i] = boss.classifyInstance(indicies[from + i]));
+
+                for (int i = start; i < end; ++i) {
+                    if (correct + numInst - i < requiredCorrect) {
+                        return -1;
+                    }
 
-            for (int i = 0; i < numInst; ++i)
-                futures.add(ex.submit(boss.new TrainNearestNeighbourThread(i)));
+                    double c = predictions[i];
+                    if (c == series.get(indicies[i]).classValue()) {
+                        ++correct;
+                    }
 
-            int idx = 0;
-            for (Future<Double> f: futures){
-                if (f.get() == series.get(idx).classValue()) {
-                    ++correct;
+                    if (getEstimateOwnPerformance()){
+                        latestTrainPreds.add((int)c);
+                        if (boss.subsampleIndices != null) {
+                            latestTrainIdx.add(boss.subsampleIndices.get(indicies[i]));
+                        }
+                        else {
+                            latestTrainIdx.add(indicies[i]);
+                        }
+                    }
                 }
-                idx++;
             }
         }
         else {
@@ -1298,10 +1368,6 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
     @Override
     public double[] distributionForInstance(Instance instance) throws Exception {
         int numClasses = train.numClasses();
-        double[] classHist = new double[numClasses];
-
-        //get sum of all channels, votes from each are weighted the same.
-        double sum = 0;
 
         Instance[] series;
 
@@ -1315,37 +1381,92 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
             series[0] = instance;
         }
 
-        if (multiThread){
-            ArrayList<Future<Double>>[] futures = new ArrayList[numSeries];
+        double[][] predictions = new double[numSeries][];
+        for (int n = 0; n < numSeries; n++) {
+            final int dim = n;
+            IndividualBOSS[] members = classifiers[n].toArray(new IndividualBOSS[0]);
+            predictions[n] = new double[members.length];
 
-            for (int n = 0; n < numSeries; n++) {
-                futures[n] = new ArrayList<>(numClassifiers[n]);
-                for (IndividualBOSS classifier : classifiers[n]) {
-                    futures[n].add(ex.submit(classifier.new TestNearestNeighbourThread(instance)));
-                }
+            if (multiThread) {
+                ThreadingUtilities.parallelFor(getExecutor(), numThreads * 4, members.length,
+                        i -> predictions[dim][i] = members[i].classifyInstance(series[dim]));
+            }
+            else {
+                for (int i = 0; i < members.length; i++)
+                    predictions[n][i] = members[i].classifyInstance(series[n]);
             }
+        }
 
-            for (int n = 0; n < numSeries; n++) {
-                int idx = 0;
-                for (Future<Double> f : futures[n]) {
-                    double weight = classifiers[n].get(idx).weight;
-                    classHist[f.get().intValue()] += weight;
-                    sum += weight;
-                    idx++;
-                }
+        return vote(predictions, numClasses);
+    }
+
+    /**
+     * Finds the distribution for each of a batch of instances. When multithreading, every member classifies every
+     * instance with the work split into chunks over the pool, rather than a task per member per instance.
+     *
+     * @return the distribution for each instance, the same as distributionForInstance would give
+     */
+    public double[][] distributionForInstances(Instances data) throws Exception {
+        int numClasses = train.numClasses();
+        int numInsts = data.numInstances();
+
+        Instance[][] series = new Instance[numInsts][];
+        for (int j = 0; j < numInsts; j++) {
+            //Multivariate
+            if (isMultivariate) {
+                series[j] = splitMultivariateInstanceWithClassVal(data.get(j));
+            }
+            //Univariate
+            else {
+                series[j] = new Instance[]{ data.get(j) };
             }
         }
-        else {
-            for (int n = 0; n < numSeries; n++) {
-                for (IndividualBOSS classifier : classifiers[n]) {
-                    double classification = classifier.classifyInstance(series[n]);
-                    classHist[(int) classification] += classifier.weight;
-                    sum += classifier.weight;
-                }
+
+        double[][][] predictions = new double[numInsts][numSeries][];
+        for (int n = 0; n < numSeries; n++) {
+            final int dim = n;
+            IndividualBOSS[] members = classifiers[n].toArray(new IndividualBOSS[0]);
+            for (int j = 0; j < numInsts; j++)
+                predictions[j][n] = new double[members.length];
+
+            //one index per member per instance, so each chunk covers few members
+            if (multiThread) {
+                ThreadingUtilities.parallelFor(getExecutor(), numThreads * 4, members.length * numInsts, k -> {
+                    int i = k / numInsts;
+                    int j = k % numInsts;
+                    predictions[j][dim][i] = members[i].classifyInstance(series[j][dim]);
+                });
+            }
+            else {
+                for (int i = 0; i < members.length; i++)
+                    for (int j = 0; j < numInsts; j++)
+                        predictions[j][n][i] = members[i].classifyInstance(series[j][n]);
             }
         }
 
-        double[] distributions = new double[instance.numClasses()];
+        double[][] distributions = new double[numInsts][];
+        for (int j = 0; j < numInsts; j++)
+            distributions[j] = vote(predictions[j], numClasses);
+
+        return distributions;
+    }
+
+    //weighted vote of the members' predictions for each dimension
+    private double[] vote(double[][] predictions, int numClasses) {
+        double[] classHist = new double[numClasses];
+
+        //get sum of all channels, votes from each are weighted the same.
+        double sum = 0;
+
+        for (int n = 0; n < numSeries; n++) {
+            int i = 0;
+            for (IndividualBOSS classifier : classifiers[n]) {
+                classHist[(int) predictions[n][i++]] += classifier.weight;
+                sum += classifier.weight;
+            }
+        }
+
+        double[] distributions = new double[numClasses];
 
         if (sum != 0) {
             for (int i = 0; i < classHist.length; ++i)
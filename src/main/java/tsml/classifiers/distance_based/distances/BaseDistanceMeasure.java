@@ -1,5 +1,6 @@
 package tsml.classifiers.distance_based.distances;
 
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBoundCascade;
 import tsml.classifiers.distance_based.utils.params.ParamSet;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -18,6 +19,8 @@ public abstract class BaseDistanceMeasure implements DistanceMeasureable {
     private transient boolean dataAvailable = false;
     // the data which was passed to setInstances
     private transient Instances data;
+    // lower bounds to prune candidates with before computing the full distance
+    private LowerBoundCascade lowerBoundCascade = new LowerBoundCascade();
 
     @Override
     public String getName() {
@@ -41,6 +44,24 @@ public abstract class BaseDistanceMeasure implements DistanceMeasureable {
         }
     }
 
+    // whether the lower bounds prove the distance cannot beat the limit, in which case the full distance need not be
+    // computed. An empty cascade (e.g. cleared to compare against the full distance) is skipped outright.
+    protected boolean isPruned(Instance first, Instance second, double limit) {
+        final LowerBoundCascade cascade = getLowerBoundCascade();
+        return !cascade.isEmpty() && cascade.prune(first, second, limit);
+    }
+
+    @Override
+    public LowerBoundCascade getLowerBoundCascade() {
+        return lowerBoundCascade;
+    }
+
+    @Override
+    public void setLowerBoundCascade(final LowerBoundCascade lowerBoundCascade) {
+        if(lowerBoundCascade == null) throw new NullPointerException();
+        this.lowerBoundCascade = lowerBoundCascade;
+    }
+
     public boolean isSymmetric() {
         return true;
     }
@@ -1,6 +1,7 @@
 package tsml.classifiers.distance_based.distances;
 
 import java.io.Serializable;
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBoundCascade;
 import tsml.classifiers.distance_based.utils.logging.Debugable;
 import tsml.classifiers.distance_based.utils.params.ParamHandler;
 import weka.core.DistanceFunction;
@@ -39,6 +40,11 @@ public interface DistanceMeasureable extends Serializable, DistanceFunction, Deb
 
     String getName();
 
+    // the lower bounds used to prune candidates when a distance limit is given
+    LowerBoundCascade getLowerBoundCascade();
+
+    void setLowerBoundCascade(LowerBoundCascade lowerBoundCascade);
+
     // default implementations of fussy methods around distance measures
 
     @Override
@@ -0,0 +1,217 @@
+package tsml.classifiers.distance_based.distances;
+
+import java.util.Random;
+import org.junit.Test;
+import tsml.classifiers.distance_based.distances.erp.ERPKernel;
+import tsml.classifiers.distance_based.distances.lcss.LCSSKernel;
+import tsml.classifiers.distance_based.distances.msm.MSMKernel;
+import tsml.classifiers.distance_based.distances.twe.TWEKernel;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Purpose: check the rolling row kernels against the full cost matrix implementations they replaced. With no limit
+ * and no band (or the same band for ERP and LCSS) the kernels must give the same distance as the full matrix, up to
+ * floating point summation order.
+ */
+public class KernelEquivalenceTest {
+
+    private static final double TOLERANCE = 1e-9;
+    private static final int REPEATS = 500;
+
+    @Test
+    public void testMsm() {
+        final Random random = new Random(0);
+        for(int repeat = 0; repeat < REPEATS; repeat++) {
+            final double[] a = randomSeries(random, 1 + random.nextInt(60));
+            final double[] b = randomSeries(random, 1 + random.nextInt(60));
+            final double cost = random.nextDouble() * 2;
+            assertEquivalent(msm(a, b, cost), MSMKernel.distance(a, a.length, b, b.length, cost, -1,
+                Double.POSITIVE_INFINITY));
+        }
+    }
+
+    @Test
+    public void testTwe() {
+        final Random random = new Random(1);
+        for(int repeat = 0; repeat < REPEATS; repeat++) {
+            final double[] a = randomSeries(random, 1 + random.nextInt(60));
+            final double[] b = randomSeries(random, 1 + random.nextInt(60));
+            final double lambda = random.nextDouble();
+            final double nu = random.nextDouble() * 0.1;
+            assertEquivalent(twe(a, b, lambda, nu), TWEKernel.distance(a, a.length, b, b.length, lambda, nu, -1,
+                Double.POSITIVE_INFINITY));
+        }
+    }
+
+    // the full matrix ERP and LCSS only ever ran on equal length series
+
+    @Test
+    public void testErp() {
+        final Random random = new Random(2);
+        for(int repeat = 0; repeat < REPEATS; repeat++) {
+            final double[] a = randomSeries(random, 1 + random.nextInt(60));
+            final double[] b = randomSeries(random, a.length);
+            final int band = random.nextInt(a.length + 2) - 1;
+            final double penalty = random.nextGaussian();
+            assertEquivalent(erp(a, b, penalty, band), ERPKernel.distance(a, a.length, b, b.length, penalty, band,
+                Double.POSITIVE_INFINITY));
+        }
+    }
+
+    @Test
+    public void testLcss() {
+        final Random random = new Random(3);
+        for(int repeat = 0; repeat < REPEATS; repeat++) {
+            final double[] a = randomSeries(random, 1 + random.nextInt(60));
+            final double[] b = randomSeries(random, a.length);
+            final int band = random.nextInt(a.length + 2) - 1;
+            final double epsilon = random.nextDouble();
+            assertEquivalent(lcss(a, b, epsilon, band), LCSSKernel.distance(a, a.length, b, b.length, epsilon, band,
+                Double.POSITIVE_INFINITY));
+        }
+    }
+
+    private static void assertEquivalent(double matrix, double kernel) {
+        assertEquals(matrix, kernel, TOLERANCE * Math.max(1, Math.abs(matrix)));
+    }
+
+    private static double[] randomSeries(Random random, int length) {
+        final double[] series = new double[length];
+        for(int i = 0; i < length; i++) {
+            series[i] = random.nextGaussian();
+        }
+        return series;
+    }
+
+    private static double msmCost(double newPoint, double x, double y, double cost) {
+        if(((x <= newPoint) && (newPoint <= y)) || ((y <= newPoint) && (newPoint <= x))) {
+            return cost;
+        }
+        return cost + Math.min(Math.abs(newPoint - x), Math.abs(newPoint - y));
+    }
+
+    private static double msm(double[] a, double[] b, double c) {
+        final double[][] cost = new double[a.length][b.length];
+        cost[0][0] = Math.abs(a[0] - b[0]);
+        for(int i = 1; i < a.length; i++) {
+            cost[i][0] = cost[i - 1][0] + msmCost(a[i], a[i - 1], b[0], c);
+        }
+        for(int j = 1; j < b.length; j++) {
+            cost[0][j] = cost[0][j - 1] + msmCost(b[j], a[0], b[j - 1], c);
+        }
+        for(int i = 1; i < a.length; i++) {
+            for(int j = 1; j < b.length; j++) {
+                final double d1 = cost[i - 1][j - 1] + Math.abs(a[i] - b[j]);
+                final double d2 = cost[i - 1][j] + msmCost(a[i], a[i - 1], b[j], c);
+                final double d3 = cost[i][j - 1] + msmCost(b[j], a[i], b[j - 1], c);
+                cost[i][j] = Math.min(d1, Math.min(d2, d3));
+            }
+        }
+        return cost[a.length - 1][b.length - 1];
+    }
+
+    private static double twe(double[] a, double[] b, double lambda, double nu) {
+        final int r = a.length;
+        final int c = b.length;
+        // time stamps are the index sets, as in the original c code
+        final double[][] d = new double[r + 1][c + 1];
+        final double[] di1 = new double[r + 1];
+        final double[] dj1 = new double[c + 1];
+        for(int j = 1; j <= c; j++) {
+            dj1[j] = j > 1 ? (b[j - 2] - b[j - 1]) * (b[j - 2] - b[j - 1]) : b[j - 1] * b[j - 1];
+        }
+        for(int i = 1; i <= r; i++) {
+            di1[i] = i > 1 ? (a[i - 2] - a[i - 1]) * (a[i - 2] - a[i - 1]) : a[i - 1] * a[i - 1];
+            for(int j = 1; j <= c; j++) {
+                double dist = (a[i - 1] - b[j - 1]) * (a[i - 1] - b[j - 1]);
+                if(i > 1 && j > 1) {
+                    dist += (a[i - 2] - b[j - 2]) * (a[i - 2] - b[j - 2]);
+                }
+                d[i][j] = dist;
+            }
+        }
+        for(int i = 1; i <= r; i++) {
+            d[i][0] = Double.POSITIVE_INFINITY;
+        }
+        for(int j = 1; j <= c; j++) {
+            d[0][j] = Double.POSITIVE_INFINITY;
+        }
+        for(int i = 1; i <= r; i++) {
+            for(int j = 1; j <= c; j++) {
+                double htrans = Math.abs(i - j);
+                if(j > 1 && i > 1) {
+                    htrans += Math.abs(i - j);
+                }
+                double dmin = d[i - 1][j - 1] + nu * htrans + d[i][j];
+                final double deleteA = di1[i] + d[i - 1][j] + lambda + nu;
+                if(dmin > deleteA) {
+                    dmin = deleteA;
+                }
+                final double deleteB = dj1[j] + d[i][j - 1] + lambda + nu;
+                if(dmin > deleteB) {
+                    dmin = deleteB;
+                }
+                d[i][j] = dmin;
+            }
+        }
+        return d[r][c];
+    }
+
+    private static double erp(double[] a, double[] b, double g, int bandSize) {
+        double[] curr = new double[b.length];
+        double[] prev = new double[b.length];
+        final int band = bandSize < 0 ? a.length + 1 : bandSize;
+        for(int i = 0; i < a.length; i++) {
+            final double[] temp = prev;
+            prev = curr;
+            curr = temp;
+            final int l = Math.max(0, i - (band + 1));
+            final int r = Math.min(b.length - 1, i + (band + 1));
+            for(int j = l; j <= r; j++) {
+                if(Math.abs(i - j) <= band) {
+                    final double dist1 = (a[i] - g) * (a[i] - g);
+                    final double dist2 = (g - b[j]) * (g - b[j]);
+                    final double dist12 = (a[i] - b[j]) * (a[i] - b[j]);
+                    final double cost;
+                    if((i + j) != 0) {
+                        if((i == 0) || ((j != 0) && (((prev[j - 1] + dist12) > (curr[j - 1] + dist2)) && (
+                            (curr[j - 1] + dist2) < (prev[j] + dist1))))) {
+                            cost = curr[j - 1] + dist2;
+                        } else if((j == 0) || ((((prev[j - 1] + dist12) > (prev[j] + dist1)) && (
+                            (prev[j] + dist1) < (curr[j - 1] + dist2))))) {
+                            cost = prev[j] + dist1;
+                        } else {
+                            cost = prev[j - 1] + dist12;
+                        }
+                    } else {
+                        cost = 0;
+                    }
+                    curr[j] = cost;
+                } else {
+                    curr[j] = Double.POSITIVE_INFINITY;
+                }
+            }
+        }
+        return curr[b.length - 1];
+    }
+
+    private static double lcss(double[] a, double[] b, double epsilon, int delta) {
+        final int[][] lcss = new int[a.length + 1][b.length + 1];
+        final int window = delta < 0 ? a.length + 1 : delta;
+        for(int i = 0; i < a.length; i++) {
+            for(int j = Math.max(0, i - window); j <= Math.min(b.length - 1, i + window); j++) {
+                if(b[j] + epsilon >= a[i] && b[j] - epsilon <= a[i]) {
+                    lcss[i + 1][j + 1] = lcss[i][j] + 1;
+                } else {
+                    lcss[i + 1][j + 1] = Math.max(lcss[i][j + 1], lcss[i + 1][j]);
+                }
+            }
+        }
+        int max = -1;
+        for(int j = 1; j <= b.length; j++) {
+            max = Math.max(max, lcss[a.length][j]);
+        }
+        return 1 - ((double) max / a.length);
+    }
+}
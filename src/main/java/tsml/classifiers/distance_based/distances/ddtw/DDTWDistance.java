@@ -26,7 +26,9 @@ public class DDTWDistance extends TransformedDistanceMeasure implements DTW {
     public DDTWDistance() {
         super();
         dtw = new DTWDistance();
-        setTransformer(Derivative.getGlobalCache());
+        setTransformer(Derivative.getGlobalInstance());
+        // the derivative is a fixed function of each instance so is shared between all derivative measures
+        setShareTransforms(true);
         setDistanceFunction(dtw);
     }
 
@@ -2,6 +2,9 @@ package tsml.classifiers.distance_based.distances.dtw;
 
 
 import tsml.classifiers.distance_based.distances.BaseDistanceMeasure;
+import tsml.classifiers.distance_based.distances.lower_bounds.LbImproved;
+import tsml.classifiers.distance_based.distances.lower_bounds.LbKeogh;
+import tsml.classifiers.distance_based.distances.lower_bounds.LbKim;
 import tsml.classifiers.distance_based.utils.params.ParamHandler;
 import tsml.classifiers.distance_based.utils.params.ParamSet;
 import weka.core.Instance;
@@ -21,6 +24,8 @@ public class DTWDistance extends BaseDistanceMeasure implements DTW {
     private int warpingWindow = -1;
 
     public DTWDistance() {
+        // cheapest to tightest
+        getLowerBoundCascade().add(new LbKim()).add(new LbKeogh(this)).add(new LbImproved(this));
     }
 
     public DTWDistance(int warpingWindow) {
@@ -68,81 +73,16 @@ public class DTWDistance extends BaseDistanceMeasure implements DTW {
     public double distance(final Instance first, final Instance second, final double limit,
         final PerformanceStats stats) {
         checkData(first, second);
-
-        double minDist;
-        boolean tooBig;
-
-        int aLength = first.numAttributes() - 1;
-        int bLength = second.numAttributes() - 1;
-
-        /*  Parameter 0<=r<=1. 0 == no warpingWindow, 1 == full warpingWindow
-         generalised for variable window size
-         * */
-        int windowSize = warpingWindow + 1; // + 1 to include the current cell
-        if(warpingWindow < 0) {
-            windowSize = aLength + 1; // todo how would this work for unequal length time series?
-        }
-        //Extra memory than required, could limit to windowsize,
-        //        but avoids having to recreate during CV
-        //for varying window sizes
-        double[][] distanceMatrix = new double[aLength][bLength];
-        setDistanceMatrix(distanceMatrix);
-
-        /*
-         //Set boundary elements to max.
-         */
-        int start, end;
-        for(int i = 0; i < aLength; i++) {
-            start = windowSize < i ? i - windowSize : 0;
-            end = Math.min(i + windowSize + 1, bLength);
-            for(int j = start; j < end; j++) {
-                distanceMatrix[i][j] = Double.POSITIVE_INFINITY;
-            }
+        if(isPruned(first, second, limit)) {
+            return Double.POSITIVE_INFINITY;
         }
-        distanceMatrix[0][0] = (first.value(0) - second.value(0)) * (first.value(0) - second.value(0));
-        //a is the longer series.
-        //Base cases for warping 0 to all with max interval	r
-        //Warp first[0] onto all second[1]...second[r+1]
-        for(int j = 1; j < windowSize && j < bLength; j++) {
-            distanceMatrix[0][j] =
-                distanceMatrix[0][j - 1] + (first.value(0) - second.value(j)) * (first.value(0) - second.value(j));
-        }
-
-        //	Warp second[0] onto all first[1]...first[r+1]
-        for(int i = 1; i < windowSize && i < aLength; i++) {
-            distanceMatrix[i][0] =
-                distanceMatrix[i - 1][0] + (first.value(i) - second.value(0)) * (first.value(i) - second.value(0));
-        }
-        //Warp the rest,
-        for(int i = 1; i < aLength; i++) {
-            tooBig = true;
-            start = windowSize < i ? i - windowSize + 1 : 1;
-            end = Math.min(i + windowSize, bLength);
-            if(distanceMatrix[i][start - 1] < limit) {
-                tooBig = false;
-            }
-            for(int j = start; j < end; j++) {
-                minDist = distanceMatrix[i][j - 1];
-                if(distanceMatrix[i - 1][j] < minDist) {
-                    minDist = distanceMatrix[i - 1][j];
-                }
-                if(distanceMatrix[i - 1][j - 1] < minDist) {
-                    minDist = distanceMatrix[i - 1][j - 1];
-                }
-                distanceMatrix[i][j] =
-                    minDist + (first.value(i) - second.value(j)) * (first.value(i) - second.value(j));
-                if(tooBig && distanceMatrix[i][j] < limit) {
-                    tooBig = false;
-                }
-            }
-            //Early abandon
-            if(tooBig) {
-                return Double.POSITIVE_INFINITY;
-            }
+        // only build the full matrix if it has been asked for, otherwise use two rolling rows
+        double[][] distanceMatrix = null;
+        if(keepDistanceMatrix) {
+            distanceMatrix = new double[DTWKernel.length(first)][DTWKernel.length(second)];
+            setDistanceMatrix(distanceMatrix);
         }
-        //Find the minimum distance at the end points, within the warping window.
-        double distance = distanceMatrix[aLength - 1][bLength - 1];
-        return distance;
+        return DTWKernel.distance(first, second, warpingWindow, null, limit, distanceMatrix);
     }
 
     @Override
@@ -0,0 +1,274 @@
+package tsml.classifiers.distance_based.distances.dtw;
+
+import java.util.Arrays;
+import weka.core.Instance;
+
+/**
+ * Purpose: allocation free DTW kernel shared by the DTW family of distance measures (DTW, DDTW, WDTW, WDDTW). Only
+ * two rolling rows of the cost matrix are held and only the cells within the warping band are visited. The series
+ * are read into primitive buffers once per distance call rather than through Instance.value(i) per cell. Rows and
+ * series buffers are scratch space held per thread and reused between calls, therefore a single distance measure can
+ * be used by several threads at once.
+ * <p>
+ * The full cost matrix is only populated when one is passed in, i.e. when the distance measure has been asked to
+ * keep its distance matrix.
+ */
+public class DTWKernel {
+
+    private DTWKernel() {}
+
+    /**
+     * Per thread scratch space. Buffers grow as required and are never shrunk.
+     */
+    private static class Scratch {
+        private double[] first = new double[0];
+        private double[] second = new double[0];
+        private double[] rowA = new double[0];
+        private double[] rowB = new double[0];
+        private int[] deviationRowA = new int[0];
+        private int[] deviationRowB = new int[0];
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    // the number of time points in an instance, excluding the class value which must be at the end
+    public static int length(Instance instance) {
+        return instance.numAttributes() - 1;
+    }
+
+    /**
+     * Copy the time series values of an instance into the given buffer, growing the buffer if required.
+     * @param instance the instance to read.
+     * @param buffer the buffer to read into.
+     * @return the buffer containing the series, which may not be the buffer passed in.
+     */
+    public static double[] toSeries(Instance instance, double[] buffer) {
+        final int length = length(instance);
+        if(buffer.length < length) {
+            buffer = new double[length];
+        }
+        for(int i = 0; i < length; i++) {
+            buffer[i] = instance.value(i);
+        }
+        return buffer;
+    }
+
+    /**
+     * Compute DTW between two instances.
+     * @param first the first instance.
+     * @param second the second instance.
+     * @param warpingWindow the max deviation from the diagonal, -1 for full window.
+     * @param weights optional weighting by deviation from the diagonal (as in WDTW), null for no weighting. Must be
+     *                at least as long as the longest series.
+     * @param limit the early abandon threshold. The distance is abandoned (returning positive infinity) once every
+     *              cell in a row meets or exceeds this value.
+     * @param matrix optional full cost matrix to populate, null to only use two rolling rows.
+     * @return the distance.
+     */
+    public static double distance(Instance first, Instance second, int warpingWindow, double[] weights, double limit,
+        double[][] matrix) {
+        final Scratch scratch = SCRATCH.get();
+        scratch.first = toSeries(first, scratch.first);
+        scratch.second = toSeries(second, scratch.second);
+        return distance(scratch.first, length(first), scratch.second, length(second), warpingWindow, weights, limit,
+            matrix);
+    }
+
+    /**
+     * Compute DTW between two primitive series. See {@link #distance(Instance, Instance, int, double[], double,
+     * double[][])}.
+     */
+    public static double distance(double[] a, int aLength, double[] b, int bLength, int warpingWindow,
+        double[] weights, double limit, double[][] matrix) {
+        // a window of -1 (or anything covering the full matrix) means unrestricted warping
+        final int window = warpingWindow < 0 ? Math.max(aLength, bLength) : warpingWindow;
+        // the end point must be reachable within the band
+        if(Math.abs(aLength - bLength) > window) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double[] previous;
+        double[] current;
+        if(matrix != null) {
+            for(double[] row : matrix) {
+                Arrays.fill(row, Double.POSITIVE_INFINITY);
+            }
+            previous = null;
+            current = matrix[0];
+        } else {
+            final Scratch scratch = SCRATCH.get();
+            if(scratch.rowA.length < bLength) {
+                scratch.rowA = new double[bLength];
+                scratch.rowB = new double[bLength];
+            }
+            previous = scratch.rowB;
+            current = scratch.rowA;
+        }
+        // first row: warp a[0] onto b[0]...b[window]
+        int end = Math.min(bLength - 1, window);
+        double rowMin = Double.POSITIVE_INFINITY;
+        double cell = 0;
+        for(int j = 0; j <= end; j++) {
+            cell += cost(a[0], b[j], j, weights);
+            current[j] = cell;
+            rowMin = Math.min(rowMin, cell);
+        }
+        if(end + 1 < bLength) {
+            current[end + 1] = Double.POSITIVE_INFINITY;
+        }
+        if(rowMin >= limit) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // remaining rows, each only visiting the cells within the band
+        for(int i = 1; i < aLength; i++) {
+            if(matrix != null) {
+                previous = current;
+                current = matrix[i];
+            } else {
+                final double[] tmp = previous;
+                previous = current;
+                current = tmp;
+            }
+            final int start = Math.max(0, i - window);
+            end = Math.min(bLength - 1, i + window);
+            final double value = a[i];
+            rowMin = Double.POSITIVE_INFINITY;
+            // the cell to the left of the band is always out of bounds
+            double left = Double.POSITIVE_INFINITY;
+            for(int j = start; j <= end; j++) {
+                double min = previous[j];
+                if(j > 0) {
+                    min = Math.min(min, Math.min(left, previous[j - 1]));
+                }
+                cell = min + cost(value, b[j], Math.abs(i - j), weights);
+                current[j] = cell;
+                left = cell;
+                if(cell < rowMin) {
+                    rowMin = cell;
+                }
+            }
+            // the cell to the right of the band must read as out of bounds for the next row
+            if(end + 1 < bLength) {
+                current[end + 1] = Double.POSITIVE_INFINITY;
+            }
+            // early abandon
+            if(rowMin >= limit) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return current[bLength - 1];
+    }
+
+    /**
+     * Compute DTW between two primitive series whilst also finding the smallest warping window which gives the same
+     * distance, i.e. the max deviation from the diagonal of the optimal warping path. The optimal path is feasible for
+     * every window from that smallest window up to the given window, therefore the distance is the same for all of
+     * those windows. Where several paths are optimal the one closest to the diagonal is taken.
+     * @param a the first series.
+     * @param aLength the length of the first series.
+     * @param b the second series.
+     * @param bLength the length of the second series.
+     * @param warpingWindow the max deviation from the diagonal, -1 for full window.
+     * @param limit the early abandon threshold, as in {@link #distance(Instance, Instance, int, double[], double,
+     *              double[][])}.
+     * @param windowValidity output, the first element is set to the smallest window giving the same distance or -1 if
+     *                       the distance was abandoned or the end point could not be reached.
+     * @return the distance.
+     */
+    public static double distance(double[] a, int aLength, double[] b, int bLength, int warpingWindow, double limit,
+        int[] windowValidity) {
+        windowValidity[0] = -1;
+        final int window = warpingWindow < 0 ? Math.max(aLength, bLength) : warpingWindow;
+        if(Math.abs(aLength - bLength) > window) {
+            return Double.POSITIVE_INFINITY;
+        }
+        final Scratch scratch = SCRATCH.get();
+        if(scratch.rowA.length < bLength) {
+            scratch.rowA = new double[bLength];
+            scratch.rowB = new double[bLength];
+        }
+        if(scratch.deviationRowA.length < bLength) {
+            scratch.deviationRowA = new int[bLength];
+            scratch.deviationRowB = new int[bLength];
+        }
+        double[] previous = scratch.rowB;
+        double[] current = scratch.rowA;
+        // the max deviation from the diagonal along the optimal path to each cell
+        int[] previousDeviation = scratch.deviationRowB;
+        int[] currentDeviation = scratch.deviationRowA;
+        int end = Math.min(bLength - 1, window);
+        double rowMin = Double.POSITIVE_INFINITY;
+        double cell = 0;
+        for(int j = 0; j <= end; j++) {
+            cell += cost(a[0], b[j], j, null);
+            current[j] = cell;
+            currentDeviation[j] = j;
+            rowMin = Math.min(rowMin, cell);
+        }
+        if(end + 1 < bLength) {
+            current[end + 1] = Double.POSITIVE_INFINITY;
+        }
+        if(rowMin >= limit) {
+            return Double.POSITIVE_INFINITY;
+        }
+        for(int i = 1; i < aLength; i++) {
+            double[] tmp = previous;
+            previous = current;
+            current = tmp;
+            int[] tmpDeviation = previousDeviation;
+            previousDeviation = currentDeviation;
+            currentDeviation = tmpDeviation;
+            final int start = Math.max(0, i - window);
+            end = Math.min(bLength - 1, i + window);
+            final double value = a[i];
+            rowMin = Double.POSITIVE_INFINITY;
+            double left = Double.POSITIVE_INFINITY;
+            int leftDeviation = 0;
+            for(int j = start; j <= end; j++) {
+                double min = previous[j];
+                int deviation = previousDeviation[j];
+                if(j > 0) {
+                    // prefer the predecessor closest to the diagonal on ties
+                    final double diagonal = previous[j - 1];
+                    if(diagonal < min || (diagonal == min && previousDeviation[j - 1] < deviation)) {
+                        min = diagonal;
+                        deviation = previousDeviation[j - 1];
+                    }
+                    if(left < min || (left == min && leftDeviation < deviation)) {
+                        min = left;
+                        deviation = leftDeviation;
+                    }
+                }
+                final int cellDeviation = Math.abs(i - j);
+                cell = min + cost(value, b[j], cellDeviation, null);
+                deviation = Math.max(deviation, cellDeviation);
+                current[j] = cell;
+                currentDeviation[j] = deviation;
+                left = cell;
+                leftDeviation = deviation;
+                if(cell < rowMin) {
+                    rowMin = cell;
+                }
+            }
+            if(end + 1 < bLength) {
+                current[end + 1] = Double.POSITIVE_INFINITY;
+            }
+            if(rowMin >= limit) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        final double distance = current[bLength - 1];
+        if(distance != Double.POSITIVE_INFINITY) {
+            windowValidity[0] = currentDeviation[bLength - 1];
+        }
+        return distance;
+    }
+
+    private static double cost(double a, double b, int deviation, double[] weights) {
+        final double diff = a - b;
+        if(weights == null) {
+            return diff * diff;
+        }
+        return weights[deviation] * diff * diff;
+    }
+
+}
@@ -0,0 +1,102 @@
+package tsml.classifiers.distance_based.distances.dtw;
+
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Purpose: check the two row DTW kernel against the full cost matrix DTW and WDTW it replaced. With no limit the
+ * kernel must give the same distance as the full matrix, and with a limit the same distance or positive infinity if
+ * the distance is at least the limit.
+ */
+public class DTWKernelTest {
+
+    private static final double TOLERANCE = 1e-9;
+    private static final int REPEATS = 500;
+
+    @Test
+    public void testDtw() {
+        final Random random = new Random(0);
+        for(int repeat = 0; repeat < REPEATS; repeat++) {
+            final double[] a = randomSeries(random, 1 + random.nextInt(60));
+            final double[] b = randomSeries(random, a.length);
+            final int window = random.nextInt(a.length + 2) - 1;
+            final double distance = dtw(a, b, window, null);
+            assertEquivalent(distance, DTWKernel.distance(a, a.length, b, b.length, window, null,
+                Double.POSITIVE_INFINITY, null));
+            final double limit = distance * random.nextDouble() * 2;
+            assertAbandoned(distance, limit, DTWKernel.distance(a, a.length, b, b.length, window, null, limit, null));
+        }
+    }
+
+    @Test
+    public void testWdtw() {
+        final Random random = new Random(1);
+        for(int repeat = 0; repeat < REPEATS; repeat++) {
+            final double[] a = randomSeries(random, 1 + random.nextInt(60));
+            final double[] b = randomSeries(random, a.length);
+            final double[] weights = new double[a.length];
+            for(int i = 0; i < weights.length; i++) {
+                weights[i] = random.nextDouble();
+            }
+            final double distance = dtw(a, b, -1, weights);
+            assertEquivalent(distance, DTWKernel.distance(a, a.length, b, b.length, -1, weights,
+                Double.POSITIVE_INFINITY, null));
+            final double limit = distance * random.nextDouble() * 2;
+            assertAbandoned(distance, limit, DTWKernel.distance(a, a.length, b, b.length, -1, weights, limit, null));
+        }
+    }
+
+    private static void assertEquivalent(double matrix, double kernel) {
+        assertEquals(matrix, kernel, TOLERANCE * Math.max(1, Math.abs(matrix)));
+    }
+
+    private static void assertAbandoned(double matrix, double limit, double kernel) {
+        if(kernel == Double.POSITIVE_INFINITY) {
+            assertTrue(matrix >= limit);
+        } else {
+            assertEquivalent(matrix, kernel);
+        }
+    }
+
+    private static double[] randomSeries(Random random, int length) {
+        final double[] series = new double[length];
+        for(int i = 0; i < length; i++) {
+            series[i] = random.nextGaussian();
+        }
+        return series;
+    }
+
+    // full matrix DTW of equal length series, deviating at most window from the diagonal (-1 for no limit) and
+    // weighting each cell by its deviation if weights are given
+    private static double dtw(double[] a, double[] b, int window, double[] weights) {
+        final int band = window < 0 ? a.length : window;
+        final double[][] cost = new double[a.length][b.length];
+        for(int i = 0; i < a.length; i++) {
+            for(int j = 0; j < b.length; j++) {
+                if(Math.abs(i - j) > band) {
+                    cost[i][j] = Double.POSITIVE_INFINITY;
+                    continue;
+                }
+                double distance = (a[i] - b[j]) * (a[i] - b[j]);
+                if(weights != null) {
+                    distance *= weights[Math.abs(i - j)];
+                }
+                double min;
+                if(i == 0 && j == 0) {
+                    min = 0;
+                } else if(i == 0) {
+                    min = cost[i][j - 1];
+                } else if(j == 0) {
+                    min = cost[i - 1][j];
+                } else {
+                    min = Math.min(cost[i - 1][j - 1], Math.min(cost[i - 1][j], cost[i][j - 1]));
+                }
+                cost[i][j] = min + distance;
+            }
+        }
+        return cost[a.length - 1][b.length - 1];
+    }
+}
@@ -0,0 +1,284 @@
+package tsml.classifiers.distance_based.distances.dtw;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import tsml.classifiers.distance_based.distances.transformed.TransformedDistanceMeasureable;
+import weka.core.DistanceFunction;
+import weka.core.Instance;
+
+/**
+ * Purpose: share DTW work between loocvs of the same train data which only differ in warping window, e.g. the
+ * benchmarks produced whilst tuning the warping window of DTW or DDTW. Two properties of DTW are used:
+ * <p>
+ * 1) if the optimal warping path at window w deviates from the diagonal by at most r then the distance is the same
+ * for every window between r and w. Therefore a distance found at one window is reused for all windows in that range
+ * without any further computation.
+ * <p>
+ * 2) the distance can only grow as the window shrinks. Therefore a distance found at window w is a lower bound for
+ * every window below w, as is the limit that a distance at window w was abandoned against. Pairs which cannot beat the
+ * current nearest neighbour at a smaller window are pruned using these bounds.
+ * <p>
+ * Pairs are keyed by the index of each instance in the train data. Series are read (and transformed in the case of
+ * DDTW) once per instance rather than once per distance call. Everything is held in primitive rows which are
+ * allocated on first use, holding the lower triangle only as DTW is symmetric. A pair costs 28 bytes, so all pairs
+ * of n instances take about 14n^2 bytes, e.g. 1.4GB for 10,000 instances. The rows can be limited to a number of bytes,
+ * in which case pairs in rows that would not fit are not shared, their distances found independently at each window.
+ * <p>
+ * The first distance measure used with a sweep fixes the type of DTW distance measure (and transform) it holds. Other
+ * types, e.g. DDTW benchmarks in a tune which began with DTW, are evaluated independently at their own window without
+ * sharing anything (see {@link #accepts(DistanceFunction)}). Distances are found one at a time, so a sweep can be
+ * shared between threads but they will not find distances through it in parallel.
+ */
+public class DTWWindowSweep implements Serializable {
+
+    // the number of instances
+    private final int size;
+    // the instances as given to the distance measure (i.e. after any transform) and their series
+    private final Instance[] instances;
+    private final double[][] series;
+    // the exact distance of each pair and the range of windows it holds for. NaN marks no distance
+    private final double[][] distances;
+    private final int[][] validFrom;
+    private final int[][] validTo;
+    // a lower bound on the distance of each pair for all windows up to and including the lower bound window. A window
+    // of -1 marks no lower bound
+    private final double[][] lowerBounds;
+    private final int[][] lowerBoundWindows;
+    // the type of distance measure and transform the sweep holds, fixed by the first distance measure used
+    private Class<?> distanceMeasureClass;
+    private Class<?> transformerClass;
+    // max bytes to use for rows, -1 for no limit
+    private final long sizeLimitInBytes;
+    private long sizeInBytes = 0;
+    // stats
+    private long reuseCount = 0;
+    private long pruneCount = 0;
+    private long computeCount = 0;
+
+    public DTWWindowSweep(int size) {
+        this(size, -1);
+    }
+
+    /**
+     * @param size the number of instances.
+     * @param sizeLimitInBytes the max bytes to use for the rows of pairs, -1 for no limit.
+     */
+    public DTWWindowSweep(int size, long sizeLimitInBytes) {
+        if(size < 0) throw new IllegalArgumentException("size cannot be negative: " + size);
+        this.size = size;
+        this.sizeLimitInBytes = sizeLimitInBytes;
+        instances = new Instance[size];
+        series = new double[size][];
+        distances = new double[size][];
+        validFrom = new int[size][];
+        validTo = new int[size][];
+        lowerBounds = new double[size][];
+        lowerBoundWindows = new int[size][];
+    }
+
+    // whether a distance function can share a sweep
+    public static boolean isSupported(DistanceFunction distanceFunction) {
+        return distanceFunction instanceof DTW;
+    }
+
+    /**
+     * Find the distance between two train instances using the warping window of the given distance measure.
+     * @param dtw the distance measure.
+     * @param i the index of the first instance.
+     * @param first the first instance.
+     * @param j the index of the second instance.
+     * @param second the second instance.
+     * @param limit the early abandon threshold, as in {@link DTWKernel}. The distance is abandoned (returning
+     *              positive infinity) if it meets or exceeds this value.
+     * @return the distance.
+     */
+    public synchronized double distance(DTW dtw, int i, Instance first, int j, Instance second, double limit) {
+        if(i < 0 || i >= size || j < 0 || j >= size) {
+            throw new IndexOutOfBoundsException("(" + i + ", " + j + ") out of bounds for size " + size);
+        }
+        if(i == j) {
+            throw new IllegalArgumentException("cannot sweep the distance from an instance to itself");
+        }
+        if(!accepts(dtw)) {
+            // a different type of DTW, so the held series and distances do not apply
+            computeCount++;
+            return dtw.distance(first, second, limit);
+        }
+        if(distanceMeasureClass == null) {
+            distanceMeasureClass = dtw.getClass();
+            transformerClass = findTransformerClass(dtw);
+        }
+        prepare(dtw, i, first);
+        prepare(dtw, j, second);
+        final int row = Math.max(i, j);
+        final int column = Math.min(i, j);
+        if(!allocate(row)) {
+            // no space to share this pair
+            computeCount++;
+            return dtw.distance(first, second, limit);
+        }
+        final int aLength = DTWKernel.length(instances[row]);
+        final int bLength = DTWKernel.length(instances[column]);
+        final int window = normaliseWindow(dtw.getWarpingWindow(), aLength, bLength);
+        // reuse the distance if the optimal path is within the window
+        final double distance = distances[row][column];
+        if(!Double.isNaN(distance) && validFrom[row][column] <= window && window <= validTo[row][column]) {
+            reuseCount++;
+            return distance;
+        }
+        // prune using distances and abandons at larger windows
+        double lowerBound = 0;
+        if(!Double.isNaN(distance) && window <= validTo[row][column]) {
+            lowerBound = distance;
+        }
+        if(window <= lowerBoundWindows[row][column]) {
+            lowerBound = Math.max(lowerBound, lowerBounds[row][column]);
+        }
+        if(lowerBound >= limit || dtw.getLowerBoundCascade().prune(instances[row], instances[column], limit)) {
+            pruneCount++;
+            return Double.POSITIVE_INFINITY;
+        }
+        computeCount++;
+        final int[] windowValidity = new int[1];
+        final double result = DTWKernel.distance(series[row], aLength, series[column], bLength, window, limit,
+            windowValidity);
+        if(result == Double.POSITIVE_INFINITY) {
+            // abandoned, so the distance is at least the limit for this window and any smaller
+            if(limit != Double.POSITIVE_INFINITY) {
+                putLowerBound(row, column, limit, window);
+            }
+        } else {
+            putDistance(row, column, result, windowValidity[0], window);
+            putLowerBound(row, column, result, window);
+        }
+        return result;
+    }
+
+    // windows beyond the series length or -1 are all equivalent to the full window
+    private static int normaliseWindow(int window, int aLength, int bLength) {
+        final int fullWindow = Math.max(aLength, bLength) - 1;
+        if(window < 0 || window > fullWindow) {
+            return fullWindow;
+        }
+        return window;
+    }
+
+    /**
+     * Whether the distances of a distance function can be shared through this sweep. This is the case for the first
+     * DTW distance measure used with the sweep and any other of the same type and transform. Distances of other
+     * distance functions are still found by {@link #distance}, but independently.
+     * @param distanceFunction the distance function.
+     * @return true if the distance function shares the sweep.
+     */
+    public synchronized boolean accepts(DistanceFunction distanceFunction) {
+        if(!isSupported(distanceFunction)) {
+            return false;
+        }
+        if(distanceMeasureClass == null) {
+            return true;
+        }
+        return distanceMeasureClass.equals(distanceFunction.getClass())
+            && transformerClass == findTransformerClass((DTW) distanceFunction);
+    }
+
+    private static Class<?> findTransformerClass(DTW dtw) {
+        if(dtw instanceof TransformedDistanceMeasureable) {
+            return ((TransformedDistanceMeasureable) dtw).getTransformer().getClass();
+        }
+        return null;
+    }
+
+    private void prepare(DTW dtw, int index, Instance instance) {
+        if(instances[index] != null) {
+            return;
+        }
+        if(dtw instanceof TransformedDistanceMeasureable) {
+            instance = ((TransformedDistanceMeasureable) dtw).transform(instance);
+        }
+        instances[index] = instance;
+        series[index] = DTWKernel.toSeries(instance, new double[0]);
+    }
+
+    private static long rowSizeInBytes(int length) {
+        // 28 bytes per pair across the 5 rows plus an approximate array header for each
+        return 5 * 16 + 28L * length;
+    }
+
+    // allocate a row if not already allocated, returning false if it does not fit in the size limit
+    private boolean allocate(int row) {
+        if(distances[row] == null) {
+            final long rowSize = rowSizeInBytes(row);
+            if(sizeLimitInBytes >= 0 && sizeInBytes + rowSize > sizeLimitInBytes) {
+                return false;
+            }
+            sizeInBytes += rowSize;
+            distances[row] = new double[row];
+            Arrays.fill(distances[row], Double.NaN);
+            validFrom[row] = new int[row];
+            validTo[row] = new int[row];
+            lowerBounds[row] = new double[row];
+            lowerBoundWindows[row] = new int[row];
+            Arrays.fill(lowerBoundWindows[row], -1);
+        }
+        return true;
+    }
+
+    private void putDistance(int row, int column, double distance, int from, int to) {
+        final double current = distances[row][column];
+        // the distance is the same across overlapping ranges so they can be merged
+        if(!Double.isNaN(current) && from <= validTo[row][column] && validFrom[row][column] <= to) {
+            from = Math.min(from, validFrom[row][column]);
+            to = Math.max(to, validTo[row][column]);
+        }
+        distances[row][column] = distance;
+        validFrom[row][column] = from;
+        validTo[row][column] = to;
+    }
+
+    private void putLowerBound(int row, int column, double lowerBound, int window) {
+        final int currentWindow = lowerBoundWindows[row][column];
+        final double current = lowerBounds[row][column];
+        // keep the current bound if it is at least as tight over at least as many windows
+        if(currentWindow >= window && current >= lowerBound) {
+            return;
+        }
+        lowerBounds[row][column] = lowerBound;
+        lowerBoundWindows[row][column] = window;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getSizeLimitInBytes() {
+        return sizeLimitInBytes;
+    }
+
+    public synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public synchronized long getReuseCount() {
+        return reuseCount;
+    }
+
+    public synchronized long getPruneCount() {
+        return pruneCount;
+    }
+
+    public synchronized long getComputeCount() {
+        return computeCount;
+    }
+
+    public synchronized void resetStats() {
+        reuseCount = 0;
+        pruneCount = 0;
+        computeCount = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DTWWindowSweep{size=" + size + ", bytes=" + sizeInBytes + ", reused=" + reuseCount + ", pruned=" +
+            pruneCount + ", computed=" + computeCount + "}";
+    }
+}
@@ -0,0 +1,47 @@
+package tsml.classifiers.distance_based.distances.dtw;
+
+import experiments.data.DatasetLoading;
+import org.junit.Test;
+import tsml.classifiers.distance_based.knn.KNNLOOCV;
+import weka.core.Instances;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks loocvs sharing a window sweep give the same train estimate as loocvs without one, with and without a limit
+ * on the memory the sweep may use.
+ */
+public class DTWWindowSweepTest {
+
+    private static double[][] loocv(Instances train, int window, DTWWindowSweep sweep) throws Exception {
+        KNNLOOCV knn = KNNLOOCV.Factory.build1nnV1();
+        knn.setDistanceFunction(new DTWDistance(window));
+        knn.setWindowSweep(sweep);
+        knn.setSeed(0);
+        knn.setEstimateOwnPerformance(true);
+        knn.buildClassifier(train);
+        return knn.getTrainResults().getProbabilityDistributionsAsArray();
+    }
+
+    private static void assertSweepMatches(long sizeLimitInBytes) throws Exception {
+        Instances train = DatasetLoading.sampleGunPoint(0)[0];
+        DTWWindowSweep sweep = new DTWWindowSweep(train.size(), sizeLimitInBytes);
+        for (int window : new int[]{-1, 20, 5, 50, 0, 8}) {
+            assertArrayEquals(loocv(train, window, null), loocv(train, window, sweep));
+        }
+        if (sizeLimitInBytes >= 0)
+            assertTrue(sweep.getSizeInBytes() <= sizeLimitInBytes);
+    }
+
+    @Test
+    public void testUnlimited() throws Exception {
+        assertSweepMatches(-1);
+    }
+
+    @Test
+    public void testLimited() throws Exception {
+        // room for about a quarter of the pairs
+        assertSweepMatches(10000);
+    }
+}
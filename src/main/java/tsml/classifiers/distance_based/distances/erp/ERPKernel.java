@@ -0,0 +1,115 @@
+package tsml.classifiers.distance_based.distances.erp;
+
+import tsml.classifiers.distance_based.distances.dtw.DTWKernel;
+import weka.core.Instance;
+
+/**
+ * Purpose: allocation free ERP kernel. Only two rolling rows of the cost matrix are held and only the cells within
+ * the band are visited. The series are read into primitive buffers once per distance call. Rows and series buffers
+ * are scratch space held per thread and reused between calls, therefore a single distance measure can be used by
+ * several threads at once.
+ */
+public class ERPKernel {
+
+    private ERPKernel() {}
+
+    /**
+     * Per thread scratch space. Buffers grow as required and are never shrunk.
+     */
+    private static class Scratch {
+        private double[] first = new double[0];
+        private double[] second = new double[0];
+        private double[] rowA = new double[0];
+        private double[] rowB = new double[0];
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Compute ERP between two instances.
+     * @param first the first instance.
+     * @param second the second instance.
+     * @param penalty the value gaps are compared against.
+     * @param bandSize the max deviation from the diagonal, -1 for full band.
+     * @param limit the early abandon threshold. The distance is abandoned (returning positive infinity) once every
+     *              cell in a row meets or exceeds this value.
+     * @return the distance.
+     */
+    public static double distance(Instance first, Instance second, double penalty, int bandSize, double limit) {
+        final Scratch scratch = SCRATCH.get();
+        scratch.first = DTWKernel.toSeries(first, scratch.first);
+        scratch.second = DTWKernel.toSeries(second, scratch.second);
+        return distance(scratch.first, DTWKernel.length(first), scratch.second, DTWKernel.length(second), penalty,
+            bandSize, limit);
+    }
+
+    /**
+     * Compute ERP between two primitive series. See {@link #distance(Instance, Instance, double, int, double)}.
+     */
+    public static double distance(double[] a, int aLength, double[] b, int bLength, double penalty, int bandSize,
+        double limit) {
+        final int band = bandSize < 0 ? aLength + 1 : bandSize;
+        // the end point must be reachable within the band
+        if(Math.abs(aLength - bLength) > band) {
+            return Double.POSITIVE_INFINITY;
+        }
+        final Scratch scratch = SCRATCH.get();
+        if(scratch.rowA.length < bLength) {
+            scratch.rowA = new double[bLength];
+            scratch.rowB = new double[bLength];
+        }
+        double[] previous = scratch.rowB;
+        double[] current = scratch.rowA;
+        for(int i = 0; i < aLength; i++) {
+            final double[] tmp = previous;
+            previous = current;
+            current = tmp;
+            // one cell either side of the band is set out of bounds for the next row to read
+            final int start = Math.max(0, i - (band + 1));
+            final int end = Math.min(bLength - 1, i + (band + 1));
+            final double value = a[i];
+            double diff = value - penalty;
+            // the cost of a gap in the second series
+            final double gapCost = diff * diff;
+            boolean tooBig = true;
+            for(int j = start; j <= end; j++) {
+                if(Math.abs(i - j) <= band) {
+                    diff = penalty - b[j];
+                    // the cost of a gap in the first series
+                    final double otherGapCost = diff * diff;
+                    diff = value - b[j];
+                    final double matchCost = diff * diff;
+                    final double cost;
+                    if((i + j) != 0) {
+                        if((i == 0) || ((j != 0) && (((previous[j - 1] + matchCost) > (current[j - 1] + otherGapCost))
+                            && ((current[j - 1] + otherGapCost) < (previous[j] + gapCost))))) {
+                            // del
+                            cost = current[j - 1] + otherGapCost;
+                        } else if((j == 0) || ((i != 0) && (((previous[j - 1] + matchCost) > (previous[j] + gapCost))
+                            && ((previous[j] + gapCost) < (current[j - 1] + otherGapCost))))) {
+                            // ins
+                            cost = previous[j] + gapCost;
+                        } else {
+                            // match
+                            cost = previous[j - 1] + matchCost;
+                        }
+                    } else {
+                        cost = 0;
+                    }
+                    current[j] = cost;
+                    if(tooBig && cost < limit) {
+                        tooBig = false;
+                    }
+                } else {
+                    // outside band
+                    current[j] = Double.POSITIVE_INFINITY;
+                }
+            }
+            if(tooBig) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return current[bLength - 1];
+    }
+
+}
@@ -0,0 +1,106 @@
+package tsml.classifiers.distance_based.distances.lcss;
+
+import java.util.Arrays;
+import tsml.classifiers.distance_based.distances.dtw.DTWKernel;
+import weka.core.Instance;
+
+/**
+ * Purpose: allocation free LCSS kernel. Only two rolling rows of the subsequence length matrix are held and only the
+ * cells within the warping band are visited. The series are read into primitive buffers once per distance call. Rows
+ * and series buffers are scratch space held per thread and reused between calls, therefore a single distance measure
+ * can be used by several threads at once.
+ */
+public class LCSSKernel {
+
+    private LCSSKernel() {}
+
+    /**
+     * Per thread scratch space. Buffers grow as required and are never shrunk.
+     */
+    private static class Scratch {
+        private double[] first = new double[0];
+        private double[] second = new double[0];
+        private int[] rowA = new int[0];
+        private int[] rowB = new int[0];
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Compute LCSS between two instances.
+     * @param first the first instance.
+     * @param second the second instance.
+     * @param epsilon the max difference between two values for them to match.
+     * @param delta the max deviation from the diagonal, -1 for full window.
+     * @param limit the early abandon threshold. The distance is abandoned (returning positive infinity) once the
+     *              longest subsequence so far cannot grow long enough over the remaining rows to beat this value.
+     * @return the distance.
+     */
+    public static double distance(Instance first, Instance second, double epsilon, int delta, double limit) {
+        final Scratch scratch = SCRATCH.get();
+        scratch.first = DTWKernel.toSeries(first, scratch.first);
+        scratch.second = DTWKernel.toSeries(second, scratch.second);
+        return distance(scratch.first, DTWKernel.length(first), scratch.second, DTWKernel.length(second), epsilon,
+            delta, limit);
+    }
+
+    /**
+     * Compute LCSS between two primitive series. See {@link #distance(Instance, Instance, double, int, double)}.
+     */
+    public static double distance(double[] a, int aLength, double[] b, int bLength, double epsilon, int delta,
+        double limit) {
+        final int window = delta < 0 ? aLength + 1 : delta;
+        final Scratch scratch = SCRATCH.get();
+        // rows are indexed from 1 as in the matrix, column 0 being the border
+        if(scratch.rowA.length < bLength + 1) {
+            scratch.rowA = new int[bLength + 1];
+            scratch.rowB = new int[bLength + 1];
+        }
+        int[] previous = scratch.rowB;
+        int[] current = scratch.rowA;
+        // cells never visited are 0, i.e. the border row and anything the band will read beyond its edges
+        Arrays.fill(previous, 0, Math.min(bLength, window + 1) + 1, 0);
+        int start = 0;
+        int end = -1;
+        for(int i = 0; i < aLength; i++) {
+            start = Math.max(0, i - window);
+            end = Math.min(bLength - 1, i + window);
+            final double value = a[i];
+            current[start] = 0;
+            int rowMax = 0;
+            for(int j = start; j <= end; j++) {
+                final int length;
+                if(b[j] + epsilon >= value && b[j] - epsilon <= value) {
+                    length = previous[j] + 1;
+                } else if(previous[j + 1] > current[j]) {
+                    length = previous[j + 1];
+                } else {
+                    length = current[j];
+                }
+                current[j + 1] = length;
+                if(length > rowMax) {
+                    rowMax = length;
+                }
+            }
+            // the cell to the right of the band must read as 0 for the next row
+            if(end + 2 <= bLength) {
+                current[end + 2] = 0;
+            }
+            // the subsequence can grow by at most one per remaining row, abandon if that cannot beat the limit
+            if(1 - ((double) (rowMax + aLength - 1 - i) / aLength) >= limit) {
+                return Double.POSITIVE_INFINITY;
+            }
+            final int[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+        int max = 0;
+        for(int j = start; j <= end; j++) {
+            if(previous[j + 1] > max) {
+                max = previous[j + 1];
+            }
+        }
+        return 1 - ((double) max / aLength);
+    }
+
+}
@@ -0,0 +1,131 @@
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import java.lang.ref.WeakReference;
+import weka.core.Instance;
+
+/**
+ * Purpose: upper and lower envelope of a series under a warping window, i.e. the max and min of the series within
+ * the window around each time point. Computed in linear time using Lemire's streaming min / max. The most recent
+ * envelope is kept per thread as the same query is usually bounded against many candidates in a row. The instance is
+ * only weakly held and its values are checked on reuse, so an instance changed in place since (e.g. normalised) gets a
+ * new envelope.
+ */
+public class Envelope {
+
+    private static final ThreadLocal<Envelope> CACHE = ThreadLocal.withInitial(Envelope::new);
+
+    // the instance and window the envelope was built for
+    private WeakReference<Instance> instance = new WeakReference<>(null);
+    private int window;
+    private int length;
+    private double[] series = new double[0];
+    private double[] upper = new double[0];
+    private double[] lower = new double[0];
+    private int[] maxQueue = new int[0];
+    private int[] minQueue = new int[0];
+
+    private Envelope() {}
+
+    /**
+     * Get the envelope of an instance, reusing the previous envelope on this thread if built for the same instance,
+     * values and window. The returned envelope must not be held on to as it is overwritten by later calls on the same
+     * thread.
+     * @param instance the instance.
+     * @param window the warping window, -1 for full window.
+     * @return the envelope.
+     */
+    public static Envelope of(Instance instance, int window) {
+        final Envelope envelope = CACHE.get();
+        if(envelope.instance.get() != instance || envelope.window != window || !envelope.matches(instance)) {
+            envelope.build(instance, window);
+        }
+        return envelope;
+    }
+
+    // whether the instance still has the values the envelope was built from
+    private boolean matches(Instance instance) {
+        if(instance.numAttributes() - 1 != length) {
+            return false;
+        }
+        for(int i = 0; i < length; i++) {
+            if(Double.compare(series[i], instance.value(i)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void build(Instance instance, int window) {
+        this.instance = new WeakReference<>(instance);
+        this.window = window;
+        length = instance.numAttributes() - 1;
+        if(series.length < length) {
+            series = new double[length];
+            upper = new double[length];
+            lower = new double[length];
+            maxQueue = new int[length];
+            minQueue = new int[length];
+        }
+        for(int i = 0; i < length; i++) {
+            series[i] = instance.value(i);
+        }
+        fill(series, length, window < 0 ? length : window, upper, lower, maxQueue, minQueue);
+    }
+
+    /**
+     * Fill the upper and lower envelope of a series.
+     * @param series the series.
+     * @param length the length of the series.
+     * @param window the warping window.
+     * @param upper the upper envelope to fill.
+     * @param lower the lower envelope to fill.
+     * @param maxQueue scratch space of at least length.
+     * @param minQueue scratch space of at least length.
+     */
+    public static void fill(double[] series, int length, int window, double[] upper, double[] lower, int[] maxQueue,
+        int[] minQueue) {
+        // monotonic queues of indices, front holding the max / min within the current window
+        int maxHead = 0, maxTail = 0, minHead = 0, minTail = 0;
+        for(int i = 0; i < length + window; i++) {
+            if(i < length) {
+                final double value = series[i];
+                while(maxTail > maxHead && series[maxQueue[maxTail - 1]] <= value) {
+                    maxTail--;
+                }
+                maxQueue[maxTail++] = i;
+                while(minTail > minHead && series[minQueue[minTail - 1]] >= value) {
+                    minTail--;
+                }
+                minQueue[minTail++] = i;
+            }
+            // the time point whose window has now been fully seen
+            final int k = i - window;
+            if(k >= 0) {
+                while(maxQueue[maxHead] < k - window) {
+                    maxHead++;
+                }
+                while(minQueue[minHead] < k - window) {
+                    minHead++;
+                }
+                upper[k] = series[maxQueue[maxHead]];
+                lower[k] = series[minQueue[minHead]];
+            }
+        }
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public double[] getSeries() {
+        return series;
+    }
+
+    public double[] getUpper() {
+        return upper;
+    }
+
+    public double[] getLower() {
+        return lower;
+    }
+}
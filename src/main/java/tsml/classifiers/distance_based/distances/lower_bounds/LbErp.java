@@ -0,0 +1,54 @@
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import tsml.classifiers.distance_based.distances.erp.ERPDistance;
+import weka.core.Instance;
+
+/**
+ * Purpose: LB_Keogh adapted to ERP. Every point of the candidate is either matched to a point of the query within the
+ * band or to a gap of the penalty value, so its squared distance from the envelope of the query widened to include the
+ * penalty bounds its cost. The first points are matched at no cost by ERP so are left out. Only valid for equal length
+ * series, otherwise no bound is given.
+ * @article{tan2020fastee,
+ *   title={FastEE: Fast Ensembles of Elastic Distances for time series classification},
+ *   author={Tan, Chang Wei and Petitjean, Fran{\c{c}}ois and Keogh, Eamonn and Webb, Geoffrey I},
+ *   journal={Data Mining and Knowledge Discovery},
+ *   volume={34},
+ *   number={1},
+ *   pages={231--272},
+ *   year={2020},
+ *   publisher={Springer}
+ * }
+ */
+public class LbErp implements LowerBound {
+
+    // the ERP measure being bounded, from which the band and penalty are taken
+    private final ERPDistance erp;
+
+    public LbErp(final ERPDistance erp) {
+        if(erp == null) throw new NullPointerException();
+        this.erp = erp;
+    }
+
+    @Override
+    public double lowerBound(final Instance query, final Instance candidate, final double limit) {
+        if(query.numAttributes() != candidate.numAttributes()) {
+            return 0;
+        }
+        final Envelope envelope = Envelope.of(query, erp.getBandSize());
+        final double[] upper = envelope.getUpper();
+        final double[] lower = envelope.getLower();
+        final double penalty = erp.getPenalty();
+        double bound = 0;
+        for(int i = 1; i < envelope.getLength() && bound < limit; i++) {
+            final double value = candidate.value(i);
+            final double max = Math.max(upper[i], penalty);
+            final double min = Math.min(lower[i], penalty);
+            if(value > max) {
+                bound += (value - max) * (value - max);
+            } else if(value < min) {
+                bound += (min - value) * (min - value);
+            }
+        }
+        return bound;
+    }
+}
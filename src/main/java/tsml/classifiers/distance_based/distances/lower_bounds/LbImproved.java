@@ -0,0 +1,102 @@
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import tsml.classifiers.distance_based.distances.dtw.DTW;
+import weka.core.Instance;
+
+/**
+ * Purpose: LB_Improved lower bound for DTW. Tightens LB_Keogh with a second pass comparing the query against the
+ * envelope of the candidate's projection onto the query's envelope. Only valid for equal length series, otherwise no
+ * bound is given.
+ * @article{lemire2009faster,
+ *   title={Faster retrieval with a two-pass dynamic-time-warping lower bound},
+ *   author={Lemire, Daniel},
+ *   journal={Pattern recognition},
+ *   volume={42},
+ *   number={9},
+ *   pages={2169--2180},
+ *   year={2009},
+ *   publisher={Elsevier}
+ * }
+ */
+public class LbImproved implements LowerBound {
+
+    /**
+     * Per thread scratch space for the projection and its envelope.
+     */
+    private static class Scratch {
+        private double[] projection = new double[0];
+        private double[] upper = new double[0];
+        private double[] lower = new double[0];
+        private int[] maxQueue = new int[0];
+        private int[] minQueue = new int[0];
+
+        private void ensureCapacity(int length) {
+            if(projection.length < length) {
+                projection = new double[length];
+                upper = new double[length];
+                lower = new double[length];
+                maxQueue = new int[length];
+                minQueue = new int[length];
+            }
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    // the DTW measure being bounded, from which the warping window is taken
+    private final DTW dtw;
+
+    public LbImproved(final DTW dtw) {
+        if(dtw == null) throw new NullPointerException();
+        this.dtw = dtw;
+    }
+
+    @Override
+    public double lowerBound(final Instance query, final Instance candidate, final double limit) {
+        if(query.numAttributes() != candidate.numAttributes()) {
+            return 0;
+        }
+        final int window = dtw.getWarpingWindow();
+        final Envelope envelope = Envelope.of(query, window);
+        final int length = envelope.getLength();
+        final double[] upper = envelope.getUpper();
+        final double[] lower = envelope.getLower();
+        final Scratch scratch = SCRATCH.get();
+        scratch.ensureCapacity(length);
+        final double[] projection = scratch.projection;
+        // first pass is LB_Keogh, recording the projection of the candidate onto the query's envelope
+        double bound = 0;
+        for(int i = 0; i < length; i++) {
+            final double value = candidate.value(i);
+            if(value > upper[i]) {
+                final double diff = value - upper[i];
+                bound += diff * diff;
+                projection[i] = upper[i];
+            } else if(value < lower[i]) {
+                final double diff = lower[i] - value;
+                bound += diff * diff;
+                projection[i] = lower[i];
+            } else {
+                projection[i] = value;
+            }
+        }
+        if(bound >= limit) {
+            return bound;
+        }
+        // second pass compares the query against the envelope of the projection
+        Envelope.fill(projection, length, window < 0 ? length : window, scratch.upper, scratch.lower,
+            scratch.maxQueue, scratch.minQueue);
+        final double[] series = envelope.getSeries();
+        for(int i = 0; i < length && bound < limit; i++) {
+            final double value = series[i];
+            if(value > scratch.upper[i]) {
+                final double diff = value - scratch.upper[i];
+                bound += diff * diff;
+            } else if(value < scratch.lower[i]) {
+                final double diff = scratch.lower[i] - value;
+                bound += diff * diff;
+            }
+        }
+        return bound;
+    }
+}
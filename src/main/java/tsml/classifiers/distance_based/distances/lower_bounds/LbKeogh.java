@@ -0,0 +1,56 @@
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import tsml.classifiers.distance_based.distances.dtw.DTW;
+import weka.core.Instance;
+
+/**
+ * Purpose: LB_Keogh lower bound for DTW. The candidate is compared against the envelope of the query under the
+ * current warping window of the given DTW measure. Only valid for equal length series, otherwise no bound is given.
+ * @article{keogh2005exact,
+ *   title={Exact indexing of dynamic time warping},
+ *   author={Keogh, Eamonn and Ratanamahatana, Chotirat Ann},
+ *   journal={Knowledge and information systems},
+ *   volume={7},
+ *   number={3},
+ *   pages={358--386},
+ *   year={2005},
+ *   publisher={Springer}
+ * }
+ */
+public class LbKeogh implements LowerBound {
+
+    // the DTW measure being bounded, from which the warping window is taken
+    private final DTW dtw;
+
+    public LbKeogh(final DTW dtw) {
+        if(dtw == null) throw new NullPointerException();
+        this.dtw = dtw;
+    }
+
+    @Override
+    public double lowerBound(final Instance query, final Instance candidate, final double limit) {
+        if(query.numAttributes() != candidate.numAttributes()) {
+            return 0;
+        }
+        final Envelope envelope = Envelope.of(query, dtw.getWarpingWindow());
+        return distance(candidate, envelope.getUpper(), envelope.getLower(), envelope.getLength(), limit);
+    }
+
+    /**
+     * Squared distance of a series from an envelope, early abandoning once the limit is met.
+     */
+    public static double distance(Instance instance, double[] upper, double[] lower, int length, double limit) {
+        double bound = 0;
+        for(int i = 0; i < length && bound < limit; i++) {
+            final double value = instance.value(i);
+            if(value > upper[i]) {
+                final double diff = value - upper[i];
+                bound += diff * diff;
+            } else if(value < lower[i]) {
+                final double diff = lower[i] - value;
+                bound += diff * diff;
+            }
+        }
+        return bound;
+    }
+}
@@ -0,0 +1,33 @@
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import weka.core.Instance;
+
+/**
+ * Purpose: LB_Kim lower bound for DTW, using only the first and last points (LB_KimFL as in the UCR suite). Every
+ * warping path matches the first points together and the last points together, therefore their squared differences
+ * bound DTW from below regardless of window size or series length. Constant time.
+ * @inproceedings{kim2001index,
+ *   title={An index-based approach for similarity search supporting time warping in large sequence databases},
+ *   author={Kim, Sang-Wook and Park, Sanghyun and Chu, Wesley W},
+ *   booktitle={Proceedings 17th International Conference on Data Engineering},
+ *   pages={607--614},
+ *   year={2001},
+ *   organization={IEEE}
+ * }
+ */
+public class LbKim implements LowerBound {
+
+    @Override
+    public double lowerBound(final Instance query, final Instance candidate, final double limit) {
+        final int queryLength = query.numAttributes() - 1;
+        final int candidateLength = candidate.numAttributes() - 1;
+        final double first = query.value(0) - candidate.value(0);
+        double bound = first * first;
+        // the first and last cells are the same cell when both series are a single point
+        if(queryLength > 1 || candidateLength > 1) {
+            final double last = query.value(queryLength - 1) - candidate.value(candidateLength - 1);
+            bound += last * last;
+        }
+        return bound;
+    }
+}
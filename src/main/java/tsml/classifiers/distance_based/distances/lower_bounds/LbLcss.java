@@ -0,0 +1,51 @@
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import tsml.classifiers.distance_based.distances.lcss.LCSSDistance;
+import weka.core.Instance;
+
+/**
+ * Purpose: LB_Keogh adapted to LCSS. A point of the candidate can only be part of the common subsequence if it is
+ * within epsilon of the envelope of the query under the window, so the number of such points bounds the length of the
+ * common subsequence from above and the distance from below. Only valid for equal length series, otherwise no bound is
+ * given.
+ * @article{tan2020fastee,
+ *   title={FastEE: Fast Ensembles of Elastic Distances for time series classification},
+ *   author={Tan, Chang Wei and Petitjean, Fran{\c{c}}ois and Keogh, Eamonn and Webb, Geoffrey I},
+ *   journal={Data Mining and Knowledge Discovery},
+ *   volume={34},
+ *   number={1},
+ *   pages={231--272},
+ *   year={2020},
+ *   publisher={Springer}
+ * }
+ */
+public class LbLcss implements LowerBound {
+
+    // the LCSS measure being bounded, from which the window and epsilon are taken
+    private final LCSSDistance lcss;
+
+    public LbLcss(final LCSSDistance lcss) {
+        if(lcss == null) throw new NullPointerException();
+        this.lcss = lcss;
+    }
+
+    @Override
+    public double lowerBound(final Instance query, final Instance candidate, final double limit) {
+        if(query.numAttributes() != candidate.numAttributes()) {
+            return 0;
+        }
+        final Envelope envelope = Envelope.of(query, lcss.getDelta());
+        final double[] upper = envelope.getUpper();
+        final double[] lower = envelope.getLower();
+        final double epsilon = lcss.getEpsilon();
+        final int length = envelope.getLength();
+        int matches = 0;
+        for(int i = 0; i < length; i++) {
+            final double value = candidate.value(i);
+            if(value <= upper[i] + epsilon && value >= lower[i] - epsilon) {
+                matches++;
+            }
+        }
+        return 1 - (double) matches / length;
+    }
+}
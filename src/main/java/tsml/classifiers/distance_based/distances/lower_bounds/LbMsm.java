@@ -0,0 +1,55 @@
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import tsml.classifiers.distance_based.distances.msm.MSMDistance;
+import weka.core.Instance;
+
+/**
+ * Purpose: LB_MSM lower bound for MSM. The first points are always matched together. After that, every point of the
+ * candidate which moves further outside the range of the query than its predecessor must either be moved onto a point
+ * of the query, costing at least its distance from the range, or split from its predecessor, costing at least the
+ * split cost. Only valid for equal length series, otherwise no bound is given. Holds for any warping window, as a
+ * window only removes paths.
+ * @article{tan2020fastee,
+ *   title={FastEE: Fast Ensembles of Elastic Distances for time series classification},
+ *   author={Tan, Chang Wei and Petitjean, Fran{\c{c}}ois and Keogh, Eamonn and Webb, Geoffrey I},
+ *   journal={Data Mining and Knowledge Discovery},
+ *   volume={34},
+ *   number={1},
+ *   pages={231--272},
+ *   year={2020},
+ *   publisher={Springer}
+ * }
+ */
+public class LbMsm implements LowerBound {
+
+    // the MSM measure being bounded, from which the split / merge cost is taken
+    private final MSMDistance msm;
+
+    public LbMsm(final MSMDistance msm) {
+        if(msm == null) throw new NullPointerException();
+        this.msm = msm;
+    }
+
+    @Override
+    public double lowerBound(final Instance query, final Instance candidate, final double limit) {
+        if(query.numAttributes() != candidate.numAttributes()) {
+            return 0;
+        }
+        // the full window envelope is simply the min and max of the query
+        final Envelope envelope = Envelope.of(query, -1);
+        final double max = envelope.getUpper()[0];
+        final double min = envelope.getLower()[0];
+        final double cost = msm.getCost();
+        double bound = Math.abs(query.value(0) - candidate.value(0));
+        for(int i = 1; i < envelope.getLength() && bound < limit; i++) {
+            final double value = candidate.value(i);
+            final double previous = candidate.value(i - 1);
+            if(previous >= value && value > max) {
+                bound += Math.min(value - max, cost);
+            } else if(previous <= value && value < min) {
+                bound += Math.min(min - value, cost);
+            }
+        }
+        return bound;
+    }
+}
@@ -0,0 +1,60 @@
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import tsml.classifiers.distance_based.distances.twe.TWEDistance;
+import weka.core.Instance;
+
+/**
+ * Purpose: LB_TWED lower bound for TWE. The first points are either matched or deleted. After that, every point of
+ * the candidate outside both the range of the query and its predecessor costs at least the smaller of its squared
+ * distance from them and the stiffness. Only valid for equal length series, otherwise no bound is given. Holds for
+ * any warping window, as a window only removes paths.
+ * @article{tan2020fastee,
+ *   title={FastEE: Fast Ensembles of Elastic Distances for time series classification},
+ *   author={Tan, Chang Wei and Petitjean, Fran{\c{c}}ois and Keogh, Eamonn and Webb, Geoffrey I},
+ *   journal={Data Mining and Knowledge Discovery},
+ *   volume={34},
+ *   number={1},
+ *   pages={231--272},
+ *   year={2020},
+ *   publisher={Springer}
+ * }
+ */
+public class LbTwed implements LowerBound {
+
+    // the TWE measure being bounded, from which the stiffness and penalty are taken
+    private final TWEDistance twe;
+
+    public LbTwed(final TWEDistance twe) {
+        if(twe == null) throw new NullPointerException();
+        this.twe = twe;
+    }
+
+    @Override
+    public double lowerBound(final Instance query, final Instance candidate, final double limit) {
+        if(query.numAttributes() != candidate.numAttributes()) {
+            return 0;
+        }
+        // the full window envelope is simply the min and max of the query
+        final Envelope envelope = Envelope.of(query, -1);
+        final double queryMax = envelope.getUpper()[0];
+        final double queryMin = envelope.getLower()[0];
+        final double nu = twe.getNu();
+        final double lambda = twe.getLambda();
+        final double first = query.value(0);
+        final double candidateFirst = candidate.value(0);
+        final double diff = first - candidateFirst;
+        double bound = Math.min(diff * diff, Math.min(first * first, candidateFirst * candidateFirst) + nu + lambda);
+        for(int i = 1; i < envelope.getLength() && bound < limit; i++) {
+            final double value = candidate.value(i);
+            final double previous = candidate.value(i - 1);
+            final double max = Math.max(queryMax, previous);
+            final double min = Math.min(queryMin, previous);
+            if(value < min) {
+                bound += Math.min(nu, (min - value) * (min - value));
+            } else if(value > max) {
+                bound += Math.min(nu, (value - max) * (value - max));
+            }
+        }
+        return bound;
+    }
+}
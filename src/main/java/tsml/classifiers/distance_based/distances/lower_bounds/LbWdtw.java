@@ -0,0 +1,42 @@
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import tsml.classifiers.distance_based.distances.wdtw.WDTWDistance;
+import weka.core.Instance;
+
+/**
+ * Purpose: lower bound for WDTW. Every point of the candidate is matched at least once, at a cost of at least the
+ * smallest weight multiplied by the squared distance of that point from the query's min / max range.
+ */
+public class LbWdtw implements LowerBound {
+
+    // the WDTW measure being bounded, from which the weights are taken
+    private final WDTWDistance wdtw;
+
+    public LbWdtw(final WDTWDistance wdtw) {
+        if(wdtw == null) throw new NullPointerException();
+        this.wdtw = wdtw;
+    }
+
+    @Override
+    public double lowerBound(final Instance query, final Instance candidate, final double limit) {
+        final int length = Math.max(query.numAttributes(), candidate.numAttributes()) - 1;
+        final double weight = wdtw.getMinWeight(length);
+        // the full window envelope is simply the min and max of the query
+        final Envelope envelope = Envelope.of(query, -1);
+        final double max = envelope.getUpper()[0];
+        final double min = envelope.getLower()[0];
+        final double scaledLimit = limit / weight;
+        double bound = 0;
+        for(int i = 0; i < candidate.numAttributes() - 1 && bound < scaledLimit; i++) {
+            final double value = candidate.value(i);
+            if(value > max) {
+                final double diff = value - max;
+                bound += diff * diff;
+            } else if(value < min) {
+                final double diff = min - value;
+                bound += diff * diff;
+            }
+        }
+        return bound * weight;
+    }
+}
@@ -0,0 +1,24 @@
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import java.io.Serializable;
+import weka.core.Instance;
+
+/**
+ * Purpose: a cheap lower bound on a distance measure, used to prune candidates before computing the full distance.
+ */
+public interface LowerBound extends Serializable {
+
+    /**
+     * Find a lower bound on the distance between two instances. Implementations may stop early once the bound meets
+     * or exceeds the limit, returning the partial bound (which is still a valid lower bound).
+     * @param query the instance neighbours are being found for.
+     * @param candidate the potential neighbour.
+     * @param limit the distance a candidate must beat to be of interest.
+     * @return the lower bound.
+     */
+    double lowerBound(Instance query, Instance candidate, double limit);
+
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,121 @@
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import weka.core.Instance;
+
+/**
+ * Purpose: an ordered sequence of lower bounds, typically cheapest / loosest first. A candidate is pruned as soon as
+ * any lower bound in the cascade meets or exceeds the limit, therefore the full distance need not be computed. Counts
+ * of evaluations and prunes are kept per lower bound so the effectiveness of each bound can be inspected. Counts are
+ * atomic so the cascade can be shared between threads.
+ */
+public class LowerBoundCascade implements Serializable {
+
+    private final List<LowerBound> lowerBounds = new ArrayList<>();
+    // the number of times each lower bound has been evaluated
+    private AtomicLongArray evaluationCounts = new AtomicLongArray(0);
+    // the number of times each lower bound has pruned a candidate
+    private AtomicLongArray pruneCounts = new AtomicLongArray(0);
+
+    public LowerBoundCascade add(LowerBound lowerBound) {
+        if(lowerBound == null) throw new NullPointerException();
+        lowerBounds.add(lowerBound);
+        resetStats();
+        return this;
+    }
+
+    public void clear() {
+        lowerBounds.clear();
+        resetStats();
+    }
+
+    public List<LowerBound> getLowerBounds() {
+        return Collections.unmodifiableList(lowerBounds);
+    }
+
+    public boolean isEmpty() {
+        return lowerBounds.isEmpty();
+    }
+
+    public int size() {
+        return lowerBounds.size();
+    }
+
+    /**
+     * Run the cascade against a candidate.
+     * @param query the instance neighbours are being found for.
+     * @param candidate the potential neighbour.
+     * @param limit the distance a candidate must beat to be of interest.
+     * @return true if the candidate cannot beat the limit and therefore the full distance need not be computed.
+     */
+    public boolean prune(Instance query, Instance candidate, double limit) {
+        // nothing can be pruned without a finite limit
+        if(limit == Double.POSITIVE_INFINITY) {
+            return false;
+        }
+        for(int i = 0; i < lowerBounds.size(); i++) {
+            evaluationCounts.incrementAndGet(i);
+            if(lowerBounds.get(i).lowerBound(query, candidate, limit) >= limit) {
+                pruneCounts.incrementAndGet(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void resetStats() {
+        evaluationCounts = new AtomicLongArray(lowerBounds.size());
+        pruneCounts = new AtomicLongArray(lowerBounds.size());
+    }
+
+    public long getEvaluationCount(int index) {
+        return evaluationCounts.get(index);
+    }
+
+    public long getPruneCount(int index) {
+        return pruneCounts.get(index);
+    }
+
+    // the proportion of evaluations of the given lower bound which resulted in a prune
+    public double getPruneRate(int index) {
+        final long evaluations = getEvaluationCount(index);
+        if(evaluations == 0) {
+            return 0;
+        }
+        return (double) getPruneCount(index) / evaluations;
+    }
+
+    // the total number of candidates pruned by the cascade
+    public long getPruneCount() {
+        long count = 0;
+        for(int i = 0; i < size(); i++) {
+            count += getPruneCount(i);
+        }
+        return count;
+    }
+
+    // the proportion of candidates entering the cascade which were pruned
+    public double getPruneRate() {
+        if(isEmpty() || getEvaluationCount(0) == 0) {
+            return 0;
+        }
+        return (double) getPruneCount() / getEvaluationCount(0);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < size(); i++) {
+            if(i > 0) {
+                builder.append(", ");
+            }
+            builder.append(lowerBounds.get(i).getName()).append(": ").append(getPruneCount(i)).append("/")
+                .append(getEvaluationCount(i));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,120 @@
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import java.util.ArrayList;
+import java.util.Random;
+import org.junit.Test;
+import tsml.classifiers.distance_based.distances.DistanceMeasureable;
+import tsml.classifiers.distance_based.distances.erp.ERPDistance;
+import tsml.classifiers.distance_based.distances.lcss.LCSSDistance;
+import tsml.classifiers.distance_based.distances.msm.MSMDistance;
+import tsml.classifiers.distance_based.distances.twe.TWEDistance;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Purpose: check every lower bound in the cascade of the ERP, MSM, TWE and LCSS measures never exceeds the distance it
+ * bounds, and that the cascade never prunes a candidate which beats the limit.
+ */
+public class LowerBoundTest {
+
+    private static final double TOLERANCE = 1e-9;
+    private static final int REPEATS = 500;
+
+    private static Instances randomData(Random random, int length) {
+        final ArrayList<Attribute> attributes = new ArrayList<>();
+        for(int i = 0; i < length; i++) {
+            attributes.add(new Attribute("att" + i));
+        }
+        final ArrayList<String> classValues = new ArrayList<>();
+        classValues.add("0");
+        attributes.add(new Attribute("class", classValues));
+        final Instances data = new Instances("random", attributes, 2);
+        data.setClassIndex(length);
+        for(int n = 0; n < 2; n++) {
+            final double[] values = new double[length + 1];
+            // random walks, so the bounds are tested on trends as well as noise
+            for(int i = 0; i < length; i++) {
+                values[i] = (i > 0 ? values[i - 1] : 0) + random.nextGaussian();
+            }
+            data.add(new DenseInstance(1, values));
+        }
+        return data;
+    }
+
+    private static void assertBounds(Random random, DistanceMeasureable measure) {
+        final Instances data = randomData(random, 1 + random.nextInt(60));
+        measure.setInstances(data);
+        final Instance query = data.get(0);
+        final Instance candidate = data.get(1);
+        final double distance = measure.distance(query, candidate);
+        assertTrue(!measure.getLowerBoundCascade().isEmpty());
+        for(LowerBound lowerBound : measure.getLowerBoundCascade().getLowerBounds()) {
+            final double bound = lowerBound.lowerBound(query, candidate, Double.POSITIVE_INFINITY);
+            assertTrue(lowerBound.getName() + " " + bound + " > " + distance,
+                bound <= distance + TOLERANCE * Math.max(1, distance));
+        }
+        // with a limit the distance is either exact or abandoned because it cannot beat the limit
+        final double limit = distance * random.nextDouble() * 2;
+        final double limited = measure.distance(query, candidate, limit);
+        if(limited == Double.POSITIVE_INFINITY) {
+            assertTrue(distance >= limit - TOLERANCE * Math.max(1, distance));
+        } else {
+            assertEquals(distance, limited, TOLERANCE * Math.max(1, distance));
+        }
+    }
+
+    // windows from none to beyond the length of the longest series, -1 being the full window
+    private static int randomWindow(Random random) {
+        return random.nextInt(70) - 1;
+    }
+
+    @Test
+    public void testErp() {
+        final Random random = new Random(0);
+        final ERPDistance erp = new ERPDistance();
+        for(int repeat = 0; repeat < REPEATS; repeat++) {
+            erp.setBandSize(randomWindow(random));
+            erp.setPenalty(random.nextGaussian());
+            assertBounds(random, erp);
+        }
+    }
+
+    @Test
+    public void testMsm() {
+        final Random random = new Random(1);
+        final MSMDistance msm = new MSMDistance();
+        for(int repeat = 0; repeat < REPEATS; repeat++) {
+            msm.setWarpingWindow(randomWindow(random));
+            msm.setCost(random.nextDouble() * 2);
+            assertBounds(random, msm);
+        }
+    }
+
+    @Test
+    public void testTwe() {
+        final Random random = new Random(2);
+        final TWEDistance twe = new TWEDistance();
+        for(int repeat = 0; repeat < REPEATS; repeat++) {
+            twe.setWarpingWindow(randomWindow(random));
+            twe.setLambda(random.nextDouble());
+            twe.setNu(random.nextDouble() * 0.1);
+            assertBounds(random, twe);
+        }
+    }
+
+    @Test
+    public void testLcss() {
+        final Random random = new Random(3);
+        final LCSSDistance lcss = new LCSSDistance();
+        for(int repeat = 0; repeat < REPEATS; repeat++) {
+            lcss.setDelta(randomWindow(random));
+            lcss.setEpsilon(random.nextDouble());
+            assertBounds(random, lcss);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package tsml.classifiers.distance_based.distances.msm;
 
 import tsml.classifiers.distance_based.distances.BaseDistanceMeasure;
+import tsml.classifiers.distance_based.distances.lower_bounds.LbMsm;
 import tsml.classifiers.distance_based.utils.params.ParamHandler;
 import tsml.classifiers.distance_based.utils.params.ParamSet;
 import weka.core.Instance;
@@ -16,15 +17,20 @@ public class MSMDistance
 
 
     private double cost = 1;
+    private int warpingWindow = -1;
 
     public MSMDistance() {
-
+        getLowerBoundCascade().add(new LbMsm(this));
     }
 
     public static String getCostFlag() {
         return "c";
     }
 
+    public static String getWarpingWindowFlag() {
+        return "w";
+    }
+
     public double getCost() {
         return cost;
     }
@@ -33,17 +39,12 @@ public class MSMDistance
         this.cost = cost;
     }
 
-    private double findCost(double newPoint, double x, double y) {
-        double dist = 0;
-
-        if(((x <= newPoint) && (newPoint <= y)) ||
-            ((y <= newPoint) && (newPoint <= x))) {
-            dist = getCost();
-        } else {
-            dist = getCost() + Math.min(Math.abs(newPoint - x), Math.abs(newPoint - y));
-        }
+    public int getWarpingWindow() {
+        return warpingWindow;
+    }
 
-        return dist;
+    public void setWarpingWindow(final int warpingWindow) {
+        this.warpingWindow = warpingWindow;
     }
 
     @Override
@@ -53,56 +54,21 @@ public class MSMDistance
         final PerformanceStats stats) {
 
         checkData(first, second);
-
-        int aLength = first.numAttributes() - 1;
-        int bLength = second.numAttributes() - 1;
-
-        double[][] cost = new double[aLength][bLength];
-
-        // Initialization
-        cost[0][0] = Math.abs(first.value(0) - second.value(0));
-        for(int i = 1; i < aLength; i++) {
-            cost[i][0] = cost[i - 1][0] + findCost(first.value(i), first.value(i - 1), second.value(0));
-        }
-        for(int i = 1; i < bLength; i++) {
-            cost[0][i] = cost[0][i - 1] + findCost(second.value(i), first.value(0), second.value(i - 1));
-        }
-
-        // Main Loop
-        double min;
-        for(int i = 1; i < aLength; i++) {
-            min = limit;
-            for(int j = 1; j < bLength; j++) {
-                double d1, d2, d3;
-                d1 = cost[i - 1][j - 1] + Math.abs(first.value(i) - second.value(j));
-                d2 = cost[i - 1][j] + findCost(first.value(i), first.value(i - 1), second.value(j));
-                d3 = cost[i][j - 1] + findCost(second.value(j), first.value(i), second.value(j - 1));
-                cost[i][j] = Math.min(d1, Math.min(d2, d3));
-
-                if(cost[i][j] >= limit) {
-                    cost[i][j] = Double.POSITIVE_INFINITY;
-                }
-
-                if(cost[i][j] < min) {
-                    min = cost[i][j];
-                }
-            }
-            if(min >= limit) {
-                return Double.POSITIVE_INFINITY;
-            }
+        if(isPruned(first, second, limit)) {
+            return Double.POSITIVE_INFINITY;
         }
-        // Output
-        return cost[aLength - 1][bLength - 1];
+        return MSMKernel.distance(first, second, cost, warpingWindow, limit);
     }
 
     @Override
     public ParamSet getParams() {
-        return super.getParams().add(getCostFlag(), cost);
+        return super.getParams().add(getCostFlag(), cost).add(getWarpingWindowFlag(), warpingWindow);
     }
 
     @Override
     public void setParams(final ParamSet param) {
         ParamHandler.setParam(param, getCostFlag(), this::setCost, Double.class);
+        ParamHandler.setParam(param, getWarpingWindowFlag(), this::setWarpingWindow, Integer.class);
     }
 
 }
@@ -0,0 +1,127 @@
+package tsml.classifiers.distance_based.distances.msm;
+
+import tsml.classifiers.distance_based.distances.dtw.DTWKernel;
+import weka.core.Instance;
+
+/**
+ * Purpose: allocation free MSM kernel. Only two rolling rows of the cost matrix are held and only the cells within
+ * the warping band are visited. The series are read into primitive buffers once per distance call. Rows and series
+ * buffers are scratch space held per thread and reused between calls, therefore a single distance measure can be
+ * used by several threads at once.
+ */
+public class MSMKernel {
+
+    private MSMKernel() {}
+
+    /**
+     * Per thread scratch space. Buffers grow as required and are never shrunk.
+     */
+    private static class Scratch {
+        private double[] first = new double[0];
+        private double[] second = new double[0];
+        private double[] rowA = new double[0];
+        private double[] rowB = new double[0];
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Compute MSM between two instances.
+     * @param first the first instance.
+     * @param second the second instance.
+     * @param cost the cost of a split or merge.
+     * @param warpingWindow the max deviation from the diagonal, -1 for full window.
+     * @param limit the early abandon threshold. The distance is abandoned (returning positive infinity) once every
+     *              cell in a row meets or exceeds this value.
+     * @return the distance.
+     */
+    public static double distance(Instance first, Instance second, double cost, int warpingWindow, double limit) {
+        final Scratch scratch = SCRATCH.get();
+        scratch.first = DTWKernel.toSeries(first, scratch.first);
+        scratch.second = DTWKernel.toSeries(second, scratch.second);
+        return distance(scratch.first, DTWKernel.length(first), scratch.second, DTWKernel.length(second), cost,
+            warpingWindow, limit);
+    }
+
+    /**
+     * Compute MSM between two primitive series. See {@link #distance(Instance, Instance, double, int, double)}.
+     */
+    public static double distance(double[] a, int aLength, double[] b, int bLength, double cost, int warpingWindow,
+        double limit) {
+        final int window = warpingWindow < 0 ? Math.max(aLength, bLength) : warpingWindow;
+        if(Math.abs(aLength - bLength) > window) {
+            return Double.POSITIVE_INFINITY;
+        }
+        final Scratch scratch = SCRATCH.get();
+        if(scratch.rowA.length < bLength) {
+            scratch.rowA = new double[bLength];
+            scratch.rowB = new double[bLength];
+        }
+        double[] previous = scratch.rowB;
+        double[] current = scratch.rowA;
+        // first row: a[0] matched to b[0] then b[1]...b[window] split off
+        int end = Math.min(bLength - 1, window);
+        double cell = Math.abs(a[0] - b[0]);
+        current[0] = cell;
+        double rowMin = cell;
+        for(int j = 1; j <= end; j++) {
+            cell += findCost(b[j], a[0], b[j - 1], cost);
+            current[j] = cell;
+            rowMin = Math.min(rowMin, cell);
+        }
+        if(end + 1 < bLength) {
+            current[end + 1] = Double.POSITIVE_INFINITY;
+        }
+        if(rowMin >= limit) {
+            return Double.POSITIVE_INFINITY;
+        }
+        for(int i = 1; i < aLength; i++) {
+            final double[] tmp = previous;
+            previous = current;
+            current = tmp;
+            final int start = Math.max(0, i - window);
+            end = Math.min(bLength - 1, i + window);
+            final double value = a[i];
+            final double previousValue = a[i - 1];
+            rowMin = Double.POSITIVE_INFINITY;
+            double left = Double.POSITIVE_INFINITY;
+            int j = start;
+            if(j == 0) {
+                // the first column can only be reached from above
+                cell = previous[0] + findCost(value, previousValue, b[0], cost);
+                current[0] = cell;
+                left = cell;
+                rowMin = cell;
+                j++;
+            }
+            for(; j <= end; j++) {
+                final double match = previous[j - 1] + Math.abs(value - b[j]);
+                final double merge = previous[j] + findCost(value, previousValue, b[j], cost);
+                final double split = left + findCost(b[j], value, b[j - 1], cost);
+                cell = Math.min(match, Math.min(merge, split));
+                current[j] = cell;
+                left = cell;
+                if(cell < rowMin) {
+                    rowMin = cell;
+                }
+            }
+            // the cell to the right of the band must read as out of bounds for the next row
+            if(end + 1 < bLength) {
+                current[end + 1] = Double.POSITIVE_INFINITY;
+            }
+            if(rowMin >= limit) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return current[bLength - 1];
+    }
+
+    // the cost of moving to newPoint from x whilst the other series is at y
+    private static double findCost(double newPoint, double x, double y, double cost) {
+        if(((x <= newPoint) && (newPoint <= y)) || ((y <= newPoint) && (newPoint <= x))) {
+            return cost;
+        }
+        return cost + Math.min(Math.abs(newPoint - x), Math.abs(newPoint - y));
+    }
+
+}
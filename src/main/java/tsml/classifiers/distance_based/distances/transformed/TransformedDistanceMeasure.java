@@ -7,8 +7,10 @@ Contributors: goastler
     
 */
 
+import com.google.common.collect.MapMaker;
 import tsml.classifiers.distance_based.distances.BaseDistanceMeasure;
 import tsml.classifiers.distance_based.distances.DistanceMeasureable;
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBoundCascade;
 import tsml.classifiers.distance_based.distances.wdtw.WDTW;
 import tsml.classifiers.distance_based.utils.params.ParamHandler;
 import tsml.classifiers.distance_based.utils.params.ParamSet;
@@ -19,6 +21,13 @@ import weka.core.Instances;
 import weka.core.neighboursearch.PerformanceStats;
 import weka.filters.Filter;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
 public class TransformedDistanceMeasure extends BaseDistanceMeasure implements TransformedDistanceMeasureable {
 
     // todo get and set params
@@ -37,6 +46,20 @@ public class TransformedDistanceMeasure extends BaseDistanceMeasure implements T
     private DistanceFunction distanceFunction;
     private Filter transformer;
     private String name = getClass().getSimpleName();
+    // the transform of each instance in the data, index aligned with the data. Each instance is transformed once on
+    // setInstances / update rather than on every distance
+    private transient List<Instance> transformedData;
+    // the index of each instance in the data, by identity
+    private transient Map<Instance, Integer> dataIndices;
+    // the transforms of the most recently seen instances which are not in the data, e.g. test instances
+    private transient Map<Instance, Instance> queryCache;
+    private int queryCacheSize = 16;
+    // whether to share transforms with every other measure using the same transformer
+    private boolean shareTransforms = false;
+    // transforms shared between measures, by transformer then instance. Both are keyed weakly and by identity, so
+    // transforms are dropped along with the instances they were made from
+    private static final ConcurrentMap<Filter, ConcurrentMap<Instance, Instance>> SHARED_TRANSFORMS =
+        new MapMaker().weakKeys().makeMap();
 
     protected void setName(String name) {
         if(name == null) throw new NullPointerException();
@@ -47,13 +70,127 @@ public class TransformedDistanceMeasure extends BaseDistanceMeasure implements T
     public void setInstances(Instances data) {
         super.setInstances(data);
         distanceFunction.setInstances(data);
+        transformedData = null;
+        dataIndices = null;
+        queryCache = null;
+        if(data != null) {
+            // no setInputFormat here, filter sets the format under the transformer's lock as the transformer may be
+            // shared with measures on other threads
+            transformedData = new ArrayList<>(data.size());
+            dataIndices = new IdentityHashMap<>(data.size());
+            for(Instance instance : data) {
+                addTransform(instance);
+            }
+        }
+    }
+
+    @Override
+    public void update(final Instance instance) {
+        super.update(instance);
+        if(transformedData != null) {
+            addTransform(instance);
+        }
+    }
+
+    private void addTransform(Instance instance) {
+        dataIndices.put(instance, transformedData.size());
+        transformedData.add(shareTransforms ? sharedTransform(instance) : filter(instance));
+    }
+
+    // filters hold state between input and output so cannot be used by several threads at once
+    private Instance filter(Instance instance) {
         try {
-            transformer.setInputFormat(data);
+            synchronized(transformer) {
+                return Utilities.filter(instance, transformer);
+            }
         } catch(Exception e) {
             throw new IllegalStateException(e);
         }
     }
 
+    private Instance sharedTransform(Instance instance) {
+        return SHARED_TRANSFORMS.computeIfAbsent(transformer, key -> new MapMaker().weakKeys().makeMap())
+            .computeIfAbsent(instance, this::filter);
+    }
+
+    /**
+     * Transform an instance, fetching the transform made on setInstances if it is in the data. Otherwise the
+     * instance is transformed and held in the shared transforms if sharing, else in a small cache of the most recent,
+     * so e.g. a test instance compared to every instance in the data is only transformed once.
+     * @param instance the instance to transform
+     * @return the transformed instance
+     */
+    @Override
+    public Instance transform(final Instance instance) {
+        if(dataIndices != null) {
+            final Integer index = dataIndices.get(instance);
+            if(index != null) {
+                return transformedData.get(index);
+            }
+        }
+        if(shareTransforms) {
+            return sharedTransform(instance);
+        }
+        if(queryCacheSize <= 0) {
+            return filter(instance);
+        }
+        synchronized(this) {
+            if(queryCache == null) {
+                queryCache = new LinkedHashMap<Instance, Instance>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(final Map.Entry<Instance, Instance> eldest) {
+                        return size() > queryCacheSize;
+                    }
+                };
+            }
+            final Instance cached = queryCache.get(instance);
+            if(cached != null) {
+                return cached;
+            }
+        }
+        final Instance transformed = filter(instance);
+        synchronized(this) {
+            queryCache.put(instance, transformed);
+        }
+        return transformed;
+    }
+
+    public boolean isShareTransforms() {
+        return shareTransforms;
+    }
+
+    /**
+     * Share transforms with every other measure using the same transformer, e.g. the several DDTW measures of an
+     * ensemble all reuse one derivative of each instance. Only suitable for transformers which are a fixed function of
+     * a single instance. Shared transforms replace the query cache.
+     * @param shareTransforms whether to share transforms
+     */
+    public void setShareTransforms(final boolean shareTransforms) {
+        this.shareTransforms = shareTransforms;
+    }
+
+    public int getQueryCacheSize() {
+        return queryCacheSize;
+    }
+
+    /**
+     * @param queryCacheSize the number of transforms of instances not in the data to keep, 0 to keep none
+     */
+    public void setQueryCacheSize(final int queryCacheSize) {
+        this.queryCacheSize = queryCacheSize;
+        synchronized(this) {
+            queryCache = null;
+        }
+    }
+
+    @Override
+    public void clean() {
+        super.clean();
+        transformedData = null;
+        dataIndices = null;
+        queryCache = null;
+    }
+
     @Override
     public String getName() {
         return name;
@@ -68,6 +205,24 @@ public class TransformedDistanceMeasure extends BaseDistanceMeasure implements T
         this.distanceFunction = distanceFunction;
     }
 
+    // lower bounds only hold on the transformed data, so use those of the underlying distance measure
+    @Override
+    public LowerBoundCascade getLowerBoundCascade() {
+        if(distanceFunction instanceof DistanceMeasureable) {
+            return ((DistanceMeasureable) distanceFunction).getLowerBoundCascade();
+        }
+        return super.getLowerBoundCascade();
+    }
+
+    @Override
+    public void setLowerBoundCascade(final LowerBoundCascade lowerBoundCascade) {
+        if(distanceFunction instanceof DistanceMeasureable) {
+            ((DistanceMeasureable) distanceFunction).setLowerBoundCascade(lowerBoundCascade);
+        } else {
+            super.setLowerBoundCascade(lowerBoundCascade);
+        }
+    }
+
     public Filter getTransformer() {
         return transformer;
     }
@@ -80,13 +235,7 @@ public class TransformedDistanceMeasure extends BaseDistanceMeasure implements T
     @Override
     public double distance(final Instance first, final Instance second, final double cutOffValue,
                            final PerformanceStats stats) {
-        try {
-            final Instance firstTransformed = Utilities.filter(first, transformer);
-            final Instance secondTransformed = Utilities.filter(second, transformer);
-            return distanceFunction.distance(firstTransformed, secondTransformed, cutOffValue, stats);
-        } catch(Exception e) {
-            throw new IllegalStateException(e);
-        }
+        return distanceFunction.distance(transform(first), transform(second), cutOffValue, stats);
     }
 
     @Override public ParamSet getParams() {
@@ -9,11 +9,13 @@ Contributors: goastler
 
 import tsml.classifiers.distance_based.distances.DistanceMeasureable;
 import weka.core.DistanceFunction;
+import weka.core.Instance;
 import weka.filters.Filter;
 
 public interface TransformedDistanceMeasureable extends DistanceMeasureable {
     DistanceFunction getDistanceFunction();
     Filter getTransformer();
+    Instance transform(Instance instance);
     static String getTransformerFlag() {
         return "f";
     }
@@ -0,0 +1,138 @@
+package tsml.classifiers.distance_based.distances.twe;
+
+import tsml.classifiers.distance_based.distances.dtw.DTWKernel;
+import weka.core.Instance;
+
+/**
+ * Purpose: allocation free TWED kernel. Only two rolling rows of the cost matrix are held and only the cells within
+ * the warping band are visited. Time stamps are taken to be the index of each value, as in the original
+ * implementation, so the time stamp arrays and the local cost matrix are never built: the time penalties reduce to
+ * the deviation from the diagonal. The series are read into primitive buffers once per distance call. Rows and series
+ * buffers are scratch space held per thread and reused between calls, therefore a single distance measure can be used
+ * by several threads at once.
+ */
+public class TWEKernel {
+
+    private TWEKernel() {}
+
+    /**
+     * Per thread scratch space. Buffers grow as required and are never shrunk.
+     */
+    private static class Scratch {
+        private double[] first = new double[0];
+        private double[] second = new double[0];
+        private double[] rowA = new double[0];
+        private double[] rowB = new double[0];
+        // the cost of deleting each value of the second series
+        private double[] deletions = new double[0];
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Compute TWED between two instances.
+     * @param first the first instance.
+     * @param second the second instance.
+     * @param lambda the penalty for deleting a value.
+     * @param nu the stiffness, i.e. the penalty per unit of time difference.
+     * @param warpingWindow the max deviation from the diagonal, -1 for full window.
+     * @param limit the early abandon threshold. The distance is abandoned (returning positive infinity) once every
+     *              cell in a row meets or exceeds this value.
+     * @return the distance.
+     */
+    public static double distance(Instance first, Instance second, double lambda, double nu, int warpingWindow,
+        double limit) {
+        final Scratch scratch = SCRATCH.get();
+        scratch.first = DTWKernel.toSeries(first, scratch.first);
+        scratch.second = DTWKernel.toSeries(second, scratch.second);
+        return distance(scratch.first, DTWKernel.length(first), scratch.second, DTWKernel.length(second), lambda, nu,
+            warpingWindow, limit);
+    }
+
+    /**
+     * Compute TWED between two primitive series. See {@link #distance(Instance, Instance, double, double, int,
+     * double)}.
+     */
+    public static double distance(double[] a, int aLength, double[] b, int bLength, double lambda, double nu,
+        int warpingWindow, double limit) {
+        final int window = warpingWindow < 0 ? Math.max(aLength, bLength) : warpingWindow;
+        if(Math.abs(aLength - bLength) > window) {
+            return Double.POSITIVE_INFINITY;
+        }
+        final Scratch scratch = SCRATCH.get();
+        // rows are indexed from 1 as in the cost matrix, column 0 being the border
+        if(scratch.rowA.length < bLength + 1) {
+            scratch.rowA = new double[bLength + 1];
+            scratch.rowB = new double[bLength + 1];
+            scratch.deletions = new double[bLength + 1];
+        }
+        final double[] deletions = scratch.deletions;
+        deletions[1] = b[0] * b[0];
+        for(int j = 2; j <= bLength; j++) {
+            final double diff = b[j - 2] - b[j - 1];
+            deletions[j] = diff * diff;
+        }
+        double[] previous = scratch.rowB;
+        double[] current = scratch.rowA;
+        // border row: only the origin is reachable
+        final int firstEnd = Math.min(bLength, 1 + window);
+        previous[0] = 0;
+        for(int j = 1; j <= firstEnd; j++) {
+            previous[j] = Double.POSITIVE_INFINITY;
+        }
+        for(int i = 1; i <= aLength; i++) {
+            final int start = Math.max(1, i - window);
+            final int end = Math.min(bLength, i + window);
+            final double value = a[i - 1];
+            final double previousValue = i > 1 ? a[i - 2] : 0;
+            final double deletion;
+            if(i > 1) {
+                final double diff = previousValue - value;
+                deletion = diff * diff;
+            } else {
+                deletion = value * value;
+            }
+            // the cell to the left of the band is always out of bounds
+            current[start - 1] = Double.POSITIVE_INFINITY;
+            double rowMin = Double.POSITIVE_INFINITY;
+            for(int j = start; j <= end; j++) {
+                double diff = value - b[j - 1];
+                double dist = diff * diff;
+                double timeDiff = Math.abs(i - j);
+                if(i > 1 && j > 1) {
+                    diff = previousValue - b[j - 2];
+                    dist += diff * diff;
+                    timeDiff += Math.abs(i - j);
+                }
+                // match
+                double min = previous[j - 1] + nu * timeDiff + dist;
+                // delete from the first series
+                dist = deletion + previous[j] + lambda + nu;
+                if(min > dist) {
+                    min = dist;
+                }
+                // delete from the second series
+                dist = deletions[j] + current[j - 1] + lambda + nu;
+                if(min > dist) {
+                    min = dist;
+                }
+                current[j] = min;
+                if(min < rowMin) {
+                    rowMin = min;
+                }
+            }
+            // the cell to the right of the band must read as out of bounds for the next row
+            if(end < bLength) {
+                current[end + 1] = Double.POSITIVE_INFINITY;
+            }
+            if(rowMin >= limit) {
+                return Double.POSITIVE_INFINITY;
+            }
+            final double[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+        return previous[bLength];
+    }
+
+}
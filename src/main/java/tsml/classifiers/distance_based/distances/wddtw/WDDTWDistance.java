@@ -4,7 +4,6 @@ import tsml.classifiers.distance_based.distances.transformed.TransformedDistance
 import tsml.classifiers.distance_based.distances.wdtw.WDTW;
 import tsml.classifiers.distance_based.distances.wdtw.WDTWDistance;
 import tsml.classifiers.distance_based.utils.params.ParamSet;
-import tsml.filters.CachedFilter;
 import tsml.filters.Derivative;
 
 
@@ -15,14 +14,13 @@ import tsml.filters.Derivative;
  */
 public class WDDTWDistance extends TransformedDistanceMeasure implements WDTW {
 
-    // Global derivative function which is cached, i.e. if you ask it to convert the same instance twice it will
-    // instead fetch from the cache the second time
-    private CachedFilter derivativeCache;
     private WDTW wdtw;
 
     public WDDTWDistance() {
         wdtw = new WDTWDistance();
-        setTransformer(Derivative.getGlobalCache());
+        setTransformer(Derivative.getGlobalInstance());
+        // the derivative is a fixed function of each instance so is shared between all derivative measures
+        setShareTransforms(true);
         setDistanceFunction(wdtw);
     }
 
@@ -1,6 +1,8 @@
 package tsml.classifiers.distance_based.distances.wdtw;
 
 import tsml.classifiers.distance_based.distances.BaseDistanceMeasure;
+import tsml.classifiers.distance_based.distances.dtw.DTWKernel;
+import tsml.classifiers.distance_based.distances.lower_bounds.LbWdtw;
 import tsml.classifiers.distance_based.utils.params.ParamHandler;
 import tsml.classifiers.distance_based.utils.params.ParamSet;
 import weka.core.Instance;
@@ -14,6 +16,11 @@ import weka.core.neighboursearch.PerformanceStats;
 public class WDTWDistance
     extends BaseDistanceMeasure implements WDTW {
 
+    public WDTWDistance() {
+        // the DTW lower bounds do not hold as weights shrink the cost of each cell
+        getLowerBoundCascade().add(new LbWdtw(this));
+    }
+
     @Override
     public double getG() {
         return g;
@@ -22,22 +29,31 @@ public class WDTWDistance
     @Override
     public void setG(double g) {
         this.g = g;
+        // weights depend on g so must be regenerated
+        weightVector = null;
     }
 
     private double g = 0.05;
 
-    private void generateWeights(int length) {
-        seriesLength = length;
-        double halfLength = (double) seriesLength / 2;
-        weightVector = new double[seriesLength];
-        for (int i = 0; i < seriesLength; i++) {
+    private double[] generateWeights(int length) {
+        double halfLength = (double) length / 2;
+        double[] weightVector = new double[length];
+        for (int i = 0; i < length; i++) {
             weightVector[i] = 1 / (1 + Math.exp(-g * (i - halfLength)));
         }
+        return weightVector;
     }
 
-    private int seriesLength = -1;
     private double[] weightVector;
 
+    // the smallest weight applied to any cell when comparing series of the given length
+    public double getMinWeight(int length) {
+        final double halfLength = (double) length / 2;
+        final double first = 1 / (1 + Math.exp(-g * (0 - halfLength)));
+        final double last = 1 / (1 + Math.exp(-g * (length - 1 - halfLength)));
+        return Math.min(first, last);
+    }
+
     @Override
     public double distance(final Instance first,
                            final Instance second,
@@ -45,58 +61,21 @@ public class WDTWDistance
                            final PerformanceStats stats) {
 
         checkData(first, second);
-
-        int aLength = first.numAttributes() - 1;
-        int bLength = second.numAttributes() - 1;
-        if(seriesLength < 0 || seriesLength != aLength) {
-            generateWeights(aLength);
-        }
-
-        //create empty array
-        double[][] distances = new double[aLength][bLength];
-
-        //first value
-        distances[0][0] = weightVector[0] * (first.value(0) - second.value(0)) * (first.value(0) - second.value(0));
-
-        //early abandon if first values is larger than cut off
-        if (distances[0][0] > limit) {
+        if(isPruned(first, second, limit)) {
             return Double.POSITIVE_INFINITY;
         }
 
-        //top row
-        for (int i = 1; i < bLength; i++) {
-            distances[0][i] =
-                distances[0][i - 1] + weightVector[i] * (first.value(0) - second.value(i)) * (first.value(0) - second.value(i)); //edited by Jay
-        }
-
-        //first column
-        for (int i = 1; i < aLength; i++) {
-            distances[i][0] =
-                distances[i - 1][0] + weightVector[i] * (first.value(i) - second.value(0)) * (first.value(i) - second.value(0)); //edited by Jay
+        // weights are indexed by deviation from the diagonal so must cover the longest series
+        int length = Math.max(DTWKernel.length(first), DTWKernel.length(second));
+        // read the field once as other threads may regenerate the weights concurrently
+        double[] weightVector = this.weightVector;
+        if(weightVector == null || weightVector.length != length) {
+            weightVector = generateWeights(length);
+            this.weightVector = weightVector;
         }
 
-        //warp rest
-        double minDistance;
-        for (int i = 1; i < aLength; i++) {
-            boolean overflow = true;
-
-            for (int j = 1; j < bLength; j++) {
-                //calculate distance_measures
-                minDistance = Math.min(distances[i][j - 1], Math.min(distances[i - 1][j], distances[i - 1][j - 1]));
-                distances[i][j] =
-                    minDistance + weightVector[Math.abs(i - j)] * (first.value(i) - second.value(j)) * (first.value(i) - second.value(j));
-
-                if (overflow && distances[i][j] < limit) {
-                    overflow = false; // because there's evidence that the path can continue
-                }
-            }
-
-            //early abandon
-            if (overflow) {
-                return Double.POSITIVE_INFINITY;
-            }
-        }
-        return distances[aLength - 1][bLength - 1];
+        // full window warping with each cell weighted by its deviation from the diagonal
+        return DTWKernel.distance(first, second, -1, weightVector, limit, null);
     }
 
     @Override public ParamSet getParams() {
@@ -25,19 +25,22 @@ import tsml.classifiers.distance_based.utils.stopwatch.StopWatch;
 import tsml.classifiers.distance_based.utils.stopwatch.StopWatchTrainTimeable;
 import tsml.classifiers.distance_based.utils.StrUtils;
 import tsml.classifiers.distance_based.utils.classifier_building.CompileTimeClassifierBuilderFactory;
+import tsml.filters.HashFilter;
 import utilities.*;
 import weka.classifiers.Classifier;
 import weka.core.Instance;
 import weka.core.Instances;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 // todo this has likeness to RLTuner, perhaps need to unify somewhere / make this a RLTuner?
 
 public class ElasticEnsemble extends BaseClassifier implements TrainTimeContractable, Checkpointable,
-    GcMemoryWatchable, StopWatchTrainTimeable {
+    GcMemoryWatchable, StopWatchTrainTimeable, MultiThreadable {
 
     public static void main(String[] args) throws Exception {
         int seed = 0;
@@ -236,8 +239,6 @@ public class ElasticEnsemble extends BaseClassifier implements TrainTimeContract
     private transient Instances trainData;
     // switch to regenerate the train estimate
     private boolean regenerateTrainEstimate = true;
-    // train time limit
-    private transient long trainTimeLimitNanos = -1;
     // version id for serialisation
     protected transient long trainContractTimeNanos = -1;
     //TODO George to integrate the boolean into the classifier logic
@@ -254,6 +255,10 @@ public class ElasticEnsemble extends BaseClassifier implements TrainTimeContract
     private transient String loadPath = null;
     // whether to skip the final checkpoint
     private transient boolean skipFinalCheckpoint = false;
+    // the number of threads to train constituents on
+    private int numThreads = 1;
+    // pool to train constituents on when multithreading, created on demand
+    private transient ForkJoinPool pool;
 
     @Override
     public boolean isSkipFinalCheckpoint() {
@@ -355,7 +360,8 @@ public class ElasticEnsemble extends BaseClassifier implements TrainTimeContract
 
     @Override
     public void setTrainTimeLimit(long nanos) {
-        trainTimeLimitNanos = nanos;
+        trainContractTimeNanos = nanos;
+        trainTimeContract = true;
     }
 
     @Override public long predictNextTrainTimeNanos() { // todo this may be better in its own interface
@@ -382,7 +388,10 @@ public class ElasticEnsemble extends BaseClassifier implements TrainTimeContract
         if(!hasTrainTimeLimit() || constituentsBatch.isEmpty()) {
             remainingTrainTimeNanosPerConstituent = -1;
         } else {
-            remainingTrainTimeNanosPerConstituent = getRemainingTrainTimeNanos() / constituentsBatch.size();
+            // constituents training at once each get the time which would be left if the batch were evenly packed
+            // onto the threads
+            final int slots = Math.min(numThreads, constituentsBatch.size());
+            remainingTrainTimeNanosPerConstituent = getRemainingTrainTimeNanos() * slots / constituentsBatch.size();
         }
     }
 
@@ -446,8 +455,12 @@ public class ElasticEnsemble extends BaseClassifier implements TrainTimeContract
         trainEstimateTimer.disableAnyway();
         // while there's constituents to process and time left
         while(hasNextBuildTick()) {
-            // process another constituent
-            nextBuildTick();
+            // process another constituent, or the whole batch at once if multithreading
+            if(numThreads > 1) {
+                nextParallelBuildTick();
+            } else {
+                nextBuildTick();
+            }
             // save this to checkpoint
             saveToCheckpoint();
         }
@@ -602,6 +615,91 @@ public class ElasticEnsemble extends BaseClassifier implements TrainTimeContract
         setRegenerateTrainEstimate(true);
     }
 
+    /**
+     * as nextBuildTick but trains every constituent in the batch at once on the pool. Our train timer and memory
+     * watcher keep running throughout, tracking the wall clock time and memory of the whole batch rather than adding
+     * up each constituent's. Train data views which constituents have in common, such as the derivative, are shared
+     * between them by their distance measures.
+     * @throws Exception
+     */
+    private void nextParallelBuildTick() throws Exception {
+        final Logger logger = getLogger();
+        final List<EnhancedAbstractClassifier> batch = new ArrayList<>(constituentsBatch);
+        constituentsBatch.clear();
+        if(isCheckpointSavingEnabled()) {
+            // constituents hash the train data in place when checkpointing, do it once up front rather than
+            // concurrently
+            HashFilter.hashInstances(trainData);
+        }
+        final ForkJoinPool pool = getPool();
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(batch.size());
+        for(EnhancedAbstractClassifier constituent : batch) {
+            if(constituent instanceof TrainTimeContractable && hasTimeRemainingPerConstituent()) {
+                ((TrainTimeContractable) constituent).setTrainTimeLimitNanos(remainingTrainTimeNanosPerConstituent);
+            }
+            logger.fine(() -> "running constituent {" + constituent.getClassifierName() + " }");
+            tasks.add(pool.submit(() -> {
+                constituent.buildClassifier(trainData);
+                return null;
+            }));
+        }
+        // handle the results in order so the next batch is the same regardless of which constituents finish first
+        for(int i = 0; i < batch.size(); i++) {
+            tasks.get(i).get();
+            final EnhancedAbstractClassifier constituent = batch.get(i);
+            logger.fine(() -> "ran constituent {acc: "+
+                       constituent.getTrainResults().getAcc()+
+                       " "+
+                       constituent.getClassifierName()+
+                       " }");
+            trainEstimateTimer.checkDisabled();
+            if(constituent instanceof TrainEstimateTimeable) {
+                this.trainEstimateTimer.add(((TrainTimeable) constituent).getTrainTimeNanos());
+            }
+            if(constituent instanceof TrainTimeContractable && hasTimeRemainingPerConstituent() &&
+                    ((TrainTimeContractable) constituent).hasRemainingTraining()) {
+                nextConstituentsBatch.add(constituent);
+            }
+        }
+        firstBatchDone = true;
+        constituentsBatch.addAll(nextConstituentsBatch);
+        nextConstituentsBatch.clear();
+        setRemainingTrainTimeNanosPerConstituent();
+        setRegenerateTrainEstimate(true);
+    }
+
+    /**
+     * Train constituents concurrently, each on a single thread. The train time contract is split between the
+     * constituents training at once.
+     * @param numThreads the number of threads to train constituents on
+     */
+    @Override
+    public void enableMultiThreading(final int numThreads) {
+        final int previousNumThreads = this.numThreads;
+        if(numThreads > 1) {
+            this.numThreads = numThreads;
+        } else {
+            this.numThreads = 1;
+        }
+        // the pool is kept unless its size changes
+        if(pool != null && this.numThreads != previousNumThreads) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    private ForkJoinPool getPool() {
+        // the pool's worker threads are daemons and time out when idle so the pool does not need shutting down
+        if(pool == null) {
+            pool = new ForkJoinPool(numThreads);
+        }
+        return pool;
+    }
+
     /**
      * whether further build steps remain
      * @return
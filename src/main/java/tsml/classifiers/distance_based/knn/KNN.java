@@ -1,9 +1,11 @@
 package tsml.classifiers.distance_based.knn;
 
+import com.google.common.util.concurrent.AtomicDouble;
 import evaluation.storage.ClassifierResults;
 import tsml.classifiers.*;
 import tsml.classifiers.distance_based.distances.DistanceMeasureable;
 import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBoundCascade;
 import tsml.classifiers.distance_based.utils.checkpointing.CheckpointUtils;
 import tsml.classifiers.distance_based.utils.memory.GcMemoryWatchable;
 import tsml.classifiers.distance_based.utils.memory.MemoryWatcher;
@@ -22,6 +24,8 @@ import weka.core.Instances;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.logging.Logger;
 
 import static experiments.data.DatasetLoading.sampleGunPoint;
@@ -32,7 +36,7 @@ import static experiments.data.DatasetLoading.sampleGunPoint;
  * Contributors: goastler
  */
 public class KNN extends BaseClassifier implements Rebuildable, Checkpointable, GcMemoryWatchable,
-    StopWatchTrainTimeable {
+    StopWatchTrainTimeable, MultiThreadable {
 
     /**
      * flag for k variable. This is used in representing parameters in the form of a string.
@@ -84,6 +88,10 @@ public class KNN extends BaseClassifier implements Rebuildable, Checkpointable,
     private transient boolean skipFinalCheckpoint = false;
     // whether to random tie break (defaults to true / yes and drawing neighbours are put into a majority vote)
     private boolean randomTieBreak = true;
+    // the number of threads to use when predicting
+    private int numThreads = 1;
+    // pool to run predictions on when multithreading, created on demand
+    private transient ForkJoinPool pool;
 
     @Override
     public boolean isSkipFinalCheckpoint() {
@@ -253,8 +261,13 @@ public class KNN extends BaseClassifier implements Rebuildable, Checkpointable,
         private final PrunedMultimap<Double, Instance> prunedMap;
         // the target instance we're trying to find the closest neighbour to
         private final Instance instance;
+        // the index of the target instance in the train data, or -1 if not a train instance
+        private final int index;
         // distance limit if we're early abandoning
         private double limit = Double.POSITIVE_INFINITY;
+        // limit shared with other searchers looking for neighbours of the same instance in other parts of the train
+        // data, null if not searching in parallel
+        private final AtomicDouble sharedLimit;
         // timer to record comparison time
         private StopWatch comparisonTimer = new StopWatch();
         // timer to record the prediction time
@@ -264,7 +277,25 @@ public class KNN extends BaseClassifier implements Rebuildable, Checkpointable,
             return instance;
         }
 
+        public int getIndex() {
+            return index;
+        }
+
         public NeighbourSearcher(Instance instance) {
+            this(instance, -1, null);
+        }
+
+        public NeighbourSearcher(Instance instance, int index) {
+            this(instance, index, null);
+        }
+
+        public NeighbourSearcher(Instance instance, AtomicDouble sharedLimit) {
+            this(instance, -1, sharedLimit);
+        }
+
+        private NeighbourSearcher(Instance instance, int index, AtomicDouble sharedLimit) {
+            this.index = index;
+            this.sharedLimit = sharedLimit;
             this.prunedMap =
                 new PrunedMultimap<>(((Comparator<Double> & Serializable) Double::compare));
             // set the map to look for the k closest neighbours but keep neighbours which draw (e.g. both have a
@@ -275,8 +306,21 @@ public class KNN extends BaseClassifier implements Rebuildable, Checkpointable,
 
         // add an instance, finding the distance between the target instance and the given instance
         public double add(Instance neighbour) {
+            return addWithLimit(neighbour, limit);
+        }
+
+        // add an instance, finding the distance between the target instance and the given instance. The distance
+        // measure may prune (via its lower bounds) or early abandon the distance once it cannot beat the given limit,
+        // in which case the distance is infinite
+        public double addWithLimit(Instance neighbour, double limit) {
+            if(sharedLimit != null) {
+                limit = Math.min(limit, sharedLimit.get());
+            }
             StopWatch timer = StopWatch.newStopWatchEnabled();
-            final double distance = distanceFunction.distance(this.instance, neighbour, limit);
+            // distances equal to the limit draw with the current neighbours and are kept, therefore only abandon those
+            // strictly beyond the limit. This also makes the neighbours found independent of the order they're
+            // searched in
+            final double distance = distanceFunction.distance(this.instance, neighbour, Math.nextUp(limit));
             timer.disable();
             add(neighbour, distance, timer.getTimeNanos());
             return distance;
@@ -286,13 +330,34 @@ public class KNN extends BaseClassifier implements Rebuildable, Checkpointable,
         public void add(Instance neighbour, double distance, long distanceMeasurementTime) {
             comparisonTimer.enable();
             prunedMap.put(distance, neighbour);
-            if(earlyAbandon) {
-                limit = prunedMap.lastKey();
-            }
+            updateLimit();
             comparisonTimer.add(distanceMeasurementTime);
             comparisonTimer.disable();
         }
 
+        // add the neighbours found by another searcher for the same instance
+        public void addAll(NeighbourSearcher other) {
+            comparisonTimer.enable();
+            prunedMap.putAll(other.prunedMap);
+            updateLimit();
+            comparisonTimer.add(other.comparisonTimer.getTimeNanos());
+            comparisonTimer.disable();
+        }
+
+        private void updateLimit() {
+            // the limit is the distance of the kth neighbour, so can only be set once k neighbours have been found
+            if(earlyAbandon && prunedMap.size() >= k) {
+                limit = prunedMap.lastKey();
+                if(sharedLimit != null) {
+                    // tighten the shared limit if this searcher has found a closer kth neighbour
+                    double current = sharedLimit.get();
+                    while(limit < current && !sharedLimit.compareAndSet(current, limit)) {
+                        current = sharedLimit.get();
+                    }
+                }
+            }
+        }
+
         public double[] predict() {
             predictTimer.resetAndEnable();
             final PrunedMultimap<Double, Instance> nearestNeighbourMap = prunedMap;
@@ -327,11 +392,118 @@ public class KNN extends BaseClassifier implements Rebuildable, Checkpointable,
     @Override
     public double[] distributionForInstance(final Instance testInstance) throws
                                                                      Exception {
+        final NeighbourSearcher searcher;
+        if(numThreads > 1) {
+            searcher = findNeighboursInParallel(testInstance);
+        } else {
+            searcher = findNeighbours(testInstance);
+        }
+        return searcher.predict();
+    }
+
+    private NeighbourSearcher findNeighbours(final Instance testInstance) {
         final NeighbourSearcher searcher = new NeighbourSearcher(testInstance);
         for(final Instance trainInstance : trainData) {
             searcher.add(trainInstance);
         }
-        return searcher.predict();
+        return searcher;
+    }
+
+    // partition the train data over the pool. Each partition is searched independently but abandons distances
+    // against the tightest limit found by any partition so far. Partitions are merged in order, therefore the
+    // neighbours found are the same as searching on a single thread
+    private NeighbourSearcher findNeighboursInParallel(final Instance testInstance) throws Exception {
+        final AtomicDouble sharedLimit = new AtomicDouble(Double.POSITIVE_INFINITY);
+        // several partitions per thread so threads which finish early due to abandoning can steal more work
+        final int numPartitions = Math.max(1, Math.min(trainData.size(), numThreads * 4));
+        final ForkJoinPool pool = getPool();
+        final List<ForkJoinTask<NeighbourSearcher>> tasks = new ArrayList<>(numPartitions);
+        for(int i = 0; i < numPartitions; i++) {
+            final int start = i * trainData.size() / numPartitions;
+            final int end = (i + 1) * trainData.size() / numPartitions;
+            tasks.add(pool.submit(() -> {
+                final NeighbourSearcher searcher = new NeighbourSearcher(testInstance, sharedLimit);
+                for(int j = start; j < end; j++) {
+                    searcher.add(trainData.get(j));
+                }
+                return searcher;
+            }));
+        }
+        final NeighbourSearcher searcher = new NeighbourSearcher(testInstance);
+        for(ForkJoinTask<NeighbourSearcher> task : tasks) {
+            searcher.addAll(task.get());
+        }
+        return searcher;
+    }
+
+    /**
+     * Find the distribution for a batch of test instances. When multithreading the test instances are partitioned
+     * over the pool, each searching the train data on a single thread.
+     * @param testData the test instances.
+     * @return the distribution for each test instance, in the same order as the test instances.
+     * @throws Exception
+     */
+    public double[][] distributionForInstances(final Instances testData) throws Exception {
+        final double[][] distributions = new double[testData.size()][];
+        if(numThreads > 1) {
+            final ForkJoinPool pool = getPool();
+            final List<ForkJoinTask<NeighbourSearcher>> tasks = new ArrayList<>(testData.size());
+            for(final Instance testInstance : testData) {
+                tasks.add(pool.submit(() -> findNeighbours(testInstance)));
+            }
+            // predict in order as predictions may consume random numbers
+            for(int i = 0; i < distributions.length; i++) {
+                distributions[i] = tasks.get(i).get().predict();
+            }
+        } else {
+            for(int i = 0; i < distributions.length; i++) {
+                distributions[i] = distributionForInstance(testData.get(i));
+            }
+        }
+        return distributions;
+    }
+
+    /**
+     * Classify a batch of test instances. See {@link #distributionForInstances(Instances)}.
+     * @param testData the test instances.
+     * @return the predicted class value for each test instance, in the same order as the test instances.
+     * @throws Exception
+     */
+    public double[] classifyInstances(final Instances testData) throws Exception {
+        final double[][] distributions = distributionForInstances(testData);
+        final double[] predictions = new double[distributions.length];
+        // tie break in order so the random numbers consumed are the same regardless of threads
+        for(int i = 0; i < predictions.length; i++) {
+            predictions[i] = Utilities.argMax(distributions[i], getRandom());
+        }
+        return predictions;
+    }
+
+    @Override
+    public void enableMultiThreading(final int numThreads) {
+        final int previousNumThreads = this.numThreads;
+        if(numThreads > 1) {
+            this.numThreads = numThreads;
+        } else {
+            this.numThreads = 1;
+        }
+        // the pool is kept unless its size changes
+        if(pool != null && this.numThreads != previousNumThreads) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    private ForkJoinPool getPool() {
+        // the pool's worker threads are daemons and time out when idle so the pool does not need shutting down
+        if(pool == null) {
+            pool = new ForkJoinPool(numThreads);
+        }
+        return pool;
     }
 
     @Override public double classifyInstance(final Instance instance) throws Exception {
@@ -354,6 +526,15 @@ public class KNN extends BaseClassifier implements Rebuildable, Checkpointable,
         this.distanceFunction = distanceFunction;
     }
 
+    // the lower bounds used to prune neighbours, along with their prune counts, or null if the distance function does
+    // not support lower bounding
+    public LowerBoundCascade getLowerBoundCascade() {
+        if(distanceFunction instanceof DistanceMeasureable) {
+            return ((DistanceMeasureable) distanceFunction).getLowerBoundCascade();
+        }
+        return null;
+    }
+
     public static void main(String[] args) throws Exception {
         ClassifierResults results = ClassifierTools.trainAndTest("/bench/datasets/", "GunPoint", new KNN(), 0);
         System.out.println(results.writeSummaryResultsToString());
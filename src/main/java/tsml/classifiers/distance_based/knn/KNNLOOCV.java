@@ -3,10 +3,12 @@ package tsml.classifiers.distance_based.knn;
 import evaluation.storage.ClassifierResults;
 import experiments.data.DatasetLoading;
 import tsml.classifiers.TrainTimeContractable;
-import tsml.classifiers.distance_based.distances.BaseDistanceMeasure;
 import tsml.classifiers.distance_based.distances.DistanceMeasureConfigs;
 import tsml.classifiers.distance_based.distances.ddtw.DDTWDistance;
+import tsml.classifiers.distance_based.distances.dtw.DTW;
 import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
+import tsml.classifiers.distance_based.distances.dtw.DTWWindowSweep;
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBoundCascade;
 import tsml.classifiers.distance_based.knn.neighbour_iteration.LinearNeighbourIteratorBuilder;
 import tsml.classifiers.distance_based.knn.neighbour_iteration.RandomNeighbourIteratorBuilder;
 import tsml.classifiers.distance_based.knn.strategies.RLTunedKNNSetup;
@@ -19,8 +21,7 @@ import tsml.classifiers.distance_based.utils.iteration.RandomListIterator;
 import tsml.classifiers.distance_based.utils.params.ParamSpace;
 import tsml.filters.HashFilter;
 import utilities.*;
-import tsml.classifiers.distance_based.utils.cache.Cache;
-import tsml.classifiers.distance_based.utils.cache.SymmetricCache;
+import tsml.classifiers.distance_based.utils.cache.DistanceCache;
 import tsml.classifiers.distance_based.utils.params.ParamHandler;
 import tsml.classifiers.distance_based.utils.params.ParamSet;
 import weka.core.DistanceFunction;
@@ -270,7 +271,14 @@ public class KNNLOOCV
     protected int neighbourCount;
     protected int comparisonCount;
     protected StopWatch trainEstimateTimer = new StopWatch();
-    protected Cache<Instance, Instance, Double> cache;
+    // optional cache of distances between train instances, keyed by index in the train data. This is not needed for
+    // the loocv itself but can be shared with other loocvs using the same distance measure and train data
+    protected DistanceCache cache;
+    // optional store of DTW distances shared with other loocvs on the same train data which only differ in warping
+    // window. Not checkpointed as it is only a speed up
+    protected transient DTWWindowSweep windowSweep;
+    // indices of the train instances which have been left out so far
+    protected BitSet leftOutIndices;
     protected NeighbourSearcher leftOutSearcher = null;
     protected Iterator<NeighbourSearcher> leftOutSearcherIterator;
     protected Iterator<NeighbourSearcher> cvSearcherIterator;
@@ -336,34 +344,45 @@ public class KNNLOOCV
         if(leftOutSearcher == null) {
             leftOutSearcher = leftOutSearcherIterator.next();
             leftOutSearcherIterator.remove();
+            leftOutIndices.set(leftOutSearcher.getIndex());
         }
         comparisonCount++;
         final NeighbourSearcher searcher = cvSearcherIterator.next();
         cvSearcherIterator.remove();
         final Instance instance = searcher.getInstance();
         final Instance leftOutInstance = leftOutSearcher.getInstance();
-        if(!leftOutInstance.equals(instance)) {
-            boolean seen;
-            if(customCache) {
-                seen = cache.contains(leftOutInstance, instance);
-            } else {
-                seen = cache.remove(leftOutInstance, instance);
-            }
-            if(seen) {
+        final int index = searcher.getIndex();
+        final int leftOutIndex = leftOutSearcher.getIndex();
+        if(index != leftOutIndex) {
+            // if the instance has previously been left out then the pair has already been compared
+            if(leftOutIndices.get(index)) {
                 // we've already seen this instance
                 logger.info(() -> comparisonCount + ") " + "already seen i" + instance.hashCode() + " and i" + leftOutInstance.hashCode());
             } else {
                 final long distanceMeasurementTimeStamp = System.nanoTime();
-                Double distance = customCache ? cache.get(instance, leftOutInstance) : null;
+                double distance = customCache ? cache.get(index, leftOutIndex) : Double.NaN;
                 final long timeTakenInNanos = System.nanoTime() - distanceMeasurementTimeStamp;
-                if(distance == null) {
-                    distance = searcher.add(leftOutInstance);
+                if(Double.isNaN(distance)) {
+                    // the distance is shared by both searchers so can only be abandoned if it cannot beat either
+                    final double limit = Math.max(searcher.getLimit(), leftOutSearcher.getLimit());
+                    if(windowSweep != null) {
+                        final long sweepTimeStamp = System.nanoTime();
+                        // ties with the limit are kept, as in the searcher
+                        distance = windowSweep.distance((DTW) getDistanceFunction(), index, instance, leftOutIndex,
+                            leftOutInstance, Math.nextUp(limit));
+                        searcher.add(leftOutInstance, distance, System.nanoTime() - sweepTimeStamp);
+                    } else {
+                        distance = searcher.addWithLimit(leftOutInstance, limit);
+                    }
+                    // infinite distances may have been abandoned against this loocv's limits so aren't reusable
+                    if(customCache && distance != Double.POSITIVE_INFINITY) {
+                        cache.put(index, leftOutIndex, distance);
+                    }
                 } else {
                     searcher.add(leftOutInstance, distance, timeTakenInNanos);
                 }
                 leftOutSearcher.add(instance, distance, 0); // we get this for free!
-                cache.put(instance, leftOutInstance, distance);
-                final Double finalDistance = distance;
+                final double finalDistance = distance;
                 logger.info(() -> comparisonCount + ") i" + instance.hashCode() + " and i" + leftOutInstance.hashCode() +
                                  ": " + finalDistance);
             }
@@ -467,14 +486,21 @@ public class KNNLOOCV
                 searchers = new ArrayList<>(trainData.size());
                 // build a neighbour searcher for every train instance
                 for(int i = 0; i < trainData.size(); i++) {
-                    final NeighbourSearcher searcher = new NeighbourSearcher(trainData.get(i));
+                    final NeighbourSearcher searcher = new NeighbourSearcher(trainData.get(i), i);
                     searchers.add(i, searcher);
                 }
-                if(distanceFunction instanceof BaseDistanceMeasure) {
-                    if(((BaseDistanceMeasure) distanceFunction).isSymmetric()) {
-                        cache = new SymmetricCache<>();
-                    } else {
-                        cache = new Cache<>();
+                leftOutIndices = new BitSet(trainData.size());
+                if(customCache && cache.size() != trainData.size()) {
+                    throw new IllegalStateException("cache size " + cache.size() + " does not match train data size "
+                        + trainData.size());
+                }
+                if(windowSweep != null) {
+                    if(!DTWWindowSweep.isSupported(distanceFunction)) {
+                        throw new IllegalStateException("window sweep requires a DTW distance measure");
+                    }
+                    if(windowSweep.size() != trainData.size()) {
+                        throw new IllegalStateException("window sweep size " + windowSweep.size() + " does not match "
+                            + "train data size " + trainData.size());
                     }
                 }
                 leftOutSearcherIterator = neighbourIteratorBuilder.build();
@@ -519,6 +545,13 @@ public class KNNLOOCV
                 trainResults.addPrediction(trueClassValue, distribution, prediction, time, null);
             }
         }
+        final LowerBoundCascade lowerBoundCascade = getLowerBoundCascade();
+        if(lowerBoundCascade != null && !lowerBoundCascade.isEmpty()) {
+            logger.info(() -> "lower bound prunes: " + lowerBoundCascade);
+        }
+        if(windowSweep != null) {
+            logger.info(() -> "window sweep: " + windowSweep);
+        }
         trainEstimateTimer.disable();
         memoryWatcher.disable();
         if(regenerateTrainEstimate) {
@@ -553,15 +586,25 @@ public class KNNLOOCV
         this.neighbourLimit = neighbourLimit;
     }
 
-    public Cache<Instance, Instance, Double> getCache() {
+    public DistanceCache getCache() {
         return cache;
     }
 
-    public void setCache(final Cache<Instance, Instance, Double> cache) {
+    public void setCache(final DistanceCache cache) {
         this.cache = cache;
         customCache = cache != null;
     }
 
+    public DTWWindowSweep getWindowSweep() {
+        return windowSweep;
+    }
+
+    // share DTW distances with other loocvs on the same train data, null to not share. The distance function must be
+    // DTW based
+    public void setWindowSweep(final DTWWindowSweep windowSweep) {
+        this.windowSweep = windowSweep;
+    }
+
     public void setDefaultCache() {
         setCache(null);
     }
@@ -5,7 +5,11 @@ import evaluation.storage.ClassifierResults;
 import java.util.logging.Logger;
 import tsml.classifiers.distance_based.tuned.*;
 import tsml.classifiers.EnhancedAbstractClassifier;
+import tsml.classifiers.distance_based.distances.DistanceMeasureable;
+import tsml.classifiers.distance_based.distances.dtw.DTWWindowSweep;
 import tsml.classifiers.distance_based.knn.KNNLOOCV;
+import tsml.classifiers.distance_based.utils.StrUtils;
+import tsml.classifiers.distance_based.utils.cache.DistanceCache;
 import tsml.classifiers.distance_based.utils.logging.Loggable;
 import utilities.*;
 import tsml.classifiers.distance_based.utils.collections.PrunedMultimap;
@@ -96,6 +100,17 @@ public class RLTunedKNNSetup implements RLTunedClassifier.TrainSetupFunction, Lo
     private Stategy stategy;
     // supplier for a classifier to apply params to
     private Supplier<KNNLOOCV> knnSupplier;
+    // whether benchmarks using DTW based distance measures share distances between warping windows
+    private boolean windowSweepEnabled = true;
+    // max bytes the window sweep may use for distances, -1 for no limit
+    private long windowSweepSizeLimitInBytes = 256L * 1024 * 1024;
+    // the distances shared between warping windows
+    private DTWWindowSweep windowSweep;
+    // whether benchmarks with the same distance measure and parameters share distances, e.g. when only k differs
+    private boolean distanceCacheEnabled = true;
+    // the distances shared between benchmarks, keyed by the distance measure and its parameters. Only measures used
+    // by more than one param set have a cache, as a cache used by a single benchmark is never hit
+    private Map<String, DistanceCache> distanceCaches;
     // set of the next possible benchmarks
     private Set<EnhancedAbstractClassifier> nextImproveableBenchmarks;
     // current set of benchmarks
@@ -496,6 +511,9 @@ public class RLTunedKNNSetup implements RLTunedClassifier.TrainSetupFunction, Lo
         finalBenchmarks.setSoftLimit(1);
         final int seed = rlTunedClassifier.getSeed();
         paramSpace = paramSpaceBuilder.apply(trainData);
+        windowSweep = windowSweepEnabled ? new DTWWindowSweep(trainData.size(),
+            windowSweepSizeLimitInBytes) : null;
+        distanceCaches = distanceCacheEnabled ? buildDistanceCaches(trainData.size()) : null;
         paramSetIterator = new RandomListIterator<>(this.paramSpace, seed).setRemovedOnNext(true);
         fullParamSpaceSize = this.paramSpace.size();
         fullNeighbourhoodSize = trainData.size(); // todo check all seeds set
@@ -516,12 +534,50 @@ public class RLTunedKNNSetup implements RLTunedClassifier.TrainSetupFunction, Lo
         // todo make sure the seeds are set for everything
     }
 
+    // the option value holds the class and every parameter of the distance measure, including those of nested measures
+    private static String findDistanceCacheKey(KNNLOOCV knn) {
+        if(knn.getDistanceFunction() instanceof DistanceMeasureable) {
+            return StrUtils.toOptionValue(knn.getDistanceFunction());
+        }
+        return null;
+    }
+
+    private Map<String, DistanceCache> buildDistanceCaches(int trainSize) {
+        final Map<String, Integer> counts = new HashMap<>();
+        final Map<String, Boolean> symmetric = new HashMap<>();
+        for(int i = 0; i < paramSpace.size(); i++) {
+            final KNNLOOCV knn = knnSupplier.get();
+            knn.setParams(paramSpace.get(i));
+            final String key = findDistanceCacheKey(knn);
+            if(key != null) {
+                counts.merge(key, 1, Integer::sum);
+                symmetric.put(key, ((DistanceMeasureable) knn.getDistanceFunction()).isSymmetric());
+            }
+        }
+        final Map<String, DistanceCache> caches = new HashMap<>();
+        for(Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if(entry.getValue() > 1) {
+                caches.put(entry.getKey(), new DistanceCache(trainSize, symmetric.get(entry.getKey())));
+            }
+        }
+        return caches;
+    }
+
     private class ParamExplorer implements Iterator<EnhancedAbstractClassifier> {
         @Override public EnhancedAbstractClassifier next() {
             ParamSet paramSet = paramSetIterator.next();
             paramCount.set(paramCount.get() + 1);
             final KNNLOOCV knn = knnSupplier.get();
             knn.setParams(paramSet);
+            if(windowSweep != null && windowSweep.accepts(knn.getDistanceFunction())) {
+                // each benchmark reuses the distances found by benchmarks with other warping windows. Benchmarks of
+                // another type of DTW than the sweep holds are evaluated at their own window alone
+                knn.setWindowSweep(windowSweep);
+            }
+            if(distanceCaches != null) {
+                // benchmarks with the same distance measure and parameters reuse each other's distances
+                knn.setCache(distanceCaches.get(findDistanceCacheKey(knn)));
+            }
             final String name = knn.getClassifierName() + "_" + (id++);
             knn.setClassifierName(name);
             knn.setNeighbourLimit(neighbourCount.get());
@@ -758,6 +814,40 @@ public class RLTunedKNNSetup implements RLTunedClassifier.TrainSetupFunction, Lo
         return this;
     }
 
+    public boolean isWindowSweepEnabled() {
+        return windowSweepEnabled;
+    }
+
+    /**
+     * Share distances between DTW based benchmarks which only differ in warping window. The sweep holds 28 bytes per
+     * pair of train instances, i.e. about 14n^2 bytes for n instances, up to the limit set by
+     * {@link #setWindowSweepSizeLimitInBytes(long)}. Pairs beyond the limit are found independently for each window.
+     */
+    public RLTunedKNNSetup setWindowSweepEnabled(final boolean windowSweepEnabled) {
+        this.windowSweepEnabled = windowSweepEnabled;
+        return this;
+    }
+
+    public long getWindowSweepSizeLimitInBytes() {
+        return windowSweepSizeLimitInBytes;
+    }
+
+    // set the max bytes the window sweep may use, -1 for no limit. Defaults to 256MB, enough for all pairs of about
+    // 4000 train instances
+    public RLTunedKNNSetup setWindowSweepSizeLimitInBytes(final long windowSweepSizeLimitInBytes) {
+        this.windowSweepSizeLimitInBytes = windowSweepSizeLimitInBytes;
+        return this;
+    }
+
+    public boolean isDistanceCacheEnabled() {
+        return distanceCacheEnabled;
+    }
+
+    public RLTunedKNNSetup setDistanceCacheEnabled(final boolean distanceCacheEnabled) {
+        this.distanceCacheEnabled = distanceCacheEnabled;
+        return this;
+    }
+
     public RLTunedKNNSetup setParamSpace(ParamSpaceBuilder func) {
         return setParamSpaceBuilder(func);
     }
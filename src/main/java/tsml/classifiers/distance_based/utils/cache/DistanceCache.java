@@ -0,0 +1,264 @@
+package tsml.classifiers.distance_based.utils.cache;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Purpose: cache of pairwise distances between instances, keyed by the index of each instance in its dataset.
+ * Distances are held in primitive rows rather than boxed maps. If the distance is symmetric then only the lower
+ * triangle is held, i.e. row i holds the distances to instances 0..i-1, halving the memory required and needing a
+ * single lookup per get. Rows are allocated on first use.
+ * <p>
+ * Optionally the cache can be limited to a number of bytes, in which case the least recently used rows are evicted to
+ * make space for new ones. Hits, misses and evictions are counted.
+ */
+public class DistanceCache implements Serializable {
+
+    // marks a missing distance in a row
+    private static final double MISSING = Double.NaN;
+    // the number of instances
+    private final int size;
+    // whether distance(i, j) == distance(j, i)
+    private final boolean symmetric;
+    private final double[][] rows;
+    // max bytes to use for rows, -1 for no limit
+    private long sizeLimitInBytes = -1;
+    private long sizeInBytes = 0;
+    // doubly linked list of allocated rows in order of use, most recent at the head
+    private final int[] previous;
+    private final int[] next;
+    private int head = -1;
+    private int tail = -1;
+    // stats
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    public DistanceCache(int size, boolean symmetric) {
+        if(size < 0) throw new IllegalArgumentException("size cannot be negative: " + size);
+        this.size = size;
+        this.symmetric = symmetric;
+        rows = new double[size][];
+        previous = new int[size];
+        next = new int[size];
+    }
+
+    public DistanceCache(int size, boolean symmetric, long sizeLimitInBytes) {
+        this(size, symmetric);
+        setSizeLimitInBytes(sizeLimitInBytes);
+    }
+
+    private int rowIndex(int i, int j) {
+        if(symmetric) {
+            return Math.max(i, j);
+        }
+        return i;
+    }
+
+    private int columnIndex(int i, int j) {
+        if(symmetric) {
+            return Math.min(i, j);
+        }
+        return j;
+    }
+
+    private void checkIndices(int i, int j) {
+        if(i < 0 || i >= size || j < 0 || j >= size) {
+            throw new IndexOutOfBoundsException("(" + i + ", " + j + ") out of bounds for size " + size);
+        }
+        if(symmetric && i == j) {
+            throw new IllegalArgumentException("symmetric cache does not hold distances from an instance to itself");
+        }
+    }
+
+    /**
+     * Get a distance.
+     * @param i the index of the first instance.
+     * @param j the index of the second instance.
+     * @return the distance, or NaN if the distance is not in the cache.
+     */
+    public double get(int i, int j) {
+        checkIndices(i, j);
+        final int rowIndex = rowIndex(i, j);
+        final double[] row = rows[rowIndex];
+        double distance = MISSING;
+        if(row != null) {
+            distance = row[columnIndex(i, j)];
+            touch(rowIndex);
+        }
+        if(Double.isNaN(distance)) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return distance;
+    }
+
+    public boolean contains(int i, int j) {
+        checkIndices(i, j);
+        final double[] row = rows[rowIndex(i, j)];
+        return row != null && !Double.isNaN(row[columnIndex(i, j)]);
+    }
+
+    public void put(int i, int j, double distance) {
+        checkIndices(i, j);
+        if(Double.isNaN(distance)) {
+            throw new IllegalArgumentException("cannot cache NaN distance");
+        }
+        final int rowIndex = rowIndex(i, j);
+        double[] row = rows[rowIndex];
+        if(row == null) {
+            row = allocate(rowIndex);
+            if(row == null) {
+                // the row alone exceeds the size limit
+                return;
+            }
+        } else {
+            touch(rowIndex);
+        }
+        row[columnIndex(i, j)] = distance;
+    }
+
+    public boolean remove(int i, int j) {
+        checkIndices(i, j);
+        final double[] row = rows[rowIndex(i, j)];
+        if(row == null) {
+            return false;
+        }
+        final int columnIndex = columnIndex(i, j);
+        final boolean removed = !Double.isNaN(row[columnIndex]);
+        row[columnIndex] = MISSING;
+        return removed;
+    }
+
+    public void clear() {
+        Arrays.fill(rows, null);
+        head = -1;
+        tail = -1;
+        sizeInBytes = 0;
+    }
+
+    private static long rowSizeInBytes(int length) {
+        // 8 bytes per double plus an approximate array header
+        return 16 + 8L * length;
+    }
+
+    private double[] allocate(int rowIndex) {
+        final int length = symmetric ? rowIndex : size;
+        final long rowSize = rowSizeInBytes(length);
+        if(sizeLimitInBytes >= 0) {
+            if(rowSize > sizeLimitInBytes) {
+                return null;
+            }
+            while(sizeInBytes + rowSize > sizeLimitInBytes) {
+                evict(tail);
+            }
+        }
+        final double[] row = new double[length];
+        Arrays.fill(row, MISSING);
+        rows[rowIndex] = row;
+        sizeInBytes += rowSize;
+        pushHead(rowIndex);
+        return row;
+    }
+
+    private void evict(int rowIndex) {
+        unlink(rowIndex);
+        sizeInBytes -= rowSizeInBytes(rows[rowIndex].length);
+        rows[rowIndex] = null;
+        evictionCount++;
+    }
+
+    // mark a row as most recently used
+    private void touch(int rowIndex) {
+        if(head != rowIndex) {
+            unlink(rowIndex);
+            pushHead(rowIndex);
+        }
+    }
+
+    private void pushHead(int rowIndex) {
+        previous[rowIndex] = -1;
+        next[rowIndex] = head;
+        if(head >= 0) {
+            previous[head] = rowIndex;
+        }
+        head = rowIndex;
+        if(tail < 0) {
+            tail = rowIndex;
+        }
+    }
+
+    private void unlink(int rowIndex) {
+        final int before = previous[rowIndex];
+        final int after = next[rowIndex];
+        if(before >= 0) {
+            next[before] = after;
+        } else {
+            head = after;
+        }
+        if(after >= 0) {
+            previous[after] = before;
+        } else {
+            tail = before;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isSymmetric() {
+        return symmetric;
+    }
+
+    public long getSizeLimitInBytes() {
+        return sizeLimitInBytes;
+    }
+
+    // set the max bytes to use, -1 for no limit. Rows are evicted immediately if over the limit
+    public void setSizeLimitInBytes(final long sizeLimitInBytes) {
+        this.sizeLimitInBytes = sizeLimitInBytes;
+        if(sizeLimitInBytes >= 0) {
+            while(sizeInBytes > sizeLimitInBytes) {
+                evict(tail);
+            }
+        }
+    }
+
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public double getHitRate() {
+        final long lookups = hitCount + missCount;
+        if(lookups == 0) {
+            return 0;
+        }
+        return (double) hitCount / lookups;
+    }
+
+    public void resetStats() {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "DistanceCache{size=" + size + ", symmetric=" + symmetric + ", bytes=" + sizeInBytes + ", hits=" +
+            hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "}";
+    }
+}
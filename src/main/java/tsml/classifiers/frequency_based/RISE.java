@@ -23,6 +23,8 @@ import experiments.data.DatasetLists;
 import fileIO.FullAccessOutFile;
 import tsml.classifiers.EnhancedAbstractClassifier;
 import tsml.classifiers.Tuneable;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
 import tsml.filters.*;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
@@ -31,8 +33,10 @@ import weka.core.*;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import tsml.classifiers.Checkpointable;
 import tsml.classifiers.TrainTimeContractable;
@@ -146,6 +150,7 @@ public class RISE extends EnhancedAbstractClassifier implements TrainTimeContrac
 
     //Updated work
     private ArrayList<int[]> startEndPoints = null;
+    private transient ConcurrentHashMap<Integer, Instances> transformHeaders = null;
 
 
 
@@ -1008,19 +1013,31 @@ public class RISE extends EnhancedAbstractClassifier implements TrainTimeContrac
     public double[] distributionForInstance(Instance testInstance) throws Exception {
         double[]distribution = new double[testInstance.numClasses()];
 
-        //For every base classifier.
-        for (int i = 0; i < baseClassifiers.size(); i++) {
-
-            Instance intervalInstance = null;
-            //Transform interval instance into PS, ACF, ACF_PS or ACF_PS_AR
-            if (transformType != null) {
-                try{
-                    intervalInstance = transformInstances(produceIntervalInstance(testInstance, i), transformType).firstInstance();
-                }catch(Exception e){
-                    intervalInstance = transformInstances(produceIntervalInstance(testInstance, i), transformType).firstInstance();
-                }
+        if (!canTransformIntervals(transformType)) {
+            //For every base classifier.
+            for (int i = 0; i < baseClassifiers.size(); i++) {
+                Instance intervalInstance = transformInstances(produceIntervalInstance(testInstance, i), transformType).firstInstance();
+                distribution[(int)baseClassifiers.get(i).classifyInstance((intervalInstance))]++;
+            }
+        }
+        else {
+            //Transform the intervals of every base classifier straight from the series, reusing the buffers
+            double[] series = testInstance.toDoubleArray();
+            int seriesLength = testInstance.numAttributes() - 1;
+            IntervalTransformer transformer = new IntervalTransformer();
+            for (int i = 0; i < baseClassifiers.size(); i++) {
+                int[] startEnd = startEndPoints.get(i);
+                double[] interval = new double[startEnd[1] - startEnd[0]];
+                for (int j = 0; j < interval.length; j++)
+                    interval[j] = startEnd[0] + j < seriesLength ? series[startEnd[0] + j] : 0.0;
+
+                double[] features = transformer.transform(interval, transformType);
+                double[] row = Arrays.copyOf(features, features.length + 1);
+                row[features.length] = testInstance.classValue();
+                Instance intervalInstance = new DenseInstance(1.0, row);
+                intervalInstance.setDataset(getTransformHeader(features.length, testInstance.classAttribute()));
+                distribution[(int)baseClassifiers.get(i).classifyInstance((intervalInstance))]++;
             }
-            distribution[(int)baseClassifiers.get(i).classifyInstance((intervalInstance))]++;
         }
         if(baseClassifiers.size()>0) {
             for (int j = 0; j < testInstance.numClasses(); j++) {
@@ -1030,6 +1047,158 @@ public class RISE extends EnhancedAbstractClassifier implements TrainTimeContrac
         return distribution;
     }
 
+    private static boolean canTransformIntervals(TransformType transformType){
+        return transformType == TransformType.ACF || transformType == TransformType.PS
+                || transformType == TransformType.FFT || transformType == TransformType.ACF_PS
+                || transformType == TransformType.ACF_FFT || transformType == TransformType.ACF_PS_AR;
+    }
+
+    /**
+     * Header for transformed test intervals, only the number of attributes and the class attribute matter to the trees.
+     * @param numFeatures number of transformed features.
+     * @param classAttribute class attribute of the test data.
+     * @return Instances header with the features followed by the class.
+     */
+    private Instances getTransformHeader(int numFeatures, Attribute classAttribute){
+        if (transformHeaders == null)
+            transformHeaders = new ConcurrentHashMap<>();
+        return transformHeaders.computeIfAbsent(numFeatures, n -> {
+            ArrayList<Attribute> attributes = new ArrayList<>(n + 1);
+            for (int i = 0; i < n; i++)
+                attributes.add(new Attribute("att" + i));
+            attributes.add((Attribute)classAttribute.copy());
+            Instances header = new Instances("RISE_Interval", attributes, 0);
+            header.setClassIndex(n);
+            return header;
+        });
+    }
+
+    /**
+     * Transforms a single interval held as a double[] into ACF, PS, FFT and AR features, giving the same values as the
+     * filters used in transformInstances without building any Instances. The FFT buffers are kept between calls, so
+     * one transformer should be used for all the intervals of a test series. Not thread safe.
+     */
+    private class IntervalTransformer {
+
+        private final ACF acf = new ACF();
+        private final FastFourierTransformer fastFFT = new FastFourierTransformer(DftNormalization.STANDARD);
+        private double[] psSeries = new double[0];
+        private double[] psReal = new double[0];
+        private double[] psImag = new double[0];
+        private org.apache.commons.math3.complex.Complex[] fftBuffer = new org.apache.commons.math3.complex.Complex[0];
+
+        IntervalTransformer(){
+            acf.setNormalized(false);
+        }
+
+        double[] transform(double[] interval, TransformType transformType){
+            switch(transformType){
+                case ACF:
+                    return acf(interval);
+                case PS:
+                    return powerSpectrum(interval);
+                case FFT:
+                    return fft(interval);
+                case ACF_PS:
+                    return concatenate(powerSpectrum(interval), acf(interval));
+                case ACF_FFT:
+                    return concatenate(fft(interval), acf(interval));
+                case ACF_PS_AR:
+                    return concatenate(concatenate(powerSpectrum(interval), acf(interval)), ar(interval));
+                default:
+                    throw new IllegalArgumentException("Transform " + transformType + " is not supported for intervals");
+            }
+        }
+
+        //As ACF with no normalisation, lags capped to ignore the end terms
+        private double[] acf(double[] interval){
+            int maxLag = ACF.DEFAULT_MAXLAG;
+            if (maxLag > interval.length - 4)
+                maxLag = interval.length - 4;
+            if (maxLag < 0)
+                maxLag = interval.length;
+            acf.setMaxLag(maxLag);
+            double[] autoCorr = acf.fitAutoCorrelations(interval);
+            for (int i = 0; i < autoCorr.length; i++)
+                if (autoCorr[i] < -1.0 || autoCorr[i] > 1 || Double.isNaN(autoCorr[i]) || Double.isInfinite(autoCorr[i]))
+                    autoCorr[i] = 0;
+            return autoCorr;
+        }
+
+        //As PowerSpectrum using the padded FFT filter
+        private double[] powerSpectrum(double[] interval){
+            int fullLength = interval.length;
+            if (!FFT.MathsPower2.isPow2(fullLength)) {
+                fullLength = (int)FFT.MathsPower2.roundPow2((float)interval.length);
+                if (fullLength < interval.length)
+                    fullLength *= 2;
+            }
+            if (psSeries.length != fullLength) {
+                psSeries = new double[fullLength];
+                psReal = new double[fullLength];
+                psImag = new double[fullLength];
+            }
+
+            int count = 0;
+            double seriesTotal = 0;
+            for (int i = 0; i < interval.length && count < fullLength; i++) {
+                psSeries[count++] = interval[i];
+                seriesTotal += interval[i];
+            }
+            double mean = seriesTotal / count;
+            while (count < fullLength)
+                psSeries[count++] = mean;
+            FFT.getPlan(fullLength).realTransform(psSeries, psReal, psImag);
+
+            double[] ps = new double[fullLength / 2];
+            for (int i = 0; i < ps.length; i++)
+                ps[i] = Math.sqrt(psReal[i] * psReal[i] + psImag[i] * psImag[i]);
+            return ps;
+        }
+
+        //As Fast_FFT with nfft twice the nearest power of two, padded with the mean
+        private double[] fft(double[] interval){
+            int nfft = (int)FFT.MathsPower2.roundPow2(interval.length) * 2;
+            if (fftBuffer.length != nfft)
+                fftBuffer = new org.apache.commons.math3.complex.Complex[nfft];
+
+            double mean = 0;
+            if (interval.length < nfft) {
+                for (int i = 0; i < interval.length; i++)
+                    mean += interval[i];
+                mean /= interval.length;
+            }
+            for (int i = 0; i < nfft; i++)
+                fftBuffer[i] = new org.apache.commons.math3.complex.Complex(i < interval.length ? interval[i] : mean, 0);
+            org.apache.commons.math3.complex.Complex[] transformed =
+                    fastFFT.transform(fftBuffer, org.apache.commons.math3.transform.TransformType.FORWARD);
+
+            double[] magnitudes = new double[nfft / 2];
+            for (int i = 0; i < magnitudes.length; i++)
+                magnitudes[i] = transformed[i].abs();
+            return magnitudes;
+        }
+
+        //As ARMA without AIC, max lag as getMaxLag
+        private double[] ar(double[] interval){
+            int maxLag = Math.min(interval.length / 4, DEFAULT_MAXLAG);
+            if (maxLag > interval.length)
+                maxLag = interval.length;
+            double[] autos = ACF.fitAutoCorrelations(interval, maxLag);
+            double[][] partials = PACF.formPartials(autos);
+            double[] pi = new double[maxLag];
+            for (int i = 0; i < maxLag; i++)
+                pi[i] = partials[i][maxLag - 1];
+            return pi;
+        }
+
+        private double[] concatenate(double[] a, double[] b){
+            double[] c = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, c, a.length, b.length);
+            return c;
+        }
+    }
+
     /**
      * Method returning all classifier parameters as a string.
      * for EnhancedAbstractClassifier. General format:
@@ -19,8 +19,13 @@ package tsml.classifiers.hybrids;
 
 import evaluation.evaluators.CrossValidationEvaluator;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import evaluation.evaluators.Evaluator;
+import evaluation.evaluators.MultiSamplingEvaluator;
+import evaluation.storage.ClassifierResults;
 import evaluation.tuning.ParameterSpace;
 import machine_learning.classifiers.ensembles.AbstractEnsemble;
 import tsml.classifiers.EnhancedAbstractClassifier;
@@ -72,6 +77,9 @@ public class HIVE_COTE extends AbstractEnsemble implements TechnicalInformationH
      */
     protected final double BASE_CLASSIFIER_CONTRACT_PROP = 0.99; //if e.g 1 day contract, 864 seconds grace time
     
+    //shares the contract between the modules while they are built, made in setupContracting
+    protected transient ContractSchedule contractSchedule;
+    
     
     
     @Override
@@ -241,22 +249,17 @@ public class HIVE_COTE extends AbstractEnsemble implements TechnicalInformationH
 
 
     /**
-     * Will split time given evenly among the contractable base classifiers. 
-     * 
-     * This is currently very naive, and likely innaccurate. Consider these TODOs
+     * Sets the contract for building the whole ensemble. Rather than splitting the time evenly up front, each 
+     * module is given its share of the time left when it starts, see ContractSchedule, so time saved by modules 
+     * that finish early goes to the modules still to be built.
      * 
-     *  1) If there are any non-contractable base classifiers, these are ignored in 
-     *      the contract setting. The full time is allocated among the contractable 
-     *      base classifiers, instead of trying to do any wonky guessing of how long the 
-     *      non-contractable ones might take
-     *  2) Currently, generating accuracy estimates is not considered in the contract.
-     *      If there are any non-TrainAccuracyEstimating classifiers, the estimation procedure (e.g.
-     *      a 10fold cv) will very likely overshoot the contract, since the classifier would be
-     *      trying to keep to contract on each fold and the full build individually, not in total. 
-     *      This is an active research question moreso than an implementation question
-     *  3) The contract currently does not consider whether the ensemble is being threaded,
-     *      i.e. even if it can run the building of two or more classifiers in parallel, 
-     *      this will still naively set the contract per classifier as amount/numClassifiers
+     *  1) Non-contractable base classifiers are built first, and the contractable base classifiers share the 
+     *      time they leave. The ensemble will overshoot the contract if they alone take longer than it
+     *  2) Modules that do not estimate their own accuracy are built once per fold of the trainEstimator and 
+     *      once more on the full data, each build keeping to that share of the module's time
+     *  3) When the ensemble is threaded, modules are built in parallel, one per thread, and the time left is 
+     *      shared as processor time over the threads, never giving a module more than the wall clock time left
+     *  4) A base classifier is only given its contract as it starts, it cannot be extended once building
      */
     @Override //TrainTimeContractable
     public void setTrainTimeLimit(long amount) {
@@ -267,39 +270,110 @@ public class HIVE_COTE extends AbstractEnsemble implements TechnicalInformationH
     
     /**
      * Sets up the ensemble for contracting, to be called at the start of build classifier,
-     * i.e. when parameters can no longer be changed.
+     * i.e. when parameters can no longer be changed. Starts the clock on the contract.
      */
     protected void setupContracting() {
-        //splits the ensemble contract time between this many classifiers
-        int numContractableClassifiers = 0; 
-        
-        //in future, the number of classifiers we need to separately eval and custom-contract for
-        int numNonTrainEstimatingClassifiers = 0; 
-        
         for (EnsembleModule module : modules) {
-            if(module.isTrainTimeContractable())
-                numContractableClassifiers++;
-            else 
-                System.out.println("WARNING: trying to contract " + ensembleName + ", but base classifier " + module.getModuleName() + " is not contractable, "
-                        + "and is therefore not considered in the contract. The ensemble as a whole will very likely not meet the contract.");
-            
-            if(!module.isAbleToEstimateOwnPerformance()) {
-                numNonTrainEstimatingClassifiers++;
-                System.out.println("WARNING: trying to contract " + ensembleName + ", but base classifier " + module.getModuleName() + " does not estimate its own accuracy. "
-                        + "Performing a separate evaluation on the train set currently is not considered in the contract, and therefore the ensemble as a whole will very "
-                        + "likely not meet the contract.");
-            }
+            if(!module.isTrainTimeContractable())
+                System.out.println("WARNING: trying to contract " + ensembleName + ", but base classifier " + module.getModuleName() + " is not contractable. "
+                        + "It will be built first and the contractable base classifiers given the time it leaves.");
         }
 
         //force nanos in setting base classifier contracts in case e.g. 1 hour was passed, 1/5 = 0...
-        TimeUnit highFidelityUnit = TimeUnit.NANOSECONDS;
-        long conservativeBaseClassifierContract = (long) (BASE_CLASSIFIER_CONTRACT_PROP * highFidelityUnit.convert(trainContractTimeNanos, contractTrainTimeUnit));
-        long highFidelityTimePerClassifier = (conservativeBaseClassifierContract) / numContractableClassifiers;
+        long conservativeBaseClassifierContract = (long) (BASE_CLASSIFIER_CONTRACT_PROP * TimeUnit.NANOSECONDS.convert(trainContractTimeNanos, contractTrainTimeUnit));
+        int slots = multiThread ? Math.min(numThreads, modules.length) : 1;
+        //if the contract has been overrun by the time a module starts, it still gets a share of the grace time to build something
+        long minShare = (TimeUnit.NANOSECONDS.convert(trainContractTimeNanos, contractTrainTimeUnit) - conservativeBaseClassifierContract) / modules.length;
+        contractSchedule = new ContractSchedule(System.nanoTime() + conservativeBaseClassifierContract, slots, modules.length, minShare);
         printLineDebug(" Setting up contract\nTotal Contract = "+trainContractTimeNanos/1000000000+" Secs");
-        printLineDebug(" Per Classifier = "+highFidelityTimePerClassifier+" Nanos");
-        for (EnsembleModule module : modules)
-            if(module.isTrainTimeContractable())
-                ((TrainTimeContractable) module.getClassifier()).setTrainTimeLimit(highFidelityUnit, highFidelityTimePerClassifier);
+        printLineDebug(" Base classifiers share "+conservativeBaseClassifierContract+" Nanos over "+slots+" threads");
+    }
+    
+    /**
+     * Non-contractable modules first, so the time they take is known when sharing out the rest
+     */
+    @Override
+    protected int[] moduleTrainOrder() {
+        int[] order = super.moduleTrainOrder();
+        if (!trainTimeContract)
+            return order;
+        
+        int count = 0;
+        for (int i = 0; i < modules.length; i++)
+            if (!modules[i].isTrainTimeContractable())
+                order[count++] = i;
+        for (int i = 0; i < modules.length; i++)
+            if (modules[i].isTrainTimeContractable())
+                order[count++] = i;
+        return order;
+    }
+    
+    @Override
+    protected ClassifierResults trainModule(EnsembleModule module, Evaluator eval) throws Exception {
+        if (!trainTimeContract)
+            return super.trainModule(module, eval);
+        
+        long share = contractSchedule.start(module);
+        long startTime = System.nanoTime();
+        try {
+            if (module.isTrainTimeContractable()) {
+                //separately estimating accuracy means building once per fold as well as on the full data
+                int numBuilds = 1;
+                if (!module.isEstimatingOwnPerformance())
+                    numBuilds += trainEstimator instanceof MultiSamplingEvaluator ? ((MultiSamplingEvaluator) trainEstimator).getNumFolds() : 1;
+                long contract = Math.max(1, share / numBuilds);
+                printLineDebug(" " + module.getModuleName() + " given " + share + " Nanos, " + contract + " Nanos per build");
+                ((TrainTimeContractable) module.getClassifier()).setTrainTimeLimit(TimeUnit.NANOSECONDS, contract);
+            }
+            return super.trainModule(module, eval);
+        }
+        finally {
+            contractSchedule.finish(module);
+            printLineDebug(" " + module.getModuleName() + " built in " + (System.nanoTime() - startTime) + " Nanos");
+        }
+    }
+    
+    /**
+     * Shares the time left in the contract between the modules as each one starts. The time left is counted over 
+     * all threads, less the time still expected to be used by modules already running, and split evenly between 
+     * the modules yet to start. A module that finishes early stops counting against the time left, so the time it 
+     * saved is shared by those that start later. No module is given less than the minimum share, even once the 
+     * contract has been overrun.
+     */
+    protected static class ContractSchedule {
+        private final long deadline;
+        private final int slots;
+        private final long minShare;
+        private int numWaiting;
+        private final Map<EnsembleModule, Long> expectedFinishes = new HashMap<>();
+        
+        public ContractSchedule(long deadline, int slots, int numModules, long minShare) {
+            this.deadline = deadline;
+            this.slots = slots;
+            this.numWaiting = numModules;
+            this.minShare = minShare;
+        }
+        
+        /**
+         * @return the time in nanos the module should be built in
+         */
+        public synchronized long start(EnsembleModule module) {
+            long now = System.nanoTime();
+            long left = Math.max(0, deadline - now);
+            long committed = 0;
+            for (long finish : expectedFinishes.values())
+                committed += Math.max(0, finish - now);
+            
+            long share = Math.min(left, Math.max(0, slots * left - committed) / Math.max(1, numWaiting));
+            share = Math.max(share, minShare);
+            numWaiting--;
+            expectedFinishes.put(module, now + share);
+            return share;
+        }
+        
+        public synchronized void finish(EnsembleModule module) {
+            expectedFinishes.remove(module);
+        }
     }
     
     @Override   //EnhancedAbstractClassifier
@@ -34,8 +34,12 @@ import weka.core.Instances;
 import weka.core.TechnicalInformation;
 import evaluation.tuning.ParameterSpace;
 import experiments.data.DatasetLoading;
+import utilities.ThreadingUtilities;
 
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -117,7 +121,7 @@ import weka.core.Utils;
 **/
  
 public class TSF extends EnhancedAbstractClassifier implements TechnicalInformationHandler,
-        TrainTimeContractable, Checkpointable, Tuneable , Visualisable{
+        TrainTimeContractable, Checkpointable, Tuneable , Visualisable, MultiThreadable{
 //Static defaults
      
     private final static int DEFAULT_NUM_CLASSIFIERS=500;
@@ -151,6 +155,11 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
      * probabilities when predicting */
     private boolean voteEnsemble=true;
 
+    /** Whether interval features are found in constant time from the cumulative sums of each series rather than
+     * by summing over the interval. The features then differ from the direct sums by rounding, so off by default
+     * to keep seeded results the same */
+    private boolean cumulativeSumFeatures=false;
+
     /** Flags and data required if Bagging **/
     private boolean bagging=false; //Use if we want an OOB estimate
     private ArrayList<boolean[]> inBag;
@@ -195,6 +204,11 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
 
     private String visSavePath;
 
+    /** Trees are built in parallel when multithreading, prediction is safe to call from several threads regardless */
+    private boolean multiThread = false;
+    private int numThreads = 1;
+    private transient ExecutorService ex;
+
     public TSF(){
         //TSF Has the capability to form train estimates
         super(CAN_ESTIMATE_OWN_PERFORMANCE);
@@ -225,6 +239,16 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
         voteEnsemble=!b;
     }
 
+    /**
+     * Find interval features from the cumulative sums of each series, in constant time per interval rather than
+     * linear in its length. Worthwhile for long series, but the features (and so the trees) differ from the default
+     * by rounding, so seeded results are not those of the default build.
+     * @param b whether to use cumulative sum features
+     */
+    public void setCumulativeSumFeatures(boolean b){
+        cumulativeSumFeatures=b;
+    }
+
     /**
      * Perhaps make this coherent with setOptions(String[] ar)?
      * @return String written to results files
@@ -239,6 +263,9 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
             result+=",NoContract";
 //Any other contract information here
 
+        if(cumulativeSumFeatures)
+            result+=",CumulativeSumFeatures,true";
+
         result+=",EstimateOwnPerformance,"+getEstimateOwnPerformance();
         if(getEstimateOwnPerformance())
             result+=",EstimateMethod,"+estimator;
@@ -248,6 +275,30 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
     public void setNumTrees(int t){
         numClassifiers=t;
     }
+
+    private ExecutorService getExecutor() {
+        //the pool's worker threads are daemons and time out when idle so the pool does not need shutting down
+        if (ex == null) ex = new ForkJoinPool(numThreads);
+        return ex;
+    }
+
+    @Override //MultiThreadable
+    public void enableMultiThreading(int numThreads) {
+        int previousNumThreads = this.numThreads;
+        if (numThreads > 1) {
+            this.numThreads = numThreads;
+            multiThread = true;
+        }
+        else{
+            this.numThreads = 1;
+            multiThread = false;
+        }
+        //the pool is kept unless its size changes
+        if (ex != null && this.numThreads != previousNumThreads) {
+            ex.shutdown();
+            ex = null;
+        }
+    }
      
      
 //<editor-fold defaultstate="collapsed" desc="results reported in Info Sciences paper">        
@@ -437,99 +488,105 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
         for(int j=0;j<target.numValues();j++)
             vals.add(target.value(j));
         atts.add(new Attribute(data.attribute(data.classIndex()).name(),vals));
-        //create blank instances with the correct class value                
-        Instances result = new Instances("Tree",atts,data.numInstances());
-        result.setClassIndex(result.numAttributes()-1);
-        for(int i=0;i<data.numInstances();i++){
-            DenseInstance in=new DenseInstance(result.numAttributes());
-            in.setValue(result.numAttributes()-1,data.instance(i).classValue());
-            result.add(in);
-        }
-         
-        testHolder =new Instances(result,0);       
-        DenseInstance in=new DenseInstance(result.numAttributes());
+        //blank instances with the correct format, each tree's transformed data is added to a copy
+        Instances header = new Instances("Tree",atts,0);
+        header.setClassIndex(header.numAttributes()-1);
+
+        testHolder =new Instances(header,0);
+        DenseInstance in=new DenseInstance(header.numAttributes());
         testHolder.add(in);
+
+        //each series is read once, with its cumulative sums if the features of an interval are found from them
+        double[][] series=new double[data.numInstances()][];
+        IntervalSums[] sums=cumulativeSumFeatures ? new IntervalSums[data.numInstances()] : null;
+        for(int k=0;k<data.numInstances();k++){
+            series[k]=data.instance(k).toDoubleArray();
+            if(cumulativeSumFeatures)
+                sums[k]=new IntervalSums(series[k], data.numAttributes()-1);
+        }
 //Need to hard code this because log(m)+1 is sig worse than sqrt(m) is worse than using all!
 
         int classifiersBuilt = trees.size();
+        if (data.numAttributes() - 1 < minIntervalLength)
+            minIntervalLength = data.numAttributes() - 1;
+
+        //a row per case holding its index, bags are drawn from this so they can be drawn before the features exist
+        Instances bagIndices=null;
+        if(bagging){
+            ArrayList<Attribute> indexAtts=new ArrayList<>();
+            indexAtts.add(new Attribute("index"));
+            bagIndices=new Instances("Bag",indexAtts,data.numInstances());
+            for(int k=0;k<data.numInstances();k++)
+                bagIndices.add(new DenseInstance(1.0,new double[]{k}));
+        }
 
         /** For each base classifier
          *      generate random intervals
          *      do the transfrorms
          *      build the classifier
+         * The intervals and bags are drawn from rand in tree order, as a one at a time build always has, so the trees
+         * are the same whether built one at a time or in parallel. When multithreading, a batch of numThreads trees
+         * is built at once and the contract is checked between batches.
          * */
         while(withinTrainContract(startTime) && (classifiersBuilt < numClassifiers)){
-            if(classifiersBuilt%100==0)
-                printLineDebug("\t\t\t\t\tBuilding TSF tree "+classifiersBuilt+" time taken = "+(System.nanoTime()-startTime)+" contract ="+trainContractTimeNanos+" nanos");
-
-            //1. Select random intervals for tree i
-            int[][] interval =new int[numIntervals][2];  //Start and end
-
-            if (data.numAttributes() - 1 < minIntervalLength)
-                minIntervalLength = data.numAttributes() - 1;
-            for (int j = 0; j < numIntervals; j++) {
-                interval[j][0] = rand.nextInt(data.numAttributes() - 1 - minIntervalLength);       //Start point
-                int length = rand.nextInt(data.numAttributes() - 1 - interval[j][0]);//Min length 3
-                if (length < minIntervalLength)
-                    length = minIntervalLength;
-                interval[j][1] = interval[j][0] + length;
-            }
-
-            //2. Generate and store attributes
-            for(int j=0;j<numIntervals;j++){
-                //For each instance
-                for(int k=0;k<data.numInstances();k++){
-                    //extract the interval
-                    double[] series=data.instance(k).toDoubleArray();
-                    FeatureSet f= new FeatureSet();
-                    f.setFeatures(series, interval[j][0], interval[j][1]);
-                    result.instance(k).setValue(j*3, f.mean);
-                    result.instance(k).setValue(j*3+1, f.stDev);
-                    result.instance(k).setValue(j*3+2, f.slope);
+            int batchSize=multiThread ? Math.min(numThreads, numClassifiers-classifiersBuilt) : 1;
+            final int firstTree=classifiersBuilt;
+            final TreeBuild[] built=new TreeBuild[batchSize];
+            for(int i=0;i<batchSize;i++){
+                built[i]=new TreeBuild();
+                //1. Select random intervals for tree i
+                built[i].interval=selectIntervals(data);
+                if(bagging){
+                    built[i].bag=new boolean[data.numInstances()];
+                    Instances sample=bagIndices.resampleWithWeights(rand, built[i].bag);
+                    built[i].bagSample=new int[sample.numInstances()];
+                    for(int j=0;j<sample.numInstances();j++)
+                        built[i].bagSample[j]=(int)sample.instance(j).value(0);
                 }
             }
-            //3. Create and build tree using all the features.
-            Classifier tree = AbstractClassifier.makeCopy(classifier);
-            if(seedClassifier && tree instanceof Randomizable)
-                ((Randomizable)tree).setSeed(seed*(classifiersBuilt+1));
 
-            if(bagging){
-                boolean[] bag = new boolean[result.numInstances()];
-                Instances bagData = result.resampleWithWeights(rand, bag);
-                tree.buildClassifier(bagData);
-                if(getEstimateOwnPerformance()){
-                    for(int j=0;j<result.numInstances();j++){
-                        if(bag[j])
-                            continue;
-                        double[] newProbs = tree.distributionForInstance(result.instance(j));
-                        oobCounts[j]++;
-                        for(int k=0;k<newProbs.length;k++)
-                            trainDistributions[j][k]+=newProbs[k];
-                         
-                    }
-                }
-                inBag.add(bag);
-            }
+            if(multiThread)
+                ThreadingUtilities.parallelFor(getExecutor(), batchSize, batchSize,
+                        i -> buildTree(data, series, sums, header, firstTree+i, built[i]));
             else
-                tree.buildClassifier(result);
-
-            intervals.add(interval);
-            trees.add(tree);
-            classifiersBuilt++;
-
-            if (checkpoint){
-                if(checkpointTime>0)    //Timed checkpointing
-                {
-                    if(System.nanoTime()-lastCheckpointTime>checkpointTime){
-                        saveToFile(checkpointPath);
-//                        checkpoint(startTime);
-                        lastCheckpointTime=System.nanoTime();
+                buildTree(data, series, sums, header, firstTree, built[0]);
+
+            //add the trees in order, so the OOB sums are always found in the same order
+            for(TreeBuild b:built){
+                if(classifiersBuilt%100==0)
+                    printLineDebug("\t\t\t\t\tBuilt TSF tree "+classifiersBuilt+" time taken = "+(System.nanoTime()-startTime)+" contract ="+trainContractTimeNanos+" nanos");
+
+                if(bagging){
+                    if(getEstimateOwnPerformance()){
+                        for(int j=0;j<data.numInstances();j++){
+                            if(b.bag[j])
+                                continue;
+                            oobCounts[j]++;
+                            for(int k=0;k<b.oobDistributions[j].length;k++)
+                                trainDistributions[j][k]+=b.oobDistributions[j][k];
+                        }
                     }
+                    inBag.add(b.bag);
                 }
-                else {    //Default checkpoint every 100 trees
-                    if(classifiersBuilt%100 == 0 && classifiersBuilt>0)
-                        saveToFile(checkpointPath);
-//                        checkpoint(startTime);
+
+                intervals.add(b.interval);
+                trees.add(b.tree);
+                classifiersBuilt++;
+
+                if (checkpoint){
+                    if(checkpointTime>0)    //Timed checkpointing
+                    {
+                        if(System.nanoTime()-lastCheckpointTime>checkpointTime){
+                            saveToFile(checkpointPath);
+//                            checkpoint(startTime);
+                            lastCheckpointTime=System.nanoTime();
+                        }
+                    }
+                    else {    //Default checkpoint every 100 trees
+                        if(classifiersBuilt%100 == 0 && classifiersBuilt>0)
+                            saveToFile(checkpointPath);
+//                            checkpoint(startTime);
+                    }
                 }
             }
         }
@@ -547,6 +604,75 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
         printLineDebug("*************** Finished TSF Build with "+classifiersBuilt+" Trees built in "+(System.nanoTime()-startTime)/1000000000+" Seconds  ***************");
     }
 
+    //A single tree with its intervals, and if bagging its bag, the cases sampled and out of bag distributions
+    private static class TreeBuild{
+        int[][] interval;
+        Classifier tree;
+        boolean[] bag;
+        int[] bagSample;
+        double[][] oobDistributions;
+    }
+
+    private int[][] selectIntervals(Instances data){
+        int[][] interval =new int[numIntervals][2];  //Start and end
+        for (int j = 0; j < numIntervals; j++) {
+            interval[j][0] = rand.nextInt(data.numAttributes() - 1 - minIntervalLength);       //Start point
+            int length = rand.nextInt(data.numAttributes() - 1 - interval[j][0]);//Min length 3
+            if (length < minIntervalLength)
+                length = minIntervalLength;
+            interval[j][1] = interval[j][0] + length;
+        }
+        return interval;
+    }
+
+    /**
+     * Builds tree number treeNum on the intervals, and if bagging the sample, already drawn into b. Uses no shared
+     * randomness, so is safe to call from several threads at once.
+     */
+    private void buildTree(Instances data, double[][] series, IntervalSums[] sums, Instances header, int treeNum,
+            TreeBuild b) throws Exception {
+        int[][] interval=b.interval;
+
+        //2. Generate and store attributes
+        Instances result = new Instances(header, data.numInstances());
+        FeatureSet f= new FeatureSet();
+        for(int k=0;k<data.numInstances();k++){
+            double[] features=new double[header.numAttributes()];
+            for(int j=0;j<numIntervals;j++){
+                setFeatures(f, series[k], sums==null ? null : sums[k], interval[j][0], interval[j][1]);
+                features[j*3]=f.mean;
+                features[j*3+1]=f.stDev;
+                features[j*3+2]=f.slope;
+            }
+            features[header.numAttributes()-1]=data.instance(k).classValue();
+            result.add(new DenseInstance(1.0,features));
+        }
+        //3. Create and build tree using all the features.
+        Classifier tree = AbstractClassifier.makeCopy(classifier);
+        if(seedClassifier && tree instanceof Randomizable)
+            ((Randomizable)tree).setSeed(seed*(treeNum+1));
+
+        if(bagging){
+            //the same cases in the same order as result.resampleWithWeights(rand, bag) would give
+            Instances bagData = new Instances(result, b.bagSample.length);
+            for(int k:b.bagSample)
+                bagData.add(result.instance(k));
+            tree.buildClassifier(bagData);
+            if(getEstimateOwnPerformance()){
+                b.oobDistributions=new double[result.numInstances()][];
+                for(int j=0;j<result.numInstances();j++){
+                    if(b.bag[j])
+                        continue;
+                    b.oobDistributions[j] = tree.distributionForInstance(result.instance(j));
+                }
+            }
+        }
+        else
+            tree.buildClassifier(result);
+
+        b.tree=tree;
+    }
+
     private void estimateOwnPerformance(Instances data) throws Exception {
         if(bagging){
             // Use bag data, counts normalised to probabilities
@@ -625,10 +751,21 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
     private void copyParameters(TSF other){
         this.numClassifiers=other.numClassifiers;
         this.numIntervalsFinder=other.numIntervalsFinder;
+        this.cumulativeSumFeatures=other.cumulativeSumFeatures;
+        this.multiThread=other.multiThread;
+        this.numThreads=other.numThreads;
 //        this.trainTimeContract=other.trainTimeContract;
 //        this.trainContractTimeNanos=other.trainContractTimeNanos;
     }
 
+    //the features of an interval, from the cumulative sums if given, otherwise summed directly from the series
+    private static void setFeatures(FeatureSet f, double[] series, IntervalSums sums, int start, int end){
+        if(sums!=null)
+            f.setFeatures(sums, start, end);
+        else
+            f.setFeatures(series, start, end);
+    }
+
 /**
  * @param ins to classifier
  * @return array of doubles: probability of each class 
@@ -639,20 +776,24 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
         double[] d=new double[ins.numClasses()];
         //Build transformed instance
         double[] series=ins.toDoubleArray();
+        IntervalSums sums=cumulativeSumFeatures ? new IntervalSums(series, ins.numAttributes()-1) : null;
+        FeatureSet f= new FeatureSet();
         for(int i=0;i<trees.size();i++){
+            double[] features=new double[testHolder.numAttributes()];
             for(int j=0;j<numIntervals;j++){
                 //extract all intervals
-                FeatureSet f= new FeatureSet();
-                f.setFeatures(series, intervals.get(i)[j][0], intervals.get(i)[j][1]);
-                testHolder.instance(0).setValue(j*3, f.mean);
-                testHolder.instance(0).setValue(j*3+1, f.stDev);
-                testHolder.instance(0).setValue(j*3+2, f.slope);
+                setFeatures(f, series, sums, intervals.get(i)[j][0], intervals.get(i)[j][1]);
+                features[j*3]=f.mean;
+                features[j*3+1]=f.stDev;
+                features[j*3+2]=f.slope;
             }
+            DenseInstance transformed=new DenseInstance(1.0,features);
+            transformed.setDataset(testHolder);
             if(voteEnsemble){
-                int c=(int)trees.get(i).classifyInstance(testHolder.instance(0));
+                int c=(int)trees.get(i).classifyInstance(transformed);
                 d[c]++;
             }else{
-                double[] temp=trees.get(i).distributionForInstance(testHolder.instance(0));
+                double[] temp=trees.get(i).distributionForInstance(transformed);
                 for(int j=0;j<temp.length;j++)
                     d[j]+=temp[j];
             }
@@ -771,6 +912,7 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
             intervals = saved.intervals;
             //testHolder = saved.testHolder;
             voteEnsemble = saved.voteEnsemble;
+            cumulativeSumFeatures = saved.cumulativeSumFeatures;
             bagging = saved.bagging;
             inBag = saved.inBag;
             oobCounts = saved.oobCounts;
@@ -882,12 +1024,74 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
         public void setFeatures(double[] data){
             setFeatures(data,0,data.length-1);
         }
+        /**
+         * Finds the mean, variance and slope of the interval from the cumulative sums of the series in constant time.
+         * Skew and kurtosis are not found. Features agree with setFeatures(double[],int,int) up to rounding, except
+         * that flat intervals are detected exactly and slopes within rounding error of zero are taken to be zero.
+         */
+        public void setFeatures(IntervalSums sums, int start, int end){
+            int length=end-start+1;
+            double sumY=sums.sumY[end+1]-sums.sumY[start];
+            double sumYY=sums.sumYY[end+1]-sums.sumYY[start];
+            //index sums measured from the start of the interval, as in setFeatures(double[],int,int)
+            double sumXY=sums.sumTY[end+1]-sums.sumTY[start]-start*sumY;
+            double sumX=length*(length-1)/2.0;
+            double sumXX=(length-1)*length*(2.0*length-1)/6.0;
+            mean=sumY/length;
+            if(sums.flatEnd[start]>=end){    //Flat line
+                stDev=0;
+                slope=0;
+                return;
+            }
+            //the differences of the sums can round the variance of a near flat interval slightly below zero
+            stDev=Math.max(0,(sumYY-(sumY*sumY)/length)/length);
+            slope=(sumXY-(sumX*sumY)/length);
+            //differences of the cumulative sums carry their rounding error, slopes within it are taken to be zero
+            if(Math.abs(slope)<=1e-12*(end+1)*sums.sumAbsY[end+1])
+                slope=0;
+            double denom=sumXX-(sumX*sumX)/length;
+            if(denom!=0)
+                slope/=denom;
+            else
+                slope=0;
+            if(stDev==0)
+                slope=0;
+            if(slope==0)
+                stDev=0;
+        }
         @Override
         public String toString(){
             return "mean="+mean+" stdev = "+stDev+" slope ="+slope;
         }
     }
 
+//Nested class to store the cumulative sums of a series, used to find the features of an interval in constant time
+    public static class IntervalSums{
+        //sums of the values, squared values and index times values of data[0] to data[i-1]
+        double[] sumY;
+        double[] sumYY;
+        double[] sumTY;
+        //sums of the absolute values, bounding the rounding error of the other sums
+        double[] sumAbsY;
+        //the last index of the run of equal values which starts at i
+        int[] flatEnd;
+        public IntervalSums(double[] data, int length){
+            sumY=new double[length+1];
+            sumYY=new double[length+1];
+            sumTY=new double[length+1];
+            sumAbsY=new double[length+1];
+            flatEnd=new int[length];
+            for(int i=0;i<length;i++){
+                sumY[i+1]=sumY[i]+data[i];
+                sumYY[i+1]=sumYY[i]+data[i]*data[i];
+                sumTY[i+1]=sumTY[i]+data[i]*i;
+                sumAbsY[i+1]=sumAbsY[i]+Math.abs(data[i]);
+            }
+            for(int i=length-1;i>=0;i--)
+                flatEnd[i]=(i<length-1 && data[i]==data[i+1]) ? flatEnd[i+1] : i;
+        }
+    }
+
     /**
      *TUNED TSF Classifiers. Method for interface Tuneable
      * Valid options are: <p/>
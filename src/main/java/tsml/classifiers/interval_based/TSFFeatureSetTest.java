@@ -0,0 +1,72 @@
+package tsml.classifiers.interval_based;
+
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the cumulative sum interval features of TSF against the features summed directly over the interval.
+ */
+public class TSFFeatureSetTest {
+
+    private static double[] randomWalk(Random random, int length) {
+        double[] series = new double[length];
+        for (int i = 1; i < length; i++)
+            series[i] = series[i - 1] + random.nextGaussian();
+        return series;
+    }
+
+    @Test
+    public void testCumulativeSumsMatchDirectSums() {
+        Random random = new Random(0);
+        TSF.FeatureSet direct = new TSF.FeatureSet();
+        TSF.FeatureSet cumulative = new TSF.FeatureSet();
+        for (int repeat = 0; repeat < 200; repeat++) {
+            double[] series = randomWalk(random, 10 + random.nextInt(500));
+            TSF.IntervalSums sums = new TSF.IntervalSums(series, series.length);
+            for (int interval = 0; interval < 20; interval++) {
+                int start = random.nextInt(series.length - 3);
+                int end = start + 2 + random.nextInt(series.length - start - 2);
+                direct.setFeatures(series, start, end);
+                cumulative.setFeatures(sums, start, end);
+                double scale = Math.max(1, Math.abs(direct.mean));
+                assertEquals(direct.mean, cumulative.mean, 1e-9 * scale);
+                assertEquals(direct.stDev, cumulative.stDev, 1e-9 * scale * scale);
+                assertEquals(direct.slope, cumulative.slope, 1e-9 * scale);
+            }
+        }
+    }
+
+    @Test
+    public void testFlatIntervals() {
+        double[] series = {1, 2, 0.1, 0.1, 0.1, 0.1, 0.1, 5, 3};
+        TSF.FeatureSet f = new TSF.FeatureSet();
+        f.setFeatures(new TSF.IntervalSums(series, series.length), 2, 6);
+        assertEquals(0.1, f.mean, 1e-15);
+        assertEquals(0, f.stDev, 0);
+        assertEquals(0, f.slope, 0);
+    }
+
+    @Test
+    public void testVarianceIsNeverNegative() {
+        // a large offset with a gentle trend, the variance from the differences of the sums rounds about zero
+        Random random = new Random(1);
+        TSF.FeatureSet f = new TSF.FeatureSet();
+        for (int repeat = 0; repeat < 100; repeat++) {
+            double[] series = new double[200];
+            double offset = 1e6 * (1 + random.nextDouble());
+            double trend = 1e-4 * random.nextDouble();
+            for (int i = 0; i < series.length; i++)
+                series[i] = offset + i * trend;
+            TSF.IntervalSums sums = new TSF.IntervalSums(series, series.length);
+            for (int start = 0; start < series.length - 3; start += 3) {
+                for (int end = start + 2; end < series.length; end += 5) {
+                    f.setFeatures(sums, start, end);
+                    assertTrue(f.stDev >= 0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package tsml.classifiers.interval_based;
+
+import experiments.data.DatasetLoading;
+import org.junit.Test;
+import weka.core.Instances;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks a seeded TSF gives the same forest whether the trees are built one at a time or in parallel.
+ */
+public class TSFTest {
+
+    private static TSF build(Instances train, int numThreads, boolean bagging) throws Exception {
+        TSF tsf = new TSF();
+        tsf.setSeed(0);
+        tsf.setNumTrees(50);
+        tsf.setBagging(bagging);
+        tsf.setEstimateOwnPerformance(bagging);
+        tsf.enableMultiThreading(numThreads);
+        tsf.buildClassifier(train);
+        return tsf;
+    }
+
+    private static void assertSameForest(boolean bagging) throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        TSF serial = build(data[0], 1, bagging);
+        TSF parallel = build(data[0], 4, bagging);
+        for (int i = 0; i < data[1].numInstances(); i++)
+            assertArrayEquals(serial.distributionForInstance(data[1].instance(i)),
+                    parallel.distributionForInstance(data[1].instance(i)), 0);
+        if (bagging)
+            assertEquals(serial.getTrainResults().getAcc(), parallel.getTrainResults().getAcc(), 0);
+    }
+
+    @Test
+    public void testParallelMatchesSerial() throws Exception {
+        assertSameForest(false);
+    }
+
+    @Test
+    public void testParallelMatchesSerialWithBagging() throws Exception {
+        assertSameForest(true);
+    }
+}
@@ -28,6 +28,7 @@ import evaluation.tuning.ParameterSpace;
 import experiments.data.DatasetLoading;
 import machine_learning.classifiers.ensembles.ContractRotationForest;
 import org.apache.commons.lang3.NotImplementedException;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.Tuneable;
 import utilities.InstanceTools;
 import weka.Run;
@@ -61,7 +62,7 @@ import fileIO.OutFile;
  * 
  */
 public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
-        implements TrainTimeContractable, Tuneable {
+        implements TrainTimeContractable, Tuneable, MultiThreadable {
     //Basic pipeline is transform, then build classifier on transformed space
     private ShapeletTransform transform;    //Configurable ST
    //Default to one hour
@@ -76,6 +77,9 @@ public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
     private ShapeletSearch.SearchType searchType = ShapeletSearch.SearchType.RANDOM;//FULL == enumeration, RANDOM =random sampled to train time cotnract
     /** Redundant features in the shapelet space are removed prior to building the classifier **/
     int[] redundantFeatures;
+    /** The transformed attributes kept after removing the redundant features, and the format of the kept data **/
+    private int[] keptFeatures;
+    private Instances keptHeader;
 
     /** PCA Option: not currently implemented, as it has not been debugged
     private boolean performPCA=false;
@@ -102,6 +106,12 @@ public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
     private double proportionToEvaluate=1;// Proportion of total num shapelets to evaluate based on time contract
     private long numShapeletsToEvaluate = 0; //Total num shapelets to evaluate over all cases (NOT per case)
     private long transformBuildTime=0;
+/**** Number of threads used to search for shapelets, 1 is single threaded *************/
+    private int numThreads=1;
+    @Override
+    public void enableMultiThreading(int numThreads) {
+        this.numThreads=numThreads;
+    }
     public void setTransformTime(long t){
         transformContractTime=t;
     }
@@ -125,6 +135,14 @@ public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
         this.pruneMatchingShapelets = pruneMatchingShapelets;
     }
 
+    /**
+     * @param type the distance used to transform the data by the final shapelets, e.g. MASS which finds the whole
+     * distance profile of a shapelet in one go. Null, the default, uses the search distance
+     */
+    public void setTransformDistanceType(ShapeletDistance.DistanceType type) {
+        transformOptions.setTransformDistanceType(type);
+    }
+
     /** If trainAccuracy is required, there are two mechanisms to obtain it:
      * 2. estimator=CV: do a 10x CV on the train set with a clone
      * of this classifier
@@ -219,6 +237,8 @@ public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
         printLineDebug("SECONDS:Transform contract =" +(transformContractTime /1000000000L)+" Actual transform time taken = " + (transformBuildTime / 1000000000L+" Proportion of contract used ="+((double)transformBuildTime/ transformContractTime)));
         printLineDebug(" Transform getParas  ="+transform.getParameters());
         redundantFeatures=InstanceTools.removeRedundantTrainAttributes(shapeletData);
+        keptFeatures=findKeptFeatures(shapeletData.numAttributes()+redundantFeatures.length,redundantFeatures);
+        keptHeader=new Instances(shapeletData,0);
         if(saveShapelets)
             saveShapeletData(data);
 
@@ -268,36 +288,49 @@ public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
 
     @Override
     public double classifyInstance(Instance ins) throws Exception{
-        shapeletData.add(ins);
+        return classifier.classifyInstance(transformInstance(ins));
+    }
+     @Override
+    public double[] distributionForInstance(Instance ins) throws Exception{
+        return classifier.distributionForInstance(transformInstance(ins));
+    }
 
-        Instances temp  = transform.transform(shapeletData);
-//Delete redundant
-        for(int del:redundantFeatures)
-            temp.deleteAttributeAt(del);
+    /**
+     * Transforms a test case by the shapelets and removes the redundant features. The transform works on the single
+     * instance so the test case is not added to any shared data, and so prediction can be done by several threads.
+     */
+    private Instance transformInstance(Instance ins){
+        if(ins.dataset()==null){
+            ins=(Instance)ins.copy();
+            ins.setDataset(shapeletData);
+        }
+        Instance transformed=transform.transform(ins);
 /*        if(performPCA){
             temp=pca.transform(temp);
         }
 */
-        Instance test  = temp.get(0);
-        shapeletData.remove(0);
-        return classifier.classifyInstance(test);
+        double[] values=new double[keptFeatures.length];
+        for(int i=0;i<keptFeatures.length;i++)
+            values[i]=transformed.value(keptFeatures[i]);
+        Instance test=new DenseInstance(1,values);
+        test.setDataset(keptHeader);
+        return test;
     }
-     @Override
-    public double[] distributionForInstance(Instance ins) throws Exception{
-        shapeletData.add(ins);
-        
-        Instances temp  = transform.transform(shapeletData);
-//Delete redundant
-        for(int del:redundantFeatures)
-            temp.deleteAttributeAt(del);
-/*         if(performPCA){
-             temp=pca.transform(temp);
-         }
-*/
-        Instance test  = temp.get(0);
-        shapeletData.remove(0);
 
-        return classifier.distributionForInstance(test);
+    /**
+     * The attributes left after deleting the redundant features in turn, as InstanceTools.removeRedundantTrainAttributes
+     * does
+     */
+    private static int[] findKeptFeatures(int numAttributes, int[] redundantFeatures){
+        List<Integer> kept=new ArrayList<>(numAttributes);
+        for(int i=0;i<numAttributes;i++)
+            kept.add(i);
+        for(int del:redundantFeatures)
+            kept.remove(del);
+        int[] keptFeatures=new int[kept.size()];
+        for(int i=0;i<keptFeatures.length;i++)
+            keptFeatures[i]=kept.get(i);
+        return keptFeatures;
     }
 
 
@@ -359,6 +392,7 @@ public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
         ShapeletTransform st = new ShapeletTransformFactory(transformOptions.build()).getTransform();
         if(saveShapelets && shapeletOutputPath != null)
             st.setLogOutputFile(shapeletOutputPath+"Workspace/"+data.relationName()+"/shapelets"+seed+".csv");
+        st.enableMultiThreading(numThreads);
         return st;
 
     }
@@ -13,7 +13,6 @@ import experiments.data.DatasetLoading;
 import weka.core.Instance;
 import weka.core.Instances;
 import tsml.filters.FFT;
-import tsml.filters.FFT.Complex;
 import static tsml.filters.FFT.MathsPower2;
 
 import static utilities.ClusteringUtilities.randIndex;
@@ -275,7 +274,6 @@ public class KShape extends AbstractTimeSeriesClusterer {
         public double dist;
         public Instance yShift;
         
-        private FFT fft;
 
         public SBD(){}
     
@@ -295,17 +293,21 @@ public class KShape extends AbstractTimeSeriesClusterer {
             int length = paddedLength(oldLength);
 
             //FFT and IFFT
-            fft = new FFT();
-                    
-            Complex[] firstC = fft(first, oldLength, length);
-            Complex[] secondC = fft(second, oldLengthY, length);
-            
+            FFT.Plan plan = FFT.getPlan(length);
+
+            double[] firstReal = new double[length], firstImag = new double[length];
+            double[] secondReal = new double[length], secondImag = new double[length];
+            fft(plan, first, oldLength, firstReal, firstImag);
+            fft(plan, second, oldLengthY, secondReal, secondImag);
+
+            //Multiply by the conjugate of the second
             for (int i = 0; i < length; i++){
-                secondC[i].conjugate();
-                firstC[i].multiply(secondC[i]);
+                double real = firstReal[i]*secondReal[i] + firstImag[i]*secondImag[i];
+                firstImag[i] = firstImag[i]*secondReal[i] - firstReal[i]*secondImag[i];
+                firstReal[i] = real;
             }
-            
-            fft.inverseFFT(firstC, length);
+
+            plan.inverse(firstReal, firstImag);
 
             //Calculate NCCc values
             double firstNorm = sumSquare(first);
@@ -316,11 +318,11 @@ public class KShape extends AbstractTimeSeriesClusterer {
             int idx = 0;
             
             for (int i = length-oldLength+1; i < length; i++){
-                ncc[idx++] = firstC[i].getReal()/norm;
+                ncc[idx++] = firstReal[i]/norm;
             }
             
             for (int i = 0; i < oldLength; i++){
-                ncc[idx++] = firstC[i].getReal()/norm;
+                ncc[idx++] = firstReal[i]/norm;
             }
             
             double maxValue = 0;
@@ -367,21 +369,15 @@ public class KShape extends AbstractTimeSeriesClusterer {
             return length;
         }
 
-        //Run FFT and return array of complex numbers
-        private Complex[] fft(Instance inst, int oldLength, int length){
-            Complex[] complex = new Complex[length];
-            
+        //Run FFT of the series padded with 0s
+        private void fft(FFT.Plan plan, Instance inst, int oldLength, double[] real, double[] imag){
+            double[] series = new double[real.length];
+
             for (int i = 0; i < oldLength; i++){
-                complex[i] = new Complex(inst.value(i), 0);
+                series[i] = inst.value(i);
             }
 
-            for (int i = oldLength; i < length; i++){
-                complex[i] = new Complex(0,0);
-            }
-            
-            fft.fft(complex, length);
-            
-            return complex;
+            plan.realTransform(series, real, imag);
         }
         
         private double sumSquare(Instance inst){
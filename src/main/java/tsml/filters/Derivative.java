@@ -37,14 +37,14 @@ public class Derivative
         return "der_";
     }
 
-    public static Derivative getGlobalInstance() {
+    public static synchronized Derivative getGlobalInstance() {
         if(INSTANCE == null) {
             INSTANCE = new Derivative();
         }
         return INSTANCE;
     }
 
-    public static CachedFilter getGlobalCache() {
+    public static synchronized CachedFilter getGlobalCache() {
         if(GLOBAL_CACHE == null) {
             GLOBAL_CACHE = new CachedFilter(getGlobalInstance());
         }
@@ -14,8 +14,8 @@
  */
 package tsml.filters;
 /* Performs a FFT of the data set. NOTE:
- * 1. If algorithm type is set to DFT, then this will only perform a FFT if the series is length power of 2.
- * otherwise it will perform the order m^2 DFT.
+ * 1. If algorithm type is set to DFT, then the transform is the full length of the series. Either way it is found
+ * by a Plan, a double precision radix-2 FFT for powers of 2 and Bluestein's algorithm otherwise, so is O(m log m).
  * 2. If algorithm type is set to FFT, then, if the length is not a powerr of 2, it either truncates or pads
  * (determined by the variable pad) with the mean the each series (i.e. each Instance)
  * so that the new length is power of 2 by flag pad (default true)
@@ -28,12 +28,16 @@ package tsml.filters;
 import weka.core.*;
 import weka.filters.SimpleBatchFilter;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 
 public class FFT extends SimpleBatchFilter {
 	/**
 	 *
 	 */
-	public enum AlgorithmType {DFT,FFT}    //If set to DFT, this will only perform a FFT if the series is length power of 2, otherwise resorts to DFT
+	public enum AlgorithmType {DFT,FFT}    //If set to DFT, this transforms the full length of the series, whatever it is
 	AlgorithmType algo=AlgorithmType.DFT;  //If set to FFT, this will pad (or truncate) series to the nearest power of 2
 	private static final long serialVersionUID = 1L;
 	private boolean pad=true;
@@ -160,39 +164,39 @@ public class FFT extends SimpleBatchFilter {
 		}
 //Get the length of the full complex series, which might be padded or truncated. 
 		int fullLength=findLength(instances);
+		Plan plan=getPlan(fullLength);
+		double[] real=new double[fullLength];
+		double[] imag=new double[fullLength];
 //For each data, first extract the relevant data
 //Note the transform will be at least twice as long as the original                
 //Length is the number of COMPLEX terms, which is HALF the length of the original series. 
 
 		for(int i=0;i<instances.numInstances();i++){
 
-//1. Get original series stored in a complex array. This may be padded or truncated
+//1. Get original series. This may be padded or truncated
 //depending on the original length. If DFT is being used, it is neither. 
-			Complex[] c=new Complex[fullLength];
+			double[] series=new double[fullLength];
 			int count=0;
 			double seriesTotal=0;
-			for(int j=0;j<originalLength&&count<c.length;j++){ //May cut off the trailing values
+			for(int j=0;j<originalLength&&count<series.length;j++){ //May cut off the trailing values
 				if(instances.classIndex()!=j){
-					c[count]=new Complex(instances.instance(i).value(j),0.0);
-					seriesTotal+=instances.instance(i).value(j);
+					series[count]=instances.instance(i).value(j);
+					seriesTotal+=series[count];
 					count++;
 				}
 			}
 //Add any Padding required  
 			double mean=seriesTotal/count;
-			while(count<c.length)
-				c[count++]=new Complex(mean,0);
-//2. Find FFT/DFT of series.	
-			if(algo==AlgorithmType.FFT)
-				fft(c,c.length);
-			else
-				c=dft(c);
+			while(count<series.length)
+				series[count++]=mean;
+//2. Find FFT/DFT of series. The plan does the exact DFT for any length, in O(n log n)
+			plan.realTransform(series,real,imag);
 //Extract out the terms and set the attributes.
 
-			Instance inst=new DenseInstance(c.length+1);
-			for(int j=0;j<c.length/2;j++){
-				inst.setValue(2*j, c[j].real);
-				inst.setValue(2*j+1, c[j].imag);
+			Instance inst=new DenseInstance(fullLength+1);
+			for(int j=0;j<fullLength/2;j++){
+				inst.setValue(2*j, real[j]);
+				inst.setValue(2*j+1, imag[j]);
 			}
 			//Set class value.
 			//Set class value.
@@ -205,36 +209,32 @@ public class FFT extends SimpleBatchFilter {
 	}
 
 	/**
-	 Perform a discrete fourier transform, O(n^2)
+	 Perform a discrete fourier transform, by the FFT plan for the length so O(n log n) whatever the length
 	 *
 	 */
 	public Complex[] dft(double[] series) {
 		int n=series.length;
+		double[] real=new double[n];
+		double[] imag=new double[n];
+		getPlan(n).realTransform(series,real,imag);
 		Complex[] dft=new Complex[n];
-		for (int k = 0; k < n; k++) {  // For each output element
-			float sumreal = 0;
-			float sumimag = 0;
-			for (int t = 0; t < series.length; t++) {  // For each input element
-				sumreal +=  series[t]*Math.cos(2*Math.PI * t * k / n);
-				sumimag += -series[t]*Math.sin(2*Math.PI * t * k / n);
-			}
-			dft[k]=new Complex(sumreal,sumimag);
-		}
+		for (int k = 0; k < n; k++)
+			dft[k]=new Complex(real[k],imag[k]);
 		return dft;
 
 	}
 	public Complex[] dft(Complex[] complex) {
 		int n=complex.length;
-		Complex[] dft=new Complex[n];
-		for (int k = 0; k < n; k++) {  // For each output element
-			float sumreal = 0;
-			float sumimag = 0;
-			for (int t = 0; t < complex.length; t++) {  // For each input element
-				sumreal +=  complex[t].real*Math.cos(2*Math.PI * t * k / n) + complex[t].imag*Math.sin(2*Math.PI * t * k / n);
-				sumimag += -complex[t].real*Math.sin(2*Math.PI * t * k / n) + complex[t].imag*Math.cos(2*Math.PI * t * k / n);
-			}
-			dft[k]=new Complex(sumreal,sumimag);
+		double[] real=new double[n];
+		double[] imag=new double[n];
+		for (int t = 0; t < n; t++) {
+			real[t]=complex[t].real;
+			imag[t]=complex[t].imag;
 		}
+		getPlan(n).transform(real,imag);
+		Complex[] dft=new Complex[n];
+		for (int k = 0; k < n; k++)
+			dft[k]=new Complex(real[k],imag[k]);
 		return dft;
 
 	}
@@ -243,12 +243,11 @@ public class FFT extends SimpleBatchFilter {
 
 
 	/**
-	 Perform an in-place mixed-radix inverse Fast Fourier Transform
-	 on the first <code>n</code> elements of the given set of
-	 <code>Complex</code> numbers. If <code>n</code> is not a power
-	 of two then the inverse FFT is performed on the first N
-	 numbers where N is largest power of two less than
-	 <code>n</code>
+	 Perform an in-place Fast Fourier Transform on the first
+	 <code>n</code> elements of the given set of <code>Complex</code>
+	 numbers, rounding <code>n</code> to the nearest power of two. The
+	 transform is done in double precision by the plan for that length,
+	 use a Plan directly to avoid the Complex objects
 	 */
 	public void fft(Complex[] complex, int n) {
 		fft(1, complex, n);
@@ -279,240 +278,32 @@ public class FFT extends SimpleBatchFilter {
 		temp = null;
 	}
 	/**
-	 Perform an in-place mixed-radix inverse Fast Fourier Transform
-	 on the first <code>n</code> elements of the given set of
-	 <code>Complex</code> numbers. If <code>n</code> is not a power
-	 of two then the inverse FFT is performed on the first N
-	 numbers where N is largest power of two less than
-	 <code>n</code>
+	 Perform an in-place inverse Fast Fourier Transform on the first
+	 <code>n</code> elements of the given set of <code>Complex</code>
+	 numbers, rounding <code>n</code> to the nearest power of two. The
+	 result is scaled by 1/n
 	 */
 	public void inverseFFT(Complex[] complex, int n) {
 		fft(-1, complex, n);
 	}
 
-	// Perform an in-place mixed-radix FFT (if sign is 1) or inverse
-	// FFT (if sign is -1) on the first n elements of the given set of
-	// Complex numbers. Round n to the nearest power of two.
-	//
-	// This method performs the FFT in-place on the given set.
-
+	// Perform an in-place FFT (if sign is 1) or inverse FFT (if sign is -1)
+	// on the first n elements of the given set of Complex numbers, by the
+	// double precision plan. Round n to the nearest power of two.
 	private void fft(int sign, Complex[] complex, int n) {
-		// n is number of data elements upon which FFT will be
-		// performed. Round number of data elements to nearest power
-		// of 2
 		n = (int)MathsPower2.roundPow2(n);
-		// Sort the first n elements into bit-reversed order
-		bitReverse(complex, n);
-		if (n == 2) {
-			// Perform a radix-2 FFT
-			radix2FFT(sign, complex, n, 0);
-		} else if (((float)Math.log(n) % (float)Math.log(4)) == 0) {
-			// Perform a radix-4 FFT
-			radix4FFT(sign, complex, n, 0);
-		} else {
-			// n is a multiple or two or four [8, 32, 128, ...]
-			// Perform a mixed-radix FFT
-			int halfN = n / 2;
-			// Do a radix-4 transform on elements 0..halfN - 1 which
-			// contains even-indexed elements from the original
-			// unsorted set of numbers by definition of the bit
-			// reversal operation
-			radix4FFT(sign, complex, halfN, 0);
-			// Do a radix-4 transform on elements halfN - 1 .. n - 1
-			// which contains odd-indexed elements from the original
-			// unsorted set of numbers by definition of the bit
-			// reversal operation
-			radix4FFT(sign, complex, halfN, halfN);
-			// Pair off even and odd elements and do final radix-2
-			// transforms, multiplying by twiddle factors as required
-			// Loop variables used to point to pairs of even and odd
-			// elements
-			int       g, h;
-			// Array of two complex numbers for performing radix-2
-			// FFTs on pairs of elements
-			Complex[] radix2x2 = new Complex[2];
-			// Twiddle factor
-			Complex   twiddle = new Complex();
-			// Values defining twiddle factor
-			double     delta = -sign * TWOPI / n;
-			double     w = 0;
-			for (g = 0, h = halfN; g < halfN; g++, h++) {
-				// Twiddle factors...
-				twiddle.setRealImag((float)Math.cos(w),
-						(float)Math.sin(w));
-				complex[h].multiply(twiddle);
-				radix2x2[0] = complex[g];
-				radix2x2[1] = complex[h];
-				// Perform the radix-2 FFT
-				radix2FFT(sign, radix2x2, 2, 0);
-				complex[g] = radix2x2[0];
-				complex[h] = radix2x2[1];
-				w += delta;
-			}
-			radix2x2 = null;
-			twiddle = null;
+		double[] real = new double[n];
+		double[] imag = new double[n];
+		for (int i = 0; i < n; i++) {
+			real[i] = complex[i].real;
+			imag[i] = complex[i].imag;
 		}
-		if (sign == -1) {
-			// Divide all values by n
-			for (int g = 0; g < n; g++) {
-				complex[g].divide(n);
-			}
-		}
-	}
-
-	// Perform an in-place radix-4 FFT (if sign is 1) or inverse
-	// FFT (if sign is -1). FFT is performed in the n elements
-	// starting at index lower
-	//
-	// Assumes that n is a power of 2 and that lower + n is less than
-	// or equal to the number of complex numbers given
-	//
-	// This method performs the FFT in-place on the given set.
-
-	private static void radix4FFT(int sign, Complex[] complex, int n,
-								  int lower) {
-		// Index of last element in array which will take part in the
-		// FFT
-		int     upper = n + lower;
-		// Variables used to hold the indicies of the elements forming
-		// the four inputs to a butterfly
-		int     i, j, k, l;
-		// Variables holding the results of the four main operations
-		// performed when processing a butterfly
-		Complex ijAdd = new Complex();
-		Complex klAdd = new Complex();
-		Complex ijSub = new Complex();
-		Complex klSub = new Complex();
-		// Twiddle factor
-		Complex twiddle = new Complex();
-		// Values defining twiddle factor
-		double   delta, w, w2, w3;
-		double   deltaLower = -sign * TWOPI;
-		// intraGap is number of array elements between the
-		// two inputs to a butterfly (equivalent to the number of
-		// butterflies in a cluster)
-		int     intraGap;
-		// interGap is the number of array elements between the first
-		// input of the ith butterfly in two adjacent clusters
-		int     interGap;
-		for (intraGap = 1, interGap = 4 * intraGap;
-			 intraGap < n;
-			 intraGap = interGap, interGap = 4 * intraGap) {
-			delta = deltaLower / (float)interGap;
-			// For each butterfly in a cluster
-			w = w2 = w3 = 0;
-			for (int but = 0; but < intraGap; ++but) {
-				// Process the intraGap-th butterfly in each cluster
-				// i is the top input to a butterfly and j the second,
-				// k third and l fourth
-				for (i = (but + lower), j = i + intraGap,
-							 k = j + intraGap, l = k + intraGap;
-					 i < upper;
-					 i += interGap, j += interGap,
-							 k += interGap, l += interGap) {
-					// Calculate and apply twiddle factors
-					// cos(0) = 1 and sin(0) = 0
-					twiddle.setRealImag(1, 0);
-					complex[i].multiply(twiddle);
-					twiddle.setRealImag((float)Math.cos(w2),
-							(float)Math.sin(w2));
-					complex[j].multiply(twiddle);
-					twiddle.setRealImag((float)Math.cos(w),
-							(float)Math.sin(w));
-					complex[k].multiply(twiddle);
-					twiddle.setRealImag((float)Math.cos(w3),
-							(float)Math.sin(w3));
-					complex[l].multiply(twiddle);
-					// Compute the butterfly
-					Complex.add(complex[i], complex[j], ijAdd);
-					Complex.subtract(complex[i], complex[j], ijSub);
-					Complex.add(complex[k], complex[l], klAdd);
-					Complex.subtract(complex[k], complex[l], klSub);
-					// Assign values
-					Complex.add(ijAdd, klAdd, complex[i]);
-					klSub.multiply(sign);
-					complex[j].setRealImag(ijSub.getReal() +
-									klSub.getImag(),
-							ijSub.getImag() -
-									klSub.getReal());
-					Complex.subtract(ijAdd, klAdd, complex[k]);
-					complex[l].setRealImag(ijSub.getReal() -
-									klSub.getImag(),
-							ijSub.getImag() +
-									klSub.getReal());
-				}
-				w += delta;
-				w2 = w + w;
-				w3 = w2 + w;
-			}
-			intraGap = interGap;
-		}
-		ijAdd = klAdd = ijSub = klSub = twiddle = null;
-	}
-
-	// Perform an in-place radix-2 FFT (if sign is 1) or inverse
-	// FFT (if sign is -1). FFT is performed in the n elements
-	// starting at index lower
-	//
-	// Assumes that n is a power of 2 and that lower + n is less than
-	// or equal to the number of complex numbers given...
-	//
-	// This method performs the FFT in-place on the given set.
-
-	private static void radix2FFT(int sign, Complex[] complex, int n,
-								  int lower) {
-		// Index of last element in array which will take part in the
-		// FFT
-		int     upper = n + lower;
-		// Variables used to hold the indicies of the elements forming
-		// the two inputs to a butterfly
-		int     i, j;
-		// intraGap is number of array elements between the
-		// two inputs to a butterfly (equivalent to the number of
-		// butterflies in a cluster)
-		int     intraGap;
-		// interGap is the number of array elements between the first
-		// input of the ith butterfly in two adjacent clusters
-		int     interGap;
-		// The twiddle factor
-		Complex twiddle = new Complex();
-		// Values defining twiddle factor
-		float   deltaLower = -(float)(sign * Math.PI);
-		float   w, delta;
-		// Variable used to hold result of multiplying butterfly input
-		// by a twiddle factor
-		Complex twiddledInput = new Complex();
-		for (intraGap = 1, interGap = intraGap + intraGap;
-			 intraGap < n; intraGap = interGap,
-					 interGap = intraGap + intraGap) {
-			delta = deltaLower / (float)intraGap;
-			// For each butterfly in a cluster
-			w = 0;
-			for (int butterfly = 0; butterfly < intraGap; ++butterfly)
-			{
-				// Calculate the twiddle factor
-				twiddle.setRealImag((float)Math.cos(w),
-						(float)Math.sin(w));
-				// i is the top input to a butterfly and j the
-				// bottom
-				for (i = (butterfly + lower), j = i + intraGap;
-					 i < upper; i += interGap, j += interGap) {
-					// Calculate the butterfly-th butterfly in
-					// each cluster
-					// Apply the twiddle factor
-					Complex.multiply(complex[j], twiddle,
-							twiddledInput);
-					// Subtraction part of butterfly
-					Complex.subtract(complex[i], twiddledInput,
-							complex[j]);
-					// Addition part of butterfly
-					complex[i].add(twiddledInput);
-				}
-				w += delta;
-			}
-			intraGap = interGap;
-		}
-		twiddle = twiddledInput = null;
+		if (sign == -1)
+			getPlan(n).inverse(real, imag);
+		else
+			getPlan(n).transform(real, imag);
+		for (int i = 0; i < n; i++)
+			complex[i].setRealImag((float)real[i], (float)imag[i]);
 	}
 
 
@@ -603,18 +394,238 @@ public class FFT extends SimpleBatchFilter {
 
 	public static void computeDft(double[] inreal, double[] inimag, double[] outreal, double[] outimag) {
 		int n = inreal.length;
-		for (int k = 0; k < n; k++) {  // For each output element
-			double sumreal = 0;
-			double sumimag = 0;
-			for (int t = 0; t < n; t++) {  // For each input element
-				sumreal +=  inreal[t]*Math.cos(2*Math.PI * t * k / n) + inimag[t]*Math.sin(2*Math.PI * t * k / n);
-				sumimag += -inreal[t]*Math.sin(2*Math.PI * t * k / n) + inimag[t]*Math.cos(2*Math.PI * t * k / n);
-			}
-			outreal[k] = sumreal;
-			outimag[k] = sumimag;
+		System.arraycopy(inreal, 0, outreal, 0, n);
+		System.arraycopy(inimag, 0, outimag, 0, n);
+		getPlan(n).transform(outreal, outimag);
+	}
+
+
+	/**
+	 * Get the plan for transforms of length n. Plans are shared by length, the most recently used 16
+	 * lengths are kept and others are made again when next needed
+	 */
+	public static Plan getPlan(int n) {
+		synchronized (PLANS) {
+			Plan plan = PLANS.get(n);
+			if (plan != null)
+				return plan;
+		}
+		// made outside the lock, as making a Bluestein plan gets the plan for its convolution
+		Plan plan = new Plan(n);
+		synchronized (PLANS) {
+			Plan previous = PLANS.putIfAbsent(n, plan);
+			return previous != null ? previous : plan;
 		}
 	}
 
+	private static final int PLAN_CACHE_SIZE = 16;
+
+	// least recently used order, plans hold their tables so only a few lengths are kept
+	private static final Map<Integer, Plan> PLANS = new LinkedHashMap<Integer, Plan>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Plan> eldest) {
+			return size() > PLAN_CACHE_SIZE;
+		}
+	};
+
+	/**
+	 A reusable FFT of a fixed length n, performed in-place in double precision on separate arrays of real and
+	 imaginary parts. Powers of two use an iterative radix-2 FFT and any other length uses Bluestein's algorithm,
+	 i.e. a convolution by a power of two FFT of at least 2n-1 terms, so the exact DFT is found in O(n log n).
+	 The bit-reversal permutation and twiddle factors (and for Bluestein the chirp and its transform) are
+	 computed once when the plan is made.
+
+	 The forward transform uses exp(-2 pi i k t / n) and the inverse is scaled by 1/n, as fft and inverseFFT do.
+	 A plan holds no state between calls so can be used by several threads at once, see getPlan for shared plans.
+	 */
+	public static class Plan {
+
+		private final int n;
+		// radix-2: bit-reversed index of each term and twiddle factors exp(-2 pi i k / n) for k < n/2
+		private final int[] reversed;
+		private final double[] cos;
+		private final double[] sin;
+		// radix-2 plan of half the length, used for real input
+		private final Plan half;
+		// Bluestein: the chirp exp(-pi i k^2 / n), the transform of its conjugate and the plan for the convolution
+		private final Plan convolution;
+		private final double[] chirpReal;
+		private final double[] chirpImag;
+		private final double[] filterReal;
+		private final double[] filterImag;
+
+		public Plan(int n) {
+			if (n < 1)
+				throw new IllegalArgumentException("FFT length must be positive: " + n);
+			this.n = n;
+			if ((n & (n - 1)) == 0) {
+				reversed = new int[n];
+				int bits = Integer.numberOfTrailingZeros(n);
+				for (int i = 1; i < n; i++)
+					reversed[i] = Integer.reverse(i) >>> (32 - bits);
+				cos = new double[n / 2];
+				sin = new double[n / 2];
+				for (int k = 0; k < n / 2; k++) {
+					cos[k] = Math.cos(TWOPI * k / n);
+					sin[k] = -Math.sin(TWOPI * k / n);
+				}
+				half = n >= 4 ? new Plan(n / 2) : null;
+				convolution = null;
+				chirpReal = chirpImag = filterReal = filterImag = null;
+			}
+			else {
+				reversed = null;
+				cos = sin = null;
+				half = null;
+				int m = Integer.highestOneBit(2 * n - 1) << 1;
+				convolution = getPlan(m);
+				chirpReal = new double[n];
+				chirpImag = new double[n];
+				for (int k = 0; k < n; k++) {
+					// k^2 mod 2n keeps the angle small, and so accurate, for long series
+					long kk = ((long)k * k) % (2L * n);
+					chirpReal[k] = Math.cos(Math.PI * kk / n);
+					chirpImag[k] = -Math.sin(Math.PI * kk / n);
+				}
+				filterReal = new double[m];
+				filterImag = new double[m];
+				filterReal[0] = chirpReal[0];
+				filterImag[0] = -chirpImag[0];
+				for (int k = 1; k < n; k++) {
+					filterReal[k] = filterReal[m - k] = chirpReal[k];
+					filterImag[k] = filterImag[m - k] = -chirpImag[k];
+				}
+				convolution.transform(filterReal, filterImag);
+			}
+		}
+
+		public int length() {
+			return n;
+		}
+
+		/**
+		 Forward transform of the first n terms of real and imag, in-place
+		 */
+		public void transform(double[] real, double[] imag) {
+			if (reversed != null)
+				radix2(real, imag, false);
+			else
+				bluestein(real, imag);
+		}
+
+		/**
+		 Inverse transform of the first n terms of real and imag, in-place, scaled by 1/n
+		 */
+		public void inverse(double[] real, double[] imag) {
+			if (reversed != null)
+				radix2(real, imag, true);
+			else {
+				// the inverse is the conjugate of the forward transform of the conjugate
+				for (int i = 0; i < n; i++)
+					imag[i] = -imag[i];
+				bluestein(real, imag);
+				for (int i = 0; i < n; i++)
+					imag[i] = -imag[i];
+			}
+			for (int i = 0; i < n; i++) {
+				real[i] /= n;
+				imag[i] /= n;
+			}
+		}
+
+		/**
+		 Forward transform of a real series of length n. For even powers of two the series is packed into a complex
+		 series of half the length, halving the work. The full spectrum is written to real and imag, which must
+		 have length at least n, though the terms after n/2 are just the conjugates of those before.
+		 */
+		public void realTransform(double[] series, double[] real, double[] imag) {
+			if (half == null) {
+				System.arraycopy(series, 0, real, 0, n);
+				Arrays.fill(imag, 0, n, 0);
+				transform(real, imag);
+				return;
+			}
+			int h = n / 2;
+			for (int i = 0; i < h; i++) {
+				real[i] = series[2 * i];
+				imag[i] = series[2 * i + 1];
+			}
+			half.transform(real, imag);
+			// split the transform of the packed series into those of the even and odd terms and recombine,
+			// pairing k with h - k so it can be done in-place
+			double r0 = real[0], i0 = imag[0];
+			real[0] = r0 + i0;
+			imag[0] = 0;
+			real[h] = r0 - i0;
+			imag[h] = 0;
+			for (int k = 1, j = h - 1; k <= j; k++, j--) {
+				double zkr = real[k], zki = imag[k], zjr = real[j], zji = imag[j];
+				double er = (zkr + zjr) / 2, ei = (zki - zji) / 2;
+				double or = (zki + zji) / 2, oi = (zjr - zkr) / 2;
+				real[k] = er + cos[k] * or - sin[k] * oi;
+				imag[k] = ei + cos[k] * oi + sin[k] * or;
+				// the term for h - k has the conjugate even and odd parts
+				real[j] = er + cos[j] * or + sin[j] * oi;
+				imag[j] = -ei - cos[j] * oi + sin[j] * or;
+			}
+			for (int k = 1; k < h; k++) {
+				real[n - k] = real[k];
+				imag[n - k] = -imag[k];
+			}
+		}
+
+		private void radix2(double[] real, double[] imag, boolean inverse) {
+			for (int i = 1; i < n; i++) {
+				int j = reversed[i];
+				if (i < j) {
+					double temp = real[i];
+					real[i] = real[j];
+					real[j] = temp;
+					temp = imag[i];
+					imag[i] = imag[j];
+					imag[j] = temp;
+				}
+			}
+			double sign = inverse ? -1 : 1;
+			for (int size = 2; size <= n; size <<= 1) {
+				int halfSize = size >> 1;
+				int step = n / size;
+				for (int i = 0; i < n; i += size) {
+					for (int j = i, k = 0; j < i + halfSize; j++, k += step) {
+						double wr = cos[k];
+						double wi = sign * sin[k];
+						double tr = real[j + halfSize] * wr - imag[j + halfSize] * wi;
+						double ti = real[j + halfSize] * wi + imag[j + halfSize] * wr;
+						real[j + halfSize] = real[j] - tr;
+						imag[j + halfSize] = imag[j] - ti;
+						real[j] += tr;
+						imag[j] += ti;
+					}
+				}
+			}
+		}
+
+		private void bluestein(double[] real, double[] imag) {
+			int m = filterReal.length;
+			double[] workReal = new double[m];
+			double[] workImag = new double[m];
+			for (int k = 0; k < n; k++) {
+				workReal[k] = real[k] * chirpReal[k] - imag[k] * chirpImag[k];
+				workImag[k] = real[k] * chirpImag[k] + imag[k] * chirpReal[k];
+			}
+			convolution.transform(workReal, workImag);
+			for (int k = 0; k < m; k++) {
+				double r = workReal[k] * filterReal[k] - workImag[k] * filterImag[k];
+				workImag[k] = workReal[k] * filterImag[k] + workImag[k] * filterReal[k];
+				workReal[k] = r;
+			}
+			convolution.inverse(workReal, workImag);
+			for (int k = 0; k < n; k++) {
+				real[k] = workReal[k] * chirpReal[k] - workImag[k] * chirpImag[k];
+				imag[k] = workReal[k] * chirpImag[k] + workImag[k] * chirpReal[k];
+			}
+		}
+	}
 
 	/** Author Mike Jackson - University of Edinburgh - 1999-2001 */
 
@@ -26,6 +26,9 @@ import java.util.ArrayList;
  */
 public class PowerCepstrum extends PowerSpectrum{
 
+    //smallest power, relative to the largest power of a case, that is logged as is
+    private static final double LOG_FLOOR=1e-12;
+
     public PowerCepstrum(){
     }
 
@@ -73,40 +76,46 @@ public class PowerCepstrum extends PowerSpectrum{
         logDataSet(output);
 //Take Inverse FFT of logged Spectrum.
         for(int i=0;i<output.numInstances();i++){
-//Get out values, store in a complex array   
+//Get out values, store in arrays of real and imaginary parts
             Instance next=output.instance(i);
             double[] ar=next.toDoubleArray();
 //Have to pad
             int n = (int)MathsPower2.roundPow2(ar.length-1);
             if(n<ar.length-1)
                 n*=2;
-            FFT.Complex[] complex=new FFT.Complex[n];
-            for(int j=0;j<ar.length-1;j++)
-                complex[j]=new FFT.Complex(ar[j],0);
-            for(int j=ar.length-1;j<n;j++)
-                complex[j]=new FFT.Complex(0,0);
-
+            double[] real=new double[n];
+            double[] imag=new double[n];
+            System.arraycopy(ar,0,real,0,ar.length-1);
 
             //Take inverse FFT
-            inverseFFT(complex,complex.length);
+            getPlan(n).inverse(real,imag);
 //Square the terms for the PowerCepstrum 
             for(int j=0;j<ar.length-1;j++)
-                next.setValue(j,complex[j].real*complex[j].real+complex[j].imag*complex[j].imag);
+                next.setValue(j,real[j]*real[j]+imag[j]*imag[j]);
 
         }
 
         return output;
 
     }
+    /**
+     * Takes the log of each power. Powers are floored at LOG_FLOOR times the largest power of the case first, so a
+     * bin with no power (typically the DC bin of a normalised series) gives a large negative log rather than
+     * -Infinity, which the inverse FFT would spread over the whole case.
+     */
     public void logDataSet(Instances out ){
         for(int i=0;i<out.numInstances();i++){
             Instance ins=out.instance(i);
+            double max=0;
+            for(int j=0;j<ins.numAttributes();j++){
+                if(j!=ins.classIndex())
+                    max=Math.max(max,ins.value(j));
+            }
+            double floor=Math.max(max*LOG_FLOOR,Double.MIN_NORMAL);
             for(int j=0;j<ins.numAttributes();j++){
                 if(j!=ins.classIndex())
-                    ins.setValue(j,Math.log(ins.value(j)));
+                    ins.setValue(j,Math.log(Math.max(ins.value(j),floor)));
             }
         }
-
-
     }
 }
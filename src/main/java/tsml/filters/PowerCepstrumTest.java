@@ -0,0 +1,28 @@
+package tsml.filters;
+
+import org.junit.Test;
+import utilities.InstanceTools;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks PowerCepstrum stays finite when a bin of the power spectrum has no power.
+ */
+public class PowerCepstrumTest {
+
+    @Test
+    public void testZeroPowerBinIsFinite() throws Exception {
+        // the series sum to exactly zero, so their DC bin has no power
+        double[][] series = {
+                {1, -1, 2, -2, 3, -3, 0.5, -0.5, 4, -4, 1.5, -1.5, 0.25, -0.25, 2.5, -2.5, 3, -3, 1, -1},
+                {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}
+        };
+        Instances data = InstanceTools.toWekaInstances(series, new double[]{0, 1});
+        Instances cepstrum = new PowerCepstrum().process(data);
+        for (Instance instance : cepstrum)
+            for (int j = 0; j < instance.numAttributes(); j++)
+                assertTrue(!Double.isNaN(instance.value(j)) && !Double.isInfinite(instance.value(j)));
+    }
+}
@@ -146,15 +146,12 @@ public class PowerSpectrum extends FFT {
 //Check power of 2            
         if(((d.length)&(d.length-1))!=0)    //Not a power of 2
             return null;
-        FFT.Complex[] c=new FFT.Complex[d.length];
-        for(int j=0;j<d.length;j++){
-             c[j]=new FFT.Complex(d[j],0.0);
-        }
-        FFT f=new FFT();
-        f.fft(c,c.length);
-        double[] ps=new double[c.length];
-        for(int i=0;i<c.length;i++)
-            ps[i]=c[i].getReal()*c[i].getReal()+c[i].getImag()*c[i].getImag();
+        double[] real=new double[d.length];
+        double[] imag=new double[d.length];
+        getPlan(d.length).realTransform(d,real,imag);
+        double[] ps=new double[d.length];
+        for(int i=0;i<d.length;i++)
+            ps[i]=real[i]*real[i]+imag[i]*imag[i];
         return ps;
     }
 
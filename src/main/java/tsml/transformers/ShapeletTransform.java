@@ -14,24 +14,35 @@
  */   
 package tsml.transformers;
 
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
-import tsml.transformers.shapelet_tools.OrderLineObj;
+import tsml.transformers.shapelet_tools.OrderLine;
 import tsml.transformers.shapelet_tools.Shapelet;
+import tsml.transformers.shapelet_tools.ShapeletBank;
 import tsml.transformers.shapelet_tools.ShapeletCandidate;
 import tsml.transformers.shapelet_tools.ShapeletTransformTimingUtilities;
 import tsml.transformers.shapelet_tools.class_value.NormalClassValue;
+import tsml.transformers.shapelet_tools.distance_functions.DimensionDistance;
+import tsml.transformers.shapelet_tools.distance_functions.MultivariateDistance;
 import tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance;
 import tsml.transformers.shapelet_tools.quality_measures.ShapeletQuality;
 import tsml.transformers.shapelet_tools.quality_measures.ShapeletQuality.ShapeletQualityChoice;
+import tsml.transformers.shapelet_tools.search_functions.RandomSearch;
 import tsml.transformers.shapelet_tools.search_functions.ShapeletSearch;
 import tsml.transformers.shapelet_tools.search_functions.ShapeletSearchFactory;
 import tsml.transformers.shapelet_tools.search_functions.ShapeletSearchOptions;
+import utilities.ThreadingUtilities;
+import utilities.Utilities;
 import utilities.class_counts.ClassCounts;
 import utilities.rescalers.SeriesRescaler;
+import utilities.rescalers.ZNormalisation;
 import weka.core.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -60,7 +71,7 @@ import java.util.logging.Logger;
  *
  * Refactored version for
  */
-public class ShapeletTransform  implements Serializable,TechnicalInformationHandler,Transformer {
+public class ShapeletTransform  implements Serializable,TechnicalInformationHandler,Transformer,MultiThreadable {
 //Global defaults. Max should be a lambda set to series length
     public final static int MAXTRANSFORMSIZE = 1000;
     public final static int DEFAULT_MINSHAPELETLENGTH = 3;
@@ -96,6 +107,8 @@ public class ShapeletTransform  implements Serializable,TechnicalInformationHand
     protected boolean useRoundRobin;
     protected boolean useBalancedClasses;
     protected ShapeletDistance shapeletDistance;
+    // optional distance used to transform data by the final shapelets, null to use shapeletDistance
+    protected ShapeletDistance transformShapeletDistance;
     protected ShapeletSearch searchFunction;
 
     
@@ -120,6 +133,27 @@ public class ShapeletTransform  implements Serializable,TechnicalInformationHand
     private int numSeriesToUse=0;
     private long contractTime=0; //nano seconds time. If set to zero everything reverts to BalancedClassShapeletTransform
     private double beta=0.2;
+    /**
+     * Multithreading. Series are searched in batches of numThreads, each on a worker with its own copy of the
+     * distance, quality and class value. The results are merged in series order so the shapelets found do not depend
+     * on thread timing
+     */
+    private int numThreads = 1;
+    private boolean multiThread = false;
+    private transient ExecutorService ex;
+    //the worst of the best shapelets so far, one per class if balanced, used by the workers to prune candidates
+    private transient AtomicReferenceArray<Shapelet> worstShapelets;
+    //the workers' copies, one per thread
+    private transient ThreadLocal<CandidateEvaluator> evaluators;
+    private transient List<CandidateEvaluator> allEvaluators;
+    //the orderline of the current candidate, reused between candidates
+    private transient OrderLine orderline;
+    //the shapelets compiled for transforming single instances and the list they were compiled from, built on first use
+    private transient volatile ShapeletBank shapeletBank;
+    private transient volatile List<Shapelet> shapeletBankSource;
+    //the output format for single instances and the format it was made from
+    private transient volatile Instances singleOutputFormat;
+    private transient volatile Instances singleOutputFormatSource;
     /**
      * Default constructor; Quality measure defaults to information gain.
      */
@@ -240,11 +274,66 @@ public class ShapeletTransform  implements Serializable,TechnicalInformationHand
         //we log the count from the subsequence distance before we reset it in the transform.
         //we only care about the count from the train. What is it counting?
         count = shapeletDistance.getCount();
+        if(allEvaluators != null) {
+            for(CandidateEvaluator evaluator : allEvaluators)
+                count += evaluator.distance.getCount();
+        }
     }
+    /**
+     * Transforms a single instance, e.g. a test case at prediction time. Where the shapelets are univariate and the
+     * distance z-normalises, all the shapelets are found in one pass of the series per shapelet length using a
+     * ShapeletBank. Otherwise the instance is transformed as a one row data set.
+     * @param data an instance in the format of the train data
+     * @return the transformed instance, in the format of determineOutputFormat
+     */
     @Override
     public Instance transform(Instance data){
-        throw new UnsupportedOperationException("NOT IMPLEMENTED YET. Cannot transform a single instance yet, is trivial though (ShapeletTransform.transform");
-//        return buildTansformedDataset(data);
+        if (data.dataset() == null)
+            throw new IllegalArgumentException("ShapeletTransform can only transform an instance which has a data set");
+        ShapeletBank bank = getShapeletBank(data.dataset());
+        if (bank == null) {
+            Instances single = new Instances(data.dataset(), 1);
+            single.add(data);
+            return buildTansformedDataset(single).instance(0);
+        }
+        Instances format = getSingleOutputFormat(data.dataset());
+        double[] values = new double[format.numAttributes()];
+        System.arraycopy(bank.transform(data), 0, values, 0, bank.size());
+        if (format.classIndex() >= 0)
+            values[format.classIndex()] = data.classValue();
+        Instance output = new DenseInstance(1, values);
+        output.setDataset(format);
+        return output;
+    }
+
+    //the bank of shapelets, or null if the shapelets cannot be transformed by a bank
+    private ShapeletBank getShapeletBank(Instances format) {
+        ShapeletDistance distance = transformShapeletDistance != null ? transformShapeletDistance : shapeletDistance;
+        if (distance instanceof MultivariateDistance || distance instanceof DimensionDistance
+                || !(distance.seriesRescaler instanceof ZNormalisation)
+                || format.checkForAttributeType(Attribute.RELATIONAL))
+            return null;
+        ShapeletBank bank = shapeletBank;
+        if (bank == null || shapeletBankSource != shapelets || bank.size() != shapelets.size()) {
+            for (Shapelet s : shapelets) {
+                if (s.getContent() == null || s.getNumDimensions() != 1)
+                    return null;
+            }
+            bank = new ShapeletBank(shapelets);
+            shapeletBank = bank;
+            shapeletBankSource = shapelets;
+        }
+        return bank;
+    }
+
+    private Instances getSingleOutputFormat(Instances inputFormat) {
+        Instances format = singleOutputFormat;
+        if (format == null || singleOutputFormatSource != inputFormat || format.numAttributes() != shapelets.size() + (inputFormat.classIndex() >= 0 ? 1 : 0)) {
+            format = determineOutputFormat(inputFormat);
+            singleOutputFormat = format;
+            singleOutputFormatSource = inputFormat;
+        }
+        return format;
     }
 
 
@@ -305,8 +394,11 @@ public class ShapeletTransform  implements Serializable,TechnicalInformationHand
         //Reorder the training data and reset the shapelet indexes
         Instances output = determineOutputFormat(data);
 
+        //the search distance is only needed if no transform distance has been set.
+        ShapeletDistance distance = transformShapeletDistance != null ? transformShapeletDistance : shapeletDistance;
+
         //init out data for transforming.
-        shapeletDistance.init(inputData);
+        distance.init(inputData);
         //setup classsValue
         classValue.init(inputData);
 
@@ -323,10 +415,10 @@ public class ShapeletTransform  implements Serializable,TechnicalInformationHand
         double dist;
         for (int i = 0; i < size; i++) {
             s = shapelets.get(i);
-            shapeletDistance.setShapelet(s);
+            distance.setShapelet(s);
 
             for (int j = 0; j < dataSize; j++) {
-                dist = shapeletDistance.calculate(data.instance(j), j);
+                dist = distance.calculate(data.instance(j), j);
                 output.instance(j).setValue(i, dist);
             }
         }
@@ -355,6 +447,8 @@ public class ShapeletTransform  implements Serializable,TechnicalInformationHand
      * fitness (by infoGain, seperationGap then shortest length)
      */
     public ArrayList<Shapelet> findBestKShapelets(Instances data) {
+        if (multiThread && isParallelSearch())
+            return findBestKShapeletsParallel(data);
         if (useBalancedClasses)
             return findBestKShapeletsBalanced(data);
         else
@@ -570,6 +664,289 @@ public class ShapeletTransform  implements Serializable,TechnicalInformationHand
         return kShapelets;
     }
 
+    /**
+     * The parallel search only applies to searches which pick their candidates independently of the quality of the
+     * candidates already evaluated, i.e. full enumeration and random sampling. Full enumeration is split into chunks
+     * of start positions which the workers generate as they evaluate. Random candidates are picked by the search in
+     * the main thread, keeping the sampling the same as the sequential search, then evaluated on the workers.
+     */
+    protected boolean isParallelSearch(){
+        return searchFunction.getClass() == ShapeletSearch.class || searchFunction.getClass() == RandomSearch.class;
+    }
+
+    /**
+     * Parallel version of findBestKShapeletsBalanced and findBestKShapeletsOriginal. The series are visited in the
+     * same order and contracting works in the same way. Time per shapelet is measured per worker, so the time
+     * remaining is scaled by the number of threads when adjusting the number of shapelets per series. Under full
+     * enumeration each series is searched in a chunk per thread and the chunks are rejoined in the order the
+     * sequential search visits candidates, so the shapelets found are the same.
+     */
+    private ArrayList<Shapelet> findBestKShapeletsParallel(Instances data) {
+        ShapeletSearch full=new ShapeletSearch(searchFunction.getOptions());
+        full.init(data);
+        ShapeletSearch current=searchFunction;
+        boolean contracted=contractTime!=0;
+        boolean keepGoing=true;
+        long startTime=System.nanoTime();
+        long usedTime=0;
+        int numSeriesToUse = data.numInstances();
+        int proportion = numShapelets;
+        if(useBalancedClasses){
+            if(kShapeletsMap == null){
+                kShapeletsMap = new TreeMap<>();
+                for (int i=0; i < data.numClasses(); i++){
+                    kShapeletsMap.put((double)i, new ArrayList<>());
+                }
+            }
+            proportion = numShapelets/kShapeletsMap.keySet().size();
+            worstShapelets = new AtomicReferenceArray<>(data.numClasses());
+        }else{
+            worstShapelets = new AtomicReferenceArray<>(1);
+        }
+        //the pool's threads are not daemons, so it only lives for the search
+        ex = ThreadingUtilities.buildExecutorService(numThreads);
+        allEvaluators = Collections.synchronizedList(new ArrayList<>());
+        evaluators = ThreadLocal.withInitial(() -> {
+            CandidateEvaluator evaluator = new CandidateEvaluator();
+            allEvaluators.add(evaluator);
+            return evaluator;
+        });
+        outputPrint("Processing data for numShapelets "+numShapelets+ " on "+numThreads+" threads");
+        try {
+            long prevEarlyAbandons=0;
+            int passes=0;
+            //series wrap round to the start when contracted and not fully enumerating, as in the sequential search
+            boolean wrap = !searchFunction.getSearchType().equals("FULL") && (contracted || !useBalancedClasses);
+            while(casesSoFar < numSeriesToUse && keepGoing) {
+                //pick the series for this batch and their candidates
+                List<Callable<SeriesResult>> jobs = new ArrayList<>();
+                final ShapeletSearch search = current;
+                final boolean chunked = search.getClass() == ShapeletSearch.class;
+                int batchSize = 0;
+                int next = casesSoFar;
+                while(batchSize < numThreads && next < numSeriesToUse) {
+                    final int seriesIndex = next;
+                    final Instance series = data.get(seriesIndex);
+                    final int slot = useBalancedClasses ? (int) series.classValue() : 0;
+                    if(chunked) {
+                        //the candidates of a full enumeration are generated by the workers, a chunk of the start positions each
+                        for(int chunk = 0; chunk < numThreads; chunk++) {
+                            final int c = chunk;
+                            jobs.add(() -> evaluators.get().evaluate(series, seriesIndex, slot, search, c, numThreads));
+                        }
+                    } else {
+                        final List<Candidate> candidates = new ArrayList<>();
+                        search.searchForShapeletsInSeries(series, (instance, start, length, dimension) -> {
+                            candidates.add(new Candidate(instance, start, length, dimension));
+                            return null;
+                        });
+                        jobs.add(() -> evaluators.get().evaluate(series, seriesIndex, slot, candidates));
+                    }
+                    batchSize++;
+                    next++;
+                    if(wrap && next == numSeriesToUse - 1)
+                        next = 0;
+                    if(next == casesSoFar)
+                        break;
+                }
+                List<SeriesResult> results;
+                try {
+                    results = ThreadingUtilities.computeAll(ex, jobs, false);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                if(chunked)
+                    results = joinChunks(results);
+                //merge in series order
+                for(SeriesResult result : results) {
+                    ArrayList<Shapelet> seriesShapelets = result.shapelets;
+                    double classVal = data.get(result.seriesIndex).classValue();
+                    if(useBalancedClasses)
+                        kShapelets = kShapeletsMap.get(classVal);
+                    numShapeletsEvaluated+=seriesShapelets.size();
+                    numEarlyAbandons+=result.earlyAbandons;
+                    if(adaptiveTiming && contracted && passes==0){
+                        long tempEA=numEarlyAbandons-prevEarlyAbandons;
+                        prevEarlyAbandons=numEarlyAbandons;
+                        double newTimePerShapelet=(double)result.timeNanos/(seriesShapelets.size()+tempEA);
+                        if(useBalancedClasses){
+                            if(totalShapeletsPerSeries<(seriesShapelets.size()+tempEA))//Switch to full enum for next iteration
+                                current=full;
+                            else
+                                current=searchFunction;
+                        }
+                        //the workers share the time remaining
+                        shapeletsSearchedPerSeries=adjustNumberPerSeries((contractTime-usedTime)*numThreads,Math.max(1,numSeriesToUse-casesSoFar),newTimePerShapelet);
+                        outputPrint("Changing number of shapelets sampled from "+searchFunction.getNumShapeletsPerSeries()+" to "+shapeletsSearchedPerSeries);
+                        searchFunction.setNumShapeletsPerSeries(shapeletsSearchedPerSeries);
+                    }
+                    Collections.sort(seriesShapelets, shapeletComparator);
+                    if(isRemoveSelfSimilar())
+                        seriesShapelets = removeSelfSimilar(seriesShapelets);
+                    if(useBalancedClasses){
+                        kShapelets = combine(proportion, kShapelets, seriesShapelets);
+                        kShapeletsMap.put(classVal, kShapelets);
+                        worstShapelets.set((int) classVal, kShapelets.size() == proportion ? kShapelets.get(kShapelets.size()-1) : null);
+                    }else{
+                        kShapelets = combine(numShapelets, kShapelets, seriesShapelets);
+                        worstShapelets.set(0, kShapelets.size() == numShapelets ? kShapelets.get(numShapelets - 1) : null);
+                    }
+                    casesSoFar++;
+                    if(wrap && casesSoFar==numSeriesToUse-1) { ///HORRIBLE!
+                        casesSoFar = 0;
+                        passes++;
+                    }
+                }
+                createSerialFile();
+                usedTime=System.nanoTime()-startTime;
+                if(contracted && usedTime>contractTime)
+                    keepGoing=false;
+            }
+        } finally {
+            ex.shutdown();
+            ex = null;
+        }
+        if(useBalancedClasses)
+            kShapelets = buildKShapeletsFromMap(kShapeletsMap);
+        this.numShapelets = kShapelets.size();
+        if (recordShapelets)
+            recordShapelets(kShapelets, this.ouputFileLocation);
+        return kShapelets;
+    }
+
+    /**
+     * Join the results of the chunks of each series, which are consecutive, into one result per series. The shapelets
+     * are put in the order the sequential search visits candidates, by length then start then dimension, so
+     * shapelets of equal quality are ranked the same.
+     */
+    private static List<SeriesResult> joinChunks(List<SeriesResult> chunks) {
+        List<SeriesResult> joined = new ArrayList<>();
+        for(SeriesResult chunk : chunks) {
+            SeriesResult last = joined.isEmpty() ? null : joined.get(joined.size()-1);
+            if(last != null && last.seriesIndex == chunk.seriesIndex) {
+                last.shapelets.addAll(chunk.shapelets);
+                joined.set(joined.size()-1, new SeriesResult(last.seriesIndex, last.shapelets,
+                        last.timeNanos+chunk.timeNanos, last.earlyAbandons+chunk.earlyAbandons));
+            } else {
+                joined.add(chunk);
+            }
+        }
+        Comparator<Shapelet> visitOrder = Comparator.comparingInt((Shapelet shapelet) -> shapelet.length)
+                .thenComparingInt(shapelet -> shapelet.startPos).thenComparingInt(shapelet -> shapelet.dimension);
+        for(SeriesResult result : joined)
+            result.shapelets.sort(visitOrder);
+        return joined;
+    }
+
+    //a candidate picked by a random search
+    private static class Candidate {
+        private final Instance series;
+        private final int start;
+        private final int length;
+        private final int dimension;
+
+        private Candidate(Instance series, int start, int length, int dimension) {
+            this.series = series;
+            this.start = start;
+            this.length = length;
+            this.dimension = dimension;
+        }
+    }
+
+    //the shapelets found in a series by a worker
+    private static class SeriesResult {
+        private final int seriesIndex;
+        private final ArrayList<Shapelet> shapelets;
+        private final long timeNanos;
+        private final long earlyAbandons;
+
+        private SeriesResult(int seriesIndex, ArrayList<Shapelet> shapelets, long timeNanos, long earlyAbandons) {
+            this.seriesIndex = seriesIndex;
+            this.shapelets = shapelets;
+            this.timeNanos = timeNanos;
+            this.earlyAbandons = earlyAbandons;
+        }
+    }
+
+    /**
+     * A worker's copy of the state used by checkCandidate. The copies are taken once the distance and class value
+     * have been initialised on the train data.
+     */
+    private class CandidateEvaluator {
+        private final ShapeletDistance distance;
+        private final ShapeletQuality quality;
+        private final NormalClassValue classValue;
+        private final OrderLine orderline = new OrderLine(inputData.numInstances());
+        //the candidates pruned in the current evaluation
+        private long earlyAbandons;
+
+        private CandidateEvaluator() {
+            try {
+                distance = Utilities.deepCopy(shapeletDistance);
+                classValue = Utilities.deepCopy(ShapeletTransform.this.classValue);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            quality = new ShapeletQuality(ShapeletTransform.this.quality.getChoice());
+        }
+
+        private SeriesResult evaluate(Instance series, int seriesIndex, int slot, List<Candidate> candidates) {
+            long t1=System.nanoTime();
+            earlyAbandons=0;
+            distance.setSeries(seriesIndex);
+            classValue.setShapeletValue(series);
+            ArrayList<Shapelet> seriesShapelets = new ArrayList<>();
+            for(Candidate candidate : candidates) {
+                Shapelet shapelet = check(candidate.series, candidate.start, candidate.length, candidate.dimension, seriesIndex, slot);
+                if(shapelet != null)
+                    seriesShapelets.add(shapelet);
+            }
+            return new SeriesResult(seriesIndex, seriesShapelets, System.nanoTime()-t1, earlyAbandons);
+        }
+
+        //evaluate one chunk of the full enumeration of a series, generating its candidates as they are evaluated
+        private SeriesResult evaluate(Instance series, int seriesIndex, int slot, ShapeletSearch search, int chunk, int numChunks) {
+            long t1=System.nanoTime();
+            earlyAbandons=0;
+            distance.setSeries(seriesIndex);
+            classValue.setShapeletValue(series);
+            ArrayList<Shapelet> seriesShapelets = search.searchForShapeletsInSeries(series, chunk, numChunks,
+                    (instance, start, length, dimension) -> check(instance, start, length, dimension, seriesIndex, slot));
+            return new SeriesResult(seriesIndex, seriesShapelets, System.nanoTime()-t1, earlyAbandons);
+        }
+
+        //as checkCandidate, returning null if the candidate is pruned
+        private Shapelet check(Instance candidate, int start, int length, int dimension, int seriesIndex, int slot) {
+            if (useCandidatePruning)
+                quality.initQualityBound(classValue.getClassDistributions(), candidatePruningStartPercentage);
+            Shapelet worst = worstShapelets.get(slot);
+            if (worst != null) {
+                quality.setBsfQuality(worst.qualityValue);
+            }
+            distance.setCandidate(candidate, start, length, dimension);
+            orderline.clear();
+            int dataSize = inputData.numInstances();
+            for (int i = 0; i < dataSize; i++) {
+                if (quality.pruneCandidate()) {
+                    earlyAbandons++;
+                    return null;
+                }
+                double dist = 0.0;
+                if (i != seriesIndex) {
+                    dist = distance.calculate(inputData.instance(i), i);
+                }
+                double classVal = classValue.getClassValue(inputData.instance(i));
+                orderline.add(dist, classVal);
+                quality.updateOrderLine(dist, classVal);
+            }
+            Shapelet shapelet = new Shapelet(distance.getCandidate(), dataSourceIDs[seriesIndex], start, quality.getQualityMeasure());
+            shapelet.calculateQuality(orderline, classValue.getClassDistributions());
+            shapelet.classValue = classValue.getShapeletValue();
+            shapelet.dimension = dimension;
+            return shapelet;
+        }
+    }
+
     private long adjustNumberPerSeries(long timeRemaining, int seriesRemaining, double lastTimePerShapelet){
         // reinforce time per shapelet
         timePerShapelet=(1-beta)*timePerShapelet+beta*lastTimePerShapelet;
@@ -787,7 +1164,8 @@ public class ShapeletTransform  implements Serializable,TechnicalInformationHand
 
         // create orderline by looping through data set and calculating the subsequence
         // distance from candidate to all data, inserting in order.
-        ArrayList<OrderLineObj> orderline = new ArrayList<>();
+        if (orderline == null) orderline = new OrderLine(inputData.numInstances());
+        orderline.clear();
 
         int dataSize = inputData.numInstances();
 
@@ -809,10 +1187,10 @@ public class ShapeletTransform  implements Serializable,TechnicalInformationHand
             double classVal = classValue.getClassValue(inputData.instance(i));
 
             // without early abandon, it is faster to just add and sort at the end
-            orderline.add(new OrderLineObj(distance, classVal));
+            orderline.add(distance, classVal);
 
             //Update qualityBound - presumably each bounding method for different quality measures will have a different update procedure.
-            quality.updateOrderLine(orderline.get(orderline.size() - 1));
+            quality.updateOrderLine(distance, classVal);
         }
 
         Shapelet shapelet = new Shapelet(shapeletDistance.getCandidate(), dataSourceIDs[casesSoFar], start, quality.getQualityMeasure());
@@ -1255,6 +1633,9 @@ public class ShapeletTransform  implements Serializable,TechnicalInformationHand
     public ShapeletDistance getSubSequenceDistance(){
         return shapeletDistance;
     }
+    public ShapeletDistance getTransformShapeletDistance(){
+        return transformShapeletDistance;
+    }
     public TechnicalInformation getTechnicalInformation() {
         TechnicalInformation    result;
         result = new TechnicalInformation(TechnicalInformation.Type.ARTICLE);
@@ -1354,6 +1735,8 @@ public class ShapeletTransform  implements Serializable,TechnicalInformationHand
     public void setRescaler(SeriesRescaler rescaler){
         if(shapeletDistance != null)
             this.shapeletDistance.seriesRescaler = rescaler;
+        if(transformShapeletDistance != null)
+            this.transformShapeletDistance.seriesRescaler = rescaler;
     }
     public void setCandidatePruning(boolean f) {
         this.useCandidatePruning = f;
@@ -1368,9 +1751,23 @@ public class ShapeletTransform  implements Serializable,TechnicalInformationHand
     public void setTimePerShapelet(double t){
         timePerShapelet=t;
     }
+    @Override
+    public void enableMultiThreading(int numThreads) {
+        if (numThreads > 1) {
+            this.numThreads = numThreads;
+            multiThread = true;
+        }
+        else{
+            this.numThreads = 1;
+            multiThread = false;
+        }
+    }
     public void setShapeletDistance(ShapeletDistance ssd) {
         shapeletDistance = ssd;
     }
+    public void setTransformShapeletDistance(ShapeletDistance ssd) {
+        transformShapeletDistance = ssd;
+    }
     /*************** GETTERS *************/
     public long getCount() {
         return count;
@@ -0,0 +1,212 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tsml.transformers.shapelet_tools;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An orderline of <distance,classValue> pairs held in parallel primitive arrays, as an alternative to a list of
+ * OrderLineObj. The arrays are reused by calling clear, so evaluating many candidates against the same data does not
+ * allocate or box anything once the arrays have grown to the size of the data.
+ *
+ * Class values are held as ints, as they are always the index of the class. Ordering is the same as for OrderLineObj,
+ * i.e. sort is stable and insert places a value where Collections.binarySearch would, so qualities computed from
+ * either are identical.
+ */
+public final class OrderLine implements Serializable {
+
+    private double[] distances;
+    private int[] classVals;
+    private int size;
+    // merge sort buffers
+    private transient double[] distanceBuffer;
+    private transient int[] classValBuffer;
+
+    public OrderLine() {
+        this(16);
+    }
+
+    public OrderLine(int capacity) {
+        distances = new double[Math.max(1, capacity)];
+        classVals = new int[distances.length];
+    }
+
+    /**
+     * Empties the orderline, keeping the arrays for reuse
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getDistance(int index) {
+        return distances[index];
+    }
+
+    public double getClassVal(int index) {
+        return classVals[index];
+    }
+
+    public int getClassIndex(int index) {
+        return classVals[index];
+    }
+
+    /**
+     * Appends a pair to the end of the orderline
+     * @param distance distance from the series to the shapelet being assessed
+     * @param classVal the class value of the series
+     */
+    public void add(double distance, double classVal) {
+        ensureCapacity(size + 1);
+        distances[size] = distance;
+        classVals[size] = (int) classVal;
+        size++;
+    }
+
+    /**
+     * Inserts a pair into a sorted orderline, keeping it sorted
+     * @param distance distance from the series to the shapelet being assessed
+     * @param classVal the class value of the series
+     */
+    public void insert(double distance, double classVal) {
+        // the same search as Collections.binarySearch with OrderLineObj, so equal distances land in the same place
+        int low = 0;
+        int high = size - 1;
+        int index = -1;
+        while(low <= high) {
+            final int mid = (low + high) >>> 1;
+            final double midDistance = distances[mid];
+            if(midDistance < distance) {
+                low = mid + 1;
+            } else if(midDistance == distance) {
+                index = mid;
+                break;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if(index < 0) {
+            index = low;
+        }
+        ensureCapacity(size + 1);
+        System.arraycopy(distances, index, distances, index + 1, size - index);
+        System.arraycopy(classVals, index, classVals, index + 1, size - index);
+        distances[index] = distance;
+        classVals[index] = (int) classVal;
+        size++;
+    }
+
+    /**
+     * Sorts by ascending distance. The sort is stable, as Collections.sort is
+     */
+    public void sort() {
+        if(distanceBuffer == null || distanceBuffer.length < size) {
+            distanceBuffer = new double[distances.length];
+            classValBuffer = new int[distances.length];
+        }
+        // insertion sort short runs then merge them
+        final int run = 16;
+        for(int start = 0; start < size; start += run) {
+            final int end = Math.min(start + run, size);
+            for(int i = start + 1; i < end; i++) {
+                final double distance = distances[i];
+                final int classVal = classVals[i];
+                int j = i - 1;
+                while(j >= start && distances[j] > distance) {
+                    distances[j + 1] = distances[j];
+                    classVals[j + 1] = classVals[j];
+                    j--;
+                }
+                distances[j + 1] = distance;
+                classVals[j + 1] = classVal;
+            }
+        }
+        double[] fromDistances = distances;
+        int[] fromClassVals = classVals;
+        double[] toDistances = distanceBuffer;
+        int[] toClassVals = classValBuffer;
+        for(int width = run; width < size; width <<= 1) {
+            for(int low = 0; low < size; low += width << 1) {
+                final int mid = Math.min(low + width, size);
+                final int high = Math.min(low + (width << 1), size);
+                int i = low;
+                int j = mid;
+                for(int k = low; k < high; k++) {
+                    // take from the left on ties to keep the sort stable
+                    if(i < mid && (j >= high || fromDistances[i] <= fromDistances[j])) {
+                        toDistances[k] = fromDistances[i];
+                        toClassVals[k] = fromClassVals[i];
+                        i++;
+                    } else {
+                        toDistances[k] = fromDistances[j];
+                        toClassVals[k] = fromClassVals[j];
+                        j++;
+                    }
+                }
+            }
+            final double[] tempDistances = fromDistances;
+            fromDistances = toDistances;
+            toDistances = tempDistances;
+            final int[] tempClassVals = fromClassVals;
+            fromClassVals = toClassVals;
+            toClassVals = tempClassVals;
+        }
+        // keep the sorted arrays, the others become the buffers
+        distances = fromDistances;
+        classVals = fromClassVals;
+        distanceBuffer = toDistances;
+        classValBuffer = toClassVals;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if(capacity > distances.length) {
+            final int length = Math.max(capacity, distances.length * 2);
+            final double[] newDistances = new double[length];
+            final int[] newClassVals = new int[length];
+            System.arraycopy(distances, 0, newDistances, 0, size);
+            System.arraycopy(classVals, 0, newClassVals, 0, size);
+            distances = newDistances;
+            classVals = newClassVals;
+        }
+    }
+
+    /**
+     * @return the orderline as a list of OrderLineObj, for quality measures which only work on lists
+     */
+    public List<OrderLineObj> toList() {
+        final List<OrderLineObj> list = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            list.add(new OrderLineObj(distances[i], classVals[i]));
+        }
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < size; i++) {
+            if(i > 0) {
+                builder.append(' ');
+            }
+            builder.append(distances[i]).append(',').append((double) classVals[i]);
+        }
+        return builder.toString();
+    }
+}
@@ -171,6 +171,11 @@ public class Shapelet implements Comparable<Shapelet>, Serializable
         this.qualityValue = this.qualityType.calculateQuality(orderline, classDistribution);
     }
     
+    public void calculateQuality(OrderLine orderline, ClassCounts classDistribution)
+    {
+        this.qualityValue = this.qualityType.calculateQuality(orderline, classDistribution);
+    }
+
     public void calculateSeperationGap(List<OrderLineObj> orderline ){
         this.separationGap = this.qualityType.calculateSeperationGap(orderline);
     }
@@ -0,0 +1,212 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tsml.transformers.shapelet_tools;
+
+import static utilities.rescalers.ZNormalisation.ROUNDING_ERROR_CORRECTION;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.TreeMap;
+import weka.core.Instance;
+
+/**
+ * A set of univariate shapelets compiled for transforming single series, e.g. classifying one test case at a time.
+ * The shapelets are grouped by length. For each length the series is scanned once, maintaining the running mean and
+ * stdv, and each subsequence is z-normalised once and compared to every shapelet of that length. Each comparison is
+ * in order of descending absolute shapelet value and abandons once it cannot beat the best so far for that shapelet.
+ *
+ * Distances are the z-normalised Euclidean distance of ShapeletDistance, over the same subsequences, so the features
+ * match those of transforming by the univariate distance functions (up to rounding).
+ *
+ * A bank holds no state between calls so it can be used by several threads at once.
+ */
+public class ShapeletBank implements Serializable {
+
+    // the number of shapelets
+    private final int size;
+    // the longest shapelet
+    private final int maxLength;
+    // the length of each group
+    private final int[] lengths;
+    // the output index of each shapelet in each group
+    private final int[][] indices;
+    // the values of each shapelet in order of descending absolute value, and their position in the shapelet
+    private final double[][][] orderedContents;
+    private final int[][][] orders;
+    // the sum of squares of each shapelet, i.e. its distance to a flat subsequence
+    private final double[][] flatDistances;
+
+    /**
+     * @param shapelets univariate shapelets with content. The feature of each shapelet is output at its index
+     */
+    public ShapeletBank(List<Shapelet> shapelets) {
+        size = shapelets.size();
+        final TreeMap<Integer, Integer> groupSizes = new TreeMap<>();
+        for(Shapelet shapelet : shapelets) {
+            groupSizes.merge(shapelet.getLength(), 1, Integer::sum);
+        }
+        final int numGroups = groupSizes.size();
+        lengths = new int[numGroups];
+        indices = new int[numGroups][];
+        orderedContents = new double[numGroups][][];
+        orders = new int[numGroups][][];
+        flatDistances = new double[numGroups][];
+        final TreeMap<Integer, Integer> groupOf = new TreeMap<>();
+        int group = 0;
+        for(Integer length : groupSizes.keySet()) {
+            final int groupSize = groupSizes.get(length);
+            lengths[group] = length;
+            indices[group] = new int[groupSize];
+            orderedContents[group] = new double[groupSize][];
+            orders[group] = new int[groupSize][];
+            flatDistances[group] = new double[groupSize];
+            groupOf.put(length, group++);
+        }
+        maxLength = numGroups == 0 ? 0 : lengths[numGroups - 1];
+        final int[] groupCounts = new int[numGroups];
+        for(int i = 0; i < size; i++) {
+            final Shapelet shapelet = shapelets.get(i);
+            group = groupOf.get(shapelet.getLength());
+            final int member = groupCounts[group]++;
+            indices[group][member] = i;
+            compile(shapelet.getUnivariateShapeletContent(), lengths[group], group, member);
+        }
+    }
+
+    // order the shapelet by descending absolute value
+    private void compile(double[] content, int length, int group, int member) {
+        final int[] order = new int[length];
+        for(int i = 0; i < length; i++) {
+            final double value = Math.abs(content[i]);
+            int j = i - 1;
+            while(j >= 0 && Math.abs(content[order[j]]) < value) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = i;
+        }
+        final double[] orderedContent = new double[length];
+        double flatDistance = 0;
+        for(int i = 0; i < length; i++) {
+            orderedContent[i] = content[order[i]];
+            flatDistance += orderedContent[i] * orderedContent[i];
+        }
+        orders[group][member] = order;
+        orderedContents[group][member] = orderedContent;
+        flatDistances[group][member] = flatDistance;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the distance from the series to every shapelet
+     * @param timeSeries the series, with the class value on the end as with toDoubleArray
+     * @return the distance to each shapelet, in the order given on construction
+     */
+    public double[] transform(double[] timeSeries) {
+        final double[] distances = new double[size];
+        final double[] subsequence = new double[maxLength];
+        for(int group = 0; group < lengths.length; group++) {
+            transform(timeSeries, group, subsequence, distances);
+        }
+        return distances;
+    }
+
+    /**
+     * Finds the distance from the series to every shapelet
+     * @param instance the series, univariate
+     * @return the distance to each shapelet, in the order given on construction
+     */
+    public double[] transform(Instance instance) {
+        return transform(instance.toDoubleArray());
+    }
+
+    private void transform(double[] timeSeries, int group, double[] subsequence, double[] distances) {
+        final int length = lengths[group];
+        final int[] groupIndices = indices[group];
+        final double[][] groupContents = orderedContents[group];
+        final int[][] groupOrders = orders[group];
+        final double[] groupFlatDistances = flatDistances[group];
+        final int groupSize = groupIndices.length;
+        for(int k = 0; k < groupSize; k++) {
+            distances[groupIndices[k]] = Double.MAX_VALUE;
+        }
+        // the same subsequences as ShapeletDistance, i.e. stopping short of the class value
+        final int numSubsequences = timeSeries.length - length;
+        // running sums over the current subsequence, missing its last value
+        double sum = 0;
+        double sumsq = 0;
+        for(int i = 0; i < length - 1 && i < timeSeries.length; i++) {
+            sum += timeSeries[i];
+            sumsq += timeSeries[i] * timeSeries[i];
+        }
+        for(int i = 0; i < numSubsequences; i++) {
+            final double end = timeSeries[i + length - 1];
+            sum += end;
+            sumsq += end * end;
+            final double mean = sum / length;
+            final double variance = (sumsq - (mean * mean * length)) / length;
+            final double stdv = (variance < ROUNDING_ERROR_CORRECTION) ? 0.0 : Math.sqrt(variance);
+            if(stdv == 0.0) {
+                // a flat subsequence normalises to all zeros
+                for(int k = 0; k < groupSize; k++) {
+                    if(groupFlatDistances[k] < distances[groupIndices[k]]) {
+                        distances[groupIndices[k]] = groupFlatDistances[k];
+                    }
+                }
+            } else if(groupSize == 1) {
+                // a lone shapelet normalises as it goes, so abandoning skips the rest of the subsequence
+                final double[] content = groupContents[0];
+                final int[] order = groupOrders[0];
+                final double bestSum = distances[groupIndices[0]];
+                double distance = 0;
+                for(int j = 0; j < length && distance < bestSum; j++) {
+                    final double temp = content[j] - (timeSeries[i + order[j]] - mean) / stdv;
+                    distance += temp * temp;
+                }
+                if(distance < bestSum) {
+                    distances[groupIndices[0]] = distance;
+                }
+            } else {
+                // normalise once for all the shapelets of this length
+                for(int j = 0; j < length; j++) {
+                    subsequence[j] = (timeSeries[i + j] - mean) / stdv;
+                }
+                for(int k = 0; k < groupSize; k++) {
+                    final double[] content = groupContents[k];
+                    final int[] order = groupOrders[k];
+                    final double bestSum = distances[groupIndices[k]];
+                    double distance = 0;
+                    for(int j = 0; j < length && distance < bestSum; j++) {
+                        final double temp = content[j] - subsequence[order[j]];
+                        distance += temp * temp;
+                    }
+                    if(distance < bestSum) {
+                        distances[groupIndices[k]] = distance;
+                    }
+                }
+            }
+            final double start = timeSeries[i];
+            sum -= start;
+            sumsq -= start * start;
+        }
+        for(int k = 0; k < groupSize; k++) {
+            final double bestSum = distances[groupIndices[k]];
+            distances[groupIndices[k]] = (bestSum == 0.0) ? 0.0 : (1.0 / length * bestSum);
+        }
+    }
+}
@@ -39,9 +39,11 @@ import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistan
 import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.DistanceType.DIMENSION;
 import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.DistanceType.IMPROVED_ONLINE;
 import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.DistanceType.INDEPENDENT;
+import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.DistanceType.MASS;
 import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.DistanceType.NORMAL;
 import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.DistanceType.ONLINE;
 import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.DistanceType.ONLINE_CACHED;
+import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.DistanceType.SLIDING;
 import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.RescalerType.*;
 
 /**
@@ -59,6 +61,8 @@ public class ShapeletTransformFactory {
         dCons.put(IMPROVED_ONLINE, ImprovedOnlineShapeletDistance::new);
         dCons.put(CACHED, CachedShapeletDistance::new);
         dCons.put(ONLINE_CACHED, OnlineCachedShapeletDistance::new);
+        dCons.put(SLIDING, SlidingShapeletDistance::new);
+        dCons.put(MASS, MassShapeletDistance::new);
         dCons.put(DEPENDENT, MultivariateDependentDistance::new);
         dCons.put(INDEPENDENT, MultivariateIndependentDistance::new);
         dCons.put(DIMENSION, DimensionDistance::new);
@@ -110,6 +114,8 @@ public class ShapeletTransformFactory {
         st.setShapeletMinAndMax(options.getMinLength(), options.getMaxLength());
         st.setNumberOfShapelets(options.getkShapelets());
         st.setShapeletDistance(createDistance(options.getDistance()));
+        if(options.getTransformDistance() != null)
+            st.setTransformShapeletDistance(createDistance(options.getTransformDistance()));
         st.setRescaler(createRescaler(options.getRescalerType()));
         st.setSearchFunction(createSearch(options.getSearchOptions()));
         st.setQualityMeasure(options.getQualityChoice());
@@ -41,6 +41,7 @@ public class ShapeletTransformFactoryOptions {
     private final boolean roundRobin;
     private final boolean candidatePruning;
     private final DistanceType distance;
+    private final DistanceType transformDistance;
     private final ShapeletQualityChoice qualityChoice;
     private final ShapeletSearchOptions searchOptions;
     private final RescalerType rescalerType;
@@ -52,6 +53,7 @@ public class ShapeletTransformFactoryOptions {
         balanceClasses = options.balanceClasses;
         binaryClassValue = options.binaryClassValue;
         distance = options.dist;
+        transformDistance = options.transformDist;
         qualityChoice = options.qualityChoice;
         searchOptions = options.searchOptions;
         roundRobin = options.roundRobin;
@@ -82,6 +84,9 @@ public class ShapeletTransformFactoryOptions {
     public DistanceType getDistance() {
         return distance;
     }
+    public DistanceType getTransformDistance() {
+        return transformDistance;
+    }
     public boolean useRoundRobin(){
         return roundRobin;
     }
@@ -115,6 +120,7 @@ public class ShapeletTransformFactoryOptions {
         private boolean roundRobin;
         private boolean candidatePruning;
         private DistanceType dist;
+        private DistanceType transformDist;
         private ShapeletQualityChoice qualityChoice;
         private ShapeletSearchOptions searchOptions;
         private RescalerType rescalerType;
@@ -192,6 +198,12 @@ public class ShapeletTransformFactoryOptions {
             dist = dis;
             return this;
         }
+
+        // distance used to transform data by the final shapelets, null to use the search distance
+        public ShapeletTransformOptions setTransformDistanceType(DistanceType dis){
+            transformDist = dis;
+            return this;
+        }
         
                 
         public ShapeletTransformOptions setRescalerType(RescalerType type){
@@ -230,6 +242,8 @@ public class ShapeletTransformFactoryOptions {
             String str="DistType,"+dist+",QualityMeasure,"+qualityChoice+",RescaleType,"+rescalerType;
             str+=",UseRoundRobin,"+roundRobin+",useCandidatePruning,"+candidatePruning+",UseClassBalancing,"+balanceClasses;
             str+=",useBinaryClassValue,"+binaryClassValue+",minShapeletLength,"+minLength+",maxShapeletLength,"+maxLength;
+            if(transformDist!=null)
+                str+=",TransformDistType,"+transformDist;
             return str;
         }
     }
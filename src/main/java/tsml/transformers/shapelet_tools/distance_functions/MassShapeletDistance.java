@@ -0,0 +1,239 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tsml.transformers.shapelet_tools.distance_functions;
+
+import static utilities.rescalers.ZNormalisation.ROUNDING_ERROR_CORRECTION;
+
+import tsml.filters.FFT;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Z-normalised Euclidean distance between a shapelet and every subsequence of a series at once using FFT convolution
+ * (Mueen's Algorithm for Similarity Search, MASS). The dot products of the shapelet with every subsequence are found
+ * by a single multiply and inverse FFT, and the subsequence means and stdvs come from prefix sums, giving the whole
+ * distance profile in O(m log m) rather than O(m l).
+ *
+ * This is intended for transforming data by a fixed set of shapelets (i.e. buildTansformedDataset), where every
+ * shapelet is compared to every series. The FFT and prefix sums of each series are computed once (per call to init)
+ * and reused for all shapelets, and the FFT of each shapelet is computed once and reused for all series. Series are
+ * keyed by the id passed to calculate and the instance is checked so stale entries are never used.
+ *
+ * Where the shapelet is short enough that scanning is cheaper than the convolution, the sliding scan is used instead.
+ */
+public class MassShapeletDistance extends SlidingShapeletDistance {
+
+    // the fft size the shapelet has been transformed for, -1 if not transformed
+    protected int shapeletFftSize = -1;
+    // the fft of the reversed shapelet
+    protected double[] shapeletReal = new double[0];
+    protected double[] shapeletImag = new double[0];
+    // sum and sum of squares of the shapelet content
+    protected double shapeletSum;
+    protected double shapeletSumSq;
+    // per series cache, indexed by series id. Not serialised as it is rebuilt on demand
+    protected transient Instance[] cachedInstances;
+    protected transient double[][] seriesReal;
+    protected transient double[][] seriesImag;
+    protected transient double[][] prefixSums;
+    protected transient double[][] prefixSumSqs;
+    // work buffers
+    protected double[] workReal = new double[0];
+    protected double[] workImag = new double[0];
+    protected double[] workPrefixSum = new double[0];
+    protected double[] workPrefixSumSq = new double[0];
+
+    @Override
+    public void init(Instances data) {
+        super.init(data);
+        final int size = data == null ? 0 : data.numInstances();
+        cachedInstances = new Instance[size];
+        seriesReal = new double[size][];
+        seriesImag = new double[size][];
+        prefixSums = new double[size][];
+        prefixSumSqs = new double[size][];
+    }
+
+    @Override
+    protected void reorder() {
+        super.reorder();
+        // the shapelet has changed so its fft must be recomputed
+        shapeletFftSize = -1;
+        final double[] content = cand.getShapeletContent();
+        shapeletSum = 0;
+        shapeletSumSq = 0;
+        for(int i = 0; i < length; i++) {
+            shapeletSum += content[i];
+            shapeletSumSq += content[i] * content[i];
+        }
+    }
+
+    @Override
+    public double calculate(Instance timeSeries, int timeSeriesId) {
+        // series length, excluding the class value
+        final int seriesLength = timeSeries.numAttributes() - 1;
+        if(!useFft(seriesLength) || timeSeriesId < 0) {
+            return super.calculate(timeSeries, timeSeriesId);
+        }
+        if(cachedInstances == null || timeSeriesId >= cachedInstances.length) {
+            growCache(timeSeriesId + 1);
+        }
+        final int fftSize = fftSize(seriesLength);
+        if(cachedInstances[timeSeriesId] != timeSeries || seriesReal[timeSeriesId].length != fftSize) {
+            final double[] real = new double[fftSize];
+            final double[] imag = new double[fftSize];
+            final double[] prefixSum = new double[seriesLength + 1];
+            final double[] prefixSumSq = new double[seriesLength + 1];
+            for(int i = 0; i < seriesLength; i++) {
+                real[i] = timeSeries.value(i);
+            }
+            prepareSeries(real, imag, prefixSum, prefixSumSq, seriesLength);
+            cachedInstances[timeSeriesId] = timeSeries;
+            seriesReal[timeSeriesId] = real;
+            seriesImag[timeSeriesId] = imag;
+            prefixSums[timeSeriesId] = prefixSum;
+            prefixSumSqs[timeSeriesId] = prefixSumSq;
+        }
+        return profileMin(seriesReal[timeSeriesId], seriesImag[timeSeriesId], prefixSums[timeSeriesId],
+            prefixSumSqs[timeSeriesId], seriesLength);
+    }
+
+    //we take in a start pos, but we also start from 0.
+    @Override
+    public double calculate(double[] timeSeries, int timeSeriesId) {
+        // the series has the class value on the end, as with toDoubleArray
+        final int seriesLength = timeSeries.length - 1;
+        if(!useFft(seriesLength)) {
+            return super.calculate(timeSeries, timeSeriesId);
+        }
+        final int fftSize = fftSize(seriesLength);
+        if(workPrefixSum.length < seriesLength + 1) {
+            workPrefixSum = new double[seriesLength + 1];
+            workPrefixSumSq = new double[seriesLength + 1];
+        }
+        final double[] real = new double[fftSize];
+        System.arraycopy(timeSeries, 0, real, 0, seriesLength);
+        final double[] imag = new double[fftSize];
+        prepareSeries(real, imag, workPrefixSum, workPrefixSumSq, seriesLength);
+        return profileMin(real, imag, workPrefixSum, workPrefixSumSq, seriesLength);
+    }
+
+    // whether the convolution is cheaper than scanning every subsequence
+    protected boolean useFft(int seriesLength) {
+        final int numSubsequences = seriesLength - length + 1;
+        if(numSubsequences <= 0) {
+            return false;
+        }
+        final int fftSize = fftSize(seriesLength);
+        final long scanCost = (long) numSubsequences * length;
+        final long fftCost = 4L * fftSize * Integer.numberOfTrailingZeros(fftSize);
+        return scanCost > fftCost;
+    }
+
+    // the convolution does not wrap for the offsets of interest as long as the fft covers the series
+    protected static int fftSize(int seriesLength) {
+        return Integer.highestOneBit(Math.max(1, seriesLength - 1)) << 1;
+    }
+
+    private void growCache(int size) {
+        final Instance[] instances = new Instance[size];
+        if(cachedInstances == null) {
+            cachedInstances = new Instance[0];
+            seriesReal = seriesImag = prefixSums = prefixSumSqs = new double[0][];
+        }
+        System.arraycopy(cachedInstances, 0, instances, 0, cachedInstances.length);
+        cachedInstances = instances;
+        seriesReal = copyOf(seriesReal, size);
+        seriesImag = copyOf(seriesImag, size);
+        prefixSums = copyOf(prefixSums, size);
+        prefixSumSqs = copyOf(prefixSumSqs, size);
+    }
+
+    private static double[][] copyOf(double[][] array, int size) {
+        final double[][] copy = new double[size][];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    // transform the series (held in real) and find its prefix sums
+    private void prepareSeries(double[] real, double[] imag, double[] prefixSum, double[] prefixSumSq,
+        int seriesLength) {
+        prefixSum[0] = 0;
+        prefixSumSq[0] = 0;
+        for(int i = 0; i < seriesLength; i++) {
+            prefixSum[i + 1] = prefixSum[i] + real[i];
+            prefixSumSq[i + 1] = prefixSumSq[i] + real[i] * real[i];
+        }
+        FFT.getPlan(real.length).transform(real, imag);
+    }
+
+    private void prepareShapelet(int fftSize) {
+        if(shapeletFftSize == fftSize) {
+            return;
+        }
+        if(shapeletReal.length != fftSize) {
+            shapeletReal = new double[fftSize];
+            shapeletImag = new double[fftSize];
+        }
+        final double[] content = cand.getShapeletContent();
+        for(int i = 0; i < fftSize; i++) {
+            // reversed so the convolution gives the dot product with each subsequence
+            shapeletReal[i] = i < length ? content[length - 1 - i] : 0;
+            shapeletImag[i] = 0;
+        }
+        FFT.getPlan(fftSize).transform(shapeletReal, shapeletImag);
+        shapeletFftSize = fftSize;
+    }
+
+    // the min squared distance over the distance profile, scaled by length
+    private double profileMin(double[] real, double[] imag, double[] prefixSum, double[] prefixSumSq,
+        int seriesLength) {
+        final int fftSize = real.length;
+        prepareShapelet(fftSize);
+        if(workReal.length != fftSize) {
+            workReal = new double[fftSize];
+            workImag = new double[fftSize];
+        }
+        for(int i = 0; i < fftSize; i++) {
+            workReal[i] = real[i] * shapeletReal[i] - imag[i] * shapeletImag[i];
+            workImag[i] = real[i] * shapeletImag[i] + imag[i] * shapeletReal[i];
+        }
+        FFT.getPlan(fftSize).inverse(workReal, workImag);
+        double bestSum = Double.MAX_VALUE;
+        final int numSubsequences = seriesLength - length + 1;
+        for(int i = 0; i < numSubsequences; i++) {
+            incrementCount();
+            final double sum = prefixSum[i + length] - prefixSum[i];
+            final double sumsq = prefixSumSq[i + length] - prefixSumSq[i];
+            final double mean = sum / length;
+            final double variance = (sumsq - (mean * mean * length)) / length;
+            final double stdv = (variance < ROUNDING_ERROR_CORRECTION) ? 0.0 : Math.sqrt(variance);
+            double distance;
+            if(stdv == 0.0) {
+                // a flat subsequence normalises to all zeros
+                distance = shapeletSumSq;
+            } else {
+                final double dotProduct = workReal[i + length - 1];
+                distance = shapeletSumSq - 2 * (dotProduct - mean * shapeletSum) / stdv + length;
+            }
+            if(distance < bestSum) {
+                bestSum = distance;
+            }
+        }
+        // rounding can take a perfect match just below zero
+        bestSum = Math.max(0, bestSum);
+        return (bestSum == 0.0) ? 0.0 : (1.0 / length * bestSum);
+    }
+}
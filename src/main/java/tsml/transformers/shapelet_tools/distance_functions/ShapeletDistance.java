@@ -38,6 +38,8 @@ public class ShapeletDistance implements Serializable{
         IMPROVED_ONLINE,     // online calculation with variable start and bespoke abandon SEE DAWAK PAPER
         CACHED,         // Mueen's pre-cached version see Logical Shapelets paper
         ONLINE_CACHED,  // Untested hybrid between online and caching, unpublished, TO REMOVE
+        SLIDING,        // running mean and stdv with reordered early abandon and no allocations, UCR suite style
+        MASS,           // whole distance profile by fft convolution, for transforming by a fixed set of shapelets
     // These three are for multivariate
         DEPENDENT,      // Uses pointwise distance over dimensions
         INDEPENDENT,    // Uses the average over individual dimensions
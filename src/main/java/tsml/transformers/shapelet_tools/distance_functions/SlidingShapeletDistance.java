@@ -0,0 +1,138 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tsml.transformers.shapelet_tools.distance_functions;
+
+import static utilities.rescalers.ZNormalisation.ROUNDING_ERROR_CORRECTION;
+
+import tsml.transformers.shapelet_tools.Shapelet;
+import weka.core.Instance;
+
+/**
+ * Sliding z-normalised Euclidean distance in the style of the UCR suite. The mean and standard deviation of each
+ * subsequence are maintained as running sums whilst sliding along the series, so subsequences are never copied or
+ * rescaled. The candidate is compared in order of descending absolute value, as those points contribute the most to
+ * the distance, and each comparison is abandoned once it cannot beat the best so far.
+ *
+ * The series buffer, the ordering and the reordered candidate are all reused between calls, so there are no
+ * allocations per subsequence or per series.
+ */
+public class SlidingShapeletDistance extends ShapeletDistance {
+
+    // candidate indices in order of descending absolute value
+    protected int[] order = new int[0];
+    // the candidate values in that order
+    protected double[] orderedContent = new double[0];
+    // the series of the last instance
+    protected double[] series = new double[0];
+
+    @Override
+    public void setShapelet(Shapelet shp) {
+        super.setShapelet(shp);
+        reorder();
+    }
+
+    @Override
+    public void setCandidate(Instance inst, int start, int len, int dim) {
+        super.setCandidate(inst, start, len, dim);
+        reorder();
+    }
+
+    protected void reorder() {
+        final double[] content = cand.getShapeletContent();
+        if(order.length != length) {
+            order = new int[length];
+            orderedContent = new double[length];
+        }
+        // insertion sort, candidates are short and this avoids boxing
+        for(int i = 0; i < length; i++) {
+            final double value = Math.abs(content[i]);
+            int j = i - 1;
+            while(j >= 0 && Math.abs(content[order[j]]) < value) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = i;
+        }
+        for(int i = 0; i < length; i++) {
+            orderedContent[i] = content[order[i]];
+        }
+    }
+
+    @Override
+    public double calculate(Instance timeSeries, int timeSeriesId) {
+        // read into the reused buffer rather than toDoubleArray. The class value is kept on the end as with
+        // toDoubleArray so the subsequences scanned are the same as the other distance types
+        final int numAttributes = timeSeries.numAttributes();
+        if(series.length != numAttributes) {
+            series = new double[numAttributes];
+        }
+        for(int i = 0; i < numAttributes; i++) {
+            series[i] = timeSeries.value(i);
+        }
+        return calculate(series, timeSeriesId);
+    }
+
+    //we take in a start pos, but we also start from 0.
+    @Override
+    public double calculate(double[] timeSeries, int timeSeriesId) {
+        final int numSubsequences = timeSeries.length - length;
+        double bestSum = Double.MAX_VALUE;
+        // running sums over the current subsequence, missing its last value
+        double sum = 0;
+        double sumsq = 0;
+        for(int i = 0; i < length - 1 && i < timeSeries.length; i++) {
+            sum += timeSeries[i];
+            sumsq += timeSeries[i] * timeSeries[i];
+        }
+        for(int i = 0; i < numSubsequences; i++) {
+            final double end = timeSeries[i + length - 1];
+            sum += end;
+            sumsq += end * end;
+            final double mean = sum / length;
+            final double variance = (sumsq - (mean * mean * length)) / length;
+            final double stdv = (variance < ROUNDING_ERROR_CORRECTION) ? 0.0 : Math.sqrt(variance);
+            final double currentSum = stdv == 0.0 ? flatDistance(bestSum) : distance(timeSeries, i, mean, stdv,
+                bestSum);
+            if(currentSum < bestSum) {
+                bestSum = currentSum;
+            }
+            final double start = timeSeries[i];
+            sum -= start;
+            sumsq -= start * start;
+        }
+        return (bestSum == 0.0) ? 0.0 : (1.0 / length * bestSum);
+    }
+
+    // distance between the candidate and the subsequence starting at offset, abandoning once it reaches the best
+    protected double distance(double[] timeSeries, int offset, double mean, double stdv, double bestSum) {
+        double sum = 0;
+        for(int j = 0; j < length && sum < bestSum; j++) {
+            incrementCount();
+            final double temp = orderedContent[j] - (timeSeries[offset + order[j]] - mean) / stdv;
+            sum += temp * temp;
+        }
+        return sum;
+    }
+
+    // distance between the candidate and a flat subsequence, which normalises to all zeros
+    protected double flatDistance(double bestSum) {
+        double sum = 0;
+        for(int j = 0; j < length && sum < bestSum; j++) {
+            incrementCount();
+            sum += orderedContent[j] * orderedContent[j];
+        }
+        return sum;
+    }
+}
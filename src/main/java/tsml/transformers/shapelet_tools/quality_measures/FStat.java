@@ -19,6 +19,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import utilities.class_counts.ClassCounts;
+import tsml.transformers.shapelet_tools.OrderLine;
 import tsml.transformers.shapelet_tools.OrderLineObj;
 /**
  *
@@ -31,6 +32,10 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
     public class FStat implements ShapeletQualityMeasure, Serializable
     {
 
+        //per class sums for the primitive orderline, reused between calls
+        private transient double[] sums;
+        private transient double[] sumOfSquares;
+
         protected FStat(){
             
         }
@@ -113,6 +118,66 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
             return Double.isNaN(f) ? 0.0 : f;
         }
 
+        /**
+         * As calculateQuality for a list, but without boxing or allocating per call.
+         */
+        @Override
+        public double calculateQuality(OrderLine orderline, ClassCounts classDistribution)
+        {
+            //sorted so the sums are accumulated in the same order as the list version
+            orderline.sort();
+            int numClasses = classDistribution.size();
+            int numInstances = orderline.size();
+            if (sums == null || sums.length < numClasses)
+            {
+                sums = new double[numClasses];
+                sumOfSquares = new double[numClasses];
+            }
+            for (int i = 0; i < numClasses; i++)
+            {
+                sums[i] = 0;
+                sumOfSquares[i] = 0;
+            }
+            for (int i = 0; i < numInstances; i++)
+            {
+                int c = orderline.getClassIndex(i);
+                double thisDist = orderline.getDistance(i);
+                sums[c] += thisDist;
+                sumOfSquares[c] += thisDist * thisDist;
+            }
+
+            double part1 = 0;
+            double part2 = 0;
+            for (int i = 0; i < numClasses; i++)
+            {
+                part1 += sumOfSquares[i];
+                part2 += sums[i];
+            }
+            part2 *= part2;
+            part2 /= numInstances;
+            double ssTotal = part1 - part2;
+
+            part1 = 0;
+            part2 = 0;
+            for (int i = 0; i < numClasses; i++)
+            {
+                part1 += (double) (sums[i] * sums[i]) / classDistribution.get((double) i);
+                part2 += sums[i];
+            }
+            double ssAmoung = part1 - (part2 * part2) / numInstances;
+            double ssWithin = ssTotal - ssAmoung;
+
+            int dfAmoung = numClasses - 1;
+            int dfWithin = numInstances - numClasses;
+
+            double msAmoung = ssAmoung / dfAmoung;
+            double msWithin = ssWithin / dfWithin;
+
+            double f = msAmoung / msWithin;
+
+            return Double.isNaN(f) ? 0.0 : f;
+        }
+
         /**
          *
          * @param orderline
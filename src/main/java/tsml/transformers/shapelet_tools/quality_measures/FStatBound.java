@@ -57,38 +57,51 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
         }
         
         @Override
-        public void updateOrderLine(OrderLineObj orderLineObj){
-            super.updateOrderLine(orderLineObj);
+        public void reset(){
+            super.reset();
+            for(int i = 0; i < sums.length; i++){
+                sums[i] = 0;
+                sumsSquared[i] = 0;
+                sumOfSquares[i] = 0;
+            }
+            meanDistOrderLine.clear();
+            minDistance = -1.0;
+            maxDistance = -1.0;
+        }
+
+        @Override
+        public void updateOrderLine(double distance, double classVal){
+            super.updateOrderLine(distance, classVal);
             
-            int c = (int) orderLineObj.getClassVal();
-            double thisDist = orderLineObj.getDistance();
+            int c = (int) classVal;
+            double thisDist = distance;
             sums[c] += thisDist;
             sumOfSquares[c] += thisDist * thisDist;
             sumsSquared[c] = sums[c] * sums[c];
             
             //Update min/max distance observed so far
-            if(orderLineObj.getDistance() != 0.0){
-                if(minDistance == -1 || minDistance > orderLineObj.getDistance()){
-                    minDistance = orderLineObj.getDistance();
+            if(distance != 0.0){
+                if(minDistance == -1 || minDistance > distance){
+                    minDistance = distance;
                 }
             
-                if(maxDistance == -1 || maxDistance < orderLineObj.getDistance()){
-                    maxDistance = orderLineObj.getDistance();
+                if(maxDistance == -1 || maxDistance < distance){
+                    maxDistance = distance;
                 }
             }
             
             //Update mean distance orderline
             boolean isUpdated = false;
             for (OrderLineObj meanDistOrderLine1 : meanDistOrderLine) {
-                if (meanDistOrderLine1.getClassVal() == orderLineObj.getClassVal()) {
-                    meanDistOrderLine1.setDistance(sums[(int)orderLineObj.getClassVal()] / orderLineClassDist.get(orderLineObj.getClassVal()));
+                if (meanDistOrderLine1.getClassVal() == classVal) {
+                    meanDistOrderLine1.setDistance(sums[c] / orderLineClassDist.get(classVal));
                     isUpdated = true;
                     break;
                 }
             }
             
             if(!isUpdated){
-                meanDistOrderLine.add(new OrderLineObj(sums[(int)orderLineObj.getClassVal()] / orderLineClassDist.get(orderLineObj.getClassVal()), orderLineObj.getClassVal()));
+                meanDistOrderLine.add(new OrderLineObj(sums[c] / orderLineClassDist.get(classVal), classVal));
             }
         }
 
@@ -20,6 +20,7 @@ import java.util.Collections;
 import java.util.List;
 import utilities.class_counts.ClassCounts;
 import utilities.class_counts.TreeSetClassCounts;
+import tsml.transformers.shapelet_tools.OrderLine;
 import tsml.transformers.shapelet_tools.OrderLineObj;
 /**
  *
@@ -33,6 +34,10 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
     public class InformationGain implements ShapeletQualityMeasure, Serializable 
     {
 
+        //class counts either side of the split for the primitive orderline, reused between calls
+        private transient int[] lessCounts;
+        private transient int[] greaterCounts;
+
         protected InformationGain(){
             
         }
@@ -121,6 +126,76 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
             return bsfGain;
         }
 
+        /**
+         * As calculateQuality for a list, but without boxing or allocating per call. The class values must be the
+         * class indices, as they are for the lists.
+         */
+        @Override
+        public double calculateQuality(OrderLine orderline, ClassCounts classDistribution)
+        {
+            orderline.sort();
+            int numCounts = 0;
+            for (double j : classDistribution.keySet())
+            {
+                numCounts = Math.max(numCounts, (int) j + 1);
+            }
+            if (lessCounts == null || lessCounts.length < numCounts)
+            {
+                lessCounts = new int[numCounts];
+                greaterCounts = new int[numCounts];
+            }
+            final int numClasses = classDistribution.size();
+            int sumOfAllClasses = 0;
+            for (int j = 0; j < numCounts; j++)
+            {
+                lessCounts[j] = 0;
+                greaterCounts[j] = 0;
+            }
+            for (double j : classDistribution.keySet())
+            {
+                greaterCounts[(int) j] = classDistribution.get(j);
+                sumOfAllClasses += classDistribution.get(j);
+            }
+            // parent entropy will always be the same, so calculate just once
+            double parentEntropy = entropy(greaterCounts, numCounts, numClasses);
+
+            double lastDist = -1;
+            double thisDist;
+            double bsfGain = -1;
+            int sumOfLessClasses = 0;
+            int sumOfGreaterClasses = sumOfAllClasses;
+
+            for (int i = 0; i < orderline.size(); i++)
+            {
+                thisDist = orderline.getDistance(i);
+
+                //move the threshold along one (effectively by adding this dist to lessClasses
+                int thisClass = orderline.getClassIndex(i);
+                lessCounts[thisClass]++;
+                greaterCounts[thisClass]--;
+                sumOfLessClasses++;
+                sumOfGreaterClasses--;
+
+                // only split between distances, as in the list version
+                if (thisDist != lastDist)
+                {
+                    double lessFrac = (double) sumOfLessClasses / sumOfAllClasses;
+                    double entropyLess = entropy(lessCounts, numCounts, numClasses);
+
+                    double greaterFrac = (double) sumOfGreaterClasses / sumOfAllClasses;
+                    double entropyGreater = entropy(greaterCounts, numCounts, numClasses);
+
+                    double gain = parentEntropy - lessFrac * entropyLess - greaterFrac * entropyGreater;
+                    if (gain > bsfGain)
+                    {
+                        bsfGain = gain;
+                    }
+                }
+                lastDist = thisDist;
+            }
+            return bsfGain;
+        }
+
         public static double calculateSplitThreshold(List<OrderLineObj> orderline, ClassCounts classDistribution){
             Collections.sort(orderline);
             // for each split point, starting between 0 and 1, ending between end-1 and end
@@ -230,6 +305,38 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
             return entropy;
         }
 
+        /**
+         * As entropy for ClassCounts, for counts indexed by class value
+         * @param counts the count of each class
+         * @param numCounts the number of counts to use
+         * @param numClasses the number of classes in the distribution
+         * @return the entropy
+         */
+        public static double entropy(int[] counts, int numCounts, int numClasses)
+        {
+            if (numClasses == 1)
+            {
+                return 0;
+            }
+            int total = 0;
+            for (int i = 0; i < numCounts; i++)
+            {
+                total += counts[i];
+            }
+            double entropy = 0;
+            for (int i = 0; i < numCounts; i++)
+            {
+                double thisPart = (double) counts[i] / total;
+                double toAdd = -thisPart * Math.log10(thisPart) / Math.log10(2);
+                //if it was NaN we'd just add 0.
+                if (!Double.isNaN(toAdd))
+                {
+                    entropy += toAdd;
+                }
+            }
+            return entropy;
+        }
+
         @Override
         public double calculateSeperationGap(List<OrderLineObj> orderline) {
             throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
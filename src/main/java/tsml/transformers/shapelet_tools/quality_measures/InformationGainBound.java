@@ -13,10 +13,8 @@
  *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 package tsml.transformers.shapelet_tools.quality_measures;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Arrays;
 import utilities.class_counts.ClassCounts;
-import utilities.class_counts.TreeSetClassCounts;
 /**
  *
  * @author raj09hxu
@@ -24,6 +22,15 @@ import utilities.class_counts.TreeSetClassCounts;
 public class InformationGainBound extends ShapeletQualityBound{
         private double parentEntropy;
         boolean isExact;
+
+        //the class values in ascending order and the counts indexed by class value, reused between prune checks
+        private int[] classVals;
+        private int[] parentCounts;
+        private int[] orderLineCounts;
+        private int[] lessCounts;
+        private int[] greaterCounts;
+        //the classes assigned to the left for the exact bound, or already shifted for the fast bound
+        private boolean[] assigned;
         
         /**
          * Constructor to construct InformationGainBound
@@ -37,10 +44,37 @@ public class InformationGainBound extends ShapeletQualityBound{
             initParentFields(classDist, percentage);
             this.isExact = isExact;
             parentEntropy = InformationGain.entropy(parentClassDist);
+
+            classVals = new int[parentClassDist.size()];
+            int numCounts = 0, c = 0;
+            for(double j : parentClassDist.keySet()){
+                classVals[c++] = (int) j;
+                numCounts = Math.max(numCounts, (int) j + 1);
+            }
+            parentCounts = new int[numCounts];
+            for(int j : classVals){
+                parentCounts[j] = parentClassDist.get(j);
+            }
+            orderLineCounts = new int[numCounts];
+            lessCounts = new int[numCounts];
+            greaterCounts = new int[numCounts];
+            assigned = new boolean[numCounts];
         }
         protected InformationGainBound(ClassCounts classDist, int percentage){
             this(classDist,percentage,false);
         }
+
+        @Override
+        public void reset(){
+            super.reset();
+            Arrays.fill(orderLineCounts, 0);
+        }
+
+        @Override
+        public void updateOrderLine(double distance, double classVal){
+            super.updateOrderLine(distance, classVal);
+            orderLineCounts[(int) classVal]++;
+        }
            
         /**
          * Method to calculate the quality bound for the current orderline
@@ -48,34 +82,33 @@ public class InformationGainBound extends ShapeletQualityBound{
          */
         @Override
         protected double calculateBestQuality(){
-            Map<Double, Boolean> perms = new TreeMap<>();
             double bsfGain = -1;
                         
             //Cycle through all permutations
             if(isExact){
                 //Initialise perms
-                for(Double key : orderLineClassDist.keySet()){
-                    perms.put(key, Boolean.TRUE);
+                for(int key : classVals){
+                    assigned[key] = true;
                 }
             
-                for(int totalCycles = perms.keySet().size(); totalCycles > 1; totalCycles--){
+                for(int totalCycles = classVals.length; totalCycles > 1; totalCycles--){
                     for(int cycle = 0; cycle < totalCycles; cycle++){
                         int start = 0, count = 0;
-                        for(Double key : perms.keySet()){
-                            Boolean val = Boolean.TRUE;
+                        for(int key : classVals){
+                            boolean val = true;
                             if(cycle == start){
-                                val = Boolean.FALSE;
-                                int size = perms.keySet().size();
+                                val = false;
+                                int size = classVals.length;
                                 if(totalCycles <  size && count < (size - totalCycles)){
                                     count++;
                                     start--;
                                 }
                             }
-                            perms.put(key, val);
+                            assigned[key] = val;
                             start++;
                         }
                         //Check quality of current permutation
-                        double currentGain = computeIG(perms);
+                        double currentGain = computeIG(true);
 
                         if(currentGain > bsfGain){
                             bsfGain = currentGain;
@@ -88,7 +121,7 @@ public class InformationGainBound extends ShapeletQualityBound{
                     }
                 }
             }else{
-                double currentGain = computeIG(null);
+                double currentGain = computeIG(false);
                     
                 if(currentGain > bsfGain){
                     bsfGain = currentGain;
@@ -98,56 +131,54 @@ public class InformationGainBound extends ShapeletQualityBound{
             return bsfGain;
         }
         
-        private double computeIG(Map<Double, Boolean> perm){
+        private double computeIG(boolean perm){
             //Initialise class counts
-            TreeSetClassCounts lessClasses = new TreeSetClassCounts();
-            TreeSetClassCounts greaterClasses = new TreeSetClassCounts();
-            TreeMap<Double, Boolean> isShifted = new TreeMap<>();
+            Arrays.fill(lessCounts, 0);
+            Arrays.fill(greaterCounts, 0);
+            final int numCounts = parentCounts.length;
+            final int numClasses = classVals.length;
             
             int countOfAllClasses = 0;
             int countOfLessClasses = 0;
             int countOfGreaterClasses = 0;
             
-            for(double j : parentClassDist.keySet()){
+            for(int j : classVals){
                 int lessVal =0;
-                int greaterVal = parentClassDist.get(j);
+                int greaterVal = parentCounts[j];
                 
-                if(perm != null){
-                    if(perm.get(j) != null && perm.get(j)){
-                        lessVal = parentClassDist.get(j) - orderLineClassDist.get(j);
-                        greaterVal = orderLineClassDist.get(j);
+                if(perm){
+                    if(assigned[j]){
+                        lessVal = parentCounts[j] - orderLineCounts[j];
+                        greaterVal = orderLineCounts[j];
                     }
-                    countOfLessClasses += lessClasses.get(j);
+                    countOfLessClasses += lessCounts[j];
                 
                //Assign everything to the right for fast bound
                 }else{
-                    isShifted.put(j, Boolean.FALSE);
+                    assigned[j] = false;
                 }
                 
-                lessClasses.put(j, lessVal);
-                greaterClasses.put(j, greaterVal);
-                countOfGreaterClasses += greaterClasses.get(j);
+                lessCounts[j] = lessVal;
+                greaterCounts[j] = greaterVal;
+                countOfGreaterClasses += greaterCounts[j];
                 
                 
-                countOfAllClasses += parentClassDist.get(j);
+                countOfAllClasses += parentCounts[j];
             }
            
 
             double bsfGain = -1;
             double lastDist = -1;
             double thisDist;
-            double thisClassVal;
-            int oldCount;
+            int thisClassVal;
 
             for(int i = 0; i < orderLine.size()-1; i++){ 
-                thisDist = orderLine.get(i).getDistance();
-                thisClassVal = orderLine.get(i).getClassVal();
+                thisDist = orderLine.getDistance(i);
+                thisClassVal = orderLine.getClassIndex(i);
 
                  //move the threshold along one (effectively by adding this dist to lessClasses
-                oldCount = lessClasses.get(thisClassVal)+1;
-                lessClasses.put(thisClassVal,oldCount);                
-                oldCount = greaterClasses.get(thisClassVal)-1;
-                greaterClasses.put(thisClassVal,oldCount);
+                lessCounts[thisClassVal]++;
+                greaterCounts[thisClassVal]--;
                 
                 // adjust counts - maybe makes more sense if these are called counts, rather than sums!
                 countOfLessClasses++;
@@ -156,17 +187,18 @@ public class InformationGainBound extends ShapeletQualityBound{
                 //For fast bound dynamically shift the unassigned objects when majority side changes
                 if(!isExact){
                     //Check if shift has not already happened
-                    if(!isShifted.get(thisClassVal)){
-                        int greaterCount = greaterClasses.get(thisClassVal) - (parentClassDist.get(thisClassVal) - orderLineClassDist.get(thisClassVal));
-                        int lessCount = lessClasses.get(thisClassVal);
+                    if(!assigned[thisClassVal]){
+                        int unassigned = parentCounts[thisClassVal] - orderLineCounts[thisClassVal];
+                        int greaterCount = greaterCounts[thisClassVal] - unassigned;
+                        int lessCount = lessCounts[thisClassVal];
                         
                         //Check if shift has happened
                         if(lessCount - greaterCount > 0){
-                            greaterClasses.put(thisClassVal, greaterClasses.get(thisClassVal) - (parentClassDist.get(thisClassVal) - orderLineClassDist.get(thisClassVal)));
-                            countOfGreaterClasses -= parentClassDist.get(thisClassVal) - orderLineClassDist.get(thisClassVal);
-                            lessClasses.put(thisClassVal, lessClasses.get(thisClassVal) + (parentClassDist.get(thisClassVal) - orderLineClassDist.get(thisClassVal)));
-                            countOfLessClasses += parentClassDist.get(thisClassVal) - orderLineClassDist.get(thisClassVal);
-                            isShifted.put(thisClassVal, Boolean.TRUE);
+                            greaterCounts[thisClassVal] -= unassigned;
+                            countOfGreaterClasses -= unassigned;
+                            lessCounts[thisClassVal] += unassigned;
+                            countOfLessClasses += unassigned;
+                            assigned[thisClassVal] = true;
                         }
                     }
                 }
@@ -178,11 +210,11 @@ public class InformationGainBound extends ShapeletQualityBound{
 
                     // calculate the info gain below the threshold
                     double lessFrac =(double) countOfLessClasses / countOfAllClasses;
-                    double entropyLess = InformationGain.entropy(lessClasses);
+                    double entropyLess = InformationGain.entropy(lessCounts, numCounts, numClasses);
 
                     // calculate the info gain above the threshold
                     double greaterFrac =(double) countOfGreaterClasses / countOfAllClasses;
-                    double entropyGreater = InformationGain.entropy(greaterClasses);
+                    double entropyGreater = InformationGain.entropy(greaterCounts, numCounts, numClasses);
 
                     double gain = parentEntropy - lessFrac * entropyLess - greaterFrac * entropyGreater;
                     if(gain > bsfGain){
@@ -18,6 +18,7 @@ import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
 import utilities.class_counts.ClassCounts;
+import tsml.transformers.shapelet_tools.OrderLine;
 import tsml.transformers.shapelet_tools.OrderLineObj;
 
 
@@ -32,6 +33,9 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
     public class KruskalWallis implements ShapeletQualityMeasure, Serializable
     {
 
+        //per class rank sums for the primitive orderline, reused between calls
+        private transient int[] classRankCounts;
+
         protected KruskalWallis(){}
         
         /**
@@ -122,6 +126,74 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
             return h;
         }
 
+        /**
+         * As calculateQuality for a list, but without boxing or allocating per call.
+         */
+        @Override
+        public double calculateQuality(OrderLine orderline, ClassCounts classDistribution)
+        {
+            orderline.sort();
+            int numClasses = classDistribution.size();
+            if (classRankCounts == null || classRankCounts.length < numClasses)
+            {
+                classRankCounts = new int[numClasses];
+            }
+            for (int i = 0; i < numClasses; i++)
+            {
+                classRankCounts[i] = 0;
+            }
+            int size = orderline.size();
+
+            double lastDistance = orderline.getDistance(0);
+            double thisDistance;
+            classRankCounts[orderline.getClassIndex(0)] += 1;
+
+            int duplicateCount = 0;
+
+            //the rank sums are ints, as in the list version, so averaged ranks of ties are truncated in the same way
+            for (int i = 1; i < size; i++)
+            {
+                thisDistance = orderline.getDistance(i);
+                if (duplicateCount == 0 && thisDistance != lastDistance)
+                { // standard entry
+                    classRankCounts[orderline.getClassIndex(i)] += i + 1;
+                }
+                else if (duplicateCount > 0 && thisDistance != lastDistance)
+                { // non-duplicate following duplicates
+                    double avgRank = ((double) (i - duplicateCount) + i) / 2;
+                    for (int j = i - duplicateCount - 1; j < i; j++)
+                    {
+                        classRankCounts[orderline.getClassIndex(j)] += avgRank;
+                    }
+                    duplicateCount = 0;
+                    classRankCounts[orderline.getClassIndex(i)] += i + 1;
+                }
+                else
+                {// thisDistance==lastDistance
+                    if (i == size - 1)
+                    { // last one so must do the avg ranks here, including this element
+                        double avgRank = ((double) (i - duplicateCount) + (i + 1)) / 2;
+                        for (int j = i - duplicateCount - 1; j <= i; j++)
+                        {
+                            classRankCounts[orderline.getClassIndex(j)] += avgRank;
+                        }
+                    }
+                    duplicateCount++;
+                }
+                lastDistance = thisDistance;
+            }
+
+            double overallMeanRank = (1.0 + size) / 2;
+            double s = 0;
+            for (int i = 0; i < numClasses; i++)
+            {
+                double classRankMean = (double) classRankCounts[i] / classDistribution.get((double) i);
+                s += classDistribution.get((double) i) * (classRankMean - overallMeanRank) * (classRankMean - overallMeanRank);
+            }
+
+            return 12.0 / (size * (size + 1)) * s;
+        }
+
         @Override
         public double calculateSeperationGap(List<OrderLineObj> orderline) {
             throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
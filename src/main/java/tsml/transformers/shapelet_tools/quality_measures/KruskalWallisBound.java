@@ -40,8 +40,8 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
         }
                
         @Override
-        public void updateOrderLine(OrderLineObj orderLineObj){
-            super.updateOrderLine(orderLineObj);
+        public void updateOrderLine(double distance, double classVal){
+            super.updateOrderLine(distance, classVal);
             numInstances--;
         }
                
@@ -57,17 +57,17 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
             int[] classRankCounts = new int[numClasses];
             double minimumRank = -1.0;
             double maximumRank = -1.0;
-            double lastDistance = orderLine.get(0).getDistance();
+            double lastDistance = orderLine.getDistance(0);
             double thisDistance;
-            double classVal = orderLine.get(0).getClassVal();
+            double classVal = orderLine.getClassVal(0);
             classRankCounts[(int)classVal]+=1;
 
             int duplicateCount = 0;
 
             for(int i=1; i< orderLine.size(); i++){
-                thisDistance = orderLine.get(i).getDistance();
+                thisDistance = orderLine.getDistance(i);
                 if(duplicateCount == 0 && thisDistance!=lastDistance){ // standard entry
-                    classRankCounts[(int)orderLine.get(i).getClassVal()]+=i+1;
+                    classRankCounts[(int)orderLine.getClassVal(i)]+=i+1;
                     
                     //Set min/max ranks
                     if(thisDistance > 0.0 && minimumRank == -1.0){
@@ -82,13 +82,13 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
                     double avgRank = (minRank+maxRank)/2;
 
                     for(int j = i-duplicateCount-1; j < i; j++){
-                        classRankCounts[(int)orderLine.get(j).getClassVal()]+=avgRank;
+                        classRankCounts[(int)orderLine.getClassVal(j)]+=avgRank;
                     }
 
 
                     duplicateCount = 0;
                     // then set this rank
-                    classRankCounts[(int)orderLine.get(i).getClassVal()]+=i+1;
+                    classRankCounts[(int)orderLine.getClassVal(i)]+=i+1;
                    
                     //Set min/max ranks
                     if(thisDistance > 0.0 && minimumRank == -1.0){
@@ -103,7 +103,7 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
                         double avgRank = (minRank+maxRank)/2;
 
                         for(int j = i-duplicateCount-1; j <= i; j++){
-                            classRankCounts[(int)orderLine.get(j).getClassVal()]+=avgRank;
+                            classRankCounts[(int)orderLine.getClassVal(j)]+=avgRank;
                         }
                         
                         //Set min/max ranks
@@ -18,6 +18,7 @@ import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
 import utilities.class_counts.ClassCounts;
+import tsml.transformers.shapelet_tools.OrderLine;
 import tsml.transformers.shapelet_tools.OrderLineObj;
 
 /**
@@ -31,6 +32,10 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
     public class MoodsMedian implements ShapeletQualityMeasure, Serializable
     {
 
+        //per class counts for the primitive orderline, reused between calls
+        private transient int[] classCountsBelowMedian;
+        private transient int[] classCountsAboveMedian;
+
         protected MoodsMedian(){}
         
         /**
@@ -105,6 +110,69 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
             return chi;
         }
 
+        /**
+         * As calculateQuality for a list, but without boxing or allocating per call.
+         */
+        @Override
+        public double calculateQuality(OrderLine orderline, ClassCounts classDistributions)
+        {
+            orderline.sort();
+            int lengthOfOrderline = orderline.size();
+            double median;
+            if (lengthOfOrderline % 2 == 0)
+            {
+                median = (orderline.getDistance(lengthOfOrderline / 2 - 1) + orderline.getDistance(lengthOfOrderline / 2)) / 2;
+            }
+            else
+            {
+                median = orderline.getDistance(lengthOfOrderline / 2);
+            }
+
+            int numClasses = classDistributions.size();
+            if (classCountsBelowMedian == null || classCountsBelowMedian.length < numClasses)
+            {
+                classCountsBelowMedian = new int[numClasses];
+                classCountsAboveMedian = new int[numClasses];
+            }
+            for (int i = 0; i < numClasses; i++)
+            {
+                classCountsBelowMedian[i] = 0;
+                classCountsAboveMedian[i] = 0;
+            }
+            int countBelow = 0;
+            int countAbove = 0;
+            for (int i = 0; i < lengthOfOrderline; i++)
+            {
+                if (orderline.getDistance(i) < median)
+                {
+                    countBelow++;
+                    classCountsBelowMedian[orderline.getClassIndex(i)]++;
+                }
+                else
+                {
+                    countAbove++;
+                    classCountsAboveMedian[orderline.getClassIndex(i)]++;
+                }
+            }
+
+            double chi = 0;
+            double expectedAbove, expectedBelow;
+            for (int i = 0; i < numClasses; i++)
+            {
+                expectedBelow = (double) (countBelow * classDistributions.get((double) i)) / lengthOfOrderline;
+                chi += ((classCountsBelowMedian[i] - expectedBelow) * (classCountsBelowMedian[i] - expectedBelow)) / expectedBelow;
+
+                expectedAbove = (double) (countAbove * classDistributions.get((double) i)) / lengthOfOrderline;
+                chi += ((classCountsAboveMedian[i] - expectedAbove)) * (classCountsAboveMedian[i] - expectedAbove) / expectedAbove;
+            }
+
+            if (Double.isNaN(chi))
+            {
+                chi = 0; // fix for cases where the shapelet is a straight line and chi is calc'd as NaN
+            }
+            return chi;
+        }
+
         @Override
         public double calculateSeperationGap(List<OrderLineObj> orderline) {
             throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -15,7 +15,6 @@
 package tsml.transformers.shapelet_tools.quality_measures;
 import utilities.class_counts.ClassCounts;
 import utilities.class_counts.SimpleClassCounts;
-import tsml.transformers.shapelet_tools.OrderLineObj;
 
     
     /**
@@ -43,9 +42,9 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
             int lengthOfOrderline = orderLine.size();
             double median;
             if(lengthOfOrderline%2==0){
-                median = (orderLine.get(lengthOfOrderline/2-1).getDistance()+orderLine.get(lengthOfOrderline/2).getDistance())/2;
+                median = (orderLine.getDistance(lengthOfOrderline/2-1)+orderLine.getDistance(lengthOfOrderline/2))/2;
             }else{
-                median = orderLine.get(lengthOfOrderline/2).getDistance();
+                median = orderLine.getDistance(lengthOfOrderline/2);
             }
 
             int totalCount = orderLine.size();
@@ -60,9 +59,9 @@ import tsml.transformers.shapelet_tools.OrderLineObj;
             double classVal;
             
             // Count observed class distributions above and below the median
-            for (OrderLineObj orderLine1 : orderLine) {
-                distance = orderLine1.getDistance();
-                classVal = orderLine1.getClassVal();
+            for (int i = 0; i < orderLine.size(); i++) {
+                distance = orderLine.getDistance(i);
+                classVal = orderLine.getClassVal(i);
                 if(distance < median){
                     countBelow++;
                     classCountsBelowMedian.addTo(classVal, 1); //increment by 1
@@ -101,7 +101,11 @@ public class ShapeletQuality {
     }
     
     public void initQualityBound(ClassCounts classDist, int percentage){
-        bound = Optional.of(boundConstructor.get(choice.ordinal()).apply(classDist, percentage));
+        //reuse the bound between candidates rather than building a new one for each
+        if(bound.isPresent() && bound.get().isFor(classDist, percentage))
+            bound.get().reset();
+        else
+            bound = Optional.of(boundConstructor.get(choice.ordinal()).apply(classDist, percentage));
     }
     
     public void setBsfQuality(double bsf){
@@ -115,5 +119,10 @@ public class ShapeletQuality {
     public void updateOrderLine(OrderLineObj obj){
         bound.ifPresent(shapeletQualityBound -> shapeletQualityBound.updateOrderLine(obj));
     }
+
+    public void updateOrderLine(double distance, double classVal){
+        if(bound.isPresent())
+            bound.get().updateOrderLine(distance, classVal);
+    }
     
 }
@@ -15,9 +15,7 @@
 package tsml.transformers.shapelet_tools.quality_measures;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import tsml.transformers.shapelet_tools.OrderLine;
 import tsml.transformers.shapelet_tools.OrderLineObj;
 import utilities.class_counts.ClassCounts;
 import utilities.class_counts.TreeSetClassCounts;
@@ -36,7 +34,7 @@ public abstract class ShapeletQualityBound implements Serializable {
     /**
      * Orderline of the observed distance, class pairs
      */
-    protected List<OrderLineObj> orderLine;
+    protected OrderLine orderLine;
     /**
      * Class distribution of the observed distance, class pairs
      */
@@ -63,9 +61,13 @@ public abstract class ShapeletQualityBound implements Serializable {
     protected void initParentFields(ClassCounts classDist, int percentage) {
         //Initialize the fields
         bsfQuality = Double.MAX_VALUE;
-        orderLine = new ArrayList<>();
-
-        orderLineClassDist = new TreeSetClassCounts();
+        //the orderline and its class distribution are reused when the bound is reset
+        if (orderLine == null) {
+            orderLine = new OrderLine(classDist.size());
+            orderLineClassDist = new TreeSetClassCounts();
+        } else {
+            orderLine.clear();
+        }
         parentClassDist = classDist;
         this.percentage = percentage;
 
@@ -77,6 +79,25 @@ public abstract class ShapeletQualityBound implements Serializable {
         }
     }
 
+    /**
+     * Whether the bound can be reset for a new candidate rather than built again
+     *
+     * @param classDist class distribution of the data currently being processed
+     * @param percentage percentage of data required to be processed before
+     *                   bounding mechanism is used.
+     * @return true if the bound was built for the same class distribution and percentage
+     */
+    public boolean isFor(ClassCounts classDist, int percentage) {
+        return parentClassDist == classDist && this.percentage == percentage;
+    }
+
+    /**
+     * Method to reset the bound for a new candidate, as if newly constructed
+     */
+    public void reset() {
+        initParentFields(parentClassDist, percentage);
+    }
+
     /**
      * Method to set the best quality so far of the shapelet
      *
@@ -93,17 +114,22 @@ public abstract class ShapeletQualityBound implements Serializable {
      * @param orderLineObj newly observed OrderLineObj
      */
     public void updateOrderLine(OrderLineObj orderLineObj) {
+        updateOrderLine(orderLineObj.getDistance(), orderLineObj.getClassVal());
+    }
+
+    /**
+     * Method to update the ShapeletQualityBound with a newly observed
+     * distance, class pair
+     *
+     * @param distance newly observed distance
+     * @param classVal class value of the newly observed distance
+     */
+    public void updateOrderLine(double distance, double classVal) {
         //Update classDistribution of unprocessed elements
-        orderLineClassDist.put(orderLineObj.getClassVal(), orderLineClassDist.get(orderLineObj.getClassVal()) + 1);
+        orderLineClassDist.put(classVal, orderLineClassDist.get(classVal) + 1);
 
         //use a binarySearch to update orderLine - rather than a O(n) search.
-        int index = Collections.binarySearch(orderLine, orderLineObj);
-        if (index < 0) {
-            index *= -1;
-            index -= 1;
-        }
-        orderLine.add(index, orderLineObj);
-
+        orderLine.insert(distance, classVal);
     }
 
     /**
@@ -15,6 +15,7 @@
 package tsml.transformers.shapelet_tools.quality_measures;
 
 import java.util.List;
+import tsml.transformers.shapelet_tools.OrderLine;
 import tsml.transformers.shapelet_tools.OrderLineObj;
 import utilities.class_counts.ClassCounts;
 
@@ -27,5 +28,13 @@ import utilities.class_counts.ClassCounts;
     {
         public double calculateQuality(List<OrderLineObj> orderline, ClassCounts classDistribution);
 
+        /**
+         * As calculateQuality for a list, but for a primitive orderline. The orderline may be sorted in place.
+         * Measures should override this to avoid building the list.
+         */
+        public default double calculateQuality(OrderLine orderline, ClassCounts classDistribution){
+            return calculateQuality(orderline.toList(), classDistribution);
+        }
+
         public double calculateSeperationGap(List<OrderLineObj> orderline);
     }
@@ -0,0 +1,149 @@
+package tsml.transformers.shapelet_tools.quality_measures;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import tsml.transformers.shapelet_tools.OrderLine;
+import tsml.transformers.shapelet_tools.OrderLineObj;
+import tsml.transformers.shapelet_tools.quality_measures.ShapeletQuality.ShapeletQualityChoice;
+import utilities.class_counts.ClassCounts;
+import utilities.class_counts.TreeSetClassCounts;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the primitive OrderLine qualities against the OrderLineObj list qualities they replaced, and that bounds
+ * reused between candidates behave as new ones.
+ */
+public class ShapeletQualityTest {
+
+    private static final int REPEATS = 2000;
+
+    // a random orderline with few distinct distances, so there are ties, and its class distribution
+    private static List<OrderLineObj> randomOrderLine(Random random, int numClasses, ClassCounts classCounts) {
+        final int size = 2 + random.nextInt(40);
+        final List<OrderLineObj> orderLine = new ArrayList<>(size);
+        for (int c = 0; c < numClasses; c++)
+            classCounts.put(c, 0);
+        for (int i = 0; i < size; i++) {
+            final double classVal = random.nextInt(numClasses);
+            orderLine.add(new OrderLineObj(random.nextInt(10) / 4.0, classVal));
+            classCounts.put(classVal, classCounts.get(classVal) + 1);
+        }
+        return orderLine;
+    }
+
+    private static void assertPrimitiveMatchesList(ShapeletQualityChoice choice) {
+        final Random random = new Random(choice.ordinal());
+        final ShapeletQualityMeasure measure = new ShapeletQuality(choice).getQualityMeasure();
+        final OrderLine primitive = new OrderLine();
+        for (int repeat = 0; repeat < REPEATS; repeat++) {
+            final ClassCounts classCounts = new TreeSetClassCounts();
+            final List<OrderLineObj> list = randomOrderLine(random, 2 + random.nextInt(4), classCounts);
+            primitive.clear();
+            for (OrderLineObj obj : list)
+                primitive.add(obj.getDistance(), obj.getClassVal());
+            final double expected = measure.calculateQuality(new ArrayList<>(list), classCounts);
+            assertEquals(Double.doubleToLongBits(expected),
+                    Double.doubleToLongBits(measure.calculateQuality(primitive, classCounts)));
+        }
+    }
+
+    @Test
+    public void testInformationGain() {
+        assertPrimitiveMatchesList(ShapeletQualityChoice.INFORMATION_GAIN);
+    }
+
+    @Test
+    public void testFStat() {
+        assertPrimitiveMatchesList(ShapeletQualityChoice.F_STAT);
+    }
+
+    @Test
+    public void testKruskalWallis() {
+        assertPrimitiveMatchesList(ShapeletQualityChoice.KRUSKALL_WALLIS);
+    }
+
+    @Test
+    public void testMoodsMedian() {
+        assertPrimitiveMatchesList(ShapeletQualityChoice.MOODS_MEDIAN);
+    }
+
+    @Test
+    public void testOrderLineOrdering() {
+        final Random random = new Random(4);
+        final OrderLine sorted = new OrderLine();
+        final OrderLine inserted = new OrderLine();
+        for (int repeat = 0; repeat < REPEATS; repeat++) {
+            final List<OrderLineObj> list = randomOrderLine(random, 3, new TreeSetClassCounts());
+            sorted.clear();
+            inserted.clear();
+            final List<OrderLineObj> searched = new ArrayList<>();
+            for (OrderLineObj obj : list) {
+                sorted.add(obj.getDistance(), obj.getClassVal());
+                inserted.insert(obj.getDistance(), obj.getClassVal());
+                int index = Collections.binarySearch(searched, obj);
+                searched.add(index < 0 ? -index - 1 : index, obj);
+            }
+            sorted.sort();
+            Collections.sort(list);
+            for (int i = 0; i < list.size(); i++) {
+                assertEquals(list.get(i).getDistance(), sorted.getDistance(i), 0);
+                assertEquals(list.get(i).getClassVal(), sorted.getClassVal(i), 0);
+                assertEquals(searched.get(i).getDistance(), inserted.getDistance(i), 0);
+                assertEquals(searched.get(i).getClassVal(), inserted.getClassVal(i), 0);
+            }
+        }
+    }
+
+    // a bound reused through reset for each candidate must give the same bounds and pruning as a new bound
+    private static void assertResetMatchesNew(ShapeletQualityChoice choice) {
+        final Random random = new Random(10 + choice.ordinal());
+        final ShapeletQuality reused = new ShapeletQuality(choice);
+        for (int group = 0; group < REPEATS / 10; group++) {
+            final ClassCounts classCounts = new TreeSetClassCounts();
+            final List<OrderLineObj> candidate = randomOrderLine(random, 2 + random.nextInt(3), classCounts);
+            final int percentage = random.nextInt(50);
+            for (int repeat = 0; repeat < 10; repeat++) {
+                final double bsf = random.nextDouble();
+                final ShapeletQuality fresh = new ShapeletQuality(choice);
+                fresh.initQualityBound(classCounts, percentage);
+                fresh.setBsfQuality(bsf);
+                reused.initQualityBound(classCounts, percentage);
+                reused.setBsfQuality(bsf);
+                // the same classes in a new order with new distances
+                Collections.shuffle(candidate, random);
+                for (int i = 0; i < candidate.size() - 1; i++) {
+                    final double distance = random.nextInt(10) / 4.0;
+                    fresh.updateOrderLine(distance, candidate.get(i).getClassVal());
+                    reused.updateOrderLine(distance, candidate.get(i).getClassVal());
+                    assertEquals(Double.doubleToLongBits(fresh.getBound().get().calculateBestQuality()),
+                            Double.doubleToLongBits(reused.getBound().get().calculateBestQuality()));
+                    assertEquals(fresh.pruneCandidate(), reused.pruneCandidate());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInformationGainBound() {
+        assertResetMatchesNew(ShapeletQualityChoice.INFORMATION_GAIN);
+    }
+
+    @Test
+    public void testFStatBound() {
+        assertResetMatchesNew(ShapeletQualityChoice.F_STAT);
+    }
+
+    @Test
+    public void testKruskalWallisBound() {
+        assertResetMatchesNew(ShapeletQualityChoice.KRUSKALL_WALLIS);
+    }
+
+    @Test
+    public void testMoodsMedianBound() {
+        assertResetMatchesNew(ShapeletQualityChoice.MOODS_MEDIAN);
+    }
+}
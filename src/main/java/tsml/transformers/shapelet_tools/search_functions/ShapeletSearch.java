@@ -182,6 +182,31 @@ public class ShapeletSearch implements Serializable{
         seriesCount++;
         return seriesShapelets;
     }
+
+    /**
+     * Search one chunk of the full enumeration of a series, so a series can be searched by several threads at once.
+     * The start positions are dealt out to the chunks in turn, so every chunk gets a similar share of candidates of
+     * every length. Unlike searchForShapeletsInSeries no state of the search is updated, therefore the chunks of a
+     * series can be searched concurrently.
+     * @param timeSeries the series to take candidates from
+     * @param chunk the chunk to search, from 0 to numChunks - 1
+     * @param numChunks the number of chunks the series is split into
+     * @param checkCandidate the function to evaluate a candidate with
+     * @return the shapelets found in the chunk
+     */
+    public ArrayList<Shapelet> searchForShapeletsInSeries(Instance timeSeries, int chunk, int numChunks, ProcessCandidate checkCandidate){
+        ArrayList<Shapelet> seriesShapelets = new ArrayList<>();
+        for (int length = minShapeletLength; length <= maxShapeletLength; length+=lengthIncrement) {
+            for (int start = chunk * positionIncrement; start < seriesLength - length; start+=numChunks * positionIncrement) {
+                for(int dim = 0; dim < numDimensions; dim++)   {
+                    Shapelet shapelet = checkCandidate.process(getTimeSeries(timeSeries,dim), start, length, dim);
+                    if (shapelet != null)
+                        seriesShapelets.add(shapelet);
+                }
+            }
+        }
+        return seriesShapelets;
+    }
     public int getMinShapeletLength(){
         return minShapeletLength;
     }
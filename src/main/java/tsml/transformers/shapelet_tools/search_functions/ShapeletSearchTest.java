@@ -0,0 +1,54 @@
+package tsml.transformers.shapelet_tools.search_functions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import experiments.data.DatasetLoading;
+import org.junit.Test;
+import weka.core.Instances;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the chunks of a full enumeration visit every candidate of the full search exactly once.
+ */
+public class ShapeletSearchTest {
+
+    private static List<String> visits(ShapeletSearch search, Instances data, int numChunks) {
+        final List<String> visits = new ArrayList<>();
+        for (int chunk = 0; chunk < numChunks; chunk++)
+            search.searchForShapeletsInSeries(data.get(0), chunk, numChunks, (instance, start, length, dimension) -> {
+                visits.add(length + "," + start + "," + dimension);
+                return null;
+            });
+        return visits;
+    }
+
+    private static void assertChunksMatchFull(int posInc, int lengthInc) throws Exception {
+        Instances data = DatasetLoading.sampleItalyPowerDemand(0)[0];
+        ShapeletSearch search = new ShapeletSearch(new ShapeletSearchOptions.Builder().setMin(3).setMax(data.numAttributes() - 1)
+                .setPosInc(posInc).setLengthInc(lengthInc).setSearchType(ShapeletSearch.SearchType.FULL).build());
+        search.init(data);
+        List<String> full = new ArrayList<>();
+        search.searchForShapeletsInSeries(data.get(0), (instance, start, length, dimension) -> {
+            full.add(length + "," + start + "," + dimension);
+            return null;
+        });
+        Collections.sort(full);
+        for (int numChunks = 1; numChunks <= 8; numChunks++) {
+            List<String> chunked = visits(search, data, numChunks);
+            Collections.sort(chunked);
+            assertEquals(full, chunked);
+        }
+    }
+
+    @Test
+    public void testChunksMatchFull() throws Exception {
+        assertChunksMatchFull(1, 1);
+    }
+
+    @Test
+    public void testChunksMatchFullWithIncrements() throws Exception {
+        assertChunksMatchFull(3, 2);
+    }
+}
@@ -91,6 +91,48 @@ public class ThreadingUtilities {
         return results;
     }
     
+    /**
+     * A job run once for each index of a parallelFor
+     */
+    public interface IndexedJob {
+        void run(int index) throws Exception;
+    }
+
+    /**
+     * Runs the job for each index in [0, size) over the executor, split into numChunks contiguous chunks, and waits
+     * for them all to finish. Using several chunks per thread lets threads which finish early take on more of the
+     * work, particularly with a work stealing pool such as a ForkJoinPool, without submitting a job per index.
+     * Any exception thrown by a job is rethrown (wrapped) once all chunks have finished.
+     */
+    public static void parallelFor(ExecutorService executor, int numChunks, int size, IndexedJob job) throws InterruptedException, ExecutionException {
+        if (size <= 0)
+            return;
+        numChunks = Math.max(1, Math.min(numChunks, size));
+
+        List<Future<Void>> futures = new ArrayList<>(numChunks);
+        for (int c = 0; c < numChunks; c++) {
+            final int start = (int)((long)c * size / numChunks);
+            final int end = (int)((long)(c + 1) * size / numChunks);
+            futures.add(executor.submit(() -> {
+                for (int i = start; i < end; i++)
+                    job.run(i);
+                return null;
+            }));
+        }
+
+        ExecutionException failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
     public static <T> List<Future<T>> submitAll(ExecutorService executor, List<Callable<T>> jobs) throws InterruptedException, ExecutionException {
         List<Future<T>> futureResults = new ArrayList<>();
         for (Callable<T> job : jobs)